@@ -44,6 +44,8 @@ public class ConfigDefaults {
     public static final String WEB_PAM_AUTH_SERVICE = "web.pam_auth_service";
     public static final String WEB_SESSION_DATABASE_LIFETIME =
             "web.session_database_lifetime";
+    public static final String WEB_SESSION_DATABASE_WRITE_INTERVAL =
+            "web.session_database_write_interval";
 
     public static final String WEB_SESSION_SECRET_1 = "web.session_secret_1";
     public static final String WEB_SESSION_SECRET_2 = "web.session_secret_2";
@@ -188,6 +190,8 @@ public class ConfigDefaults {
     private static final String REPORT_DB_PROTO = "reporting.hibernate.connection.driver_proto";
     public static final String REPORT_DB_BATCH_SIZE = "report_db_batch_size";
     public static final String REPORT_DB_HUB_WORKERS = "report_db_hub_workers";
+    public static final String REPORT_DB_FULL_SYNC_INTERVAL = "report_db_full_sync_interval";
+    public static final String REPORT_DB_LOAD_WORKERS = "report_db_load_workers";
 
     public static final String LOOKUP_EXCEPT_SEND_EMAIL = "lookup_exception_email";
 
@@ -235,6 +239,22 @@ public class ConfigDefaults {
 
     public static final String MESSAGE_QUEUE_THREAD_POOL_SIZE = "java.message_queue_thread_pool_size";
 
+    /**
+     * Number of pending messages of a message queue partition above which publishers are throttled
+     */
+    public static final String MESSAGE_QUEUE_PARTITION_CAPACITY = "java.message_queue_partition_capacity";
+
+    /**
+     * Maximum time in seconds a publisher waits for room in a full message queue partition before failing
+     */
+    public static final String MESSAGE_QUEUE_PUBLISH_TIMEOUT = "java.message_queue_publish_timeout";
+
+    /**
+     * If true, datasource queries with an "IN (%s)" clause over integral values bind the whole
+     * list as one array parameter instead of splicing the values into the query text in batches.
+     */
+    public static final String DATASOURCE_ARRAY_IN_CLAUSE = "java.datasource_array_in_clause";
+
     /**
      * Token lifetime in seconds
      */
@@ -265,6 +285,22 @@ public class ConfigDefaults {
      */
     public static final String SALT_CHECK_DOWNLOAD_TOKENS = "java.salt_check_download_tokens";
 
+    /**
+     * Seconds during which a verified download token is trusted without being verified again,
+     * also the longest a token invalidated by another process (like Taskomatic) remains usable
+     */
+    public static final String DOWNLOAD_TOKEN_CACHE_TTL = "java.download_token_cache_ttl";
+
+    /**
+     * Maximum number of verified download tokens kept in memory
+     */
+    public static final String DOWNLOAD_TOKEN_CACHE_SIZE = "java.download_token_cache_size";
+
+    /**
+     * Maximum number of package paths kept in memory for each channel served by the download endpoint
+     */
+    public static final String DOWNLOAD_PACKAGE_CACHE_SIZE = "java.download_package_cache_size";
+
     /**
      * If true, Kiwi OS Image building feature preview will be enabled
      */
@@ -280,6 +316,16 @@ public class ConfigDefaults {
      */
     public static final String NOTIFICATIONS_TYPE_DISABLED = "java.notifications_type_disabled";
 
+    /**
+     * Milliseconds during which websocket notification updates are collected into one push
+     */
+    public static final String NOTIFICATIONS_PUSH_INTERVAL = "java.notifications_push_interval";
+
+    /**
+     * Number of messages a websocket notification session can have pending before the oldest are dropped
+     */
+    public static final String NOTIFICATIONS_SESSION_QUEUE_SIZE = "java.notifications_session_queue_size";
+
     /**
      * Indicates the salt-api host to connect to (host
      */
@@ -333,6 +379,34 @@ public class ConfigDefaults {
      */
     public static final String SALT_EVENTS_PER_COMMIT = "java.salt_events_per_commit";
 
+    /**
+     * Target duration in milliseconds of a transaction processing Salt events. Batches of events grow, up to
+     * java.salt_events_per_commit, while they complete faster than this, and shrink when they are slower. This has
+     * no effect unless java.salt_events_per_commit is raised above its default of 1.
+     */
+    public static final String SALT_EVENT_COMMIT_TARGET = "java.salt_event_commit_target";
+
+    /**
+     * Maximum number of package name, EVR and arch ids kept in memory to resolve installed packages in bulk
+     */
+    public static final String PACKAGE_INTERN_CACHE_SIZE = "java.package_intern_cache_size";
+
+    /**
+     * Whether the primary, filelists, other and susedata files of a repository are written on their own threads
+     */
+    public static final String REPOMD_PARALLEL_WRITERS = "java.repomd_parallel_writers";
+
+    /**
+     * Maximum number of changed package names for which a package profile update recomputes the errata cache
+     * of a system in place, instead of queueing a full recomputation
+     */
+    public static final String ERRATA_CACHE_DELTA_MAX_PACKAGES = "java.errata_cache_delta_max_packages";
+
+    /**
+     * Whether the minion actions due right away are executed from the action dispatch queue instead of Quartz jobs
+     */
+    public static final String MINION_ACTION_DISPATCH_QUEUE = "java.minion_action_dispatch_queue";
+
     /**
      * Single Sign-On associated config option name in rhn.conf
      */
@@ -1056,6 +1130,78 @@ public class ConfigDefaults {
         return Config.get().getInt(NOTIFICATIONS_LIFETIME, 30);
     }
 
+    /**
+     * Returns the time during which a verified download token is trusted without being verified again.
+     * @return the time to live in seconds
+     */
+    public int getDownloadTokenCacheTtl() {
+        return Config.get().getInt(DOWNLOAD_TOKEN_CACHE_TTL, 60);
+    }
+
+    /**
+     * Returns the maximum number of verified download tokens kept in memory.
+     * @return the cache size
+     */
+    public int getDownloadTokenCacheSize() {
+        return Config.get().getInt(DOWNLOAD_TOKEN_CACHE_SIZE, 10000);
+    }
+
+    /**
+     * Returns the maximum number of package paths kept in memory for each channel.
+     * @return the cache size
+     */
+    public int getDownloadPackageCacheSize() {
+        return Config.get().getInt(DOWNLOAD_PACKAGE_CACHE_SIZE, 50000);
+    }
+
+    /**
+     * Returns the time during which websocket notification updates are collected into one push.
+     * @return the push interval in milliseconds
+     */
+    public int getNotificationsPushInterval() {
+        return Config.get().getInt(NOTIFICATIONS_PUSH_INTERVAL, 500);
+    }
+
+    /**
+     * Returns the number of messages a websocket notification session can have pending.
+     * @return the session queue size
+     */
+    public int getNotificationsSessionQueueSize() {
+        return Config.get().getInt(NOTIFICATIONS_SESSION_QUEUE_SIZE, 16);
+    }
+
+    /**
+     * Returns the number of message queue partitions, each executing its messages in one thread.
+     * @return the number of partitions
+     */
+    public int getMessageQueueThreadPoolSize() {
+        return Config.get().getInt(MESSAGE_QUEUE_THREAD_POOL_SIZE, 5);
+    }
+
+    /**
+     * Returns the number of pending messages of a message queue partition above which publishers are throttled.
+     * @return the partition capacity
+     */
+    public int getMessageQueuePartitionCapacity() {
+        return Config.get().getInt(MESSAGE_QUEUE_PARTITION_CAPACITY, 1000);
+    }
+
+    /**
+     * Returns how long, in seconds, a publisher waits for room in a full message queue partition.
+     * @return the publish timeout in seconds
+     */
+    public int getMessageQueuePublishTimeout() {
+        return Config.get().getInt(MESSAGE_QUEUE_PUBLISH_TIMEOUT, 30);
+    }
+
+    /**
+     * Returns true if "IN (%s)" clauses of datasource queries can be bound as a single array parameter
+     * @return true if array binding of in clauses is enabled
+     */
+    public boolean isDatasourceArrayInClauseEnabled() {
+        return Config.get().getBoolean(DATASOURCE_ARRAY_IN_CLAUSE, true);
+    }
+
     /**
      * Returns the number of threads dedicated to processing Salt events.
      * @return the number of threads
@@ -1078,6 +1224,60 @@ public class ConfigDefaults {
         return Config.get().getInt(SALT_EVENTS_PER_COMMIT, 1);
     }
 
+    /**
+     * Target duration of a transaction processing Salt events, used to adapt the number of events per commit
+     * between 1 and {@link #getSaltEventsPerCommit()}. The default of one event per commit leaves nothing to adapt.
+     * @return the target duration in milliseconds
+     */
+    public int getSaltEventCommitTarget() {
+        return Config.get().getInt(SALT_EVENT_COMMIT_TARGET, 1000);
+    }
+
+    /**
+     * Maximum number of ids of each kind cached by the PackageInterner.
+     * @return the cache size
+     */
+    public int getPackageInternCacheSize() {
+        return Config.get().getInt(PACKAGE_INTERN_CACHE_SIZE, 100000);
+    }
+
+    /**
+     * Returns true if the per-package metadata files of a repository are serialized and compressed
+     * on their own threads while the next batch of packages is read from the database.
+     * @return true if the repository metadata files are written in parallel
+     */
+    public boolean isRepomdParallelWritersEnabled() {
+        return Config.get().getBoolean(REPOMD_PARALLEL_WRITERS, true);
+    }
+
+    /**
+     * Returns the maximum number of changed package names for which the errata cache of a system is updated
+     * incrementally after a package profile update. Larger changes queue a full recomputation.
+     * @return the maximum number of changed package names, 0 to always recompute the full cache
+     */
+    public int getErrataCacheDeltaMaxPackages() {
+        return Config.get().getInt(ERRATA_CACHE_DELTA_MAX_PACKAGES, 200);
+    }
+
+    /**
+     * Returns true if the minion actions due right away are written to the action dispatch queue
+     * and executed by Taskomatic as soon as the scheduling transaction commits, instead of
+     * becoming Quartz jobs.
+     * @return true if the action dispatch queue is enabled
+     */
+    public boolean isMinionActionDispatchQueueEnabled() {
+        return Config.get().getBoolean(MINION_ACTION_DISPATCH_QUEUE, true);
+    }
+
+    /**
+     * Returns how often the extended web session lifetimes are written to the
+     * database, in seconds.
+     * @return the write interval in seconds
+     */
+    public int getWebSessionDatabaseWriteInterval() {
+        return Config.get().getInt(WEB_SESSION_DATABASE_WRITE_INTERVAL, 60);
+    }
+
 
     /**
      * Returns the notifications type disabled.
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db;
+
+import com.redhat.rhn.common.translation.SqlExceptionTranslator;
+
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+
+/**
+ * Accumulates rows in the text format of PostgreSQL <code>COPY</code> and
+ * bulk loads them into a table with <code>COPY ... FROM STDIN</code>.
+ *
+ * Callers are expected to flush the buffer with {@link #copyIn(Session)}
+ * every few thousand rows, so that its size stays bounded.
+ */
+public class CopyBuffer {
+
+    private final String table;
+    private final String sqlStatement;
+    private final StringBuilder data = new StringBuilder();
+    private int rows;
+
+    /**
+     * Standard constructor.
+     * @param tableIn the table to load
+     * @param columns the columns of the rows, in order
+     */
+    public CopyBuffer(String tableIn, Iterable<String> columns) {
+        table = tableIn;
+        sqlStatement = String.format("COPY %s (%s) FROM STDIN", tableIn, String.join(",", columns));
+    }
+
+    /**
+     * Appends a row.
+     * @param values the column values, in the order of the columns, null for NULL
+     */
+    public void addRow(Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                data.append('\t');
+            }
+            appendValue(values[i]);
+        }
+        data.append('\n');
+        rows++;
+    }
+
+    /**
+     * @return the number of rows waiting to be loaded
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Loads the buffered rows into the table and empties the buffer.
+     * @param session the session the statement should use
+     * @return the number of rows loaded
+     */
+    public long copyIn(Session session) {
+        if (rows == 0) {
+            return 0;
+        }
+        String text = data.toString();
+        data.setLength(0);
+        rows = 0;
+        return session.doReturningWork(connection -> {
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                return copyManager.copyIn(sqlStatement, new StringReader(text));
+            }
+            catch (SQLException e) {
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            catch (IOException e) {
+                throw new DatabaseException("Unable to copy data into " + table, e);
+            }
+        });
+    }
+
+    private void appendValue(Object value) {
+        if (value == null) {
+            data.append("\\N");
+            return;
+        }
+
+        String text;
+        if (value instanceof Timestamp) {
+            // keep the offset, the same instant is stored whatever the session time zone
+            text = ((Timestamp) value).toInstant().atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+        }
+        else {
+            text = value.toString();
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    data.append("\\\\");
+                    break;
+                case '\t':
+                    data.append("\\t");
+                    break;
+                case '\n':
+                    data.append("\\n");
+                    break;
+                case '\r':
+                    data.append("\\r");
+                    break;
+                default:
+                    data.append(c);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.redhat.rhn.common.db.datasource;
 
 import com.redhat.rhn.common.ObjectCreateWrapperException;
 import com.redhat.rhn.common.RhnRuntimeException;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.NamedPreparedStatement;
 import com.redhat.rhn.common.hibernate.HibernateHelper;
 import com.redhat.rhn.common.hibernate.HibernateRuntimeException;
@@ -40,13 +41,21 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.FlushModeType;
 
@@ -71,6 +80,20 @@ public class CachedStatement implements Serializable {
      */
     public static final int BATCH_SIZE = 500;
 
+    /**
+     * Name of the bind parameter replacing <code>IN (%s)</code> when the in
+     * clause is bound as a single array.
+     */
+    private static final String IN_CLAUSE_ARRAY_PARAM = "in_clause_array";
+
+    /*
+     * Matches the in clauses that can be rewritten to "= ANY(:in_clause_array)".
+     * NOT IN clauses are matched too, so that statements using them are
+     * recognized and left to the literal splicing path.
+     */
+    private static final Pattern IN_CLAUSE_PATTERN =
+            Pattern.compile("\\b(NOT\\s+)?IN\\s*\\(\\s*%s\\s*\\)", Pattern.CASE_INSENSITIVE);
+
     /*
      * This is the original config for this query as specified in the mode query
      * xml file. It is intended to be immutable.
@@ -90,6 +113,18 @@ public class CachedStatement implements Serializable {
 
     private Map<String, List<Integer>> qMap;
 
+    /*
+     * The sql statement before named bind parameters get replaced, only kept
+     * to derive the array in clause variant of a "%s" query.
+     */
+    private String rawSqlStatement;
+
+    // The "%s" query with its in clause bound as an array, if it can be
+    // rewritten, and its parameter map.
+    private String arraySqlStatement;
+    private Map<String, List<Integer>> arrayQMap;
+    private boolean arrayStatementPrepared = false;
+
     private List<String> params;
 
     // This is only set if the current CachedStatement is a duplicate of an
@@ -113,6 +148,7 @@ public class CachedStatement implements Serializable {
         this.qMap = new HashMap<>();
         this.params = new ArrayList<>(parsedQuery.getParameterList());
         this.sqlStatement = parsedQuery.getSqlStatement();
+        this.rawSqlStatement = sqlStatement;
         this.session = sessionIn;
     }
 
@@ -223,6 +259,8 @@ public class CachedStatement implements Serializable {
 
     private void modifyQuery(String replaceToken, String replacementString) {
         sqlStatement = sqlStatement.replace(replaceToken, replacementString);
+        rawSqlStatement = rawSqlStatement.replace(replaceToken, replacementString);
+        arrayStatementPrepared = false;
     }
 
     int executeUpdate(Map<String, ?> parameters) {
@@ -281,6 +319,167 @@ public class CachedStatement implements Serializable {
         return internalExecute(parameters, inClause, mode);
     }
 
+    /**
+     * Executes the query and returns its rows in chunks, read from a server-side
+     * cursor instead of loading the whole ResultSet first. Each chunk is
+     * elaborated when the stream reaches it, so only one chunk is held in memory
+     * at a time.
+     *
+     * The returned stream must be closed, it holds the statement open until then.
+     * The cursor only lives as long as the current transaction: committing
+     * before the stream is consumed invalidates it.
+     *
+     * @param parameters the query parameters, also used to elaborate the chunks
+     * @param mode the select mode
+     * @param chunkSize the number of rows fetched from the database at once
+     * @param <T> the type of the returned items
+     * @return the stream of elaborated chunks
+     */
+    <T> Stream<DataResult<T>> executeStream(Map<String, ?> parameters, SelectMode mode, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+        if (sqlStatement.contains("%s")) {
+            throw new IllegalArgumentException("Streaming is not supported for queries with an in clause: " +
+                    getName());
+        }
+        storeForRestart(parameters, null, mode);
+        this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
+
+        ChunkIterator<T> chunks = doWithStolenConnection(connection -> {
+            PreparedStatement ps = null;
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("executeStream() - Executing: {}", sqlStatement);
+                    log.debug("executeStream() - With: {}", parameters);
+                }
+                ps = connection.prepareStatement(sqlStatement, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setMaxRows(mode.getMaxRows());
+                // a positive fetch size makes the driver read the rows through a cursor
+                ps.setFetchSize(chunkSize);
+                NamedPreparedStatement.execute(ps, qMap, setupParamMap(parameters));
+                return new ChunkIterator<>(ps, ps.getResultSet(), mode, parameters, chunkSize);
+            }
+            catch (SQLException e) {
+                HibernateHelper.cleanupDB(ps);
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            catch (RuntimeException e) {
+                HibernateHelper.cleanupDB(ps);
+                throw e;
+            }
+        });
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(chunks::close);
+    }
+
+    /**
+     * Reads a ResultSet chunk by chunk, elaborating every chunk before handing
+     * it out.
+     * @param <T> the type of the returned items
+     */
+    private class ChunkIterator<T> implements Iterator<DataResult<T>> {
+
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final SelectMode mode;
+        private final Map<String, ?> parameters;
+        private final int chunkSize;
+        private final List<String> columns;
+        private final RowMapper mapper;
+        private DataResult<T> next;
+        private boolean closed = false;
+
+        ChunkIterator(PreparedStatement psIn, ResultSet rsIn, SelectMode modeIn, Map<String, ?> parametersIn,
+                int chunkSizeIn) throws SQLException {
+            ps = psIn;
+            rs = rsIn;
+            mode = modeIn;
+            parameters = parametersIn != null ? parametersIn : Collections.emptyMap();
+            chunkSize = chunkSizeIn;
+            columns = getColumnNames(rs.getMetaData());
+            String className = mode.getClassString();
+            if (className == null || className.equals("java.util.Map")) {
+                mapper = null;
+            }
+            else {
+                try {
+                    mapper = RowMapper.forClass(Class.forName(className), columns);
+                }
+                catch (ClassNotFoundException e) {
+                    throw new ObjectCreateWrapperException("Could not create " + className, e);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                next = readChunk();
+            }
+            return next != null;
+        }
+
+        @Override
+        public DataResult<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DataResult<T> chunk = next;
+            next = null;
+            return chunk;
+        }
+
+        @SuppressWarnings("unchecked")
+        private DataResult<T> readChunk() {
+            DataResult<T> chunk = new DataResult<>(mode);
+            try {
+                while (chunk.size() < chunkSize && rs.next()) {
+                    Object row;
+                    if (mapper == null) {
+                        Row resultMap = new Row();
+                        addToMap(columns, rs, resultMap, -1);
+                        row = resultMap;
+                    }
+                    else {
+                        row = mapper.newInstance();
+                        mapper.map(rs, row, Collections.emptyList());
+                    }
+                    chunk.add((T) row);
+                }
+            }
+            catch (SQLException e) {
+                close();
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            if (chunk.size() < chunkSize) {
+                // release the cursor as soon as it is exhausted
+                close();
+            }
+            if (chunk.isEmpty()) {
+                return null;
+            }
+            chunk.setStart(1);
+            chunk.setEnd(chunk.size());
+            chunk.setTotalSize(chunk.size());
+            chunk.setElaborationParams(new HashMap<>(parameters));
+            if (!mode.getElaborators().isEmpty()) {
+                mode.elaborate(chunk, parameters);
+            }
+            return chunk;
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                HibernateHelper.cleanupDB(rs, ps);
+            }
+        }
+    }
+
     private Integer internalExecuteUpdateNoSubClause(Map<String, ?> parameters, Mode mode) {
         Object resultObj = executeChecking(sqlStatement, qMap, parameters, mode, null);
         if (resultObj instanceof Integer) {
@@ -305,6 +504,13 @@ public class CachedStatement implements Serializable {
         this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
 
         if (sqlStatement.contains("%s")) {
+            Long[] inClauseArray = toInClauseArray(inClause);
+            if (inClauseArray != null) {
+                Object resultObj = executeChecking(arraySqlStatement, arrayQMap,
+                        withInClauseArray(parameters, inClauseArray), mode, null);
+                return resultObj instanceof Integer ? (Integer) resultObj : 0;
+            }
+
             int returnInt = 0;
 
             int subStart = 0;
@@ -354,6 +560,13 @@ public class CachedStatement implements Serializable {
             }
             Class<DataResult<T>> drClazz = (Class<DataResult<T>>)(Class<?>) DataResult.class;
 
+            Long[] inClauseArray = toInClauseArray(inClause);
+            if (inClauseArray != null) {
+                Object resultObj = executeChecking(arraySqlStatement, arrayQMap,
+                        withInClauseArray(parameters, inClauseArray), mode, null);
+                return drClazz.isAssignableFrom(resultObj.getClass()) ? drClazz.cast(resultObj) : null;
+            }
+
             List<String> batches = queryBatches(inClause);
             List<DataResult<T>> results = batches.stream()
                     .map(finalQuery -> executeChecking(finalQuery, qMap, parameters, mode, null))
@@ -374,6 +587,66 @@ public class CachedStatement implements Serializable {
         }
     }
 
+    /**
+     * Checks whether the in clause can be bound as one array parameter and
+     * returns it as an array if so. This is the case when all the values are
+     * integral numbers and every "%s" of the statement is a plain
+     * <code>IN (%s)</code> clause, which then becomes <code>= ANY(?)</code>:
+     * one prepared statement with a stable text, whatever the list size.
+     * @param inClause the in clause values
+     * @return the values as an array, or null if the literal values need to
+     * be spliced into the statement text
+     */
+    private Long[] toInClauseArray(List<?> inClause) {
+        if (inClause == null || inClause.isEmpty() ||
+                !ConfigDefaults.get().isDatasourceArrayInClauseEnabled()) {
+            return null;
+        }
+        Long[] values = new Long[inClause.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = inClause.get(i);
+            if (!(value instanceof Long || value instanceof Integer || value instanceof Short)) {
+                return null;
+            }
+            values[i] = ((Number) value).longValue();
+        }
+        prepareArrayStatement();
+        return arraySqlStatement != null ? values : null;
+    }
+
+    private void prepareArrayStatement() {
+        if (arrayStatementPrepared) {
+            return;
+        }
+        arrayStatementPrepared = true;
+        arraySqlStatement = null;
+        arrayQMap = null;
+
+        Matcher matcher = IN_CLAUSE_PATTERN.matcher(rawSqlStatement);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                // NOT IN is not rewritten
+                return;
+            }
+            matcher.appendReplacement(sb, "= ANY(:" + IN_CLAUSE_ARRAY_PARAM + ")");
+        }
+        matcher.appendTail(sb);
+        String rewritten = sb.toString();
+        if (rewritten.contains("%s") || rawSqlStatement.contains(":" + IN_CLAUSE_ARRAY_PARAM)) {
+            // "%s" used outside of an in clause
+            return;
+        }
+        arrayQMap = new HashMap<>();
+        arraySqlStatement = NamedPreparedStatement.replaceBindParams(rewritten, arrayQMap);
+    }
+
+    private Map<String, Object> withInClauseArray(Map<String, ?> parameters, Long[] inClauseArray) {
+        Map<String, Object> result = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+        result.put(IN_CLAUSE_ARRAY_PARAM, inClauseArray);
+        return result;
+    }
+
     private String commaSeparatedList(List<?> list) {
         StringBuilder sb = new StringBuilder();
         boolean firstValue = true;
@@ -434,6 +707,17 @@ public class CachedStatement implements Serializable {
             throw new MapColumnNotFoundException(
                     "Column, " + getColumn() + ", not found in driving query results");
         }
+
+        List<Object> keys = new ArrayList<>(len);
+        for (Object row : resultList) {
+            keys.add(getKey(row, getColumn()));
+        }
+        Long[] inClauseArray = toInClauseArray(keys);
+        if (inClauseArray != null) {
+            return (DataResult<Object>) executeChecking(arraySqlStatement, arrayQMap,
+                    withInClauseArray(parameters, inClauseArray), mode, resultList);
+        }
+
         StringBuilder bindParams = new StringBuilder();
         List<String> newParams = new ArrayList<>(params);
         for (int i = 0; i < len; i++) {
@@ -442,7 +726,7 @@ public class CachedStatement implements Serializable {
             }
             String newParam = "l" + i;
             bindParams.append(":").append(newParam);
-            parameters.put(newParam, getKey(resultList.get(i), getColumn()));
+            parameters.put(newParam, keys.get(i));
             newParams.add(newParam);
         }
 
@@ -456,7 +740,7 @@ public class CachedStatement implements Serializable {
         return cs.executeElaboratorBatch(resultList, mode, parameters);
     }
 
-    private Map<String, ?> setupParamMap(Map<String, ?> parameters) {
+    private Map<String, Object> setupParamMap(Map<String, ?> parameters) {
         if (parameters == null && !params.isEmpty()) {
             throw new IllegalArgumentException(
                     "Query contains named parameter," + " but value map is null");
@@ -470,6 +754,9 @@ public class CachedStatement implements Serializable {
             }
             intersection.put(curr, parameters.get(curr));
         }
+        if (parameters != null && parameters.containsKey(IN_CLAUSE_ARRAY_PARAM)) {
+            intersection.put(IN_CLAUSE_ARRAY_PARAM, parameters.get(IN_CLAUSE_ARRAY_PARAM));
+        }
         return intersection;
     }
 
@@ -532,8 +819,13 @@ public class CachedStatement implements Serializable {
         PreparedStatement ps = null;
         try {
             ps = prepareStatement(connection, sql, mode);
-            boolean returnType = NamedPreparedStatement.execute(ps, parameterMap,
-                    setupParamMap(parameters));
+            Map<String, Object> bindParameters = setupParamMap(parameters);
+            Object inClauseArray = bindParameters.get(IN_CLAUSE_ARRAY_PARAM);
+            if (inClauseArray != null) {
+                bindParameters.put(IN_CLAUSE_ARRAY_PARAM,
+                        connection.createArrayOf("bigint", (Object[]) inClauseArray));
+            }
+            boolean returnType = NamedPreparedStatement.execute(ps, parameterMap, bindParameters);
             if (log.isDebugEnabled()) {
                 log.debug("execute() - Return type: {}", returnType);
             }
@@ -631,6 +923,7 @@ public class CachedStatement implements Serializable {
             dr = new DataResult<>(mode);
         }
         String className = mode.getClassString();
+        RowMapper mapper = null;
         try {
             // Get the column names from the result set.
             List<String> columns = getColumnNames(rs.getMetaData());
@@ -663,8 +956,8 @@ public class CachedStatement implements Serializable {
                          */
                         resultMap = (Row) currentResults.get(pos);
                     }
-                    addToMap(columns, rs, resultMap,
-                            mode.getElaborators().indexOf(parentStatement));
+                    addToMap(columns, rs, resultMap, mode.getElaborators().indexOf(
+                            parentStatement != null ? parentStatement : this));
 
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
@@ -676,10 +969,12 @@ public class CachedStatement implements Serializable {
                  * Otherwise, try to set the results to the class given.
                  */
                 else {
-                    Class<?> clazz = Class.forName(className);
                     Object obj;
                     if (pointers == null) {
-                        obj = clazz.newInstance();
+                        if (mapper == null) {
+                            mapper = RowMapper.forClass(Class.forName(className), columns);
+                        }
+                        obj = mapper.newInstance();
                     }
                     else {
                         Integer pos = pointers.get(getObject(rs, getColumn()));
@@ -689,9 +984,13 @@ public class CachedStatement implements Serializable {
                                     getColumn() + " " + getObject(rs, getColumn()));
                         }
                         obj = currentResults.get(pos);
+                        // elaborated objects usually share one class, look the mapper up only when it changes
+                        if (mapper == null || mapper.getMappedClass() != obj.getClass()) {
+                            mapper = RowMapper.forClass(obj.getClass(), columns);
+                        }
                     }
                     // if pointers are null, we are doing an elaborator.
-                    addToObject(columns, rs, obj, (pointers != null));
+                    addToObject(mapper, rs, obj, (pointers != null));
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
                     if (pointers == null) {
@@ -716,7 +1015,7 @@ public class CachedStatement implements Serializable {
         catch (SQLException e) {
             throw SqlExceptionTranslator.sqlException(e);
         }
-        catch (ClassNotFoundException | IllegalAccessException | InstantiationException e) {
+        catch (ClassNotFoundException e) {
             throw new ObjectCreateWrapperException("Could not create " + className, e);
         }
         finally {
@@ -767,8 +1066,7 @@ public class CachedStatement implements Serializable {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void addToObject(List<String> columns, ResultSet rs, Object obj,
+    private void addToObject(RowMapper mapper, ResultSet rs, Object obj,
             boolean elaborator)
         throws SQLException {
 
@@ -779,57 +1077,10 @@ public class CachedStatement implements Serializable {
             columnSkip = cb.getCallBackColumns();
         }
         else {
-            columnSkip = new ArrayList<>();
+            columnSkip = Collections.emptyList();
         }
 
-        for (String columnName : columns) {
-            if (columnSkip.contains(columnName.toLowerCase())) {
-                continue;
-            }
-
-            String setName = StringUtil.beanify("set " + columnName.toLowerCase());
-            String getName = StringUtil.beanify("get " + columnName.toLowerCase());
-
-            boolean isList = false;
-            Method[] methods = obj.getClass().getMethods();
-            /*
-             * Now loop through the methods and find the set method for this
-             * column then decide if it takes a collection Note: This action
-             * might not complete correctly if there are two set methods with
-             * the same name
-             */
-            for (Method methodIn : methods) {
-                // getName() gets the name of the set method
-                // setName is the name of the set method
-                if (methodIn.getName().equals(setName)) {
-                    Class<?> paramType = methodIn.getParameterTypes()[0];
-                    if (Collection.class.isAssignableFrom(paramType)) {
-                        isList = true;
-                    }
-                    break;
-                }
-            }
-
-            if (isList) { // requires matching get method returning the same
-                // list
-                Collection<Object> c = (Collection<Object>) MethodUtil.callMethod(obj,
-                        getName, new Object[0]);
-                if (c == null) {
-                    c = new ArrayList<>();
-                }
-                c.add(getObject(rs, columnName));
-                MethodUtil.callMethod(obj, setName, c);
-                continue;
-            }
-            /*
-             * Just call the set method. This will call the same set method
-             * multiple times. If the result set should be a list, but has a
-             * non-Collection set method, the attribute corresponding to this
-             * column will ultimately contain the last item found for this
-             * column.
-             */
-            MethodUtil.callMethod(obj, setName, getObject(rs, columnName));
-        } // while
+        mapper.map(rs, obj, columnSkip);
     }
 
     /**
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.ObjectCreateWrapperException;
+import com.redhat.rhn.common.translation.TranslationException;
+import com.redhat.rhn.common.translation.Translator;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+import com.redhat.rhn.common.util.StringUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the rows of a ResultSet onto instances of a DTO class.
+ *
+ * A RowMapper is built once for each combination of DTO class and column
+ * list and then reused for every row of every query returning that shape, so
+ * that setters are no longer looked up via reflection for each column of each
+ * row. The mapping follows the rules CachedStatement always applied: a column
+ * named <code>foo_bar</code> is set through <code>setFooBar</code>, a setter
+ * taking a Collection appends to the collection returned by
+ * <code>getFooBar</code>, dates are returned as Timestamps and BigDecimals as
+ * Longs, and values not matching a setter parameter type are converted with
+ * the {@link Translator}.
+ */
+public final class RowMapper {
+
+    private static final Map<Key, RowMapper> CACHE = new ConcurrentHashMap<>();
+
+    private static final Set<String> ORACLE_TIMESTAMPS = Set.of("oracle.sql.TIMESTAMPLTZ",
+            "oracle.sql.TIMESTAMP", "oracle.sql.TIMESTAMPTZ");
+
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE =
+            MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> clazz;
+    private final Constructor<?> constructor;
+    private final List<String> columns;
+    private final int[] indexes;
+    private final ColumnSetter[] setters;
+
+    private RowMapper(Class<?> clazzIn, List<String> columnsIn) {
+        clazz = clazzIn;
+        columns = columnsIn;
+        constructor = lookupConstructor(clazzIn);
+        indexes = new int[columnsIn.size()];
+        setters = new ColumnSetter[columnsIn.size()];
+        Method[] methods = clazzIn.getMethods();
+        for (int i = 0; i < columnsIn.size(); i++) {
+            String column = columnsIn.get(i);
+            // ResultSet.getObject(String) returns the first column with a given
+            // name, so duplicated column names all read the first occurrence
+            indexes[i] = columnsIn.indexOf(column) + 1;
+            setters[i] = new ColumnSetter(clazzIn, methods, column);
+        }
+    }
+
+    /**
+     * Returns the mapper for the given class and column list, building it on
+     * first use.
+     * @param clazz the DTO class
+     * @param columns the lower case column names, in ResultSet order
+     * @return the mapper
+     */
+    public static RowMapper forClass(Class<?> clazz, List<String> columns) {
+        return CACHE.computeIfAbsent(new Key(clazz, columns),
+                key -> new RowMapper(key.clazz, key.columns));
+    }
+
+    /**
+     * Drops all the cached mappers.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * @return the number of cached mappers
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * @return the DTO class populated by this mapper
+     */
+    public Class<?> getMappedClass() {
+        return clazz;
+    }
+
+    /**
+     * @return the lower case column names handled by this mapper
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Creates a new, empty instance of the mapped class.
+     * @return the new instance
+     */
+    public Object newInstance() {
+        try {
+            return constructor.newInstance();
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new ObjectCreateWrapperException("Could not create " + clazz.getName(), e);
+        }
+    }
+
+    /**
+     * Sets the values of the current row into the given object.
+     * @param rs the ResultSet, positioned on the row to map
+     * @param obj the object to populate
+     * @param columnSkip the lower case columns to leave alone, may be empty
+     * @throws SQLException if reading a column fails
+     */
+    public void map(ResultSet rs, Object obj, List<String> columnSkip) throws SQLException {
+        for (int i = 0; i < setters.length; i++) {
+            if (!columnSkip.isEmpty() && columnSkip.contains(columns.get(i))) {
+                continue;
+            }
+            setters[i].set(obj, getObject(rs, indexes[i]));
+        }
+    }
+
+    /**
+     * Same as {@link ResultSet#getObject(int)}, except that dates are returned
+     * as Timestamps and BigDecimals as Longs.
+     * @param rs the ResultSet
+     * @param index the 1-based column index
+     * @return the column value
+     * @throws SQLException if reading the column fails
+     */
+    public static Object getObject(ResultSet rs, int index) throws SQLException {
+        Object columnValue = rs.getObject(index);
+        if (columnValue == null) {
+            return null;
+        }
+        if (columnValue instanceof java.util.Date ||
+                ORACLE_TIMESTAMPS.contains(columnValue.getClass().getName())) {
+            return rs.getTimestamp(index);
+        }
+        else if (columnValue instanceof BigDecimal) {
+            return rs.getLong(index);
+        }
+        return columnValue;
+    }
+
+    private static Constructor<?> lookupConstructor(Class<?> clazzIn) {
+        try {
+            return clazzIn.getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+            throw new ObjectCreateWrapperException("Could not create " + clazzIn.getName(), e);
+        }
+    }
+
+    private static MethodHandle unreflect(Method method, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(type);
+        }
+        catch (IllegalAccessException e) {
+            throw new MethodInvocationException("Could not access " + method.getName(), e);
+        }
+    }
+
+    /**
+     * Writes one column into an object, resolving the setter overload for
+     * each distinct value class only once.
+     */
+    private static final class ColumnSetter {
+
+        private final Class<?> clazz;
+        private final String setName;
+        private final List<Method> candidates;
+        private final MethodHandle collectionGetter;
+        private final Map<Class<?>, Target> targets = new ConcurrentHashMap<>();
+        private volatile Target nullTarget;
+
+        ColumnSetter(Class<?> clazzIn, Method[] methods, String column) {
+            clazz = clazzIn;
+            setName = StringUtil.beanify("set " + column);
+            candidates = new ArrayList<>();
+            boolean isList = false;
+            boolean first = true;
+            for (Method method : methods) {
+                if (!method.getName().equals(setName)) {
+                    continue;
+                }
+                // only the first setter with this name decides whether the
+                // column is collected into a Collection
+                if (first && method.getParameterCount() > 0) {
+                    isList = Collection.class.isAssignableFrom(method.getParameterTypes()[0]);
+                }
+                first = false;
+                if (method.getParameterCount() == 1) {
+                    candidates.add(method);
+                }
+            }
+            collectionGetter = isList ? lookupCollectionGetter(methods, column) : null;
+        }
+
+        private MethodHandle lookupCollectionGetter(Method[] methods, String column) {
+            String getName = StringUtil.beanify("get " + column);
+            return Arrays.stream(methods)
+                    .filter(m -> m.getName().equals(getName) && m.getParameterCount() == 0)
+                    .findFirst()
+                    .map(m -> unreflect(m, GETTER_TYPE))
+                    .orElseThrow(() -> new MethodNotFoundException("Could not find method called: " +
+                            getName + " in class: " + clazz.getName() + " with params: []"));
+        }
+
+        @SuppressWarnings("unchecked")
+        void set(Object obj, Object value) {
+            Object arg = value;
+            if (collectionGetter != null) {
+                Collection<Object> c;
+                try {
+                    c = (Collection<Object>) (Object) collectionGetter.invokeExact(obj);
+                }
+                catch (Throwable t) {
+                    throw new MethodInvocationException("Something bad happened when calling " +
+                            StringUtil.beanify("get" + setName.substring(3)), t);
+                }
+                if (c == null) {
+                    c = new ArrayList<>();
+                }
+                c.add(value);
+                arg = c;
+            }
+            Target target = resolve(arg);
+            Object converted;
+            try {
+                converted = target.convert(arg);
+            }
+            catch (TranslationException e) {
+                // this particular value does not convert, look for another overload
+                target = lookupTarget(arg);
+                converted = target.convert(arg);
+            }
+            try {
+                target.handle.invokeExact(obj, converted);
+            }
+            catch (Throwable t) {
+                throw new MethodInvocationException("Something bad happened when calling " + setName, t);
+            }
+        }
+
+        private Target resolve(Object arg) {
+            if (arg == null) {
+                Target t = nullTarget;
+                if (t == null) {
+                    t = lookupTarget(null);
+                    nullTarget = t;
+                }
+                return t;
+            }
+            return targets.computeIfAbsent(arg.getClass(), c -> lookupTarget(arg));
+        }
+
+        /*
+         * Same selection rules as MethodUtil.callMethod: the first setter whose
+         * parameter accepts the value as is wins, otherwise the first one the
+         * Translator can convert the value for.
+         */
+        private Target lookupTarget(Object arg) {
+            for (Method method : candidates) {
+                Class<?> type = method.getParameterTypes()[0];
+                if ((arg == null && !type.isPrimitive()) || type.isInstance(arg)) {
+                    return new Target(unreflect(method, SETTER_TYPE), null);
+                }
+                try {
+                    Translator.convert(arg, type);
+                    return new Target(unreflect(method, SETTER_TYPE), type);
+                }
+                catch (TranslationException e) {
+                    // try the next overload
+                }
+            }
+            throw new MethodNotFoundException("Could not find method called: " + setName +
+                    " in class: " + clazz.getName() + " with params: [" +
+                    (arg == null ? "" : "type: " + arg.getClass().getName() + ", value: " + arg) + "]");
+        }
+    }
+
+    /**
+     * A resolved setter, with the type the value needs converting to, if any.
+     */
+    private static final class Target {
+
+        private final MethodHandle handle;
+        private final Class<?> conversion;
+
+        Target(MethodHandle handleIn, Class<?> conversionIn) {
+            handle = handleIn;
+            conversion = conversionIn;
+        }
+
+        Object convert(Object value) {
+            return conversion == null ? value : Translator.convert(value, conversion);
+        }
+    }
+
+    /**
+     * Cache key: the DTO class and the column list.
+     */
+    private static final class Key {
+
+        private final Class<?> clazz;
+        private final List<String> columns;
+        private final int hash;
+
+        Key(Class<?> clazzIn, List<String> columnsIn) {
+            clazz = clazzIn;
+            columns = Collections.unmodifiableList(new ArrayList<>(columnsIn));
+            hash = Objects.hash(clazzIn, columns);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return clazz.equals(key.clazz) && columns.equals(key.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * A cached set of query/elaborator strings and the parameterMap hash maps.
@@ -136,6 +137,45 @@ public class SelectMode extends BaseMode implements Serializable {
         return getQuery().execute(parameters, inClause, this);
     }
 
+    /**
+     * Executes the query and streams its rows from a server-side cursor,
+     * fetching {@link CachedStatement#BATCH_SIZE} rows at a time. See
+     * {@link #stream(Map, int)}.
+     * @param parameters named parameters for the query and its elaborators.
+     * @param <T> the type of the returned items
+     * @return the stream of rows, to be closed after use
+     */
+    public <T> Stream<T> stream(Map<String, ?> parameters) {
+        return stream(parameters, CachedStatement.BATCH_SIZE);
+    }
+
+    /**
+     * Executes the query and streams its rows from a server-side cursor, so
+     * that the result set never has to fit in memory. Rows are fetched and
+     * elaborated <code>fetchSize</code> at a time as the stream advances.
+     * The stream must be closed, and consumed within the current transaction.
+     * @param parameters named parameters for the query and its elaborators.
+     * @param fetchSize the number of rows to fetch and elaborate at once.
+     * @param <T> the type of the returned items
+     * @return the stream of rows, to be closed after use
+     */
+    public <T> Stream<T> stream(Map<String, ?> parameters, int fetchSize) {
+        return this.<T>streamChunks(parameters, fetchSize).flatMap(List::stream);
+    }
+
+    /**
+     * Executes the query and streams its rows from a server-side cursor in
+     * elaborated chunks of at most <code>chunkSize</code> rows.
+     * The stream must be closed, and consumed within the current transaction.
+     * @param parameters named parameters for the query and its elaborators.
+     * @param chunkSize the maximum number of rows of a chunk.
+     * @param <T> the type of the returned items
+     * @return the stream of chunks, to be closed after use
+     */
+    public <T> Stream<DataResult<T>> streamChunks(Map<String, ?> parameters, int chunkSize) {
+        return getQuery().executeStream(parameters, this, chunkSize);
+    }
+
     /**
      * Elaborates a list by calling the elaboration queries with the given
      * parameters.
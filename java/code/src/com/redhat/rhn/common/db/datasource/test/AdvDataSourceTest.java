@@ -22,6 +22,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.redhat.rhn.common.ObjectCreateWrapperException;
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
@@ -46,11 +48,14 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public class AdvDataSourceTest extends RhnBaseTestCase {
 
@@ -256,6 +261,37 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         assertNotEmpty(result);
     }
 
+    @Test
+    public void testInClauseAsArray() {
+        int startId = 1000;
+        int endId = startId + 1200;
+        List<Long> ids = new ArrayList<>();
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+            ids.add((long) i);
+        }
+
+        try {
+            Config.get().setBoolean(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE, "true");
+            DataResult<AdvDataSourceDto> arrayResult =
+                    ModeFactory.getMode(TEST_QUERIES, "find_in_table_by_ids").execute(ids);
+
+            Config.get().setBoolean(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE, "false");
+            DataResult<AdvDataSourceDto> literalResult =
+                    ModeFactory.getMode(TEST_QUERIES, "find_in_table_by_ids").execute(ids);
+
+            assertEquals(ids.size(), arrayResult.size());
+            assertEquals(literalResult.size(), arrayResult.size());
+            for (int i = 0; i < arrayResult.size(); i++) {
+                assertEquals(literalResult.get(i).getId(), arrayResult.get(i).getId());
+                assertEquals(literalResult.get(i).getFoobar(), arrayResult.get(i).getFoobar());
+            }
+        }
+        finally {
+            Config.get().remove(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE);
+        }
+    }
+
     @Test
     public void testStressedElaboration() {
         int startId = 1000;
@@ -274,6 +310,70 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         }
     }
 
+    @Test
+    public void testElaborationWithInClauseAsArray() {
+        int startId = 1000;
+        int endId = startId + 600;
+
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "find_all_in_table");
+        try {
+            Config.get().setBoolean(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE, "true");
+            DataResult<AdvDataSourceDto> arrayResult = m.execute(Collections.emptyMap());
+            arrayResult.elaborate();
+
+            Config.get().setBoolean(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE, "false");
+            DataResult<AdvDataSourceDto> literalResult = m.execute(Collections.emptyMap());
+            literalResult.elaborate();
+
+            assertEquals(literalResult.size(), arrayResult.size());
+            Map<Long, AdvDataSourceDto> literalById = new HashMap<>();
+            for (AdvDataSourceDto row : literalResult) {
+                literalById.put(row.getId(), row);
+            }
+            for (AdvDataSourceDto row : arrayResult) {
+                assertNotNull(row.getTestColumn());
+                assertEquals(literalById.get(row.getId()).getTestColumn(), row.getTestColumn());
+                assertEquals(literalById.get(row.getId()).getPin(), row.getPin());
+            }
+        }
+        finally {
+            Config.get().remove(ConfigDefaults.DATASOURCE_ARRAY_IN_CLAUSE);
+        }
+    }
+
+    @Test
+    public void testStreamChunks() {
+        int startId = 1000;
+        int endId = startId + 250;
+
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "find_all_in_table");
+        List<Integer> sizes = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        try (Stream<DataResult<AdvDataSourceDto>> chunks = m.streamChunks(Collections.emptyMap(), 100)) {
+            chunks.forEach(chunk -> {
+                sizes.add(chunk.size());
+                for (AdvDataSourceDto row : chunk) {
+                    // every chunk is elaborated as it is read
+                    assertNotNull(row.getTestColumn());
+                    assertNotNull(row.getPin());
+                    ids.add(row.getId());
+                }
+            });
+        }
+        assertEquals(List.of(100, 100, 50), sizes);
+        assertEquals(250, ids.size());
+
+        try (Stream<AdvDataSourceDto> rows = m.stream(Collections.emptyMap(), 30)) {
+            assertEquals(250, rows.map(AdvDataSourceDto::getFoobar).filter(Objects::nonNull).count());
+        }
+    }
+
     @Test
     public void testMaxRowsWithElaboration() {
         int startId = 1000;
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.db.datasource.RowMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RowMapperTest {
+
+    /**
+     * DTO exercising the different setter shapes the datasource layer supports.
+     */
+    public static class MappedDto {
+        private Long id;
+        private String name;
+        private java.util.Date created;
+        private List<Object> tags;
+        private Integer count;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long idIn) {
+            id = idIn;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String nameIn) {
+            name = nameIn;
+        }
+
+        public java.util.Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(java.util.Date createdIn) {
+            created = createdIn;
+        }
+
+        public List<Object> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<Object> tagsIn) {
+            tags = tagsIn;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer countIn) {
+            count = countIn;
+        }
+    }
+
+    private static ResultSet resultSet(Object... values) {
+        return (ResultSet) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    int index = (Integer) args[0];
+                    switch (method.getName()) {
+                        case "getObject":
+                            return values[index - 1];
+                        case "getLong":
+                            return ((BigDecimal) values[index - 1]).longValue();
+                        case "getTimestamp":
+                            return new Timestamp(((java.util.Date) values[index - 1]).getTime());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @BeforeEach
+    public void setUp() {
+        RowMapper.clearCache();
+    }
+
+    @Test
+    public void testMapping() throws Exception {
+        List<String> columns = List.of("id", "name", "created", "tags", "count");
+        RowMapper mapper = RowMapper.forClass(MappedDto.class, columns);
+        MappedDto dto = (MappedDto) mapper.newInstance();
+
+        java.sql.Date created = new java.sql.Date(1000L);
+        mapper.map(resultSet(new BigDecimal(42), "foo", created, "a", 7L), dto,
+                Collections.emptyList());
+        mapper.map(resultSet(new BigDecimal(42), "foo", created, "b", 8L), dto,
+                Collections.emptyList());
+
+        assertEquals(Long.valueOf(42), dto.getId());
+        assertEquals("foo", dto.getName());
+        assertTrue(dto.getCreated() instanceof Timestamp);
+        assertEquals(1000L, dto.getCreated().getTime());
+        assertEquals(List.of("a", "b"), dto.getTags());
+        assertEquals(Integer.valueOf(8), dto.getCount());
+    }
+
+    @Test
+    public void testSkipColumnsAndNulls() throws Exception {
+        RowMapper mapper = RowMapper.forClass(MappedDto.class, List.of("id", "name"));
+        MappedDto dto = new MappedDto();
+        dto.setName("kept");
+
+        mapper.map(resultSet(null, "ignored"), dto, List.of("name"));
+
+        assertNull(dto.getId());
+        assertEquals("kept", dto.getName());
+    }
+
+    @Test
+    public void testCache() {
+        RowMapper mapper = RowMapper.forClass(MappedDto.class, new ArrayList<>(List.of("id", "name")));
+        assertSame(mapper, RowMapper.forClass(MappedDto.class, List.of("id", "name")));
+        assertSame(MappedDto.class, mapper.getMappedClass());
+        RowMapper.forClass(MappedDto.class, List.of("name", "id"));
+        assertEquals(2, RowMapper.getCacheSize());
+    }
+}
@@ -15,30 +15,44 @@
 package com.redhat.rhn.common.filediff;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Java file diff using Eugene W. Myers's algorithm as described in
- * "An O(ND) Difference Algorithm and Its Variations".
+ * "An O(ND) Difference Algorithm and Its Variations", in its linear space
+ * variation.
+ *
+ * Lines are interned to integers first, so that comparing two lines is a
+ * single int comparison. The shortest edit script is then found by
+ * recursively splitting the files in the middle of an optimal path, after
+ * trimming their common prefix and suffix, which takes O((N+M)D) time
+ * and O(N+M) space for files of N and M lines with D differences.
  */
 public class Differ {
-    private final Trace head;
-    private Trace beforeCurrent;
-    private int bestSoFar;
-    private static final int NUMBEROFTRACESTOKEEP = 1000;
-    private final List<Integer> matches = new ArrayList<>();
+
+    private final int[] oldIds;
+    private final int[] newIds;
+    private final boolean[] deleted;
+    private final boolean[] inserted;
+
+    /* Furthest reaching paths by diagonal, for the forward and the reverse searches */
+    private final int[] forward;
+    private final int[] reverse;
 
     /**
      * @param oldLength The length of the old file
      * @param newLength The length of the new file
      */
     public Differ(int oldLength, int newLength) {
-        //we need a head element in order to do deletions.
-        head = new Trace(0, 0); //the head of the linked list.
-        head.setNext(new Trace(oldLength, newLength));
-        beforeCurrent = head;
-        bestSoFar = 0;
+        oldIds = new int[oldLength];
+        newIds = new int[newLength];
+        deleted = new boolean[oldLength];
+        inserted = new boolean[newLength];
+        forward = new int[oldLength + newLength + 1];
+        reverse = new int[oldLength + newLength + 1];
     }
 
     /**
@@ -47,87 +61,186 @@ public class Differ {
      * @return A list of Hunks representing the differences.
      */
     public List<Hunk> diff(String[] oldFile, String[] newFile) {
-        List<Hunk> retval = null;
-        while (retval == null) {
-            retval = step(oldFile, newFile);
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < oldFile.length; i++) {
+            oldIds[i] = ids.computeIfAbsent(oldFile[i], line -> ids.size());
         }
-        return retval;
+        for (int i = 0; i < newFile.length; i++) {
+            newIds[i] = ids.computeIfAbsent(newFile[i], line -> ids.size());
+        }
+
+        compare(0, oldFile.length, 0, newFile.length);
+        return createHunks(oldFile, newFile);
     }
 
     /**
-     * The crux of the optimization for this algorithm lies in the fact that we
-     * will step through all of the traces in parallel rather than recursively.
-     * This allows us to delete traces that are unlikely be the most optimal.
-     *
-     * We only consider the best {@value #NUMBEROFTRACESTOKEEP} traces at any
-     * given time. This is to prevent the memory required from growing
-     * exponentially in large files. The resulting trace is always guaranteed to
-     * be *correct*, but maybe not *optimal*.
-     *
-     * This will call the step function on Trace for every current trace we
-     * have. It will delete traces that are unlikely to be optimal.
-     *
-     * @param oldFile
-     *            The old(first, from) file
-     * @param newFile
-     *            The new(second, to) file
-     * @return A list of Hunks representing the differences. null if we need to
-     *         step again
+     * Marks the deleted and inserted lines turning the given range of the old
+     * file into the given range of the new file.
      */
-    private List<Hunk> step(String[] oldFile, String[] newFile) {
-        beforeCurrent = head;
-        boolean forked;
-        int minimumMatchValue = 0;
-
-        // get a list of all match values for all traces
-        while (beforeCurrent.next() != null) {
-            beforeCurrent = beforeCurrent.next();
-            matches.add(beforeCurrent.getMatches());
+    private void compare(int oldStart, int oldEnd, int newStart, int newEnd) {
+        while (oldStart < oldEnd && newStart < newEnd && oldIds[oldStart] == newIds[newStart]) {
+            oldStart++;
+            newStart++;
+        }
+        while (oldStart < oldEnd && newStart < newEnd && oldIds[oldEnd - 1] == newIds[newEnd - 1]) {
+            oldEnd--;
+            newEnd--;
         }
 
-        // if we have too many traces find the match number you need to beat to
-        // remain valid
-        if (matches.size() > NUMBEROFTRACESTOKEEP) {
-            Collections.sort(matches); // sort ascending
-            minimumMatchValue = matches.get(matches.size() -
-                    NUMBEROFTRACESTOKEEP);
+        int[] split = oldStart == oldEnd || newStart == newEnd ? null : split(oldStart, oldEnd, newStart, newEnd);
+        if (split != null) {
+            compare(oldStart, split[0], newStart, split[1]);
+            compare(split[0], oldEnd, split[1], newEnd);
         }
+        else {
+            // nothing in common
+            for (int i = oldStart; i < oldEnd; i++) {
+                deleted[i] = true;
+            }
+            for (int i = newStart; i < newEnd; i++) {
+                inserted[i] = true;
+            }
+        }
+    }
 
-        // reset things before the "real" iteration
-        matches.clear();
-        beforeCurrent = head;
+    /**
+     * Runs the search for the shortest edit script from both ends of the given
+     * ranges at the same time, until the paths overlap. The overlap is on an
+     * optimal path and splits it into two halves with about the same number
+     * of differences. Paths running off the edit graph are not extended any
+     * further.
+     *
+     * @return the old and new lines to split the ranges at, or null if they have no line in common
+     */
+    private int[] split(int oldStart, int oldEnd, int newStart, int newEnd) {
+        int n = oldEnd - oldStart;
+        int m = newEnd - newStart;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int maxD = (n + m + 1) / 2;
+        int vOffset = maxD;
+        int vLength = 2 * maxD;
 
-        while (beforeCurrent.next() != null) {
-            // delete impossible and unlikely traces.
-            if (beforeCurrent.next().getMatches() < minimumMatchValue ||
-                    bestSoFar > beforeCurrent.next().bestPossible()) {
-                beforeCurrent.setNext(beforeCurrent.next().next());
-            }
-            else {
-                forked = beforeCurrent.next().step(oldFile, newFile);
+        // -1 marks the diagonals not reached yet
+        Arrays.fill(forward, 0, vLength, -1);
+        Arrays.fill(reverse, 0, vLength, -1);
+        forward[vOffset + 1] = 0;
+        reverse[vOffset + 1] = 0;
 
-                //With the step algorithm, the first one to reach the end of
-                //both files is the winner!
-                if (beforeCurrent.next().isDone()) {
-                    return beforeCurrent.next().createHunks(oldFile, newFile);
+        int forwardStart = 0;
+        int forwardEnd = 0;
+        int reverseStart = 0;
+        int reverseEnd = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int kOffset = vOffset + k;
+                int x = k == -d || (k != d && forward[kOffset - 1] < forward[kOffset + 1]) ?
+                        forward[kOffset + 1] : forward[kOffset - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && oldIds[oldStart + x] == newIds[newStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[kOffset] = x;
+                if (x > n) {
+                    forwardEnd += 2;
                 }
+                else if (y > m) {
+                    forwardStart += 2;
+                }
+                else if (odd) {
+                    int reverseOffset = vOffset + delta - k;
+                    if (reverseOffset >= 0 && reverseOffset < vLength && reverse[reverseOffset] != -1 &&
+                            x >= n - reverse[reverseOffset]) {
+                        return new int[] {oldStart + x, newStart + y};
+                    }
+                }
+            }
 
-                //update bestSoFar
-                if (beforeCurrent.next().getMatches() > bestSoFar) {
-                    bestSoFar = beforeCurrent.next().getMatches();
+            for (int k = -d + reverseStart; k <= d - reverseEnd; k += 2) {
+                int kOffset = vOffset + k;
+                int x = k == -d || (k != d && reverse[kOffset - 1] < reverse[kOffset + 1]) ?
+                        reverse[kOffset + 1] : reverse[kOffset - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && oldIds[oldEnd - 1 - x] == newIds[newEnd - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                reverse[kOffset] = x;
+                if (x > n) {
+                    reverseEnd += 2;
+                }
+                else if (y > m) {
+                    reverseStart += 2;
+                }
+                else if (!odd) {
+                    int forwardOffset = vOffset + delta - k;
+                    if (forwardOffset >= 0 && forwardOffset < vLength && forward[forwardOffset] != -1) {
+                        int forwardX = forward[forwardOffset];
+                        int forwardY = vOffset + forwardX - forwardOffset;
+                        if (forwardX >= n - x) {
+                            return new int[] {oldStart + forwardX, newStart + forwardY};
+                        }
+                    }
                 }
+            }
+        }
+        return null;
+    }
 
-                //if it forked, there is a new element in the linked list
-                //that has already been dealt with, so skip it.
-                if (forked) {
-                    beforeCurrent = beforeCurrent.next().next();
+    /**
+     * Groups the lines into hunks: unchanged lines into match hunks, and the
+     * deleted and inserted lines between two of them into a delete, an insert
+     * or a change hunk.
+     */
+    private List<Hunk> createHunks(String[] oldFile, String[] newFile) {
+        List<Hunk> retval = new ArrayList<>();
+        int oldLine = 0;
+        int newLine = 0;
+        while (oldLine < oldFile.length || newLine < newFile.length) {
+            int fromOld = oldLine;
+            int fromNew = newLine;
+            Hunk hunk;
+            if (oldLine < oldFile.length && newLine < newFile.length &&
+                    !deleted[oldLine] && !inserted[newLine]) {
+                while (oldLine < oldFile.length && newLine < newFile.length &&
+                        !deleted[oldLine] && !inserted[newLine]) {
+                    oldLine++;
+                    newLine++;
+                }
+                hunk = new MatchHunk();
+            }
+            else {
+                while (oldLine < oldFile.length && deleted[oldLine]) {
+                    oldLine++;
+                }
+                while (newLine < newFile.length && inserted[newLine]) {
+                    newLine++;
+                }
+                if (oldLine > fromOld && newLine > fromNew) {
+                    hunk = new ChangeHunk();
+                }
+                else if (oldLine > fromOld) {
+                    hunk = new DeleteHunk();
                 }
                 else {
-                    beforeCurrent = beforeCurrent.next();
+                    hunk = new InsertHunk();
                 }
             }
+            hunk.setOldLines(createFileLines(oldFile, fromOld, oldLine - fromOld));
+            hunk.setNewLines(createFileLines(newFile, fromNew, newLine - fromNew));
+            retval.add(hunk);
         }
-        return null; //null means we need to step again.
+        return retval;
     }
 
+    private FileLines createFileLines(String[] file, int fromLine, int numLines) {
+        FileLines retval = new FileLines();
+        retval.setFromLine(fromLine + 1); //fromLine is an index, so it is one too small
+        retval.setToLine(fromLine + numLines + 1); //fromLine is still an index
+        for (int i = fromLine; i < fromLine + numLines; i++) {
+            retval.addLine(file[i]);
+        }
+        return retval;
+    }
 }
@@ -18,19 +18,27 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.common.filediff.ChangeHunk;
+import com.redhat.rhn.common.filediff.DeleteHunk;
 import com.redhat.rhn.common.filediff.Diff;
 import com.redhat.rhn.common.filediff.Hunk;
 import com.redhat.rhn.common.filediff.InsertHunk;
 import com.redhat.rhn.common.filediff.MatchHunk;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 public class DiffTest extends RhnBaseTestCase {
 
+    private static final Logger LOG = LogManager.getLogger(DiffTest.class);
+
     @Test
     public void testDiff() {
         String[] testOld = {"one", "two", "three", "four"};
@@ -59,6 +67,97 @@ public class DiffTest extends RhnBaseTestCase {
         checkDiff(testOld, testNew, testType);
     }
 
+    @Test
+    public void testShortestDiff() {
+        // blocks of repeated lines must not be reported as changed
+        String[] testOld = {"[a]", "", "x = 1", "", "[b]", "", "x = 2", ""};
+        String[] testNew = {"[a]", "", "x = 1", "", "[c]", "", "x = 3", "", "[b]", "", "x = 2", ""};
+        Class<?>[] testTypes = {MatchHunk.class, InsertHunk.class, MatchHunk.class};
+        checkDiff(testOld, testNew, testTypes);
+
+        String[] testOld1 = {"a", "b", "c", "a", "b", "b", "a"};
+        String[] testNew1 = {"c", "b", "a", "b", "a", "c"};
+        assertEquals(5, countChangedLines(new Diff(testOld1, testNew1).diffFiles()));
+
+        String[] testOld2 = {"one", "two", "three"};
+        String[] testNew2 = {"one", "three"};
+        checkDiff(testOld2, testNew2, new Class<?>[] {MatchHunk.class, DeleteHunk.class, MatchHunk.class});
+    }
+
+    /**
+     * Diffs generated config files of 1k to 100k lines with scattered edits:
+     * the hunks must rebuild both files and report no more changed lines than
+     * the edits made.
+     */
+    @Test
+    public void testLargeFiles() {
+        for (int size : new int[] {1_000, 10_000, 100_000}) {
+            Random random = new Random(size);
+            String[] oldFile = generateConfigFile(size, random);
+            List<String> newLines = new ArrayList<>(Arrays.asList(oldFile));
+            int edits = size / 100;
+            for (int i = 0; i < edits; i++) {
+                int line = random.nextInt(newLines.size());
+                switch (random.nextInt(3)) {
+                    case 0:
+                        newLines.set(line, "changed_" + i + " = " + random.nextInt());
+                        break;
+                    case 1:
+                        newLines.add(line, "added_" + i + " = yes");
+                        break;
+                    default:
+                        newLines.remove(line);
+                }
+            }
+            String[] newFile = newLines.toArray(new String[0]);
+
+            long start = System.nanoTime();
+            List<Hunk> hunks = new Diff(oldFile, newFile).diffFiles();
+            LOG.info("Diffed files of {} lines with {} edits in {} ms", size, edits,
+                    (System.nanoTime() - start) / 1_000_000);
+
+            List<String> rebuiltOld = new ArrayList<>();
+            List<String> rebuiltNew = new ArrayList<>();
+            for (Hunk hunk : hunks) {
+                rebuiltOld.addAll(hunk.getOldLines().getLines());
+                rebuiltNew.addAll(hunk.getNewLines().getLines());
+                assertEquals(rebuiltOld.size() + 1, hunk.getOldLines().getToLine());
+                assertEquals(rebuiltNew.size() + 1, hunk.getNewLines().getToLine());
+            }
+            assertEquals(Arrays.asList(oldFile), rebuiltOld);
+            assertEquals(newLines, rebuiltNew);
+            assertTrue(countChangedLines(hunks) <= 2 * edits);
+        }
+    }
+
+    private static String[] generateConfigFile(int size, Random random) {
+        String[] file = new String[size];
+        int section = 0;
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                file[i] = "";
+            }
+            else if (kind == 1) {
+                file[i] = "[section" + section++ + "]";
+            }
+            else if (kind == 2) {
+                file[i] = "# default";
+            }
+            else {
+                file[i] = "key" + random.nextInt(size / 10 + 1) + " = " + random.nextInt(100);
+            }
+        }
+        return file;
+    }
+
+    private static int countChangedLines(List<Hunk> hunks) {
+        return hunks.stream()
+                .filter(hunk -> !(hunk instanceof MatchHunk))
+                .mapToInt(hunk -> hunk.getOldLines().getLines().size() + hunk.getNewLines().getLines().size())
+                .sum();
+    }
+
     private void checkDiff(String[] oldFile, String[] newFile, Class<?>[] types) {
         Diff diff = new Diff(oldFile, newFile);
         List<Hunk> hunks = diff.diffFiles();
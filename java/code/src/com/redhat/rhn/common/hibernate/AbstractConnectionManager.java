@@ -19,13 +19,18 @@ import static org.hibernate.resource.transaction.spi.TransactionStatus.ROLLED_BA
 
 import com.redhat.rhn.common.finder.FinderFactory;
 
+import com.suse.manager.metrics.PrometheusExporter;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.metadata.ClassMetadata;
 
 import java.util.ArrayList;
@@ -166,6 +171,12 @@ abstract class AbstractConnectionManager implements ConnectionManager {
         createSessionFactory();
         if (unitLabelValue != null) {
             new HibernateStatisticsCollector(sessionFactory, unitLabelValue).register();
+            RegionFactory regionFactory = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                    .getCache().getRegionFactory();
+            if (regionFactory instanceof EhcacheRegionFactory) {
+                PrometheusExporter.INSTANCE.registerSecondLevelCache(
+                        ((EhcacheRegionFactory) regionFactory).getCacheManager(), unitLabelValue);
+            }
         }
     }
 
@@ -33,6 +33,18 @@ public interface EventMessage {
      * @return the user that scheduled the Event
      */
     Long getUserId();
+
+    /**
+     * Get the key ordering this event: the message queue executes the events
+     * with equal keys whose actions can run concurrently one at a time, in
+     * publishing order. The key is ignored for actions that cannot run
+     * concurrently, as those are all serialized anyway, see
+     * {@link MessageAction#canRunConcurrently()}.
+     * @return the partition key (e.g. a server id), or null
+     */
+    default Object getPartitionKey() {
+        return null;
+    }
 }
 
 
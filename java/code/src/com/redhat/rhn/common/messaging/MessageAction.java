@@ -30,10 +30,10 @@ public interface MessageAction {
 
     /**
      * Return true in case this action can run concurrently with others. Depending on this
-     * flag the action will either be executed in the main message queue dispatcher thread
-     * and thus block other messages from being dispatched, or (in case of true) there will
-     * be a background thread executing this action while the main dispatcher thread can go
-     * on dispatching other messages.
+     * flag the action will either be executed by the serial partition of the message queue,
+     * one message at a time and in publishing order with the other non-concurrent actions, or
+     * (in case of true) by one of the parallel partitions, ordered by the partition key of
+     * the message if it has one. Either way, dispatching goes on while the action runs.
      *
      * @return true if this action can run concurrently with others, else false
      */
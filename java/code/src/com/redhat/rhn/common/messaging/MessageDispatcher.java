@@ -12,45 +12,117 @@
  * granted to use or replicate Red Hat trademarks that are incorporated
  * in this software or its documentation.
  */
+
 package com.redhat.rhn.common.messaging;
 
-import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
-import com.redhat.rhn.common.hibernate.HibernateFactory;
-import com.redhat.rhn.frontend.events.TraceBackAction;
-import com.redhat.rhn.frontend.events.TraceBackEvent;
 
 import com.suse.manager.metrics.PrometheusExporter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Polls the EventQueue for events and executes them
+ * Dispatches events to the message queue partitions.
  *
+ * Events whose actions cannot run concurrently are all executed, in order, by
+ * the serial partition, whether they carry a partition key or not. Other events
+ * carrying a partition key are executed by the partition that key hashes to, so
+ * that events with the same key (e.g. for the same server) stay ordered while
+ * unrelated ones run in parallel. The remaining events go to the least loaded
+ * partition, counting both the waiting and the running messages.
  */
-public class MessageDispatcher implements Runnable {
+public class MessageDispatcher {
 
     private static Logger log = LogManager.getLogger(MessageDispatcher.class);
     private boolean isStopped = false;
 
-    /* Thread pool for concurrent execution of message actions */
-    private ExecutorService threadPool = new MessageQueueThreadPool(
-            Config.get().getInt(ConfigDefaults.MESSAGE_QUEUE_THREAD_POOL_SIZE));
+    private final MessagePartition serial;
+    private final List<MessagePartition> partitions;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates the partitions and starts their threads.
+     */
+    public MessageDispatcher() {
+        ConfigDefaults config = ConfigDefaults.get();
+        int count = Math.max(1, config.getMessageQueueThreadPoolSize());
+        int capacity = config.getMessageQueuePartitionCapacity();
+        long timeout = TimeUnit.SECONDS.toMillis(config.getMessageQueuePublishTimeout());
+
+        serial = new MessagePartition("serial", capacity, timeout);
+        List<MessagePartition> parallel = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            parallel.add(new MessagePartition(Integer.toString(i), capacity, timeout));
+        }
+        partitions = Collections.unmodifiableList(parallel);
+
+        List<MessagePartition> all = new ArrayList<>(partitions);
+        all.add(serial);
+        PrometheusExporter.INSTANCE.registerMessageQueue(all, "message_queue");
+        log.info("Started message queue with {} partitions (capacity: {})", count, capacity);
+    }
+
+    /**
+     * Hands an event over to the partition in charge of it.
+     * @param actionExecutor the event and its handlers
+     * @param msg the event
+     */
+    void dispatch(ActionExecutor actionExecutor, EventMessage msg) {
+        MessagePartition partition = partitionFor(actionExecutor, msg);
+        log.debug("Dispatching {} to partition {}", actionExecutor, partition.getName());
+        partition.submit(actionExecutor);
+    }
+
+    private MessagePartition partitionFor(ActionExecutor actionExecutor, EventMessage msg) {
+        if (!actionExecutor.canRunConcurrently()) {
+            return serial;
+        }
+        Object key = msg.getPartitionKey();
+        if (key != null) {
+            return partitions.get(Math.floorMod(key.hashCode(), partitions.size()));
+        }
+        // start from a rotating offset so that idle partitions share the load
+        int start = Math.floorMod(next.getAndIncrement(), partitions.size());
+        MessagePartition best = partitions.get(start);
+        for (int i = 1; i < partitions.size() && best.getLoad() > 0; i++) {
+            MessagePartition candidate = partitions.get((start + i) % partitions.size());
+            if (candidate.getLoad() < best.getLoad()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of messages waiting in all partitions
+     * @return int number of pending messages.
+     */
+    public int getPendingCount() {
+        return serial.getDepth() + partitions.stream().mapToInt(MessagePartition::getDepth).sum();
+    }
 
     /**
      * Signals the dispatcher to stop
      */
     public synchronized void stop() {
-        // Gracefully shut down the thread pool
-        threadPool.shutdown();
+        // Gracefully shut down the partitions
         log.info("Awaiting termination of threads (for 1 minute)");
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        boolean done = true;
         try {
-            final boolean done = threadPool.awaitTermination(1, TimeUnit.MINUTES);
+            List<MessagePartition> all = new ArrayList<>(partitions);
+            all.add(serial);
+            for (MessagePartition partition : all) {
+                long left = Math.max(0, deadline - System.nanoTime());
+                done &= partition.shutdown(left, TimeUnit.NANOSECONDS);
+            }
             log.info("Thread pool shut down: {}", done);
         }
         catch (InterruptedException e) {
@@ -67,61 +139,4 @@ public class MessageDispatcher implements Runnable {
     public synchronized boolean isStopped() {
         return isStopped;
     }
-
-    /**
-     * Main run loop where events are popped off the queue
-     * and executed. Events are wrapped inside of a Runnable instance
-     */
-    @Override
-    public void run() {
-
-        // register the executor service for exporting metrics
-        PrometheusExporter.INSTANCE.registerThreadPool((ThreadPoolExecutor) this.threadPool, "message_queue");
-
-
-        while (!isStopped) {
-            try {
-                ActionExecutor actionHandler = MessageQueue.popEventMessage();
-                if (actionHandler == null) {
-                    continue;
-                }
-                else if (actionHandler.canRunConcurrently()) {
-                    log.info("Executing in thread pool: {}", actionHandler);
-                    threadPool.execute(actionHandler);
-                }
-                else {
-                    actionHandler.run();
-                }
-            }
-            catch (InterruptedException e) {
-                log.error("Error occurred in the MessageQueue", e);
-                return;
-            }
-            catch (Throwable t) {
-                // better log this puppy to let folks know we have a problem
-                // but keep the queue running.
-                log.error("Error occurred with an event in the MessageQueue", t);
-
-                try {
-                    // ok let's email the admins of what's going on.
-                    // WARNING! DO NOT PUBLISH THE EVENT TO THE QUEUE!
-                    TraceBackEvent evt = new TraceBackEvent();
-                    evt.setUser(null);
-                    evt.setRequest(null);
-                    evt.setException(t);
-
-                    TraceBackAction tba = new TraceBackAction();
-                    tba.execute(evt);
-                }
-                catch (Throwable t1) {
-                    log.error("Error sending traceback email, logging for posterity.", t1);
-                }
-            }
-            finally {
-                HibernateFactory.closeSession();
-            }
-
-        }
-    }
-
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One partition of the message queue: a bounded FIFO of messages executed by a
+ * single thread, so that messages published to the same partition are handled
+ * in publishing order.
+ *
+ * Publishers are throttled once the partition holds <code>capacity</code>
+ * messages: they wait for a free slot up to the publish timeout and then get a
+ * {@link MessageQueueFullException}, which rolls back their transaction
+ * together with the message. Messages published from a message queue thread
+ * are never throttled nor refused, since waiting there could deadlock the
+ * queue: that fan-out is bounded by the messages already in the partitions.
+ */
+public class MessagePartition {
+
+    private static final Logger LOG = LogManager.getLogger(MessagePartition.class);
+
+    /* Set while a message queue thread is executing a message */
+    private static final ThreadLocal<Boolean> DISPATCHING = ThreadLocal.withInitial(() -> false);
+
+    private final String name;
+    private final int capacity;
+    private final long publishTimeoutMillis;
+    private final Semaphore slots;
+    private final MessageQueueThreadPool executor;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong runNanos = new AtomicLong();
+
+    /**
+     * Standard constructor.
+     * @param nameIn the partition name, used for the thread name and the metrics
+     * @param capacityIn the number of pending messages above which publishers are throttled
+     * @param publishTimeoutMillisIn how long a publisher waits for a free slot at most
+     */
+    public MessagePartition(String nameIn, int capacityIn, long publishTimeoutMillisIn) {
+        name = nameIn;
+        capacity = capacityIn;
+        publishTimeoutMillis = publishTimeoutMillisIn;
+        slots = new Semaphore(capacityIn);
+        executor = new MessageQueueThreadPool(1, "message-queue-" + nameIn + "-%d");
+    }
+
+    /**
+     * Enqueues a message for execution, waiting for a free slot if the
+     * partition is full.
+     * @param actionExecutor the message and its handlers
+     * @throws MessageQueueFullException if no slot freed up within the publish timeout
+     */
+    void submit(ActionExecutor actionExecutor) {
+        boolean acquired = slots.tryAcquire();
+        if (!acquired && DISPATCHING.get()) {
+            overflowed.incrementAndGet();
+            LOG.warn("Message queue partition {} is over its capacity of {}, enqueueing {} from a queue thread",
+                    name, capacity, actionExecutor);
+        }
+        else if (!acquired) {
+            LOG.debug("Message queue partition {} is full, waiting for a free slot", name);
+            try {
+                acquired = slots.tryAcquire(publishTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!acquired) {
+                rejected.incrementAndGet();
+                throw new MessageQueueFullException("Message queue partition " + name +
+                        " is still full after " + publishTimeoutMillis + " ms, cannot publish " + actionExecutor);
+            }
+        }
+        published.incrementAndGet();
+        executor.execute(new Task(actionExecutor, acquired));
+    }
+
+    /**
+     * Stops accepting messages and waits for the pending ones to be executed.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the pending messages were executed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return the partition name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of pending messages above which publishers are throttled
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of messages waiting to be executed
+     */
+    public int getDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of messages waiting or being executed
+     */
+    public long getLoad() {
+        return published.get() - completed.get();
+    }
+
+    /**
+     * @return the number of messages published to this partition
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * @return the number of messages executed by this partition
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of messages enqueued from a queue thread while the partition was full
+     */
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    /**
+     * @return the number of messages refused because the partition stayed full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the total time messages spent waiting in this partition, in seconds
+     */
+    public double getWaitSeconds() {
+        return waitNanos.get() / 1e9;
+    }
+
+    /**
+     * @return the total time spent executing messages of this partition, in seconds
+     */
+    public double getProcessingSeconds() {
+        return runNanos.get() / 1e9;
+    }
+
+    /**
+     * Executes a message and keeps the partition statistics.
+     */
+    private class Task implements Runnable {
+
+        private final ActionExecutor actionExecutor;
+        private final boolean holdsSlot;
+        private final long enqueued = System.nanoTime();
+
+        Task(ActionExecutor actionExecutorIn, boolean holdsSlotIn) {
+            actionExecutor = actionExecutorIn;
+            holdsSlot = holdsSlotIn;
+        }
+
+        @Override
+        public void run() {
+            if (holdsSlot) {
+                slots.release();
+            }
+            long started = System.nanoTime();
+            waitNanos.addAndGet(started - enqueued);
+            DISPATCHING.set(true);
+            try {
+                actionExecutor.run();
+            }
+            finally {
+                DISPATCHING.set(false);
+                runNanos.addAndGet(System.nanoTime() - started);
+                completed.incrementAndGet();
+                HibernateFactory.closeSession();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return actionExecutor + " on partition " + name;
+        }
+    }
+}
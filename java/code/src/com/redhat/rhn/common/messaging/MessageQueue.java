@@ -68,11 +68,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
 
-import EDU.oswego.cs.dl.util.concurrent.Channel;
-import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
-
 /**
  * A class that passes messages from the sender to an action class
  */
@@ -85,10 +83,7 @@ public class MessageQueue {
 
     private static final Map<Class<? extends EventMessage>, List<MessageAction>> ACTIONS =
             new HashMap<>();
-    private static Channel messages = new LinkedQueue();
-    private static Thread dispatcherThread = null;
-    private static MessageDispatcher dispatcher = null;
-    private static int messageCount;
+    private static volatile MessageDispatcher dispatcher = null;
 
     /**
      * Util class so we don't have a usable constructor
@@ -98,8 +93,10 @@ public class MessageQueue {
 
     /**
      * Publish a new message
-     * Each message is wrapped in a ActionExecutor instance
+     * Each message is wrapped in a ActionExecutor instance and handed over
+     * to the partition in charge of it, waiting if that partition is full
      * @param msg EventMessage to publish to queue.
+     * @throws MessageQueueFullException if the partition stays full for the whole publish timeout
      */
     public static void publish(EventMessage msg) {
         if (logger.isDebugEnabled()) {
@@ -109,23 +106,26 @@ public class MessageQueue {
             startMessaging();
         }
         if (msg != null) {
+            ActionExecutor executor = null;
             synchronized (ACTIONS) {
                 List<MessageAction> handlers = ACTIONS.get(msg.getClass());
                 if (handlers != null && !handlers.isEmpty()) {
                     logger.debug("creating ActionExecutor");
-                    ActionExecutor executor = new ActionExecutor(handlers, msg);
-                    try {
-                        messages.put(executor);
-                        messageCount++;
-                    }
-                    catch (InterruptedException e) {
-                        logger.error(e.getMessage(), e);
-                    }
+                    executor = new ActionExecutor(handlers, msg);
                 }
                 else {
                     logger.debug("handlers is null, not processing!");
                 }
             }
+            // dispatch outside of the lock, as it may wait for a full partition
+            if (executor != null) {
+                try {
+                    dispatcher.dispatch(executor, msg);
+                }
+                catch (RejectedExecutionException e) {
+                    logger.error("Message queue is stopping, dropping {}", executor, e);
+                }
+            }
         }
 
         if (logger.isDebugEnabled()) {
@@ -142,16 +142,6 @@ public class MessageQueue {
         return ACTIONS.get(message.getClass()).stream();
     }
 
-    static ActionExecutor popEventMessage() throws InterruptedException {
-        ActionExecutor retval = (ActionExecutor) messages.poll(500);
-        if (retval != null) {
-            synchronized (ACTIONS) {
-                messageCount--;
-            }
-        }
-        return retval;
-    }
-
     /**
      * Start the messaging system
      */
@@ -163,10 +153,6 @@ public class MessageQueue {
             return;
         }
         dispatcher = new MessageDispatcher();
-        dispatcherThread = new Thread(dispatcher);
-        dispatcherThread.setName("RHN Message Dispatcher");
-        dispatcherThread.setDaemon(false);
-        dispatcherThread.start();
         if (logger.isDebugEnabled()) {
             logger.debug("startMessaging() - end");
         }
@@ -190,7 +176,8 @@ public class MessageQueue {
      * @return int number of messages in queue.
      */
     public static int getMessageCount() {
-        return messageCount;
+        MessageDispatcher current = dispatcher;
+        return current == null ? 0 : current.getPendingCount();
     }
 
     /**
@@ -45,9 +45,19 @@ public class MessageQueueThreadPool extends ThreadPoolExecutor {
      * @param size the number of threads to create, i.e. pool size
      */
     public MessageQueueThreadPool(int size) {
+        this(size, "message-queue-thread-%d");
+    }
+
+    /**
+     * Constructor for creating a thread pool with the given thread naming pattern.
+     *
+     * @param size the number of threads to create, i.e. pool size
+     * @param namingPattern the {@link String#format} pattern for the thread names
+     */
+    public MessageQueueThreadPool(int size, String namingPattern) {
         super(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
-        setThreadFactory(new BasicThreadFactory.Builder().namingPattern("message-queue-thread-%d").build());
-        log.info("Started message queue thread pool (size: {})", size);
+        setThreadFactory(new BasicThreadFactory.Builder().namingPattern(namingPattern).build());
+        log.info("Started message queue thread pool {} (size: {})", namingPattern, size);
     }
 
     @Override
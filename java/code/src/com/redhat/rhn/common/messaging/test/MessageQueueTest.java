@@ -15,11 +15,17 @@
 
 package com.redhat.rhn.common.messaging.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.messaging.EventMessage;
+import com.redhat.rhn.common.messaging.MessageAction;
 import com.redhat.rhn.common.messaging.MessageQueue;
+import com.redhat.rhn.common.messaging.MessageQueueFullException;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 
@@ -29,6 +35,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 public class MessageQueueTest extends RhnBaseTestCase {
 
     private static Logger logger = LogManager.getLogger(MessageQueueTest.class);
@@ -136,6 +150,92 @@ public class MessageQueueTest extends RhnBaseTestCase {
         logger.debug("testMultiThreadedPublishRegister - end");
     }
 
+    @Test
+    public void testPartitionKeyOrdering() throws Exception {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        MessageAction action = new MessageAction() {
+            @Override
+            public void execute(EventMessage msg) {
+                handled.add(((KeyedEventMessage) msg).getSequence());
+            }
+
+            @Override
+            public boolean canRunConcurrently() {
+                return true;
+            }
+
+            @Override
+            public boolean needsTransactionHandling() {
+                return false;
+            }
+        };
+        MessageQueue.registerAction(action, KeyedEventMessage.class);
+        try {
+            int count = 200;
+            for (int i = 0; i < count; i++) {
+                MessageQueue.publish(new KeyedEventMessage(i));
+            }
+            int tries = 0;
+            while (handled.size() < count && tries < 50) {
+                Thread.sleep(100);
+                tries++;
+            }
+            // all the messages share the same key, so they are handled in publishing order
+            List<Integer> expected = IntStream.range(0, count).boxed().collect(Collectors.toList());
+            assertEquals(expected, handled);
+        }
+        finally {
+            MessageQueue.deRegisterAction(action, KeyedEventMessage.class);
+        }
+    }
+
+    @Test
+    public void testFullPartitionRefusesPublish() throws Exception {
+        MessageQueue.stopMessaging();
+        Config.get().setString(ConfigDefaults.MESSAGE_QUEUE_PARTITION_CAPACITY, "1");
+        Config.get().setString(ConfigDefaults.MESSAGE_QUEUE_PUBLISH_TIMEOUT, "1");
+        MessageQueue.startMessaging();
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageAction action = new MessageAction() {
+            @Override
+            public void execute(EventMessage msg) {
+                running.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public boolean canRunConcurrently() {
+                return true;
+            }
+
+            @Override
+            public boolean needsTransactionHandling() {
+                return false;
+            }
+        };
+        MessageQueue.registerAction(action, KeyedEventMessage.class);
+        try {
+            // the first message blocks the partition, the second one fills its only slot
+            MessageQueue.publish(new KeyedEventMessage(0));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            MessageQueue.publish(new KeyedEventMessage(1));
+            assertThrows(MessageQueueFullException.class, () -> MessageQueue.publish(new KeyedEventMessage(2)));
+        }
+        finally {
+            release.countDown();
+            MessageQueue.deRegisterAction(action, KeyedEventMessage.class);
+            Config.get().remove(ConfigDefaults.MESSAGE_QUEUE_PARTITION_CAPACITY);
+            Config.get().remove(ConfigDefaults.MESSAGE_QUEUE_PUBLISH_TIMEOUT);
+        }
+    }
+
     @Test
     public void testStop() throws Exception {
         logger.debug("testStop - start");
@@ -219,6 +319,43 @@ public class MessageQueueTest extends RhnBaseTestCase {
 
     }
 
+    /**
+     * Message sharing the same partition key with all the other instances.
+     */
+    public static class KeyedEventMessage implements EventMessage {
+
+        private final int sequence;
+
+        /**
+         * @param sequenceIn the publishing sequence number
+         */
+        public KeyedEventMessage(int sequenceIn) {
+            sequence = sequenceIn;
+        }
+
+        /**
+         * @return the publishing sequence number
+         */
+        public int getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public String toText() {
+            return "Keyed message " + sequence;
+        }
+
+        @Override
+        public Long getUserId() {
+            return null;
+        }
+
+        @Override
+        public Object getPartitionKey() {
+            return 42L;
+        }
+    }
+
     /**
     * Util thread to simulate multiple Threads publishing
     * events.
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.action;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Queue of the minion actions due for immediate execution.
+ *
+ * Actions are enqueued by the transaction scheduling them and claimed by
+ * Taskomatic once that transaction has committed. Claiming deletes the rows
+ * with <code>FOR UPDATE SKIP LOCKED</code>, so that any number of threads
+ * can pop actions concurrently without blocking each other.
+ */
+public class ActionDispatchQueueFactory extends HibernateFactory {
+
+    private static Logger log = LogManager.getLogger(ActionDispatchQueueFactory.class);
+    private static ActionDispatchQueueFactory singleton = new ActionDispatchQueueFactory();
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+
+    private ActionDispatchQueueFactory() {
+    }
+
+    /**
+     * Enqueues actions for execution. Actions already in the queue are only
+     * updated to force a package list refresh if requested.
+     * @param actionIds the action ids
+     * @param forcePackageListRefresh true to refresh the package list after the actions
+     * @return the number of enqueued actions
+     */
+    public static int enqueue(Collection<Long> actionIds, boolean forcePackageListRefresh) {
+        if (actionIds.isEmpty()) {
+            return 0;
+        }
+        // the actions may have just been saved
+        getSession().flush();
+        return getSession()
+                .getNamedQuery("ActionDispatchQueue.enqueue")
+                .setParameter("force", forcePackageListRefresh)
+                .setParameterList("ids", actionIds)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes actions from the queue and returns them, skipping the ones
+     * claimed by other transactions.
+     * @param limit the maximum number of actions to return
+     * @return the actions, oldest first
+     */
+    public static List<QueuedAction> pop(int limit) {
+        List<Object[]> rows = singleton.listObjectsByNamedQuery("ActionDispatchQueue.pop",
+                Map.of("limit", limit));
+        return rows.stream()
+                .map(row -> new QueuedAction((Long) row[0], (Boolean) row[1]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Removes actions from the queue.
+     * @param actionIds the action ids
+     * @return the number of removed actions
+     */
+    public static int delete(Collection<Long> actionIds) {
+        if (actionIds.isEmpty()) {
+            return 0;
+        }
+        return getSession()
+                .getNamedQuery("ActionDispatchQueue.delete")
+                .setParameterList("ids", actionIds)
+                .executeUpdate();
+    }
+
+    /**
+     * @return the number of actions in the queue
+     */
+    public static long count() {
+        List<Long> result = singleton.listObjectsByNamedQuery("ActionDispatchQueue.count", Map.of());
+        return result.get(0);
+    }
+
+    /**
+     * An action claimed from the queue.
+     */
+    public static final class QueuedAction {
+
+        private final long actionId;
+        private final boolean forcePackageListRefresh;
+
+        /**
+         * Standard constructor.
+         * @param actionIdIn the action id
+         * @param forcePackageListRefreshIn true to refresh the package list after the action
+         */
+        public QueuedAction(long actionIdIn, boolean forcePackageListRefreshIn) {
+            actionId = actionIdIn;
+            forcePackageListRefresh = forcePackageListRefreshIn;
+        }
+
+        /**
+         * @return the action id
+         */
+        public long getActionId() {
+            return actionId;
+        }
+
+        /**
+         * @return true to refresh the package list after the action
+         */
+        public boolean isForcePackageListRefresh() {
+            return forcePackageListRefresh;
+        }
+
+        @Override
+        public String toString() {
+            return "QueuedAction{actionId=" + actionId + ", forcePackageListRefresh=" +
+                    forcePackageListRefresh + "}";
+        }
+    }
+}
@@ -593,7 +593,7 @@ public class ActionFactory extends HibernateFactory {
         if (label == null) {
             return null;
         }
-        return singleton.lookupObjectByNamedQuery("ActionType.findByLabel", Map.of("label", label), true);
+        return HibernateFactory.getSession().bySimpleNaturalId(ActionType.class).load(label);
     }
 
     /**
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.action.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.action.Action;
+import com.redhat.rhn.domain.action.ActionDispatchQueueFactory;
+import com.redhat.rhn.domain.action.ActionDispatchQueueFactory.QueuedAction;
+import com.redhat.rhn.domain.action.ActionFactory;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ActionDispatchQueueFactoryTest extends BaseTestCaseWithUser {
+
+    @Test
+    public void testEnqueueAndPop() throws Exception {
+        Action first = ActionFactoryTest.createAction(user, ActionFactory.TYPE_ERRATA);
+        Action second = ActionFactoryTest.createAction(user, ActionFactory.TYPE_ERRATA);
+        long before = ActionDispatchQueueFactory.count();
+
+        assertEquals(1, ActionDispatchQueueFactory.enqueue(List.of(first.getId()), false));
+        assertEquals(1, ActionDispatchQueueFactory.enqueue(List.of(second.getId()), false));
+        // enqueueing again only upgrades the package list refresh flag
+        assertEquals(1, ActionDispatchQueueFactory.enqueue(List.of(first.getId()), true));
+        assertEquals(before + 2, ActionDispatchQueueFactory.count());
+
+        List<QueuedAction> popped = ActionDispatchQueueFactory.pop(100).stream()
+                .filter(q -> q.getActionId() == first.getId() || q.getActionId() == second.getId())
+                .collect(Collectors.toList());
+        assertEquals(2, popped.size());
+        popped.forEach(q -> assertEquals(q.getActionId() == first.getId(), q.isForcePackageListRefresh()));
+        assertTrue(ActionDispatchQueueFactory.pop(100).stream()
+                .noneMatch(q -> q.getActionId() == first.getId()));
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        Action action = ActionFactoryTest.createAction(user, ActionFactory.TYPE_ERRATA);
+        ActionDispatchQueueFactory.enqueue(List.of(action.getId()), false);
+
+        assertEquals(1, ActionDispatchQueueFactory.delete(List.of(action.getId())));
+        assertEquals(0, ActionDispatchQueueFactory.delete(List.of(action.getId())));
+        assertFalse(ActionDispatchQueueFactory.pop(100).stream()
+                .anyMatch(q -> q.getActionId() == action.getId()));
+    }
+}
@@ -16,6 +16,8 @@ package com.redhat.rhn.domain.channel;
 
 import com.redhat.rhn.domain.server.MinionServer;
 
+import com.suse.manager.webui.utils.DownloadTokenCache;
+
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -99,6 +101,9 @@ public class AccessToken {
         if (validIn && !this.valid && this.minion == null) {
             throw new AccessTokenChangeException("Cannot set valid token when it's invalid and no minion is set");
         }
+        if (this.valid && !validIn) {
+            DownloadTokenCache.invalidateOnCommit(token);
+        }
         this.valid = validIn;
     }
 
@@ -21,6 +21,7 @@ import com.redhat.rhn.domain.server.MinionServer;
 import com.redhat.rhn.taskomatic.task.TaskConstants;
 
 import com.suse.manager.webui.utils.DownloadTokenBuilder;
+import com.suse.manager.webui.utils.DownloadTokenCache;
 import com.suse.utils.Opt;
 
 import org.apache.logging.log4j.LogManager;
@@ -243,6 +244,7 @@ public class AccessTokenFactory extends HibernateFactory {
      * @param token AccessToken to delete.
      */
     public static void delete(AccessToken token) {
+        DownloadTokenCache.invalidateOnCommit(token.getToken());
         HibernateFactory.getSession().delete(token);
     }
 
@@ -408,6 +408,18 @@ public class ChannelFactory extends HibernateFactory {
                 Map.of("channel_label", channelLabel, ORG_ID, orgId)) > 0;
     }
 
+    /**
+     * Returns the last modification time of the content of a channel.
+     *
+     * @param channelLabel the channel label
+     * @return the last modification time, empty if the channel does not exist
+     */
+    public static Optional<Date> lookupLastModified(String channelLabel) {
+        return getSession().createQuery("SELECT c.lastModified FROM Channel c WHERE c.label = :label", Date.class)
+                .setParameter(LABEL, channelLabel)
+                .uniqueResultOptional();
+    }
+
     /**
      * Checks if a channel is accessible by a User.
      *
@@ -726,7 +738,7 @@ public class ChannelFactory extends HibernateFactory {
         if (label == null) {
             return null;
         }
-        return singleton.lookupObjectByNamedQuery("ChannelArch.findByLabel", Map.of(LABEL, label));
+        return HibernateFactory.getSession().bySimpleNaturalId(ChannelArch.class).load(label);
     }
 
     /**
@@ -64,6 +64,18 @@ public class ChannelFamilyFactoryTest extends RhnBaseTestCase {
         assertEquals(cfam.getId(), cfam2.getId());
     }
 
+    @Test
+    public void testLookupByLabelOtherOrg() throws Exception {
+        ChannelFamily cfam = createTestChannelFamily();
+        ChannelFamily vendor = createNullOrgTestChannelFamily();
+        Org otherOrg = UserTestUtils.findNewOrg("otherOrg" + this.getClass().getSimpleName());
+
+        assertNull(ChannelFamilyFactory.lookupByLabel(cfam.getLabel(), otherOrg));
+        assertNull(ChannelFamilyFactory.lookupByLabel(cfam.getLabel(), null));
+        assertEquals(vendor.getId(), ChannelFamilyFactory.lookupByLabel(vendor.getLabel(), otherOrg).getId());
+        assertNull(ChannelFamilyFactory.lookupByLabel("no-such-family", null));
+    }
+
     @Test
     public void testLookupByLabelLike() throws Exception {
         ChannelFamily cfam = createTestChannelFamily();
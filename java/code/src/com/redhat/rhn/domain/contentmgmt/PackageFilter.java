@@ -123,7 +123,7 @@ public class PackageFilter extends ContentFilter<Package> {
         }
     }
 
-    private static String getEvr(String field, String value) {
+    static String getEvr(String field, String value) {
         if (field.equals("nevr")) {
             int relIdx = value.lastIndexOf('-');
             int verIdx = value.lastIndexOf('-', relIdx - 1);
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.contentmgmt;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toSet;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.translation.SqlExceptionTranslator;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.rhnpackage.PackageEvr;
+import com.redhat.rhn.domain.rhnpackage.PackageType;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates {@link PackageFilter}s against all the packages of a channel at once.
+ *
+ * Instead of loading the Package entities and testing each filter against each
+ * of them, the fields the filters look at are loaded by a single query into a
+ * columnar projection, and every filter criteria is compiled once into a
+ * predicate on a row of it: filter values are parsed only once, and the NEVR
+ * strings are only built for the packages with a matching name. The
+ * provides_name criteria of all the filters are pushed down to the database
+ * as one query.
+ *
+ * The result is the same as testing each {@link PackageFilter} against each package.
+ */
+public class PackageFilterEvaluator {
+
+    private static final String CHANNEL_PACKAGES_SQL =
+            "SELECT p.id, pn.name, pe.id, pe.epoch, pe.version, pe.release, pe.type, pa.label, p.build_time " +
+            "FROM rhnChannelPackage cp " +
+            "JOIN rhnPackage p ON p.id = cp.package_id " +
+            "JOIN rhnPackageName pn ON pn.id = p.name_id " +
+            "JOIN rhnPackageEVR pe ON pe.id = p.evr_id " +
+            "JOIN rhnPackageArch pa ON pa.id = p.package_arch_id " +
+            "WHERE cp.channel_id = ?";
+    private static final String CHANNEL_PROVIDERS_SQL =
+            "SELECT DISTINCT c.name, pp.package_id " +
+            "FROM rhnChannelPackage cp " +
+            "JOIN rhnPackageProvides pp ON pp.package_id = cp.package_id " +
+            "JOIN rhnPackageCapability c ON c.id = pp.capability_id " +
+            "WHERE cp.channel_id = ? AND c.name = ANY(?)";
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final PackageColumns columns;
+    private final Function<Set<String>, Map<String, Set<Long>>> providers;
+
+    /**
+     * Standard constructor.
+     * @param columnsIn the packages to evaluate the filters against
+     * @param providersIn returns the ids of the packages providing each of the given capability names
+     */
+    public PackageFilterEvaluator(PackageColumns columnsIn,
+            Function<Set<String>, Map<String, Set<Long>>> providersIn) {
+        columns = columnsIn;
+        providers = providersIn;
+    }
+
+    /**
+     * Returns an evaluator for the packages of the given channel.
+     * @param channel the channel
+     * @return the evaluator
+     */
+    public static PackageFilterEvaluator forChannel(Channel channel) {
+        Long channelId = channel.getId();
+        PackageColumns columns = HibernateFactory.getSession().doReturningWork(connection -> {
+            PackageColumns result = new PackageColumns();
+            // packages of the same EVR share one instance
+            Map<Long, PackageEvr> evrs = new HashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(CHANNEL_PACKAGES_SQL)) {
+                ps.setLong(1, channelId);
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        PackageEvr evr = evrs.computeIfAbsent(rs.getLong(3), id -> newEvr(rs));
+                        Timestamp buildTime = rs.getTimestamp(9);
+                        result.add(rs.getLong(1), rs.getString(2), evr, rs.getString(8),
+                                buildTime == null ? null : buildTime.toInstant());
+                    }
+                }
+            }
+            catch (SQLException e) {
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            return result;
+        });
+        return new PackageFilterEvaluator(columns, names -> lookupProviders(channelId, names));
+    }
+
+    private static PackageEvr newEvr(ResultSet rs) {
+        try {
+            return new PackageEvr(rs.getString(4), rs.getString(5), rs.getString(6), rs.getString(7));
+        }
+        catch (SQLException e) {
+            throw SqlExceptionTranslator.sqlException(e);
+        }
+    }
+
+    private static Map<String, Set<Long>> lookupProviders(Long channelId, Set<String> names) {
+        return HibernateFactory.getSession().doReturningWork(connection -> {
+            Map<String, Set<Long>> result = new HashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(CHANNEL_PROVIDERS_SQL)) {
+                ps.setLong(1, channelId);
+                ps.setArray(2, connection.createArrayOf("varchar", names.toArray()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.computeIfAbsent(rs.getString(1), n -> new HashSet<>()).add(rs.getLong(2));
+                    }
+                }
+            }
+            catch (SQLException e) {
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return the number of packages the filters are evaluated against
+     */
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * Returns the ids of the packages not filtered out by the given filters.
+     *
+     * A package is filtered out when any DENY filter is satisfied for it and
+     * no ALLOW filter is.
+     *
+     * @param filters the package filters
+     * @return the ids of the packages kept
+     */
+    public List<Long> filter(Collection<PackageFilter> filters) {
+        Map<ContentFilter.Rule, List<PackageFilter>> filtersByRule = filters.stream()
+                .collect(groupingBy(ContentFilter::getRule));
+
+        Set<String> providedNames = filters.stream()
+                .map(ContentFilter::getCriteria)
+                .filter(c -> c.getMatcher() == FilterCriteria.Matcher.PROVIDES_NAME)
+                .map(FilterCriteria::getValue)
+                .collect(toSet());
+        Map<String, Set<Long>> providing = providedNames.isEmpty() || columns.size == 0 ?
+                Map.of() : providers.apply(providedNames);
+
+        BitSet all = new BitSet(columns.size);
+        all.set(0, columns.size);
+        BitSet denied = match(filtersByRule.getOrDefault(ContentFilter.Rule.DENY, emptyList()), all, providing);
+        // ALLOW filters only need testing against the denied packages
+        denied.andNot(match(filtersByRule.getOrDefault(ContentFilter.Rule.ALLOW, emptyList()), denied, providing));
+
+        List<Long> kept = new ArrayList<>(columns.size - denied.cardinality());
+        for (int row = denied.nextClearBit(0); row < columns.size; row = denied.nextClearBit(row + 1)) {
+            kept.add(columns.ids[row]);
+        }
+        return kept;
+    }
+
+    /*
+     * Returns the candidate rows satisfying any of the filters. Filters are only
+     * compiled when there is something to test, as PackageFilter.test would.
+     */
+    private BitSet match(List<PackageFilter> filters, BitSet candidates, Map<String, Set<Long>> providing) {
+        BitSet matched = new BitSet(columns.size);
+        BitSet remaining = (BitSet) candidates.clone();
+        for (PackageFilter filter : filters) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            IntPredicate predicate = compile(filter.getCriteria(), providing);
+            for (int row = remaining.nextSetBit(0); row >= 0; row = remaining.nextSetBit(row + 1)) {
+                if (predicate.test(row)) {
+                    matched.set(row);
+                }
+            }
+            remaining.andNot(matched);
+        }
+        return matched;
+    }
+
+    private IntPredicate compile(FilterCriteria criteria, Map<String, Set<Long>> providing) {
+        FilterCriteria.Matcher matcher = criteria.getMatcher();
+        String field = criteria.getField();
+        String value = criteria.getValue();
+
+        switch (matcher) {
+            case CONTAINS:
+                return matchField(field, fieldValue -> fieldValue.contains(value));
+            case EQUALS:
+                // every field starts with the name, the others are only built for the packages it matches
+                IntPredicate equals = matchField(field, fieldValue -> fieldValue.equals(value));
+                return row -> value.startsWith(columns.names[row]) && equals.test(row);
+            case MATCHES:
+                Pattern pattern = Pattern.compile(value);
+                return matchField(field, fieldValue -> pattern.matcher(fieldValue).matches());
+            case LOWER:
+                return compare(field, value, c -> c < 0);
+            case LOWEREQ:
+                return compare(field, value, c -> c <= 0);
+            case GREATEREQ:
+                return compare(field, value, c -> c >= 0);
+            case GREATER:
+                return compare(field, value, c -> c > 0);
+            case PROVIDES_NAME:
+                Set<Long> ids = providing.getOrDefault(value, Set.of());
+                return row -> ids.contains(columns.ids[row]);
+            default:
+                throw new UnsupportedOperationException("Matcher " + matcher + " not supported");
+        }
+    }
+
+    private IntPredicate matchField(String field, Predicate<String> predicate) {
+        switch (field) {
+            case "name":
+                return row -> predicate.test(columns.names[row]);
+            case "nevr":
+                return row -> predicate.test(columns.names[row] + "-" + columns.evrs[row]);
+            case "nevra":
+                return row -> predicate.test(columns.names[row] + "-" + evrWithEpoch(columns.evrs[row]) + "." +
+                        columns.archs[row]);
+            default:
+                throw new UnsupportedOperationException("Field " + field + " not supported");
+        }
+    }
+
+    // same as Package.getNevraWithEpoch: a missing epoch is reported as '0'
+    private static String evrWithEpoch(PackageEvr evr) {
+        if (evr.getEpoch() == null || evr.getEpoch().isEmpty()) {
+            PackageEvr withEpoch = new PackageEvr(evr);
+            withEpoch.setEpoch("0");
+            return withEpoch.toString();
+        }
+        return evr.toString();
+    }
+
+    private IntPredicate compare(String field, String value, IntPredicate comparison) {
+        if (PackageFilter.BUILD_DATE.equals(field)) {
+            Instant date = ZonedDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+            return row -> columns.buildTimes[row] != null && comparison.test(columns.buildTimes[row].compareTo(date));
+        }
+
+        boolean withArch;
+        if (field.equals("nevr")) {
+            withArch = false;
+        }
+        else if (field.equals("nevra")) {
+            withArch = true;
+        }
+        else {
+            throw new UnsupportedOperationException("Field " + field + " not supported for filter Package (NEVRA)");
+        }
+        int relIdx = value.lastIndexOf('-');
+        int verIdx = value.lastIndexOf('-', relIdx - 1);
+        int archIdx = value.lastIndexOf('.');
+        if (verIdx <= 0 || (withArch && archIdx <= 0)) {
+            return row -> false;
+        }
+        String name = value.substring(0, verIdx);
+        String arch = withArch ? value.substring(archIdx + 1) : null;
+
+        // the value is parsed for each package type, when a package first matches name and arch
+        Map<PackageType, PackageEvr> parsed = new EnumMap<>(PackageType.class);
+        return row -> {
+            if (!name.equals(columns.names[row]) || (withArch && !arch.equals(columns.archs[row]))) {
+                return false;
+            }
+            PackageEvr evr = columns.evrs[row];
+            PackageEvr other = parsed.computeIfAbsent(evr.getPackageType(),
+                    type -> PackageEvr.parsePackageEvr(type, PackageFilter.getEvr(field, value)));
+            return comparison.test(evr.compareTo(other));
+        };
+    }
+
+    /**
+     * The fields of a list of packages the filters look at, one array per field.
+     */
+    public static class PackageColumns {
+
+        private int size;
+        private long[] ids = new long[16];
+        private String[] names = new String[16];
+        private PackageEvr[] evrs = new PackageEvr[16];
+        private String[] archs = new String[16];
+        private Instant[] buildTimes = new Instant[16];
+
+        /**
+         * Adds a package.
+         * @param id the package id
+         * @param name the package name
+         * @param evr the package EVR, with epoch, version, release and type set
+         * @param arch the package arch label
+         * @param buildTime the package build time, may be null
+         */
+        public void add(long id, String name, PackageEvr evr, String arch, Instant buildTime) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                evrs = Arrays.copyOf(evrs, capacity);
+                archs = Arrays.copyOf(archs, capacity);
+                buildTimes = Arrays.copyOf(buildTimes, capacity);
+            }
+            ids[size] = id;
+            names[size] = name;
+            evrs[size] = evr;
+            archs[size] = arch;
+            buildTimes[size] = buildTime;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.contentmgmt.test;
+
+import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.ALLOW;
+import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.DENY;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redhat.rhn.domain.contentmgmt.ContentFilter;
+import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
+import com.redhat.rhn.domain.contentmgmt.FilterCriteria.Matcher;
+import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilterEvaluator;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.PackageArch;
+import com.redhat.rhn.domain.rhnpackage.PackageEvr;
+import com.redhat.rhn.domain.rhnpackage.PackageName;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link PackageFilterEvaluator}
+ */
+public class PackageFilterEvaluatorTest {
+
+    private List<Package> packages;
+    private PackageFilterEvaluator evaluator;
+
+    @BeforeEach
+    public void setUp() {
+        packages = new ArrayList<>();
+        packages.add(createPackage(1L, "foo", new PackageEvr(null, "0.9", "1", "rpm"), "x86_64",
+                "2020-01-01T00:00:00Z"));
+        packages.add(createPackage(2L, "foo", new PackageEvr("1", "1.0", "1", "rpm"), "x86_64",
+                "2022-01-01T00:00:00Z"));
+        packages.add(createPackage(3L, "foo", new PackageEvr(null, "1.0", "1", "rpm"), "noarch",
+                "2021-06-01T12:00:00Z"));
+        packages.add(createPackage(4L, "foobar", new PackageEvr(null, "2.0", "3", "rpm"), "x86_64", null));
+        packages.add(createPackage(5L, "libbar", new PackageEvr(null, "1.2", "X", "deb"), "amd64-deb",
+                "2021-01-01T00:00:00Z"));
+
+        PackageFilterEvaluator.PackageColumns columns = new PackageFilterEvaluator.PackageColumns();
+        packages.forEach(p -> columns.add(p.getId(), p.getPackageName().getName(), p.getPackageEvr(),
+                p.getPackageArch().getLabel(), p.getBuildTime() == null ? null : p.getBuildTime().toInstant()));
+        evaluator = new PackageFilterEvaluator(columns, names -> Map.of("libfoo.so", Set.of(2L, 4L)));
+    }
+
+    /**
+     * Test that each criteria keeps the same packages as testing the filter against the entities
+     */
+    @Test
+    public void testSameResultAsPackageFilter() {
+        List<FilterCriteria> criteria = List.of(
+                new FilterCriteria(Matcher.CONTAINS, "name", "bar"),
+                new FilterCriteria(Matcher.MATCHES, "name", "foo.*"),
+                new FilterCriteria(Matcher.EQUALS, "nevr", "foo-1:1.0-1"),
+                new FilterCriteria(Matcher.EQUALS, "nevr", "foo-1.0-1"),
+                new FilterCriteria(Matcher.EQUALS, "nevra", "foo-0:0.9-1.x86_64"),
+                new FilterCriteria(Matcher.EQUALS, "nevra", "libbar-0:1.2-X.amd64-deb"),
+                new FilterCriteria(Matcher.LOWER, "nevr", "foo-1.0-1"),
+                new FilterCriteria(Matcher.LOWEREQ, "nevra", "foo-1:1.0-1.x86_64"),
+                new FilterCriteria(Matcher.GREATER, "nevr", "foo-0.9-1"),
+                new FilterCriteria(Matcher.GREATEREQ, "nevra", "libbar-1.2-X.amd64-deb"),
+                new FilterCriteria(Matcher.GREATER, "nevra", "invalid"),
+                new FilterCriteria(Matcher.LOWER, "build_date", "2021-01-01T00:00:00+00:00"),
+                new FilterCriteria(Matcher.LOWEREQ, "build_date", "2021-01-01T00:00:00+00:00"),
+                new FilterCriteria(Matcher.GREATER, "build_date", "2021-01-01T02:00:00+02:00"),
+                new FilterCriteria(Matcher.GREATEREQ, "build_date", "2021-06-01T12:00:00+00:00"));
+
+        for (FilterCriteria c : criteria) {
+            PackageFilter filter = createFilter(DENY, c);
+            List<Long> expected = packages.stream()
+                    .filter(p -> !filter.test(p))
+                    .map(Package::getId)
+                    .collect(toList());
+            assertEquals(expected, evaluator.filter(List.of(filter)),
+                    c.getMatcher() + " " + c.getField() + " " + c.getValue());
+        }
+    }
+
+    /**
+     * Test that ALLOW filters take precedence over DENY filters
+     */
+    @Test
+    public void testAllowDenyFilters() {
+        PackageFilter deny = createFilter(DENY, new FilterCriteria(Matcher.CONTAINS, "name", "foo"));
+        PackageFilter allow = createFilter(ALLOW, new FilterCriteria(Matcher.EQUALS, "nevra", "foo-1:1.0-1.x86_64"));
+
+        assertEquals(List.of(5L), evaluator.filter(List.of(deny)));
+        assertEquals(List.of(2L, 5L), evaluator.filter(List.of(deny, allow)));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), evaluator.filter(List.of(allow)));
+    }
+
+    /**
+     * Test the provides_name criteria
+     */
+    @Test
+    public void testProvidesName() {
+        PackageFilter deny = createFilter(DENY, new FilterCriteria(Matcher.PROVIDES_NAME, "provides_name",
+                "libfoo.so"));
+        PackageFilter denyNone = createFilter(DENY, new FilterCriteria(Matcher.PROVIDES_NAME, "provides_name",
+                "libnone.so"));
+
+        assertEquals(List.of(1L, 3L, 5L), evaluator.filter(List.of(deny)));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), evaluator.filter(List.of(denyNone)));
+    }
+
+    private static PackageFilter createFilter(ContentFilter.Rule rule, FilterCriteria criteria) {
+        PackageFilter filter = new PackageFilter();
+        filter.setRule(rule);
+        filter.setCriteria(criteria);
+        return filter;
+    }
+
+    private static Package createPackage(Long id, String name, PackageEvr evr, String arch, String buildTime) {
+        PackageName packageName = new PackageName();
+        packageName.setName(name);
+        PackageArch packageArch = new PackageArch();
+        packageArch.setLabel(arch);
+
+        Package pack = new Package();
+        pack.setId(id);
+        pack.setPackageName(packageName);
+        pack.setPackageEvr(evr);
+        pack.setPackageArch(packageArch);
+        pack.setBuildTime(buildTime == null ? null : Date.from(Instant.parse(buildTime)));
+        return pack;
+    }
+}
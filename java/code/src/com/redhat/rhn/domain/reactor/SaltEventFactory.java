@@ -73,6 +73,24 @@ public class SaltEventFactory extends HibernateFactory {
                 .map(o -> new SaltEvent((long)o[0], (String)o[1], (String)o[2], (int)o[3]));
     }
 
+    /**
+     * Returns Salt events, if any, up to limit, skipping those of the given minions.
+     * @param limit the maximum count of events to return
+     * @param queue the thread to pop events for, 0 for those associated with no particular queue.
+     * @param excludedMinions the ids of the minions whose events must be left in the queue
+     * @return events
+     */
+    public static Stream<SaltEvent> popSaltEvents(int limit, int queue, Collection<String> excludedMinions) {
+        if (excludedMinions.isEmpty()) {
+            return popSaltEvents(limit, queue);
+        }
+        List<Object[]> eventObjects = singleton.listObjectsByNamedQuery("SaltEvent.popSaltEventsExcludingMinions",
+                Map.of("limit", limit, "queue", queue, "minions", excludedMinions));
+
+        return eventObjects.stream()
+                .map(o -> new SaltEvent((long)o[0], (String)o[1], (String)o[2], (int)o[3]));
+    }
+
     /**
      * Deletes SaltEvents
      * @param ids event ids
@@ -218,6 +218,27 @@ public class SaltEventFactoryTest extends RhnBaseTestCase {
         assertEquals(Arrays.asList(0L, 0L, 0L, 0L, 0L), saltEventsCount);
     }
 
+    @Test
+    public void testPopSaltEventsExcludingMinions() {
+        SaltEvent saltEvent1 = new SaltEvent(1L, "minion_1", "data_minion_1", 1);
+        SaltEvent saltEvent2 = new SaltEvent(2L, "minion_2", "data_minion_2", 1);
+        SaltEvent saltEvent3 = new SaltEvent(3L, "minion_1", "data_minion_1", 1);
+        SaltEvent saltEvent4 = new SaltEvent(4L, null, "data_event_4", 1);
+        insertIntoSuseSaltEvent(saltEvent1);
+        insertIntoSuseSaltEvent(saltEvent2);
+        insertIntoSuseSaltEvent(saltEvent3);
+        insertIntoSuseSaltEvent(saltEvent4);
+
+        // events of busy minions stay in the queue, those of no minion are popped
+        List<SaltEvent> popedSaltEvents = SaltEventFactory.popSaltEvents(5, 1, List.of("minion_1"))
+                .collect(Collectors.toList());
+        assertEquals(List.of(saltEvent2, saltEvent4), popedSaltEvents);
+
+        // no exclusion pops everything, in order
+        popedSaltEvents = SaltEventFactory.popSaltEvents(5, 1, List.of()).collect(Collectors.toList());
+        assertEquals(List.of(saltEvent1, saltEvent3), popedSaltEvents);
+    }
+
 
     private void insertIntoSuseSaltEvent(SaltEvent saltEvent) {
         Query query = HibernateFactory.getSession().createNativeQuery(INSERT_INTO_SUSE_SALT_EVENT_QUERY);
@@ -233,7 +233,7 @@ public class PackageFactory extends HibernateFactory {
         if (label == null) {
             return null;
         }
-        return singleton.lookupObjectByNamedQuery("PackageArch.findByLabel", Map.of("label", label), true);
+        return HibernateFactory.getSession().bySimpleNaturalId(PackageArch.class).load(label);
     }
 
     /**
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.rhnpackage;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.translation.SqlExceptionTranslator;
+
+import org.hibernate.Session;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Resolves package names, EVRs and arches in bulk, creating the missing names
+ * and EVRs, with a cache of their ids shared by all threads.
+ *
+ * Resolving any number of values takes a constant number of queries: one
+ * lookup-or-create statement for the names and one for the EVRs not in the
+ * cache, one query for the uncached arches, and one to load the name and EVR
+ * objects. Ids created by a transaction are only cached once it commits.
+ * Missing values are created in sorted order, unnest() keeping the order of
+ * the array, so that concurrent transactions lock new rows in the same order.
+ */
+public class PackageInterner {
+
+    private static final int CACHE_SIZE = ConfigDefaults.get().getPackageInternCacheSize();
+
+    /* Ids are loaded at most this many at a time, within the limit of bind parameters of a statement */
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private static final Map<String, Long> NAME_IDS = new ConcurrentHashMap<>();
+    private static final Map<List<String>, Long> EVR_IDS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> ARCH_IDS = new ConcurrentHashMap<>();
+
+    private static final String LOOKUP_NAMES_SQL =
+            "SELECT n.name, lookup_package_name(n.name) FROM unnest(?) AS n(name)";
+    private static final String LOOKUP_EVRS_SQL =
+            "SELECT e.epoch, e.version, e.release, e.type, lookup_evr(e.epoch, e.version, e.release, e.type) " +
+            "FROM unnest(?, ?, ?, ?) AS e(epoch, version, release, type)";
+
+    /* Orders EVR keys by epoch, version, release and type, epochs can be null */
+    private static final Comparator<List<String>> EVR_KEY_ORDER = IntStream.range(0, 4)
+            .mapToObj(i -> Comparator.comparing((List<String> key) -> key.get(i),
+                    Comparator.nullsFirst(Comparator.naturalOrder())))
+            .reduce(Comparator::thenComparing)
+            .orElseThrow();
+
+    private PackageInterner() {
+    }
+
+    /**
+     * Returns the package names with the given names, creating the missing ones.
+     * @param names the package names
+     * @return the package names by name
+     */
+    public static Map<String, PackageName> lookupOrCreatePackageNames(Collection<String> names) {
+        Set<String> distinct = names.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, Long> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : distinct) {
+            Long id = NAME_IDS.get(name);
+            if (id != null) {
+                ids.put(name, id);
+            }
+            else {
+                missing.add(name);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // concurrent transactions insert in the same order, so that they cannot deadlock
+            Collections.sort(missing);
+            Map<String, Long> created = HibernateFactory.getSession().doReturningWork(connection -> {
+                Map<String, Long> result = new HashMap<>();
+                try (PreparedStatement ps = connection.prepareStatement(LOOKUP_NAMES_SQL)) {
+                    ps.setArray(1, connection.createArrayOf("varchar", missing.toArray()));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.put(rs.getString(1), rs.getLong(2));
+                        }
+                    }
+                }
+                catch (SQLException e) {
+                    throw SqlExceptionTranslator.sqlException(e);
+                }
+                return result;
+            });
+            ids.putAll(created);
+            cacheOnCommit(NAME_IDS, created);
+        }
+
+        Map<Long, PackageName> loaded = load(PackageName.class, ids.values(), PackageName::getId);
+        return ids.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> loaded.get(e.getValue())));
+    }
+
+    /**
+     * Returns the persistent EVRs equal to the given ones, creating the missing ones.
+     * @param evrs transient EVRs, with epoch, version, release and type set, by a key of the caller's choice
+     * @param <K> the key type
+     * @return the persistent EVRs by the same keys
+     */
+    public static <K> Map<K, PackageEvr> lookupOrCreatePackageEvrs(Map<K, PackageEvr> evrs) {
+        Set<List<String>> distinct = evrs.values().stream()
+                .map(PackageInterner::evrKey)
+                .collect(Collectors.toSet());
+        Map<List<String>, Long> ids = new HashMap<>();
+        List<List<String>> missing = new ArrayList<>();
+        for (List<String> key : distinct) {
+            Long id = EVR_IDS.get(key);
+            if (id != null) {
+                ids.put(key, id);
+            }
+            else {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // concurrent transactions insert in the same order, so that they cannot deadlock
+            missing.sort(EVR_KEY_ORDER);
+            Map<List<String>, Long> created = HibernateFactory.getSession().doReturningWork(connection -> {
+                Map<List<String>, Long> result = new HashMap<>();
+                try (PreparedStatement ps = connection.prepareStatement(LOOKUP_EVRS_SQL)) {
+                    for (int i = 0; i < 4; i++) {
+                        int column = i;
+                        Array values = connection.createArrayOf("varchar",
+                                missing.stream().map(key -> key.get(column)).toArray());
+                        ps.setArray(i + 1, values);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.put(Arrays.asList(rs.getString(1), rs.getString(2), rs.getString(3),
+                                    rs.getString(4)), rs.getLong(5));
+                        }
+                    }
+                }
+                catch (SQLException e) {
+                    throw SqlExceptionTranslator.sqlException(e);
+                }
+                return result;
+            });
+            ids.putAll(created);
+            cacheOnCommit(EVR_IDS, created);
+        }
+
+        Map<Long, PackageEvr> loaded = load(PackageEvr.class, ids.values(), PackageEvr::getId);
+        Map<K, PackageEvr> result = new HashMap<>();
+        evrs.forEach((key, evr) -> result.put(key, loaded.get(ids.get(evrKey(evr)))));
+        return result;
+    }
+
+    /**
+     * Returns the package arches with the given labels.
+     * @param labels the package arch labels
+     * @return the package arches by label, unknown labels are left out
+     */
+    public static Map<String, PackageArch> lookupPackageArches(Collection<String> labels) {
+        Session session = HibernateFactory.getSession();
+        Set<String> missing = labels.stream()
+                .filter(Objects::nonNull)
+                .filter(label -> !ARCH_IDS.containsKey(label))
+                .collect(Collectors.toSet());
+        if (!missing.isEmpty()) {
+            // arches are never created at runtime, they can be cached right away
+            session.createQuery("FROM PackageArch WHERE label IN (:labels)", PackageArch.class)
+                    .setParameterList("labels", missing)
+                    .list()
+                    .forEach(arch -> cachePut(ARCH_IDS, arch.getLabel(), arch.getId()));
+        }
+        // PackageArch is read-only and second level cached
+        return labels.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(ARCH_IDS::containsKey)
+                .collect(Collectors.toMap(Function.identity(),
+                        label -> session.get(PackageArch.class, ARCH_IDS.get(label))));
+    }
+
+    /**
+     * Drops all the cached ids.
+     */
+    public static void clearCache() {
+        NAME_IDS.clear();
+        EVR_IDS.clear();
+        ARCH_IDS.clear();
+    }
+
+    private static List<String> evrKey(PackageEvr evr) {
+        return Arrays.asList(evr.getEpoch(), evr.getVersion(), evr.getRelease(), evr.getType());
+    }
+
+    private static <T> Map<Long, T> load(Class<T> clazz, Collection<Long> ids, Function<T, Long> getId) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return HibernateFactory.getSession().byMultipleIds(clazz)
+                .withBatchSize(LOAD_BATCH_SIZE)
+                .multiLoad(new ArrayList<>(new LinkedHashSet<>(ids)))
+                .stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(getId, Function.identity(), (a, b) -> a));
+    }
+
+    /*
+     * Rows created by the current transaction vanish if it rolls back, so
+     * their ids are only shared with the other threads after the commit.
+     */
+    private static <K> void cacheOnCommit(Map<K, Long> cache, Map<K, Long> entries) {
+        HibernateFactory.getSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    entries.forEach((key, id) -> cachePut(cache, key, id));
+                }
+            }
+        });
+    }
+
+    private static <K> void cachePut(Map<K, Long> cache, K key, Long id) {
+        if (cache.size() >= CACHE_SIZE) {
+            // ids never change, so a full cache can simply start over
+            cache.clear();
+        }
+        cache.put(key, id);
+    }
+}
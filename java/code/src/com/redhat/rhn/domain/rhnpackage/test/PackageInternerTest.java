@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.rhnpackage.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.rhnpackage.PackageArch;
+import com.redhat.rhn.domain.rhnpackage.PackageEvr;
+import com.redhat.rhn.domain.rhnpackage.PackageEvrFactory;
+import com.redhat.rhn.domain.rhnpackage.PackageFactory;
+import com.redhat.rhn.domain.rhnpackage.PackageInterner;
+import com.redhat.rhn.domain.rhnpackage.PackageName;
+import com.redhat.rhn.domain.rhnpackage.PackageType;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+import com.redhat.rhn.testing.TestUtils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class PackageInternerTest extends RhnBaseTestCase {
+
+    @BeforeEach
+    public void setUp() {
+        PackageInterner.clearCache();
+    }
+
+    @Test
+    public void testLookupOrCreatePackageNames() {
+        String existing = PackageNameTest.createTestPackageName().getName();
+        String created = TestUtils.randomString();
+
+        Map<String, PackageName> names = PackageInterner.lookupOrCreatePackageNames(
+                List.of(existing, created, created));
+
+        assertEquals(2, names.size());
+        assertEquals(PackageFactory.lookupPackageName(existing).getId(), names.get(existing).getId());
+        assertNotNull(names.get(created).getId());
+        assertSame(names.get(created), PackageFactory.lookupPackageName(created));
+    }
+
+    @Test
+    public void testLookupOrCreatePackageEvrs() {
+        PackageEvr existing = PackageEvrFactoryTest.createTestPackageEvr();
+        String version = TestUtils.randomString();
+
+        Map<String, PackageEvr> evrs = PackageInterner.lookupOrCreatePackageEvrs(Map.of(
+                "existing", new PackageEvr(existing.getEpoch(), existing.getVersion(), existing.getRelease(),
+                        PackageType.RPM),
+                "rpm", new PackageEvr(null, version, "1", PackageType.RPM),
+                "deb", PackageEvr.parseDebian("1:" + version + "-2")));
+
+        assertEquals(existing.getId(), evrs.get("existing").getId());
+        assertEquals(PackageEvrFactory.lookupOrCreatePackageEvr(null, version, "1", PackageType.RPM).getId(),
+                evrs.get("rpm").getId());
+        assertEquals("1", evrs.get("deb").getEpoch());
+        assertEquals(version, evrs.get("deb").getVersion());
+        assertEquals("2", evrs.get("deb").getRelease());
+        assertEquals(PackageType.DEB, evrs.get("deb").getPackageType());
+    }
+
+    @Test
+    public void testLookupPackageArches() {
+        Map<String, PackageArch> arches = PackageInterner.lookupPackageArches(
+                List.of("x86_64", "amd64-deb", "not-an-arch"));
+
+        assertEquals(2, arches.size());
+        assertEquals(PackageFactory.lookupPackageArchByLabel("x86_64"), arches.get("x86_64"));
+        assertTrue(arches.containsKey("amd64-deb"));
+    }
+}
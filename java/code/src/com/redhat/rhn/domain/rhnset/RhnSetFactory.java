@@ -14,8 +14,6 @@
  */
 package com.redhat.rhn.domain.rhnset;
 
-import com.redhat.rhn.common.db.ConstraintViolationException;
-import com.redhat.rhn.common.db.WrappedSQLException;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
@@ -25,6 +23,8 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -113,14 +113,9 @@ public class RhnSetFactory extends HibernateFactory {
      */
     public static void save(RhnSet set) {
         RhnSetImpl simpl = (RhnSetImpl) set;
-        // The updates really need to be batched
         if (simpl.isSynced() && !simpl.getElements().isEmpty()) {
-            WriteMode deleteEl3 = writeMode("delete_from_set_el3");
-            WriteMode deleteEl2 = writeMode("delete_from_set_el2");
-            WriteMode deleteEl1 = writeMode("delete_from_set_el1");
-            for (RhnSetElement current : simpl.getRemoved()) {
-                executeMode(current, deleteEl3, deleteEl2, deleteEl1);
-            }
+            executeArrays(simpl, simpl.getRemoved(), "delete_from_set_el3", "delete_from_set_el2",
+                    "delete_from_set_el1");
         }
         else {
             removeByLabel(simpl.getUserId(), simpl.getLabel());
@@ -133,21 +128,8 @@ public class RhnSetFactory extends HibernateFactory {
         else {
             added = simpl.getAdded();
         }
-        WriteMode insertEl3 = ModeFactory.getWriteMode(CATALOG, "add_to_set_el3");
-        WriteMode insertEl2 = ModeFactory.getWriteMode(CATALOG, "add_to_set_el2");
-        WriteMode insertEl1 = ModeFactory.getWriteMode(CATALOG, "add_to_set_el1");
-
-        for (RhnSetElement current : added) {
-            try {
-                executeMode(current, insertEl3, insertEl2, insertEl1);
-            }
-            catch (ConstraintViolationException | WrappedSQLException e) {
-                // a concurrent transaction has already inserted this row
-                // and COMMITted. This is tolerable and can happen because
-                // the default transaction isolation level is READ
-                // COMMITTED, thus this exception can be safely ignored
-            }
-        }
+        // the inserts do nothing on rows a concurrent transaction has already committed
+        executeArrays(simpl, added, "add_to_set_el3", "add_to_set_el2", "add_to_set_el1");
         if (!added.isEmpty()) {
             simpl.getCleanup().cleanup(simpl);
         }
@@ -168,25 +150,57 @@ public class RhnSetFactory extends HibernateFactory {
         return ModeFactory.getWriteMode(CATALOG, modeName);
     }
 
-    private static void executeMode(RhnSetElement elem,
-            WriteMode el3, WriteMode el2, WriteMode el1) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("user_id", elem.getUserId());
-        params.put("label", elem.getLabel());
-        params.put("el_one", elem.getElement());
+    /*
+     * Runs the statement matching the number of values of each element once,
+     * with the values of all those elements bound as arrays.
+     */
+    private static void executeArrays(RhnSetImpl set, Collection<RhnSetElement> elems,
+            String el3Mode, String el2Mode, String el1Mode) {
+        List<RhnSetElement> el3 = new ArrayList<>();
+        List<RhnSetElement> el2 = new ArrayList<>();
+        List<RhnSetElement> el1 = new ArrayList<>();
+        for (RhnSetElement elem : elems) {
+            if (elem.getElementThree() == null && elem.getElementTwo() == null) {
+                el1.add(elem);
+            }
+            else if (elem.getElementThree() == null) {
+                el2.add(elem);
+            }
+            else {
+                el3.add(elem);
+            }
+        }
+        executeArray(set, el3, 3, el3Mode);
+        executeArray(set, el2, 2, el2Mode);
+        executeArray(set, el1, 1, el1Mode);
+    }
 
-        if (elem.getElementThree() == null && elem.getElementTwo() == null) {
-            el1.executeUpdate(params);
+    private static void executeArray(RhnSetImpl set, List<RhnSetElement> elems, int values,
+            String modeName) {
+        if (elems.isEmpty()) {
+            return;
         }
-        else if (elem.getElementThree() == null) {
-            params.put("el_two", elem.getElementTwo());
-            el2.executeUpdate(params);
+        Long[] elOne = new Long[elems.size()];
+        Long[] elTwo = new Long[elems.size()];
+        Long[] elThree = new Long[elems.size()];
+        for (int i = 0; i < elOne.length; i++) {
+            RhnSetElement elem = elems.get(i);
+            elOne[i] = elem.getElement();
+            elTwo[i] = elem.getElementTwo();
+            elThree[i] = elem.getElementThree();
         }
-        else {
-            params.put("el_three", elem.getElementThree());
-            params.put("el_two", elem.getElementTwo());
-            el3.executeUpdate(params);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("user_id", set.getUserId());
+        params.put("label", set.getLabel());
+        params.put("el_one", elOne);
+        if (values > 1) {
+            params.put("el_two", elTwo);
+        }
+        if (values > 2) {
+            params.put("el_three", elThree);
         }
+        writeMode(modeName).executeUpdate(params);
     }
 
     /**
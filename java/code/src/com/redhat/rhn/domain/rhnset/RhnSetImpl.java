@@ -19,6 +19,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * RhnSetImpl
@@ -27,7 +28,7 @@ public class RhnSetImpl implements RhnSet {
     private Long uid;
     private String label;
     private Set<RhnSetElement> elements;
-    private Set<RhnSetElement> synced;
+    private SyncedElements synced;
     private SetCleanup cleanup;
 
     /**
@@ -262,7 +263,7 @@ public class RhnSetImpl implements RhnSet {
      * of the set at the last call to this method
      */
     public void sync() {
-        synced = new HashSet<>(elements);
+        synced = new SyncedElements(uid, label, elements);
     }
 
     /**
@@ -282,8 +283,9 @@ public class RhnSetImpl implements RhnSet {
         if (synced == null) {
             throw new IllegalStateException("The set must be marked first");
         }
-        HashSet<RhnSetElement> result = new HashSet<>(elements);
-        result.removeAll(synced);
+        Set<RhnSetElement> result = elements.stream()
+                .filter(e -> !synced.contains(e))
+                .collect(Collectors.toSet());
         return Collections.unmodifiableSet(result);
     }
 
@@ -296,8 +298,9 @@ public class RhnSetImpl implements RhnSet {
         if (synced == null) {
             throw new IllegalStateException("The set must be marked first");
         }
-        HashSet<RhnSetElement> result = new HashSet<>(synced);
-        result.removeAll(elements);
+        Set<RhnSetElement> result = synced.stream()
+                .filter(e -> !elements.contains(e))
+                .collect(Collectors.toSet());
         return Collections.unmodifiableSet(result);
     }
 
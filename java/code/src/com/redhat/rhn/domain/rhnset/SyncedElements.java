@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.rhnset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An immutable snapshot of the elements of an RhnSet.
+ *
+ * The snapshot keeps the element values in a sorted array of primitive longs
+ * rather than as RhnSetElement objects in a HashSet, so that the copy taken
+ * at each sync of a large set costs 24 bytes per element and lookups are
+ * binary searches. Elements belonging to another user or label than the set,
+ * which is not expected, are kept aside as objects.
+ */
+final class SyncedElements {
+
+    /* Stands for a null value, database ids are never this small */
+    private static final long NULL = Long.MIN_VALUE;
+
+    private static final Comparator<long[]> ORDER = Comparator
+            .<long[]>comparingLong(v -> v[0])
+            .thenComparingLong(v -> v[1])
+            .thenComparingLong(v -> v[2]);
+
+    private final Long userId;
+    private final String label;
+    /* Three values per element, sorted */
+    private final long[] values;
+    private final Set<RhnSetElement> others = new HashSet<>();
+
+    /**
+     * Takes a snapshot of the given elements.
+     * @param userIdIn the user id of the set
+     * @param labelIn the label of the set
+     * @param elements the elements of the set
+     */
+    SyncedElements(Long userIdIn, String labelIn, Collection<RhnSetElement> elements) {
+        userId = userIdIn;
+        label = labelIn;
+        List<long[]> sorted = new ArrayList<>(elements.size());
+        for (RhnSetElement element : elements) {
+            if (isOwn(element)) {
+                sorted.add(toValues(element));
+            }
+            else {
+                others.add(element);
+            }
+        }
+        sorted.sort(ORDER);
+        values = new long[sorted.size() * 3];
+        for (int i = 0; i < sorted.size(); i++) {
+            System.arraycopy(sorted.get(i), 0, values, i * 3, 3);
+        }
+    }
+
+    /**
+     * @param element the element to look for
+     * @return true if the snapshot contains the element
+     */
+    boolean contains(RhnSetElement element) {
+        if (!isOwn(element)) {
+            return others.contains(element);
+        }
+        return indexOf(toValues(element)) >= 0;
+    }
+
+    /**
+     * @return the number of elements in the snapshot
+     */
+    int size() {
+        return values.length / 3 + others.size();
+    }
+
+    /**
+     * @return the elements of the snapshot
+     */
+    Stream<RhnSetElement> stream() {
+        return Stream.concat(IntStream.range(0, values.length / 3).mapToObj(this::get), others.stream());
+    }
+
+    private boolean isOwn(RhnSetElement element) {
+        return Objects.equals(userId, element.getUserId()) && Objects.equals(label, element.getLabel());
+    }
+
+    private RhnSetElement get(int index) {
+        return new RhnSetElement(userId, label, fromValue(values[index * 3]),
+                fromValue(values[index * 3 + 1]), fromValue(values[index * 3 + 2]));
+    }
+
+    private int indexOf(long[] key) {
+        int low = 0;
+        int high = values.length / 3 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareAt(int index, long[] key) {
+        for (int i = 0; i < 3; i++) {
+            int cmp = Long.compare(values[index * 3 + i], key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static long[] toValues(RhnSetElement element) {
+        return new long[] {toValue(element.getElement()), toValue(element.getElementTwo()),
+                toValue(element.getElementThree())};
+    }
+
+    private static long toValue(Long value) {
+        return value == null ? NULL : value;
+    }
+
+    private static Long fromValue(long value) {
+        return value == NULL ? null : value;
+    }
+}
@@ -178,6 +178,32 @@ public class RhnSetTest extends RhnBaseTestCase {
         assertAddRemove(0, 0);
     }
 
+    @Test
+    public void testMarkMultipleValues() {
+        set.setUserId(10L);
+        set.setLabel("label");
+        set.addElement(1L);
+        set.addElement(1L, 2L);
+        set.addElement(1L, 2L, 3L);
+        set.addElement(1L, null, 3L);
+        set.sync();
+        assertAddRemove(0, 0);
+
+        set.removeElement(1L, 2L);
+        set.addElement(1L, 3L);
+        set.addElement(2L, 2L, 3L);
+        assertAddRemove(2, 1);
+        assertEquals(new RhnSetElement(10L, "label", 1L, 2L), set.getRemoved().iterator().next());
+        assertTrue(set.getAdded().contains(new RhnSetElement(10L, "label", 1L, 3L)));
+        assertTrue(set.getAdded().contains(new RhnSetElement(10L, "label", 2L, 2L, 3L)));
+
+        set.removeElement(1L);
+        assertAddRemove(2, 2);
+        assertTrue(set.getRemoved().contains(new RhnSetElement(10L, "label", 1L, null)));
+        set.sync();
+        assertAddRemove(0, 0);
+    }
+
     @Test
     public void testNullAddElements() {
         // make sure we don't cause a NullPointerException
@@ -880,11 +880,10 @@ public class ServerFactory extends HibernateFactory {
      * @return The ServerArch
      */
     public static ServerArch lookupServerArchByLabel(String label) {
-        Session session = HibernateFactory.getSession();
-        return (ServerArch) session.getNamedQuery("ServerArch.findByLabel")
-                .setString("label", label)
-                // Retrieve from cache if there
-                .setCacheable(true).uniqueResult();
+        if (label == null) {
+            return null;
+        }
+        return HibernateFactory.getSession().bySimpleNaturalId(ServerArch.class).load(label);
     }
 
     /**
@@ -15,6 +15,7 @@
 package com.redhat.rhn.domain.session;
 
 import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.translation.SqlExceptionTranslator;
 import com.redhat.rhn.domain.user.User;
 
 import org.apache.logging.log4j.LogManager;
@@ -22,6 +23,13 @@ import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
 /**
  * SessionFactory - the singleton class used to fetch and store
  * com.redhat.rhn.domain.session.Session objects from the
@@ -32,6 +40,11 @@ public class WebSessionFactory extends HibernateFactory {
     private static WebSessionFactory singleton = new WebSessionFactory();
     private static Logger log = LogManager.getLogger(WebSessionFactory.class);
 
+    private static final String UPDATE_EXPIRES_SQL =
+            "UPDATE PXTSessions s SET expires = v.expires " +
+            "FROM unnest(?, ?) AS v(id, expires) " +
+            "WHERE s.id = v.id AND s.expires < v.expires";
+
 
     private WebSessionFactory() {
         super();
@@ -72,6 +85,53 @@ public class WebSessionFactory extends HibernateFactory {
         singleton.saveObject(webSession);
     }
 
+    /**
+     * Extends the expiry of several sessions with a single statement. Expiries
+     * are never shortened. The updated sessions are evicted from the second
+     * level cache once the transaction commits.
+     * @param expiresById the new expiry of each session, by session id
+     * @return the number of sessions updated
+     */
+    public static int updateExpires(Map<Long, Long> expiresById) {
+        Long[] ids = new Long[expiresById.size()];
+        Long[] expires = new Long[expiresById.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : expiresById.entrySet()) {
+            ids[i] = entry.getKey();
+            expires[i] = entry.getValue();
+            i++;
+        }
+
+        Session session = HibernateFactory.getSession();
+        int updated = session.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(UPDATE_EXPIRES_SQL)) {
+                ps.setArray(1, connection.createArrayOf("int8", ids));
+                ps.setArray(2, connection.createArrayOf("int8", expires));
+                return ps.executeUpdate();
+            }
+            catch (SQLException e) {
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+        });
+
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    for (Long id : ids) {
+                        session.getSessionFactory().getCache().evictEntityData(WebSessionImpl.class, id);
+                    }
+                }
+            }
+        });
+        return updated;
+    }
+
     /**
      * Remove a Session from the DB
      * @param webSession WebSession to be removed from database.
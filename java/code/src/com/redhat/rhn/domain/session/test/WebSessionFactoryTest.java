@@ -23,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.util.TimeUtils;
 import com.redhat.rhn.domain.session.InvalidSessionIdException;
 import com.redhat.rhn.domain.session.WebSession;
@@ -36,6 +37,8 @@ import com.redhat.rhn.testing.UserTestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 /** JUnit test case for the Session class.
  */
 
@@ -193,6 +196,27 @@ public class WebSessionFactoryTest extends RhnBaseTestCase {
         assertEquals(expTime, s2.getExpires());
     }
 
+    @Test
+    public void testSaveKeepsExtendedExpiry() {
+        WebSession s = WebSessionFactory.createSession();
+        long expTime = TimeUtils.currentTimeSeconds() + EXP_TIME;
+        s.setExpires(expTime);
+        WebSessionFactory.save(s);
+        HibernateFactory.getSession().flush();
+
+        // the expiry is extended in the background while the request still holds the old one
+        WebSessionFactory.updateExpires(Map.of(s.getId(), expTime + EXP_TIME));
+        s.setWebUserId(UserTestUtils.createUser("sessionTest", "SessionTestOrg"));
+        WebSessionFactory.save(s);
+        HibernateFactory.getSession().flush();
+
+        Number stored = (Number) HibernateFactory.getSession()
+                .createNativeQuery("SELECT expires FROM PXTSessions WHERE id = :id")
+                .setParameter("id", s.getId())
+                .uniqueResult();
+        assertEquals(expTime + EXP_TIME, stored.longValue());
+    }
+
     @Test
     public void testGetKey() {
         WebSession s = WebSessionFactory.createSession();
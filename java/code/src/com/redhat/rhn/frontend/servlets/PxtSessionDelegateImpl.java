@@ -14,7 +14,6 @@
  */
 package com.redhat.rhn.frontend.servlets;
 
-import com.redhat.rhn.common.util.TimeUtils;
 import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.session.WebSessionFactory;
 import com.redhat.rhn.manager.session.SessionManager;
@@ -207,13 +206,25 @@ public class PxtSessionDelegateImpl implements PxtSessionDelegate {
         Cookie pxtCookie = pxtCookieManager.createPxtCookie(pxtSession.getId(), request,
                 pxtCookieExpiration);
 
-        pxtSession.setExpires(TimeUtils.currentTimeSeconds() +
-                SessionManager.lifetimeValue());
-        savePxtSession(pxtSession);
+        if (pxtCookieExpiration > 0) {
+            extendPxtSession(pxtSession);
+        }
         request.getSession().setAttribute("webUserID", pxtSession.getWebUserId());
         response.addCookie(pxtCookie);
     }
 
+    /**
+     * Extends the lifetime of the pxt session. The new expiry is written to the
+     * database in the background, at most once per write interval. This method is
+     * a hook for testing.
+     *
+     * @param pxtSession The session to be extended
+     * @see SessionManager#extendSessionLifetime(WebSession)
+     */
+    protected void extendPxtSession(WebSession pxtSession) {
+        SessionManager.extendSessionLifetime(pxtSession);
+    }
+
     /**
      * This method is a hook for testing.
      *
@@ -233,6 +244,7 @@ public class PxtSessionDelegateImpl implements PxtSessionDelegate {
         //updateWebUserId(request, response, null);
         WebSession pxtSession = getPxtSession(request);
         pxtSession.setWebUserId(null);
+        savePxtSession(pxtSession);
 
         // Invalidate csrf_token
         request.getSession().setAttribute("csrf_token", null);
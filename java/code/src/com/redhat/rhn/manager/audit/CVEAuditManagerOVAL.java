@@ -18,6 +18,9 @@ package com.redhat.rhn.manager.audit;
 
 import static com.redhat.rhn.manager.audit.CVEAuditManager.SUCCESSOR_PRODUCT_RANK_BOUNDARY;
 
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
@@ -32,11 +35,12 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +62,11 @@ public class CVEAuditManagerOVAL {
     /**
      * List visible systems with their patch status regarding a given CVE identifier.
      *
+     * The OVAL data is loaded once for each distinct product of the visible systems and the installed
+     * versions of the vulnerable packages once for all the systems, then the systems are evaluated in
+     * parallel. Only systems whose status depends on the available patches are then compared against
+     * the channels data, which happens on the calling thread as it needs the Hibernate session.
+     *
      * @param user the calling user
      * @param cveIdentifier the CVE identifier to lookup
      * @param patchStatuses the patch statuses
@@ -80,16 +89,38 @@ public class CVEAuditManagerOVAL {
         Map<Long, List<CVEAuditManager.CVEPatchStatus>> resultsBySystem =
                 results.stream().collect(Collectors.groupingBy(CVEAuditManager.CVEPatchStatus::getSystemId));
 
-        Set<Server> clients = user.getServers();
-        for (Server clientServer : clients) {
-            CVEAuditSystemBuilder systemAuditResult;
+        List<Map<String, Object>> systems = listVisibleSystems(user);
+
+        Map<String, ProductVulnerablePackages> vulnerablePackagesByProduct = new HashMap<>();
+        systems.stream()
+                .map(system -> (String) system.get("system_cpe"))
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(cpe -> vulnerablePackagesByProduct.put(cpe, new ProductVulnerablePackages(
+                        OVALCachingFactory.getVulnerablePackagesByProductAndCve(cpe, cveIdentifier))));
+        LOG.debug("Vulnerable packages by product: {}", vulnerablePackagesByProduct);
+
+        Map<Long, List<ShallowSystemPackage>> installedPackagesBySystem =
+                listInstalledVulnerablePackages(user, cveIdentifier);
+
+        List<OVALEvaluation> evaluations = systems.parallelStream()
+                .map(system -> {
+                    Long systemId = (Long) system.get("system_id");
+                    ProductVulnerablePackages vulnerablePackages = vulnerablePackagesByProduct.getOrDefault(
+                            (String) system.get("system_cpe"), ProductVulnerablePackages.NONE);
+                    return evaluate(systemId, (String) system.get("system_name"), vulnerablePackages,
+                            installedPackagesBySystem.getOrDefault(systemId, List.of()));
+                })
+                .collect(Collectors.toList());
+
+        for (OVALEvaluation evaluation : evaluations) {
+            List<CVEAuditManager.CVEPatchStatus> systemResults = resultsBySystem.get(evaluation.systemId);
             // We need this initially to be able to get errata and audit channels information for the OVAL
             // implementation.
             CVEAuditSystemBuilder auditWithChannelsResult =
-                    CVEAuditManager.doAuditSystem(clientServer.getId(), resultsBySystem.get(clientServer.getId()));
+                    CVEAuditManager.doAuditSystem(evaluation.systemId, systemResults);
 
-            systemAuditResult = doAuditSystem(cveIdentifier, resultsBySystem.get(clientServer.getId()),
-                    clientServer);
+            CVEAuditSystemBuilder systemAuditResult = doAuditSystem(evaluation, systemResults);
             systemAuditResult.setChannels(auditWithChannelsResult.getChannels());
             systemAuditResult.setErratas(auditWithChannelsResult.getErratas());
 
@@ -110,6 +141,38 @@ public class CVEAuditManagerOVAL {
         return !OVALCachingFactory.canAuditCVE(cveIdentifier) && CVEAuditManager.isCVEIdentifierUnknown(cveIdentifier);
     }
 
+    private static List<Map<String, Object>> listVisibleSystems(User user) {
+        SelectMode m = ModeFactory.getMode("cve_audit_queries", "list_visible_systems_with_cpe");
+        Map<String, Object> params = new HashMap<>();
+        params.put("user_id", user.getId());
+        return m.execute(params);
+    }
+
+    /**
+     * Returns the installed versions of the packages the OVAL data lists as vulnerable to the given CVE for any
+     * product, for all the systems visible to the user.
+     */
+    private static Map<Long, List<ShallowSystemPackage>> listInstalledVulnerablePackages(User user,
+                                                                                      String cveIdentifier) {
+        SelectMode m = ModeFactory.getMode("cve_audit_queries", "list_installed_oval_vulnerable_packages");
+        Map<String, Object> params = new HashMap<>();
+        params.put("cve_identifier", cveIdentifier);
+        params.put("user_id", user.getId());
+        DataResult<Map<String, Object>> rows = m.execute(params);
+
+        Map<Long, List<ShallowSystemPackage>> packagesBySystem = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            ShallowSystemPackage installed = new ShallowSystemPackage();
+            installed.setName((String) row.get("package_name"));
+            installed.setEpoch((String) row.get("package_epoch"));
+            installed.setVersion((String) row.get("package_version"));
+            installed.setRelease((String) row.get("package_release"));
+            installed.setType((String) row.get("package_type"));
+            packagesBySystem.computeIfAbsent((Long) row.get("system_id"), id -> new ArrayList<>()).add(installed);
+        }
+        return packagesBySystem;
+    }
+
     /**
      * Audit the given {@code clientServer} regarding the given CVE identifier based on OVAL and Channels data.
      *
@@ -123,120 +186,71 @@ public class CVEAuditManagerOVAL {
     public static CVEAuditSystemBuilder doAuditSystem(String cveIdentifier,
                                                       List<CVEAuditManager.CVEPatchStatus> results,
                                                       Server clientServer) {
-        // It's possible to find more than one patch for a particular package in the available channels. It's NOT
-        // necessary to apply all of them because they will have the same outcome i.e. patch the package;
-        // instead we need to choose only one. To choose the one, we rank patches based on the channel they come
-        // from .e.g. assigned, successor product, etc. And for each vulnerable package we keep only the highest
-        // ranking patch.
-        results = keepOnlyPatchCandidates(results);
-
-        CVEAuditSystemBuilder cveAuditServerBuilder = new CVEAuditSystemBuilder(clientServer.getId());
-        cveAuditServerBuilder.setSystemName(clientServer.getName());
-
         List<ShallowSystemPackage> allInstalledPackages =
                 PackageManager.shallowSystemPackageList(clientServer.getId());
 
-        LOG.debug("Vulnerable packages before filtering: {}",
-                OVALCachingFactory.getVulnerablePackagesByProductAndCve(clientServer.getCpe(), cveIdentifier));
+        List<VulnerablePackage> vulnerablePackages =
+                OVALCachingFactory.getVulnerablePackagesByProductAndCve(clientServer.getCpe(), cveIdentifier);
+        LOG.debug("Vulnerable packages before filtering: {}", vulnerablePackages);
 
-        Set<VulnerablePackage> clientProductVulnerablePackages =
-                OVALCachingFactory.getVulnerablePackagesByProductAndCve(clientServer.getCpe(), cveIdentifier).stream()
-                        .filter(pkg -> isPackageInstalled(pkg, allInstalledPackages))
-                        .collect(Collectors.toSet());
+        OVALEvaluation evaluation = evaluate(clientServer.getId(), clientServer.getName(),
+                new ProductVulnerablePackages(vulnerablePackages), allInstalledPackages);
+        return doAuditSystem(evaluation, results);
+    }
+
+    /**
+     * Evaluates the OVAL data of one system. This only works on the given data, so that it can run
+     * on any thread.
+     */
+    private static OVALEvaluation evaluate(Long systemId, String systemName,
+                                           ProductVulnerablePackages vulnerablePackages,
+                                           List<ShallowSystemPackage> allInstalledPackages) {
+        Map<String, List<ShallowSystemPackage>> installedByName = allInstalledPackages.stream()
+                .filter(installed -> installed.getName() != null)
+                .collect(Collectors.groupingBy(ShallowSystemPackage::getName));
+
+        List<VulnerablePackage> clientProductVulnerablePackages = vulnerablePackages.getPackages().stream()
+                .filter(pkg -> installedByName.containsKey(pkg.getName()))
+                .collect(Collectors.toList());
 
         LOG.debug("Vulnerable packages after filtering: {}", clientProductVulnerablePackages);
 
         if (clientProductVulnerablePackages.isEmpty()) {
-            cveAuditServerBuilder.setPatchStatus(PatchStatus.NOT_AFFECTED);
-            return cveAuditServerBuilder;
+            return new OVALEvaluation(systemId, systemName, PatchStatus.NOT_AFFECTED, List.of());
         }
 
         // The list of vulnerable packages for which a patch has been released
-        Set<VulnerablePackage> patchedVulnerablePackages = clientProductVulnerablePackages.stream()
-                .filter(vulnerablePackage -> vulnerablePackage.getFixVersion().isPresent()).collect(
-                        Collectors.toSet());
+        List<VulnerablePackage> patchedVulnerablePackages = clientProductVulnerablePackages.stream()
+                .filter(vulnerablePackage -> vulnerablePackage.getFixVersion().isPresent())
+                .collect(Collectors.toList());
 
-        Set<VulnerablePackage> unpatchedVulnerablePackages = clientProductVulnerablePackages.stream()
-                .filter(vulnerablePackage -> vulnerablePackage.getFixVersion().isEmpty()).collect(
-                        Collectors.toSet());
+        if (patchedVulnerablePackages.isEmpty()) {
+            return new OVALEvaluation(systemId, systemName, PatchStatus.AFFECTED_PATCH_UNAVAILABLE, List.of());
+        }
 
-        boolean allPackagesUnpatched = unpatchedVulnerablePackages.size() == clientProductVulnerablePackages.size();
+        boolean allPackagesPatched = patchedVulnerablePackages.stream().allMatch(patchedPackage ->
+                installedByName.get(patchedPackage.getName()).stream()
+                        .allMatch(installedPackage -> installedPackage.getPackageEVR()
+                                .compareTo(vulnerablePackages.getFixEvr(patchedPackage)) >= 0));
 
-        if (allPackagesUnpatched) {
-            cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_PATCH_UNAVAILABLE);
+        if (allPackagesPatched) {
+            return new OVALEvaluation(systemId, systemName, PatchStatus.PATCHED, List.of());
         }
-        else {
-            boolean allPackagesPatched = patchedVulnerablePackages.stream().allMatch(patchedPackage ->
-                    getInstalledPackageVersions(patchedPackage, allInstalledPackages)
-                            .stream().allMatch(installedPackage -> installedPackage.getPackageEVR()
-                                    .compareTo(PackageEvr.parseRpm(patchedPackage.getFixVersion().get())) >= 0));
+        // the status depends on the patches available in the channels
+        return new OVALEvaluation(systemId, systemName, null, patchedVulnerablePackages);
+    }
 
-            if (allPackagesPatched) {
-                cveAuditServerBuilder.setPatchStatus(PatchStatus.PATCHED);
-            }
-            else {
-                List<CVEAuditManager.CVEPatchStatus> patchesInAssignedChannels = results.stream()
-                        .filter(CVEAuditManager.CVEPatchStatus::isChannelAssigned)
-                        .collect(Collectors.toList());
-
-                List<CVEAuditManager.CVEPatchStatus> patchesInUnassignedChannels = results.stream()
-                        .filter(cvePatchStatus -> !cvePatchStatus.isChannelAssigned())
-                        .collect(Collectors.toList());
-
-                long numberOfPackagesWithPatchInAssignedChannels =
-                        patchedVulnerablePackages.stream().filter(patchedPackage -> patchesInAssignedChannels
-                                .stream()
-                                .anyMatch(patch ->
-                                        patch.getPackageName().equals(Optional.of(patchedPackage.getName()))
-                                )
-                        ).count();
-
-                boolean allPackagesHavePatchInAssignedChannels =
-                        numberOfPackagesWithPatchInAssignedChannels == patchedVulnerablePackages.size();
-                boolean somePackagesHavePatchInAssignedChannels = numberOfPackagesWithPatchInAssignedChannels > 0;
-
-                if (allPackagesHavePatchInAssignedChannels) {
-                    cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_FULL_PATCH_APPLICABLE);
-                }
-                else if (somePackagesHavePatchInAssignedChannels) {
-                    cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_PARTIAL_PATCH_APPLICABLE);
-                }
-                else {
-                    long numberOfPackagesWithPatchInUnassignedChannels =
-                            patchedVulnerablePackages.stream().filter(patchedPackage -> patchesInUnassignedChannels
-                                    .stream()
-                                    .anyMatch(patch ->
-                                            patch.getPackageName().equals(Optional.of(patchedPackage.getName()))
-                                    )
-                            ).count();
-
-                    boolean somePackagesHavePatchInUnassignedChannels =
-                            numberOfPackagesWithPatchInUnassignedChannels > 0 &&
-                                    numberOfPackagesWithPatchInUnassignedChannels == patchedVulnerablePackages.size();
-
-                    boolean allPackagesHavePatchInUnassignedChannels =
-                            numberOfPackagesWithPatchInUnassignedChannels == patchedVulnerablePackages.size();
-
-                    if (allPackagesHavePatchInUnassignedChannels) {
-                        boolean allPackagesHavePatchInSuccessorChannel = patchesInUnassignedChannels.stream()
-                                .allMatch(patch ->
-                                        patch.getChannelRank().orElse(0L) >= SUCCESSOR_PRODUCT_RANK_BOUNDARY);
-                        if (allPackagesHavePatchInSuccessorChannel) {
-                            cveAuditServerBuilder
-                                    .setPatchStatus(PatchStatus.AFFECTED_PATCH_INAPPLICABLE_SUCCESSOR_PRODUCT);
-                        }
-                        else {
-                            cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_PATCH_INAPPLICABLE);
-                        }
-                    }
-                    else if (somePackagesHavePatchInUnassignedChannels) {
-                        cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_PATCH_INAPPLICABLE);
-                    }
-                    else {
-                        cveAuditServerBuilder.setPatchStatus(PatchStatus.AFFECTED_PATCH_UNAVAILABLE_IN_UYUNI);
-                    }
-                }
-            }
+    private static CVEAuditSystemBuilder doAuditSystem(OVALEvaluation evaluation,
+                                                       List<CVEAuditManager.CVEPatchStatus> results) {
+        CVEAuditSystemBuilder cveAuditServerBuilder = new CVEAuditSystemBuilder(evaluation.systemId);
+        cveAuditServerBuilder.setSystemName(evaluation.systemName);
+
+        if (evaluation.patchStatus != null) {
+            cveAuditServerBuilder.setPatchStatus(evaluation.patchStatus);
+        }
+        else {
+            cveAuditServerBuilder.setPatchStatus(
+                    getPatchStatusFromChannels(evaluation.patchedVulnerablePackages, results));
         }
 
         LOG.debug("'{}' patch status: {}", cveAuditServerBuilder.getSystemName(),
@@ -245,6 +259,76 @@ public class CVEAuditManagerOVAL {
         return cveAuditServerBuilder;
     }
 
+    private static PatchStatus getPatchStatusFromChannels(List<VulnerablePackage> patchedVulnerablePackages,
+                                                          List<CVEAuditManager.CVEPatchStatus> results) {
+        // It's possible to find more than one patch for a particular package in the available channels. It's NOT
+        // necessary to apply all of them because they will have the same outcome i.e. patch the package;
+        // instead we need to choose only one. To choose the one, we rank patches based on the channel they come
+        // from .e.g. assigned, successor product, etc. And for each vulnerable package we keep only the highest
+        // ranking patch.
+        results = keepOnlyPatchCandidates(results);
+
+        List<CVEAuditManager.CVEPatchStatus> patchesInAssignedChannels = results.stream()
+                .filter(CVEAuditManager.CVEPatchStatus::isChannelAssigned)
+                .collect(Collectors.toList());
+
+        List<CVEAuditManager.CVEPatchStatus> patchesInUnassignedChannels = results.stream()
+                .filter(cvePatchStatus -> !cvePatchStatus.isChannelAssigned())
+                .collect(Collectors.toList());
+
+        long numberOfPackagesWithPatchInAssignedChannels =
+                patchedVulnerablePackages.stream().filter(patchedPackage -> patchesInAssignedChannels
+                        .stream()
+                        .anyMatch(patch ->
+                                patch.getPackageName().equals(Optional.of(patchedPackage.getName()))
+                        )
+                ).count();
+
+        boolean allPackagesHavePatchInAssignedChannels =
+                numberOfPackagesWithPatchInAssignedChannels == patchedVulnerablePackages.size();
+        boolean somePackagesHavePatchInAssignedChannels = numberOfPackagesWithPatchInAssignedChannels > 0;
+
+        if (allPackagesHavePatchInAssignedChannels) {
+            return PatchStatus.AFFECTED_FULL_PATCH_APPLICABLE;
+        }
+        else if (somePackagesHavePatchInAssignedChannels) {
+            return PatchStatus.AFFECTED_PARTIAL_PATCH_APPLICABLE;
+        }
+
+        long numberOfPackagesWithPatchInUnassignedChannels =
+                patchedVulnerablePackages.stream().filter(patchedPackage -> patchesInUnassignedChannels
+                        .stream()
+                        .anyMatch(patch ->
+                                patch.getPackageName().equals(Optional.of(patchedPackage.getName()))
+                        )
+                ).count();
+
+        boolean somePackagesHavePatchInUnassignedChannels =
+                numberOfPackagesWithPatchInUnassignedChannels > 0 &&
+                        numberOfPackagesWithPatchInUnassignedChannels == patchedVulnerablePackages.size();
+
+        boolean allPackagesHavePatchInUnassignedChannels =
+                numberOfPackagesWithPatchInUnassignedChannels == patchedVulnerablePackages.size();
+
+        if (allPackagesHavePatchInUnassignedChannels) {
+            boolean allPackagesHavePatchInSuccessorChannel = patchesInUnassignedChannels.stream()
+                    .allMatch(patch ->
+                            patch.getChannelRank().orElse(0L) >= SUCCESSOR_PRODUCT_RANK_BOUNDARY);
+            if (allPackagesHavePatchInSuccessorChannel) {
+                return PatchStatus.AFFECTED_PATCH_INAPPLICABLE_SUCCESSOR_PRODUCT;
+            }
+            else {
+                return PatchStatus.AFFECTED_PATCH_INAPPLICABLE;
+            }
+        }
+        else if (somePackagesHavePatchInUnassignedChannels) {
+            return PatchStatus.AFFECTED_PATCH_INAPPLICABLE;
+        }
+        else {
+            return PatchStatus.AFFECTED_PATCH_UNAVAILABLE_IN_UYUNI;
+        }
+    }
+
     private static List<CVEAuditManager.CVEPatchStatus> keepOnlyPatchCandidates(
             List<CVEAuditManager.CVEPatchStatus> results) {
         List<CVEAuditManager.CVEPatchStatus> patchCandidates = new ArrayList<>();
@@ -261,22 +345,6 @@ public class CVEAuditManagerOVAL {
         return patchCandidates;
     }
 
-    private static boolean isPackageInstalled(VulnerablePackage pkg, List<ShallowSystemPackage> allInstalledPackages) {
-        return allInstalledPackages.stream()
-                .anyMatch(installed -> Objects.equals(installed.getName(), pkg.getName()));
-    }
-
-    /**
-     * Returns the list of installed versions of {@code pkg}
-     * */
-    private static List<ShallowSystemPackage> getInstalledPackageVersions(
-            VulnerablePackage pkg,
-            List<ShallowSystemPackage> allInstalledPackages) {
-
-        return allInstalledPackages.stream().filter(installed -> Objects.equals(installed.getName(), pkg.getName()))
-                .collect(Collectors.toList());
-    }
-
     /**
      * List visible images with their patch status regarding a given CVE identifier.
      *
@@ -298,4 +366,54 @@ public class CVEAuditManagerOVAL {
     public static void populateCVEChannels() {
         CVEAuditManager.populateCVEChannels();
     }
+
+    /**
+     * The OVAL vulnerable packages of a product, with their fix versions parsed once for all the systems.
+     */
+    private static final class ProductVulnerablePackages {
+
+        private static final ProductVulnerablePackages NONE = new ProductVulnerablePackages(List.of());
+
+        private final List<VulnerablePackage> packages;
+        private final Map<VulnerablePackage, PackageEvr> fixEvrs = new IdentityHashMap<>();
+
+        ProductVulnerablePackages(List<VulnerablePackage> packagesIn) {
+            packages = packagesIn;
+            packagesIn.forEach(pkg -> pkg.getFixVersion()
+                    .ifPresent(fixVersion -> fixEvrs.put(pkg, PackageEvr.parseRpm(fixVersion))));
+        }
+
+        List<VulnerablePackage> getPackages() {
+            return packages;
+        }
+
+        PackageEvr getFixEvr(VulnerablePackage pkg) {
+            return fixEvrs.get(pkg);
+        }
+
+        @Override
+        public String toString() {
+            return packages.toString();
+        }
+    }
+
+    /**
+     * The result of evaluating the OVAL data of a system: either a final patch status or the vulnerable
+     * packages whose patches have to be looked for in the channels.
+     */
+    private static final class OVALEvaluation {
+
+        private final Long systemId;
+        private final String systemName;
+        private final PatchStatus patchStatus;
+        private final List<VulnerablePackage> patchedVulnerablePackages;
+
+        OVALEvaluation(Long systemIdIn, String systemNameIn, PatchStatus patchStatusIn,
+                       List<VulnerablePackage> patchedVulnerablePackagesIn) {
+            systemId = systemIdIn;
+            systemName = systemNameIn;
+            patchStatus = patchStatusIn;
+            patchedVulnerablePackages = patchedVulnerablePackagesIn;
+        }
+    }
 }
@@ -570,6 +570,61 @@ public class CVEAuditManagerOVALTest extends RhnBaseTestCase {
         assertEquals(PatchStatus.AFFECTED_PATCH_INAPPLICABLE, auditServer.getPatchStatus());
     }
 
+    @Test
+    public void testListSystemsByPatchStatusMatchesSingleSystemAudit() throws Exception {
+        OvalRootType ovalRoot = ovalParser.parse(TestUtils
+                .findTestData("/com/redhat/rhn/manager/audit/test/oval/oval-def-1.xml"));
+
+        Cve cve = createTestCve("CVE-2022-2991");
+
+        extractAndSaveVulnerablePackages(ovalRoot);
+
+        Set<Cve> cves = Set.of(cve);
+        User user = createTestUser();
+
+        Errata errata = createTestErrata(user, cves);
+        Channel channel = createTestChannel(user, errata);
+        Set<Channel> channels = Set.of(channel);
+
+        Package unpatched = createTestPackage(user, channel, "noarch",
+                "kernel-debug-base", "0", "4.12.13", "150100.197.137.2");
+        Package patched = createTestPackage(user, errata, channel, "noarch",
+                "kernel-debug-base", "0", "4.12.14", "150100.197.137.2");
+
+        Server affectedServer = createTestServer(user, channels);
+        affectedServer.setCpe(CPE_OPENSUSE_LEAP_15_4);
+        createTestInstalledPackage(unpatched, affectedServer);
+
+        Server patchedServer = createTestServer(user, channels);
+        patchedServer.setCpe(CPE_OPENSUSE_LEAP_15_4);
+        createTestInstalledPackage(patched, patchedServer);
+
+        Server otherProductServer = createTestServer(user, channels);
+        otherProductServer.setCpe("cpe:/o:opensuse:leap:15.5");
+        createTestInstalledPackage(unpatched, otherProductServer);
+
+        CVEAuditManager.populateCVEChannels();
+        HibernateFactory.getSession().flush();
+
+        Map<Long, PatchStatus> statuses = CVEAuditManagerOVAL.listSystemsByPatchStatus(user, cve.getName(),
+                        EnumSet.allOf(PatchStatus.class)).stream()
+                .collect(Collectors.toMap(CVEAuditServer::getId, CVEAuditServer::getPatchStatus));
+
+        assertEquals(PatchStatus.AFFECTED_FULL_PATCH_APPLICABLE, statuses.get(affectedServer.getId()));
+        assertEquals(PatchStatus.PATCHED, statuses.get(patchedServer.getId()));
+        assertEquals(PatchStatus.NOT_AFFECTED, statuses.get(otherProductServer.getId()));
+
+        List<CVEAuditManager.CVEPatchStatus> results = CVEAuditManager.listSystemsByPatchStatus(user, cve.getName())
+                .collect(Collectors.toList());
+        for (Server server : List.of(affectedServer, patchedServer, otherProductServer)) {
+            List<CVEAuditManager.CVEPatchStatus> systemResults = results.stream()
+                    .filter(result -> result.getSystemId() == server.getId())
+                    .collect(Collectors.toList());
+            assertEquals(CVEAuditManagerOVAL.doAuditSystem(cve.getName(), systemResults, server).getPatchStatus(),
+                    statuses.get(server.getId()));
+        }
+    }
+
     private static void extractAndSaveVulnerablePackages(OvalRootType rootType) {
         OVALCleaner.cleanup(rootType, OsFamily.LEAP, "15.4");
         OVALCachingFactory.savePlatformsVulnerablePackages(rootType);
@@ -32,6 +32,7 @@ import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.messaging.MessageQueue;
@@ -51,6 +52,7 @@ import com.redhat.rhn.domain.contentmgmt.ErrataFilter;
 import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
 import com.redhat.rhn.domain.contentmgmt.ModuleFilter;
 import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilterEvaluator;
 import com.redhat.rhn.domain.contentmgmt.ProjectSource;
 import com.redhat.rhn.domain.contentmgmt.ProjectSource.Type;
 import com.redhat.rhn.domain.contentmgmt.SoftwareEnvironmentTarget;
@@ -981,10 +983,12 @@ public class ContentManager {
         List<PackageFilter> packageFilters = extractFiltersOfType(filters, PackageFilter.class);
         List<ErrataFilter> errataFilters = extractFiltersOfType(filters, ErrataFilter.class);
 
-        Set<Package> oldTgtPackages = new HashSet<>(tgt.getPackages());
+        // the channel packages are compared and aligned in the database, make it up-to-date first
+        HibernateFactory.getSession().flush();
+        Set<Long> oldTgtPackageIds = new HashSet<>(ChannelFactory.getPackageIds(tgt.getId()));
 
         // align packages
-        alignPackages(src, tgt, packageFilters);
+        alignPackages(src, tgt, packageFilters, oldTgtPackageIds);
 
         // align errata and the cache (rhnServerNeededCache)
         alignErrata(src, tgt, errataFilters, user);
@@ -992,7 +996,7 @@ public class ContentManager {
         // align the package cache
         // this must be done after aligning errata since some packages may belong to a retracted erratum and we don't
         // want them in the cache. For this we need the errata to be up-to-date in target
-        alignPackageCache(tgt, oldTgtPackages);
+        alignPackageCache(tgt, oldTgtPackageIds);
 
         // a lot was inserted into tables at this point. Make sure stats are up-to-date before continuing
         analyzeAlignTables();
@@ -1026,16 +1030,17 @@ public class ContentManager {
         ChannelFactory.analyzeServerNeededCache();
     }
 
-    private void alignPackageCache(Channel channel, Set<Package> oldChannelPackages) {
+    private void alignPackageCache(Channel channel, Set<Long> oldChannelPackageIds) {
+        HibernateFactory.getSession().flush();
+        Set<Long> newChannelPackageIds = new HashSet<>(ChannelFactory.getPackageIds(channel.getId()));
+
         // remove entries for deleted packages
-        Set<Package> removedPackages = new HashSet<>(oldChannelPackages);
-        removedPackages.removeAll(channel.getPackages());
-        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(), extractPackageIds(removedPackages));
+        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(),
+                difference(oldChannelPackageIds, newChannelPackageIds));
 
         // add cache entries for new ones
-        Set<Package> newTgtPackages = new HashSet<>(channel.getPackages());
-        newTgtPackages.removeAll(oldChannelPackages);
-        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null, extractPackageIds(newTgtPackages));
+        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null,
+                difference(newChannelPackageIds, oldChannelPackageIds));
     }
 
     // helper for extracting certain filter types
@@ -1047,12 +1052,29 @@ public class ContentManager {
                 .collect(toList());
     }
 
-    private void alignPackages(Channel srcChannel, Channel tgtChannel, Collection<PackageFilter> filters) {
-        tgtChannel.getPackages().clear();
-        LOG.debug("Filtering {} entities through {} filter(s)", srcChannel.getPackages().size(), filters.size());
-        Set<Package> newPackages = filterEntities(srcChannel.getPackages(), filters).getLeft();
-        tgtChannel.getPackages().addAll(newPackages);
-        ChannelFactory.save(tgtChannel);
+    /**
+     * Align the {@link Package}s of a target {@link Channel} to the source {@link Channel}
+     *
+     * The filters are evaluated on a projection of the source packages and the target channel is updated with the
+     * difference between its package ids and the ones kept, without loading the package entities.
+     *
+     * @param srcChannel the source {@link Channel}
+     * @param tgtChannel the target {@link Channel}
+     * @param filters the {@link PackageFilter}s
+     * @param tgtPackageIds the ids of the packages currently in the target channel
+     */
+    private void alignPackages(Channel srcChannel, Channel tgtChannel, Collection<PackageFilter> filters,
+            Set<Long> tgtPackageIds) {
+        PackageFilterEvaluator evaluator = PackageFilterEvaluator.forChannel(srcChannel);
+        LOG.debug("Filtering {} entities through {} filter(s)", evaluator.size(), filters.size());
+        Set<Long> newPackageIds = new HashSet<>(evaluator.filter(filters));
+
+        Map<String, Long> params = Map.of("cid", tgtChannel.getId());
+        ModeFactory.getWriteMode("Channel_queries", "remove_packages")
+                .executeUpdate(params, difference(tgtPackageIds, newPackageIds));
+        ModeFactory.getWriteMode("Channel_queries", "add_channel_packages")
+                .executeUpdate(params, difference(newPackageIds, tgtPackageIds));
+        HibernateFactory.getSession().refresh(tgtChannel);
     }
 
     /**
@@ -1120,8 +1142,8 @@ public class ContentManager {
         return Pair.of(allowed, denied);
     }
 
-    private static List<Long> extractPackageIds(Collection<Package> packages) {
-        return packages.stream().map(Package::getId).collect(toList());
+    private static List<Long> difference(Set<Long> ids, Set<Long> others) {
+        return ids.stream().filter(id -> !others.contains(id)).sorted().collect(toList());
     }
 
     /**
@@ -34,6 +34,7 @@ import com.redhat.rhn.manager.errata.ErrataManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -154,6 +155,23 @@ public class ErrataCacheManager extends HibernateFactory {
         return m.executeUpdate(params);
     }
 
+    /**
+     * Recomputes the records of rhnServerNeededCache for the server and
+     * package names provided, leaving the other packages alone.
+     * @param sid Server Id
+     * @param nameIds the package name ids
+     * @return number of rows inserted.
+     */
+    public static int updateNeededCacheForPackageNames(Long sid, Collection<Long> nameIds) {
+        List<Long> names = new ArrayList<>(nameIds);
+        Map<String, Object> params = new HashMap<>();
+        params.put("server_id", sid);
+        ModeFactory.getWriteMode("ErrataCache_queries", "delete_needed_cache_for_package_names")
+                .executeUpdate(params, names);
+        return ModeFactory.getWriteMode("ErrataCache_queries", "insert_needed_cache_for_package_names")
+                .executeUpdate(params, names);
+    }
+
     /**
      * Inserts record into NeededErrata cache table
      * @param sid Server Id
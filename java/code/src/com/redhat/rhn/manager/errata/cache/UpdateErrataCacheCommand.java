@@ -32,6 +32,7 @@ import com.redhat.rhn.manager.system.SystemManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,23 @@ public class UpdateErrataCacheCommand extends BaseTransactionCommand {
         log.info("Finished errata cache for server [{}]", serverId);
     }
 
+    /**
+     * Updates the errata cache for some packages of the given server, after
+     * they were installed, removed or changed. Only the needed cache entries
+     * for those package names are recomputed, instead of the whole cache.
+     *
+     * Changes to the subscribed channels must still go through a full
+     * recomputation, as queued by rhn_channel.subscribe_server().
+     * @param serverId Server id which needs to get updated.
+     * @param packageNameIds the name ids of the changed packages
+     */
+    public void updateErrataCacheForServerPackages(Long serverId, Collection<Long> packageNameIds) {
+        log.debug("Updating errata cache for server [{}] and {} package names", serverId, packageNameIds.size());
+        ErrataCacheManager.updateNeededCacheForPackageNames(serverId, packageNameIds);
+        ErrataManager.updateErrataSet(serverId);
+        SystemManager.updateSystemOverview(serverId);
+    }
+
     /**
      * Updates the errata cache for the given image.
      * @param imageId Image id which needs to get updated.
@@ -23,6 +23,7 @@ import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.errata.Errata;
 import com.redhat.rhn.domain.errata.test.ErrataFactoryTest;
 import com.redhat.rhn.domain.org.Org;
@@ -40,6 +41,9 @@ import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.domain.user.UserFactory;
 import com.redhat.rhn.frontend.dto.ErrataCacheDto;
 import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
+import com.redhat.rhn.manager.system.SystemManager;
+import com.redhat.rhn.testing.ChannelTestUtils;
+import com.redhat.rhn.testing.PackageTestUtils;
 import com.redhat.rhn.testing.RhnBaseTestCase;
 import com.redhat.rhn.testing.TestUtils;
 import com.redhat.rhn.testing.UserTestUtils;
@@ -49,7 +53,10 @@ import org.junit.jupiter.api.Test;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * ErrataFactoryTest
@@ -336,6 +343,47 @@ public class ErrataCacheManagerTest extends RhnBaseTestCase {
         }
     }
 
+    @Test
+    public void testUpdateNeededCacheForPackageNames() throws Exception {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        Server server = ServerFactoryTest.createTestServer(user);
+        Channel channel = ChannelTestUtils.createBaseChannel(user);
+        SystemManager.subscribeServerToChannel(user, server, channel);
+
+        // two packages with 3 versions each, the oldest ones are installed
+        List<Package> changed = PackageTestUtils.createSubsequentPackages(user.getOrg());
+        List<Package> unchanged = PackageTestUtils.createSubsequentPackages(user.getOrg());
+        channel.getPackages().addAll(changed);
+        channel.getPackages().addAll(unchanged);
+        PackageTestUtils.installPackageOnServer(changed.get(0), server);
+        PackageTestUtils.installPackageOnServer(unchanged.get(0), server);
+        HibernateFactory.getSession().flush();
+
+        ServerFactory.updateServerNeededCache(server.getId());
+        assertEquals(Set.of(changed.get(1).getId(), changed.get(2).getId(),
+                unchanged.get(1).getId(), unchanged.get(2).getId()), neededPackageIds(server));
+
+        // upgrade the first package and recompute its name only
+        server.getPackages().removeIf(p -> p.getName().equals(changed.get(0).getPackageName()));
+        PackageTestUtils.installPackageOnServer(changed.get(1), server);
+        HibernateFactory.getSession().flush();
+
+        int rows = ErrataCacheManager.updateNeededCacheForPackageNames(server.getId(),
+                List.of(changed.get(0).getPackageName().getId()));
+        assertEquals(1, rows);
+        Set<Long> delta = neededPackageIds(server);
+        assertEquals(Set.of(changed.get(2).getId(), unchanged.get(1).getId(), unchanged.get(2).getId()), delta);
+
+        // the incremental update matches a full recomputation
+        ServerFactory.updateServerNeededCache(server.getId());
+        assertEquals(delta, neededPackageIds(server));
+    }
+
+    private static Set<Long> neededPackageIds(Server server) {
+        DataResult<ErrataCacheDto> needed = ErrataCacheManager.packagesNeedingUpdates(server.getId());
+        return needed.stream().map(ErrataCacheDto::getPackageId).collect(Collectors.toSet());
+    }
+
     @Test
     public void testAllServerIdsForOrg() throws Exception {
         // create a lot of stuff to test this simple insert.
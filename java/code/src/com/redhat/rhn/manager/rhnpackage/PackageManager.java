@@ -79,6 +79,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 /**
  * PackageManager
@@ -1654,10 +1656,14 @@ public class PackageManager extends BaseManager {
     }
 
     /**
-     * Create all repoentries for a channel's packages if needed
+     * Create all repoentries for a channel's packages if needed.
+     *
+     * Channels sharing packages can be prepared concurrently: the entries are
+     * inserted in package id order, so that transactions racing for the same
+     * rows wait on each other's row locks instead of deadlocking.
      * @param cid the channel id
      */
-    public static synchronized void createRepoEntrys(Long cid) {
+    public static void createRepoEntrys(Long cid) {
         Map<String, Object> params = new HashMap<>();
         params.put("cid", cid);
         WriteMode writeMode = ModeFactory.getWriteMode("Package_queries",
@@ -1665,19 +1671,24 @@ public class PackageManager extends BaseManager {
         writeMode.executeUpdate(params);
     }
 
-    private static void updateRepoEntry(Long packageId, String xml, String type) {
-        if (!ConfigDefaults.get().useDBRepodata()) {
+    private static void updateRepoEntries(Map<Long, String> xmlByPackageId, String type) {
+        if (!ConfigDefaults.get().useDBRepodata() || xmlByPackageId.isEmpty()) {
             return;
         }
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("pid", packageId);
-        byte[] bytes = CompressionUtil.gzipCompress(xml);
+        // rows are updated in package id order, for the same reason as in createRepoEntrys()
+        List<Map<String, Object>> batch = new TreeMap<>(xmlByPackageId).entrySet().stream()
+                .map(e -> {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("pid", e.getKey());
+                    params.put("xml", CompressionUtil.gzipCompress(e.getValue()));
+                    return params;
+                })
+                .collect(Collectors.toList());
 
-        params.put("xml", bytes);
         WriteMode writeMode = ModeFactory.getWriteMode("Package_queries",
                 "insert_" + type + "_xml");
-        writeMode.executeUpdate(params);
+        writeMode.executeBatchUpdates(new DataResult<>(batch));
     }
 
     /**
@@ -1686,7 +1697,15 @@ public class PackageManager extends BaseManager {
      * @param primaryXml the raw xml
      */
     public static void updateRepoPrimary(Long packageId, String primaryXml) {
-        updateRepoEntry(packageId, primaryXml, "primary");
+        updateRepoPrimaries(Map.of(packageId, primaryXml));
+    }
+
+    /**
+     * Update the primary XML of several packages in one batch
+     * @param primaryXmls the raw xml by package id
+     */
+    public static void updateRepoPrimaries(Map<Long, String> primaryXmls) {
+        updateRepoEntries(primaryXmls, "primary");
     }
 
     /**
@@ -1695,7 +1714,15 @@ public class PackageManager extends BaseManager {
      * @param filelistXml the raw xml
      */
     public static void updateRepoFileList(Long packageId, String filelistXml) {
-        updateRepoEntry(packageId, filelistXml, "filelist");
+        updateRepoFileLists(Map.of(packageId, filelistXml));
+    }
+
+    /**
+     * Update the filelist XML of several packages in one batch
+     * @param filelistXmls the raw xml by package id
+     */
+    public static void updateRepoFileLists(Map<Long, String> filelistXmls) {
+        updateRepoEntries(filelistXmls, "filelist");
     }
 
     /**
@@ -1704,7 +1731,15 @@ public class PackageManager extends BaseManager {
      * @param otherXml the raw xml
      */
     public static void updateRepoOther(Long packageId, String otherXml) {
-        updateRepoEntry(packageId, otherXml, "other");
+        updateRepoOthers(Map.of(packageId, otherXml));
+    }
+
+    /**
+     * Update the other XML of several packages in one batch
+     * @param otherXmls the raw xml by package id
+     */
+    public static void updateRepoOthers(Map<Long, String> otherXmls) {
+        updateRepoEntries(otherXmls, "other");
     }
 
 
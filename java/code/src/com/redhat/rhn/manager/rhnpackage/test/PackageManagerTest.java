@@ -649,6 +649,27 @@ public class PackageManagerTest extends BaseTestCaseWithUser {
         assertEquals(prim, test);
     }
 
+    @Test
+    public void testUpdateRepoEntriesBatch() throws Exception {
+        Channel c = ChannelFactoryTest.createTestChannel(user);
+        Package p1 = PackageTest.createTestPackage(user.getOrg());
+        Package p2 = PackageTest.createTestPackage(user.getOrg());
+        c.addPackage(p1);
+        c.addPackage(p2);
+        ChannelFactory.save(c);
+
+        PackageManager.createRepoEntrys(c.getId());
+        PackageManager.updateRepoPrimaries(Map.of(p1.getId(), "<package>p1</package>",
+                p2.getId(), "<package>p2</package>"));
+        PackageManager.updateRepoOthers(Map.of(p2.getId(), "<other>p2</other>"));
+
+        PackageDto dto1 = (PackageDto) PackageManager.getRepoData(p1.getId()).get(0);
+        PackageDto dto2 = (PackageDto) PackageManager.getRepoData(p2.getId()).get(0);
+        assertEquals("<package>p1</package>", dto1.getPrimaryXml());
+        assertEquals("<package>p2</package>", dto2.getPrimaryXml());
+        assertEquals("<other>p2</other>", dto2.getOtherXml());
+    }
+
     public static PackageExtraTagsKeys createExtraTagKey(String name) {
         PackageExtraTagsKeys tag1 = new PackageExtraTagsKeys();
         tag1.setName(name);
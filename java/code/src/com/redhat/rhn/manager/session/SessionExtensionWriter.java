@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.session.WebSession;
+import com.redhat.rhn.domain.session.WebSessionFactory;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the extended lifetimes of the web sessions to the database in the
+ * background.
+ *
+ * Every authenticated request extends the lifetime of its session. The stored
+ * expiry decides when the session cleanup task deletes the row, twice the
+ * lifetime past expiry, and WebSession.isExpired() only tells apart sessions
+ * invalidated with a negative expiry, so the expiry of a session in use does
+ * not need to be exact. An extension is only queued when the stored expiry
+ * lags more than the write interval behind, and the queued extensions of all
+ * the sessions are written by a single statement once per interval.
+ */
+public class SessionExtensionWriter {
+
+    private static final Logger LOG = LogManager.getLogger(SessionExtensionWriter.class);
+
+    private final long interval;
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService writer;
+
+    /**
+     * Standard constructor.
+     * @param intervalIn the time between two writes, in seconds
+     */
+    public SessionExtensionWriter(long intervalIn) {
+        interval = intervalIn;
+    }
+
+    /**
+     * Queues the extension of a session lifetime, unless the stored expiry is
+     * less than the write interval older. Expiries are never shortened.
+     * @param session the session
+     * @param expires the new expiry, in seconds since the epoch
+     * @return true if the extension was queued
+     */
+    public boolean extend(WebSession session, long expires) {
+        if (session.getId() == null || expires - session.getExpires() < interval) {
+            return false;
+        }
+        pending.merge(session.getId(), expires, Math::max);
+        start();
+        return true;
+    }
+
+    /**
+     * Drops the queued extension of a session.
+     * @param sessionId the session id
+     */
+    public void cancel(Long sessionId) {
+        if (sessionId != null) {
+            pending.remove(sessionId);
+        }
+    }
+
+    /**
+     * @return the number of sessions with a queued extension
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the queued extensions. If writing fails, they are queued again.
+     * @return the number of sessions updated
+     */
+    public int flush() {
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long id : pending.keySet()) {
+            Long expires = pending.remove(id);
+            if (expires != null) {
+                batch.put(id, expires);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            int updated = write(batch);
+            LOG.debug("Extended the lifetime of {} web sessions", updated);
+            return updated;
+        }
+        catch (RuntimeException e) {
+            LOG.warn("Unable to extend the lifetime of {} web sessions, retrying later", batch.size(), e);
+            batch.forEach((id, expires) -> pending.merge(id, expires, Math::max));
+            return 0;
+        }
+    }
+
+    /**
+     * Stops the background writes and writes the extensions still queued.
+     */
+    public synchronized void stop() {
+        if (writer != null) {
+            writer.shutdownNow();
+            writer = null;
+        }
+        flush();
+    }
+
+    /**
+     * Writes the new expiries in a transaction of its own.
+     * @param expiresById the new expiry of each session, by session id
+     * @return the number of sessions updated
+     */
+    protected int write(Map<Long, Long> expiresById) {
+        try {
+            int updated = WebSessionFactory.updateExpires(expiresById);
+            HibernateFactory.commitTransaction();
+            return updated;
+        }
+        catch (RuntimeException e) {
+            HibernateFactory.rollbackTransaction();
+            throw e;
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private synchronized void start() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                    .namingPattern("session-extension-writer-%d")
+                    .daemon(true)
+                    .build());
+            long delay = Math.max(1, interval);
+            writer.scheduleWithFixedDelay(this::flush, delay, delay, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -96,6 +96,7 @@ public class SessionManager extends BaseManager {
      * @return number of sessions removed (typically 1 or 0).
      */
     public static int removeSession(WebSession s) {
+        ExtensionWriterHolder.WRITER.cancel(s.getId());
         return WebSessionFactory.remove(s);
     }
 
@@ -396,12 +397,32 @@ public class SessionManager extends BaseManager {
     }
 
     /**
+     * Extends the lifetime of a session. The new expiry is not written right
+     * away: the extensions of all the sessions are written together in the
+     * background, at most once per write interval.
      * @param session session which lifetime should be extended
+     * @see ConfigDefaults#getWebSessionDatabaseWriteInterval()
      */
     public static void extendSessionLifetime(WebSession session) {
-        session.setExpires(TimeUtils.currentTimeSeconds() +
-                SessionManager.lifetimeValue());
-        WebSessionFactory.save(session);
+        ExtensionWriterHolder.WRITER.extend(session,
+                TimeUtils.currentTimeSeconds() + SessionManager.lifetimeValue());
+    }
+
+    /**
+     * Writes the pending session lifetime extensions and stops writing them
+     * in the background.
+     */
+    public static void stopSessionExtensionWriter() {
+        ExtensionWriterHolder.WRITER.stop();
+    }
+
+    /*
+     * The write interval is capped to a quarter of the session lifetime, so
+     * that the stored expiry of a session in use never lags far behind.
+     */
+    private static class ExtensionWriterHolder {
+        private static final SessionExtensionWriter WRITER = new SessionExtensionWriter(
+                Math.min(ConfigDefaults.get().getWebSessionDatabaseWriteInterval(), lifetimeValue() / 4));
     }
 }
 
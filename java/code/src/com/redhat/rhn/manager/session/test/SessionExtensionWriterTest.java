@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.session.WebSession;
+import com.redhat.rhn.manager.session.SessionExtensionWriter;
+import com.redhat.rhn.testing.MockObjectTestCase;
+
+import org.jmock.Expectations;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SessionExtensionWriterTest
+ */
+public class SessionExtensionWriterTest extends MockObjectTestCase {
+
+    private static final long INTERVAL = 3600;
+
+    private List<Map<Long, Long>> writes;
+    private boolean failWrites;
+    private SessionExtensionWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writes = new ArrayList<>();
+        failWrites = false;
+        writer = new SessionExtensionWriter(INTERVAL) {
+            @Override
+            protected int write(Map<Long, Long> expiresById) {
+                if (failWrites) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                writes.add(new HashMap<>(expiresById));
+                return expiresById.size();
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        failWrites = false;
+        writer.stop();
+    }
+
+    private WebSession mockSession(Long id, long expires) {
+        WebSession session = mock(WebSession.class, "session" + id);
+        context().checking(new Expectations() { {
+            allowing(session).getId();
+            will(returnValue(id));
+            allowing(session).getExpires();
+            will(returnValue(expires));
+            never(session).setExpires(with(any(Long.class)));
+        } });
+        return session;
+    }
+
+    @Test
+    public void testExtensionWithinIntervalIsSkipped() {
+        WebSession session = mockSession(1L, 10_000L);
+
+        assertFalse(writer.extend(session, 10_000L + INTERVAL - 1));
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(0, writer.flush());
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void testExtensionsAreCoalesced() {
+        WebSession first = mockSession(1L, 10_000L);
+        WebSession second = mockSession(2L, 10_000L);
+
+        assertTrue(writer.extend(first, 20_000L));
+        assertTrue(writer.extend(first, 30_000L));
+        assertTrue(writer.extend(first, 25_000L));
+        assertTrue(writer.extend(second, 20_000L));
+        assertEquals(2, writer.getPendingCount());
+
+        assertEquals(2, writer.flush());
+        assertEquals(List.of(Map.of(1L, 30_000L, 2L, 20_000L)), writes);
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(0, writer.flush());
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void testCancel() {
+        WebSession session = mockSession(1L, 10_000L);
+
+        writer.extend(session, 20_000L);
+        writer.cancel(1L);
+
+        assertEquals(0, writer.flush());
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        WebSession session = mockSession(1L, 10_000L);
+
+        writer.extend(session, 20_000L);
+        failWrites = true;
+        assertEquals(0, writer.flush());
+        assertEquals(1, writer.getPendingCount());
+
+        failWrites = false;
+        assertEquals(1, writer.flush());
+        assertEquals(List.of(Map.of(1L, 20_000L)), writes);
+    }
+}
@@ -21,6 +21,7 @@ import com.redhat.rhn.domain.notification.NotificationMessage;
 import com.redhat.rhn.domain.notification.UserNotificationFactory;
 import com.redhat.rhn.domain.notification.types.CreateBootstrapRepoFailed;
 import com.redhat.rhn.domain.role.RoleFactory;
+import com.redhat.rhn.taskomatic.core.ActionDispatcher;
 import com.redhat.rhn.taskomatic.core.SchedulerKernel;
 import com.redhat.rhn.taskomatic.domain.TaskoBunch;
 import com.redhat.rhn.taskomatic.domain.TaskoRun;
@@ -263,6 +264,19 @@ public class TaskoXmlRpcHandler {
         return 1;
     }
 
+    /**
+     * wake up the action dispatcher to execute the actions just enqueued
+     * @return 1 if successful
+     */
+    public int dispatchQueuedActions() {
+        ActionDispatcher dispatcher = SchedulerKernel.getActionDispatcher();
+        // before startup, the dispatcher polls the queue as soon as it starts anyway
+        if (dispatcher != null) {
+            dispatcher.wakeUp();
+        }
+        return 1;
+    }
+
     /**
      * schedule a one time satellite bunch
      * @param bunchName bunch name
@@ -23,6 +23,8 @@ import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.domain.action.Action;
 import com.redhat.rhn.domain.action.ActionChain;
 import com.redhat.rhn.domain.action.ActionChainFactory;
+import com.redhat.rhn.domain.action.ActionDispatchQueueFactory;
+import com.redhat.rhn.domain.action.ActionFactory;
 import com.redhat.rhn.domain.action.channel.SubscribeChannelsAction;
 import com.redhat.rhn.domain.action.server.ServerAction;
 import com.redhat.rhn.domain.channel.Channel;
@@ -43,6 +45,7 @@ import com.suse.manager.utils.MinionServerUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.Transaction;
 
 import java.net.MalformedURLException;
 import java.time.ZonedDateTime;
@@ -56,6 +59,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
 import redstone.xmlrpc.XmlRpcClient;
 import redstone.xmlrpc.XmlRpcException;
 import redstone.xmlrpc.XmlRpcFault;
@@ -73,6 +79,9 @@ public class TaskomaticApi {
     public static final String MINION_ACTIONCHAIN_JOB_PREFIX = "minion-action-chain-executor-";
     private static final Logger LOG = LogManager.getLogger(TaskomaticApi.class);
 
+    /* The transaction which wakes the action dispatcher up when it commits */
+    private static final ThreadLocal<Transaction> DISPATCH_TRANSACTION = new ThreadLocal<>();
+
 
     private XmlRpcClient getClient() throws TaskomaticApiException {
         try {
@@ -602,15 +611,31 @@ public class TaskomaticApi {
     /**
      * Schedule Actions execution for Salt minions.
      *
+     * Actions due right away are written to the action dispatch queue by the
+     * current transaction and executed by Taskomatic as soon as it commits,
+     * only the actions scheduled in the future become Quartz jobs.
+     *
      * @param actions the list of actions to be executed
      * @param forcePackageListRefresh is a package list is requested
      * @throws TaskomaticApiException if there was an error
      */
     public void scheduleMinionActionExecutions(List<Action> actions, boolean forcePackageListRefresh)
             throws TaskomaticApiException {
+        List<Action> scheduled = actions;
+        if (ConfigDefaults.get().isMinionActionDispatchQueueEnabled()) {
+            Date now = new Date();
+            Map<Boolean, List<Action>> dispatchable = actions.stream()
+                    .collect(Collectors.partitioningBy(action -> isDispatchable(action, now)));
+            enqueueMinionActions(dispatchable.get(true), forcePackageListRefresh);
+            scheduled = dispatchable.get(false);
+        }
+        if (scheduled.isEmpty()) {
+            return;
+        }
+
         List<Map<String, String>> paramsList = new ArrayList<>();
         List<String> ids = new ArrayList<>();
-        for (Action action: actions) {
+        for (Action action: scheduled) {
             Map<String, String> params = new HashMap<>();
             String id = Long.toString(action.getId());
             params.put("action_id", id);
@@ -624,6 +649,48 @@ public class TaskomaticApi {
         LOG.debug("Actions scheduled: {}.", ids);
     }
 
+    private static boolean isDispatchable(Action action, Date now) {
+        // channel subscriptions need the scheduling user, which only Quartz jobs carry
+        return !action.getEarliestAction().after(now) &&
+                !ActionFactory.TYPE_SUBSCRIBE_CHANNELS.equals(action.getActionType());
+    }
+
+    private void enqueueMinionActions(List<Action> actions, boolean forcePackageListRefresh) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        List<Long> ids = actions.stream().map(Action::getId).collect(Collectors.toList());
+        ActionDispatchQueueFactory.enqueue(ids, forcePackageListRefresh);
+        LOG.debug("Actions queued for dispatch: {}.", ids);
+
+        // wake the dispatcher up once per transaction, after the actions are visible to it
+        Transaction transaction = HibernateFactory.getSession().getTransaction();
+        if (DISPATCH_TRANSACTION.get() == transaction) {
+            return;
+        }
+        DISPATCH_TRANSACTION.set(transaction);
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                DISPATCH_TRANSACTION.remove();
+                if (status == Status.STATUS_COMMITTED) {
+                    try {
+                        invoke("tasko.dispatchQueuedActions");
+                    }
+                    catch (TaskomaticApiException e) {
+                        LOG.warn("Unable to notify Taskomatic, queued actions will be executed at its next poll",
+                                e);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Schedule an Action Chain execution for Salt minions.
      *
@@ -764,6 +831,10 @@ public class TaskomaticApi {
             }
         });
 
+        ActionDispatchQueueFactory.delete(actionsToBeUnscheduled.stream()
+                .map(Action::getId)
+                .collect(Collectors.toList()));
+
         if (!jobLabels.isEmpty()) {
             LOG.debug("Unscheduling jobs: {}", jobLabels);
             invoke("tasko.unscheduleSatBunches", jobLabels);
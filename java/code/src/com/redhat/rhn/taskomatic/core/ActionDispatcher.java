@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.core;
+
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.action.ActionDispatchQueueFactory;
+import com.redhat.rhn.domain.action.ActionDispatchQueueFactory.QueuedAction;
+import com.redhat.rhn.taskomatic.task.MinionActionExecutor;
+
+import com.suse.manager.metrics.PrometheusExporter;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.prometheus.client.Counter;
+
+/**
+ * Executes the minion actions of the action dispatch queue.
+ *
+ * Actions due right away are enqueued by the transaction scheduling them,
+ * which wakes the dispatcher up once it has committed. Up to
+ * <code>taskomatic.minion_action_dispatcher.parallel_threads</code> workers
+ * then claim and execute the queued actions, one per transaction, until the
+ * queue is empty. The queue is also polled every
+ * <code>taskomatic.minion_action_dispatcher.poll_interval</code> seconds, so
+ * that actions enqueued while Taskomatic was not reachable are not left
+ * behind.
+ */
+public class ActionDispatcher {
+
+    private static final Logger LOG = LogManager.getLogger(ActionDispatcher.class);
+
+    private static final Counter DISPATCHED_ACTIONS = Counter.build()
+            .name("taskomatic_dispatched_actions_total")
+            .help("Minion actions executed from the action dispatch queue")
+            .labelNames("result")
+            .create();
+
+    static {
+        PrometheusExporter.INSTANCE.registerCollectors(DISPATCHED_ACTIONS);
+    }
+
+    private final int threads;
+    private final long pollInterval;
+    private final MinionActionExecutor executor;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService poller;
+    private final AtomicInteger running = new AtomicInteger();
+    /* Incremented by each wake up, so that exiting workers notice the ones they raced with */
+    private final AtomicLong wakeUps = new AtomicLong();
+
+    /**
+     * Standard constructor, reading the configuration.
+     */
+    public ActionDispatcher() {
+        this(Config.get().getInt("taskomatic.minion_action_dispatcher.parallel_threads", 20),
+                Config.get().getInt("taskomatic.minion_action_dispatcher.poll_interval", 10),
+                new MinionActionExecutor());
+    }
+
+    /**
+     * Constructor meant to be used only by unit tests.
+     * @param threadsIn the maximum number of actions executed at the same time
+     * @param pollIntervalIn the time between two polls of the queue, in seconds
+     * @param executorIn the executor running the actions
+     */
+    public ActionDispatcher(int threadsIn, long pollIntervalIn, MinionActionExecutor executorIn) {
+        threads = Math.max(1, threadsIn);
+        pollInterval = pollIntervalIn;
+        executor = executorIn;
+        workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder()
+                        .namingPattern("action-dispatcher-%d")
+                        .daemon(true)
+                        .build());
+        workers.allowCoreThreadTimeOut(true);
+        poller = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("action-dispatcher-poller-%d")
+                .daemon(true)
+                .build());
+    }
+
+    /**
+     * Starts polling the queue, executing the actions already in there.
+     */
+    public void start() {
+        LOG.info("Starting the action dispatcher with {} threads", threads);
+        poller.scheduleWithFixedDelay(this::wakeUp, 0, pollInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops polling and waits for the actions being executed to finish.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the workers have finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        poller.shutdownNow();
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Starts workers to execute the queued actions, unless all of them are
+     * already running. Returns immediately.
+     */
+    public void wakeUp() {
+        wakeUps.incrementAndGet();
+        spawnWorkers();
+    }
+
+    /**
+     * @return the number of workers currently executing actions
+     */
+    public int getRunningWorkers() {
+        return running.get();
+    }
+
+    private void spawnWorkers() {
+        if (workers.isShutdown()) {
+            return;
+        }
+        int current = running.get();
+        while (current < threads) {
+            if (running.compareAndSet(current, current + 1)) {
+                workers.execute(this::drain);
+            }
+            current = running.get();
+        }
+    }
+
+    private void drain() {
+        long seen = wakeUps.get();
+        try {
+            while (!workers.isShutdown() && dispatchNext()) {
+                seen = wakeUps.get();
+            }
+        }
+        finally {
+            running.decrementAndGet();
+        }
+        // a wake up arriving while all workers were about to quit found no free slot
+        if (wakeUps.get() != seen) {
+            spawnWorkers();
+        }
+    }
+
+    /**
+     * Claims and executes one queued action in its own transaction. The
+     * claimed row stays locked until the action has been executed, so that
+     * the action is claimed again if Taskomatic stops halfway.
+     * @return true if an action was claimed
+     */
+    protected boolean dispatchNext() {
+        QueuedAction queued = null;
+        try {
+            List<QueuedAction> claimed = ActionDispatchQueueFactory.pop(1);
+            if (claimed.isEmpty()) {
+                HibernateFactory.commitTransaction();
+                return false;
+            }
+            queued = claimed.get(0);
+            executor.executeQueuedAction(queued.getActionId(), queued.isForcePackageListRefresh());
+            HibernateFactory.commitTransaction();
+            DISPATCHED_ACTIONS.labels("success").inc();
+            return true;
+        }
+        catch (RuntimeException e) {
+            HibernateFactory.rollbackTransaction();
+            if (queued == null) {
+                LOG.error("Unable to read the action dispatch queue", e);
+                return false;
+            }
+            LOG.error("Error executing queued action {}", queued.getActionId(), e);
+            DISPATCHED_ACTIONS.labels("failure").inc();
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+        // the rollback put the failed action back in the queue, but like
+        // Quartz jobs, failed actions are not retried
+        discard(queued.getActionId());
+        return true;
+    }
+
+    private void discard(long actionId) {
+        try {
+            ActionDispatchQueueFactory.delete(List.of(actionId));
+            HibernateFactory.commitTransaction();
+        }
+        catch (RuntimeException e) {
+            LOG.error("Unable to remove action {} from the action dispatch queue", actionId, e);
+            HibernateFactory.rollbackTransaction();
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+}
@@ -47,6 +47,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Taskomatic Kernel.
@@ -60,6 +61,7 @@ public class SchedulerKernel {
     private static SchedulerFactory factory = null;
     private static Scheduler scheduler = null;
     private static TaskoXmlRpcServer xmlrpcServer = null;
+    private static ActionDispatcher actionDispatcher = null;
     private ChainedListener chainedTriggerListener = null;
     private String dataSourceConfigPath = "org.quartz.jobStore.dataSource";
     private String dataSourcePrefix = "org.quartz.dataSource";
@@ -121,6 +123,14 @@ public class SchedulerKernel {
         return SchedulerKernel.scheduler;
     }
 
+    /**
+     * returns the dispatcher of the queued minion actions
+     * @return action dispatcher, null until Taskomatic is started
+     */
+    public static ActionDispatcher getActionDispatcher() {
+        return SchedulerKernel.actionDispatcher;
+    }
+
     /**
      * Starts Taskomatic
      * This method does not return until the this.scheduler is shutdown
@@ -138,6 +148,8 @@ public class SchedulerKernel {
             TaskoQuartzHelper.cleanInvalidTriggers();
             SchedulerKernel.scheduler.start();
             initializeAllSatSchedules();
+            SchedulerKernel.actionDispatcher = new ActionDispatcher();
+            SchedulerKernel.actionDispatcher.start();
             synchronized (this.shutdownLock) {
                 try {
                     this.shutdownLock.wait();
@@ -174,6 +186,14 @@ public class SchedulerKernel {
             log.warn("Failed to cleanly stop the scheduler", e);
         }
         finally {
+            try {
+                if (actionDispatcher != null && !actionDispatcher.shutdown(30, TimeUnit.SECONDS)) {
+                    log.warn("Queued minion actions still running at shutdown");
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             MessageQueue.stopMessaging();
             HibernateFactory.closeSessionFactory();
             // Wake up thread waiting in startup() so it can exit
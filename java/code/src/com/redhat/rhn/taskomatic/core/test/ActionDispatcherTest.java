@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.core.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.taskomatic.core.ActionDispatcher;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ActionDispatcherTest {
+
+    /**
+     * Dispatcher executing the actions of an in-memory counter instead of the database queue.
+     */
+    private static class CountingDispatcher extends ActionDispatcher {
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger dispatched = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        CountingDispatcher(int threads) {
+            super(threads, 3600, null);
+        }
+
+        @Override
+        protected boolean dispatchNext() {
+            if (queued.getAndUpdate(n -> n > 0 ? n - 1 : 0) == 0) {
+                return false;
+            }
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            Thread.yield();
+            concurrent.decrementAndGet();
+            dispatched.incrementAndGet();
+            return true;
+        }
+    }
+
+    private CountingDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testWakeUpDispatchesAllActions() throws Exception {
+        dispatcher = new CountingDispatcher(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread producer = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    dispatcher.queued.incrementAndGet();
+                    dispatcher.wakeUp();
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dispatcher.dispatched.get() < 8000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(8000, dispatcher.dispatched.get());
+        assertTrue(dispatcher.maxConcurrent.get() <= 4);
+    }
+
+    @Test
+    public void testWorkersStopWhenQueueIsEmpty() throws Exception {
+        dispatcher = new CountingDispatcher(2);
+        dispatcher.queued.set(10);
+        dispatcher.wakeUp();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dispatcher.getRunningWorkers() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.getRunningWorkers());
+        assertEquals(10, dispatcher.dispatched.get());
+    }
+}
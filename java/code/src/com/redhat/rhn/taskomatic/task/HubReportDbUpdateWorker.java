@@ -37,10 +37,12 @@ import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class HubReportDbUpdateWorker implements QueueWorker {
@@ -107,35 +109,30 @@ public class HubReportDbUpdateWorker implements QueueWorker {
 
     private void updateRemoteData(Session remoteSession, Session localSession, String tableName, long mgmId) {
         TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
-            SelectMode query = dbHelper.generateQuery(remoteSession, tableName, log);
+            SelectMode query = dbHelper.generateQuery(remoteSession, tableName);
 
             // Remove all the existing data
             log.debug("Deleting existing data in table {}", tableName);
             WriteMode delete = dbHelper.generateDelete(localSession, tableName);
             delete.executeUpdate(Map.of("mgm_id", mgmId));
 
-            // Extract the first batch
-            DataResult<Map<String, Object>> firstBatch = query.execute(Map.of("offset", 0, "limit", batchSize));
-            firstBatch.forEach(e -> e.remove("mgm_id"));
-
-            if (!firstBatch.isEmpty()) {
-                // Generate the insert using the column name retrieved from the select
-                WriteMode insert = dbHelper.generateInsert(localSession, tableName, mgmId, firstBatch.get(0).keySet());
-                insert.executeBatchUpdates(firstBatch);
-                log.debug("Extracted {} rows for table {}", firstBatch.size(), tableName);
-
-                // Iterate further if we can have additional rows
-                if (firstBatch.size() == batchSize) {
-                    dbHelper.<Map<String, Object>>batchStream(query, batchSize, batchSize)
-                            .forEach(batch -> {
-                                batch.forEach(e -> e.remove("mgm_id"));
-                                insert.executeBatchUpdates(batch);
-                                log.debug("Extracted {} rows more for table {}", firstBatch.size(), tableName);
-                            });
+            // Stream the remote rows through a cursor, one batch at a time
+            try (Stream<DataResult<Map<String, Object>>> batches = dbHelper.batchStream(query, batchSize)) {
+                WriteMode insert = null;
+                Iterator<DataResult<Map<String, Object>>> it = batches.iterator();
+                while (it.hasNext()) {
+                    DataResult<Map<String, Object>> batch = it.next();
+                    batch.forEach(e -> e.remove("mgm_id"));
+                    if (insert == null) {
+                        // Generate the insert using the column name retrieved from the select
+                        insert = dbHelper.generateInsert(localSession, tableName, mgmId, batch.get(0).keySet());
+                    }
+                    insert.executeBatchUpdates(batch);
+                    log.debug("Extracted {} rows for table {}", batch.size(), tableName);
+                }
+                if (insert == null) {
+                    log.debug("No data extracted for table {}", tableName);
                 }
-            }
-            else {
-                log.debug("No data extracted for table {}", tableName);
             }
         });
     }
@@ -161,6 +158,8 @@ public class HubReportDbUpdateWorker implements QueueWorker {
                 existingTables.forEach(table -> {
                     updateRemoteData(remoteDB.getSession(), localRh.getSession(), table, mgrServerInfo.getId());
                 });
+                dbHelper.generateSyncStateUpdate(localRh.getSession())
+                        .executeUpdate(Map.of("mgm_id", mgrServerInfo.getId()));
                 dbHelper.analyzeReportDb(localRh.getSession());
                 Server mgrServer = ServerFactory.lookupById(mgrServerInfo.getId());
                 mgrServer.getMgrServerInfo().setReportDbLastSynced(new Date());
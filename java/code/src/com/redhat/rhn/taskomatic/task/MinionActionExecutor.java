@@ -92,8 +92,6 @@ public class MinionActionExecutor extends RhnJavaJob {
             log.debug("Start minion action executor for action {}", actionId);
         }
 
-        // Measure time to calculate the total duration
-        long start = System.currentTimeMillis();
         boolean forcePackageListRefresh = false;
         User user = Optional.ofNullable(context.getJobDetail().getJobDataMap().get("user_id"))
                 .map(id -> Long.parseLong(id.toString()))
@@ -136,6 +134,29 @@ public class MinionActionExecutor extends RhnJavaJob {
             }
         }
 
+        execute(actionId, action, user, forcePackageListRefresh, isStagingJob, stagingJobMinionServerId);
+    }
+
+    /**
+     * Executes an action claimed from the action dispatch queue. Actions are
+     * only enqueued by the transaction scheduling them, and only claimed once
+     * that transaction has committed, so unlike Quartz jobs these never need
+     * to wait for the action to become visible.
+     * @param actionId the action id
+     * @param forcePackageListRefresh true to refresh the package list after the action
+     */
+    public void executeQueuedAction(long actionId, boolean forcePackageListRefresh) {
+        if (log.isDebugEnabled()) {
+            log.debug("Start minion action executor for queued action {}", actionId);
+        }
+        execute(actionId, ActionFactory.lookupById(actionId), null, forcePackageListRefresh, false, null);
+    }
+
+    private void execute(long actionId, Action action, User user, boolean forcePackageListRefresh,
+            boolean isStagingJob, Long stagingJobMinionServerId) {
+        // Measure time to calculate the total duration
+        long start = System.currentTimeMillis();
+
         if (action == null) {
             log.error("Action not found: {}", actionId);
             return;
@@ -14,6 +14,7 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
+import com.redhat.rhn.common.db.CopyBuffer;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.GeneratedSelectMode;
 import com.redhat.rhn.common.db.datasource.GeneratedWriteMode;
@@ -21,9 +22,10 @@ import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 
-import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
+import org.postgresql.PGConnection;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -62,45 +64,15 @@ public class ReportDBHelper {
     }
 
     /**
-     * Returns the result of a query in a stream of batches.
+     * Returns the result of a query in a stream of batches, read from a server-side cursor.
+     * The stream must be closed after use.
      * @param query select query
      * @param batchSize max size of a batch
-     * @param initialOffset initial offset
      * @param <T> type of the query result
      * @return stream of batched results
      */
-    @SuppressWarnings("unchecked")
-    public <T> Stream<DataResult<T>> batchStream(SelectMode query, int batchSize, int initialOffset) {
-        return Stream.iterate(initialOffset, i -> i + batchSize)
-                .map(offset -> (DataResult<T>) query.execute(Map.of("offset", offset, "limit", batchSize)))
-                .takeWhile(batch -> !batch.isEmpty());
-    }
-
-    private String getOrderColumns(Session session, String table, Logger log) {
-        String orderSQL =
-                "SELECT string_agg(a.attname, ', ') AS order " +
-                "  FROM pg_constraint AS c " +
-                "    CROSS JOIN LATERAL UNNEST(c.conkey) AS cols(colnum) " +
-                "    INNER JOIN pg_attribute AS a ON a.attrelid = c.conrelid AND cols.colnum = a.attnum " +
-                " WHERE c.contype = 'p' " +
-                "   AND c.conrelid = '" + table + "'::REGCLASS " +
-                "UNION " +
-                "SELECT string_agg(a.attname, ', ') AS order " +
-                "  FROM pg_index ix " +
-                "  JOIN pg_class t on t.oid = ix.indrelid " +
-                "  JOIN pg_class i on i.oid = ix.indexrelid " +
-                "  JOIN pg_attribute a on a.attrelid = t.oid and a.attnum = ANY(ix.indkey) " +
-                " WHERE t.relkind = 'r' " +
-                "   AND t.relname = '" + table.toLowerCase() + "' " +
-                "   AND i.relname = '" + table.toLowerCase() + "_order_idx'";
-
-        GeneratedSelectMode orderQuery = new GeneratedSelectMode("orderquery." + table, session, orderSQL , List.of());
-
-        DataResult<Map<String, String>> order = orderQuery.execute();
-        String orderColumns = order.stream().findFirst().map(o -> o.getOrDefault("order", "ctid")).orElse("ctid");
-
-        log.debug("Order Columns of {} by: {}", table, orderColumns);
-        return orderColumns;
+    public <T> Stream<DataResult<T>> batchStream(SelectMode query, int batchSize) {
+        return query.streamChunks(Map.of(), batchSize);
     }
 
     /**
@@ -120,15 +92,11 @@ public class ReportDBHelper {
      * Generated a query for all local entries of a report db table
      * @param session session the query should use
      * @param table table name
-     * @param log the logger
      * @return select mode query
      */
-    public SelectMode generateQuery(Session session, String table, Logger log) {
-        String orderColumns = getOrderColumns(session, table, log);
-
-        final String sqlStatement = "SELECT * FROM " + table +
-                " WHERE mgm_id = " + LOCAL_MGM_ID +  " ORDER BY " + orderColumns + " OFFSET :offset LIMIT :limit";
-        return new GeneratedSelectMode("select." + table, session, sqlStatement, List.of("offset", "limit"));
+    public SelectMode generateQuery(Session session, String table) {
+        final String sqlStatement = "SELECT * FROM " + table + " WHERE mgm_id = " + LOCAL_MGM_ID;
+        return new GeneratedSelectMode("select." + table, session, sqlStatement, List.of());
     }
 
     /**
@@ -188,6 +156,251 @@ public class ReportDBHelper {
         return new GeneratedWriteMode("insert." + table, session, sqlStatement, params);
     }
 
+    /**
+     * Returns the primary key columns of a report db table, excluding mgm_id
+     * @param session session the query should use
+     * @param table table name
+     * @return the primary key column names, in key order
+     */
+    public List<String> getPrimaryKeyColumns(Session session, String table) {
+        final String sqlStatement =
+                "  SELECT a.attname AS name " +
+                "    FROM pg_index i " +
+                "         INNER JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = ANY(i.indkey) " +
+                "   WHERE i.indrelid = to_regclass(:table) " +
+                "     AND i.indisprimary " +
+                "ORDER BY array_position(i.indkey::int2[], a.attnum)";
+        SelectMode query = new GeneratedSelectMode("pk." + table, session, sqlStatement, List.of("table"));
+        DataResult<Map<String, Object>> result = query.execute(Map.of("table", table));
+        return result.stream()
+                .map(row -> (String) row.get("name"))
+                .filter(column -> !column.equals("mgm_id"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Generates a query for the local entries of a report db table belonging to one system
+     * @param session session the query should use
+     * @param table table name
+     * @return select mode query taking system_id as parameter
+     */
+    public SelectMode generateQueryBySystem(Session session, String table) {
+        final String sqlStatement = "SELECT * FROM " + table + " WHERE mgm_id = " + LOCAL_MGM_ID +
+                " AND system_id = :system_id";
+        return new GeneratedSelectMode("select.bysystem." + table, session, sqlStatement, List.of("system_id"));
+    }
+
+    /**
+     * Generates a query for the ids of the systems having local entries in a report db table
+     * @param session session the query should use
+     * @param table table name
+     * @return select mode query returning the ids as system_id
+     */
+    public SelectMode generateSystemIdsQuery(Session session, String table) {
+        final String sqlStatement = "SELECT DISTINCT system_id FROM " + table + " WHERE mgm_id = " + LOCAL_MGM_ID;
+        return new GeneratedSelectMode("select.systems." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a delete statement for the entries of one system in a report db table
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query taking mgm_id and system_id as parameters
+     */
+    public WriteMode generateDeleteBySystem(Session session, String table) {
+        final String sqlStatement = "DELETE FROM " + table + " WHERE mgm_id = :mgm_id AND system_id = :system_id";
+        return new GeneratedWriteMode("delete.bysystem." + table, session, sqlStatement,
+                List.of("mgm_id", "system_id"));
+    }
+
+    /**
+     * Generates an upsert statement for a report db table: new rows are inserted and existing rows are
+     * updated only if any of their values changed, setting synced_date to current_timestamp in both cases.
+     * The time of the synchronization itself is recorded by {@link #generateSyncStateUpdate(Session)}.
+     * @param session session the query should use
+     * @param table table name
+     * @param mgmId mgmId to insert
+     * @param params table column names (excluding mgm_id)
+     * @param keyColumns primary key column names (excluding mgm_id)
+     * @return write mode query
+     */
+    public WriteMode generateUpsertWithDate(Session session, String table, long mgmId, Set<String> params,
+                                            List<String> keyColumns) {
+        List<String> valueColumns = params.stream()
+                .filter(p -> !keyColumns.contains(p))
+                .collect(Collectors.toList());
+
+        final String conflictAction;
+        if (valueColumns.isEmpty()) {
+            conflictAction = "DO NOTHING";
+        }
+        else {
+            conflictAction = String.format(
+                    "DO UPDATE SET synced_date = current_timestamp, %s " +
+                    "        WHERE (%s) IS DISTINCT FROM (%s)",
+                    valueColumns.stream().map(c -> c + " = EXCLUDED." + c).collect(Collectors.joining(",")),
+                    valueColumns.stream().map(c -> "target." + c).collect(Collectors.joining(",")),
+                    valueColumns.stream().map(c -> "EXCLUDED." + c).collect(Collectors.joining(","))
+            );
+        }
+
+        final String sqlStatement = String.format(
+                "INSERT INTO %s AS target (mgm_id, synced_date, %s) " +
+                "     VALUES (%s, current_timestamp, %s) " +
+                "ON CONFLICT (mgm_id, %s) %s",
+                table,
+                String.join(",", params),
+                mgmId,
+                params.stream().map(p -> ":" + p).collect(Collectors.joining(",")),
+                String.join(",", keyColumns),
+                conflictAction
+        );
+
+        return new GeneratedWriteMode("upsert." + table, session, sqlStatement, params);
+    }
+
+    /**
+     * Generates a statement recording current_timestamp, the start of the synchronization transaction, as the
+     * time the data of a server, identified by its mgm_id, was last synchronized
+     * @param session session the query should use
+     * @return write mode query taking mgm_id as parameter
+     */
+    public WriteMode generateSyncStateUpdate(Session session) {
+        final String sqlStatement = "INSERT INTO SyncState (mgm_id, last_sync_date) " +
+                "VALUES (:mgm_id, current_timestamp) " +
+                "ON CONFLICT (mgm_id) DO UPDATE SET last_sync_date = EXCLUDED.last_sync_date";
+        return new GeneratedWriteMode("update.SyncState", session, sqlStatement, List.of("mgm_id"));
+    }
+
+    /**
+     * Generates a statement creating the temporary table used to track the primary keys synchronized into a
+     * report db table during the current transaction
+     * @param session session the query should use
+     * @param table table name
+     * @param keyColumns primary key column names (excluding mgm_id)
+     * @return write mode query
+     */
+    public WriteMode generateCreateSyncedKeys(Session session, String table, List<String> keyColumns) {
+        final String sqlStatement = String.format(
+                "CREATE TEMPORARY TABLE IF NOT EXISTS %s_synced ON COMMIT DROP AS SELECT %s FROM %s WITH NO DATA",
+                table,
+                String.join(",", keyColumns),
+                table
+        );
+        return new GeneratedWriteMode("create.synced." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates an insert statement tracking a primary key synchronized into a report db table
+     * @param session session the query should use
+     * @param table table name
+     * @param keyColumns primary key column names (excluding mgm_id)
+     * @return write mode query
+     */
+    public WriteMode generateInsertSyncedKeys(Session session, String table, List<String> keyColumns) {
+        final String sqlStatement = String.format(
+                "INSERT INTO %s_synced (%s) VALUES (%s)",
+                table,
+                String.join(",", keyColumns),
+                keyColumns.stream().map(k -> ":" + k).collect(Collectors.joining(","))
+        );
+        return new GeneratedWriteMode("insert.synced." + table, session, sqlStatement, keyColumns);
+    }
+
+    /**
+     * Generates a delete statement removing the entries of a report db table whose primary key was not
+     * synchronized during the current transaction
+     * @param session session the query should use
+     * @param table table name
+     * @param keyColumns primary key column names (excluding mgm_id)
+     * @return write mode query taking mgm_id as parameter
+     */
+    public WriteMode generateDeleteNotSynced(Session session, String table, List<String> keyColumns) {
+        final String sqlStatement = String.format(
+                "DELETE FROM %s AS target " +
+                "      WHERE mgm_id = :mgm_id " +
+                "        AND NOT EXISTS (SELECT 1 FROM %s_synced synced WHERE (%s) = (%s))",
+                table,
+                table,
+                keyColumns.stream().map(k -> "synced." + k).collect(Collectors.joining(",")),
+                keyColumns.stream().map(k -> "target." + k).collect(Collectors.joining(","))
+        );
+        return new GeneratedWriteMode("delete.notsynced." + table, session, sqlStatement, List.of("mgm_id"));
+    }
+
+    /**
+     * Generates a statement dropping a report db table, if it exists
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query
+     */
+    public WriteMode generateDropTable(Session session, String table) {
+        final String sqlStatement = "DROP TABLE IF EXISTS " + table;
+        return new GeneratedWriteMode("drop." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a statement creating an unlogged staging table with the same columns as a report db table
+     * @param session session the query should use
+     * @param table table name
+     * @param staging staging table name
+     * @return write mode query
+     */
+    public WriteMode generateCreateStaging(Session session, String table, String staging) {
+        final String sqlStatement = String.format("CREATE UNLOGGED TABLE %s (LIKE %s INCLUDING DEFAULTS)",
+                staging, table);
+        return new GeneratedWriteMode("create.staging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a statement copying all the rows of a staging table into a report db table
+     * @param session session the query should use
+     * @param table table name
+     * @param staging staging table name
+     * @return write mode query
+     */
+    public WriteMode generateInsertFromStaging(Session session, String table, String staging) {
+        final String sqlStatement = String.format("INSERT INTO %s SELECT * FROM %s ON CONFLICT DO NOTHING",
+                table, staging);
+        return new GeneratedWriteMode("insert.staging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Checks if the connection of a session can bulk load data with {@link #copyIn}
+     * @param session the session
+     * @return true if the session is connected through the PostgreSQL JDBC driver
+     */
+    public boolean supportsCopy(Session session) {
+        return session.doReturningWork(connection -> connection.isWrapperFor(PGConnection.class));
+    }
+
+    /**
+     * Bulk loads rows into a report db table with COPY FROM STDIN. The synced_date column gets its default.
+     * @param session session the statement should use
+     * @param table table name
+     * @param mgmId mgmId to insert
+     * @param params table column names (excluding mgm_id)
+     * @param rows the rows to load, by column name
+     * @return the number of rows loaded
+     */
+    public long copyIn(Session session, String table, long mgmId, Set<String> params,
+                       List<Map<String, Object>> rows) {
+        List<String> columns = new ArrayList<>(params.size() + 1);
+        columns.add("mgm_id");
+        columns.addAll(params);
+        CopyBuffer buffer = new CopyBuffer(table, columns);
+        for (Map<String, Object> row : rows) {
+            Object[] values = new Object[columns.size()];
+            values[0] = mgmId;
+            int i = 1;
+            for (String param : params) {
+                values[i++] = row.get(param);
+            }
+            buffer.addRow(values);
+        }
+        return buffer.copyIn(session);
+    }
+
     /**
      * Analyzes the report database tables after massive inserts
      * @param session session the query should use
@@ -15,8 +15,11 @@
 package com.redhat.rhn.taskomatic.task;
 
 import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BATCH_SIZE;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_FULL_SYNC_INTERVAL;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_LOAD_WORKERS;
 import static com.redhat.rhn.taskomatic.task.ReportDBHelper.LOCAL_MGM_ID;
 
+import com.redhat.rhn.common.RhnRuntimeException;
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
@@ -24,18 +27,46 @@ import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.ReportDbHibernateFactory;
 import com.redhat.rhn.common.util.TimeUtils;
 
+import com.suse.manager.metrics.PrometheusExporter;
+
 import org.hibernate.Session;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * Refreshes the local data of the reporting database.
+ *
+ * A full refresh loads the data of every table into a staging table, concurrently and with COPY when the
+ * driver supports it, then replaces the local rows of all the tables in a single transaction, so that readers
+ * see either the old or the new data. In between full refreshes the tables are synchronized
+ * incrementally: rows are upserted only when their values changed and the rows no longer existing are
+ * deleted, so that unchanged data is never rewritten. The first run after a restart always does a full
+ * refresh, as does any run once the configured full sync interval has elapsed. The time of every successful
+ * run is recorded once in the SyncState table, the synced_date of a row is the time it last changed.
+ */
 public class ReportDbUpdateTask extends RhnJavaJob {
 
     private static final String GENERAL_REPORT_QUERIES = "GeneralReport_queries";
@@ -67,15 +98,77 @@ public class ReportDbUpdateTask extends RhnJavaJob {
     public static final String REPORT_ID = "report_id";
     public static final String RESULT_TYPE = "result_type";
 
+    private static final List<ReportTable> TABLES = List.of(
+        new ReportTable(GENERAL_REPORT_QUERIES, "SystemGroup", Map.of(SYSTEM_GROUP_ID, 0)),
+        new ReportTable(GENERAL_REPORT_QUERIES, "SystemGroupPermission", Map.of(SYSTEM_GROUP_ID, 0, ACCOUNT_ID, 0)),
+        new ReportTable(GENERAL_REPORT_QUERIES, "Account", Map.of(ACCOUNT_ID, 0)),
+        new ReportTable(GENERAL_REPORT_QUERIES, "AccountGroup", Map.of(ACCOUNT_ID, 0, ACCOUNT_GROUP_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "System", Map.of(SYSTEM_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemHistory", Map.of(SYSTEM_ID, 0, HISTORY_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemAction", Map.of(SYSTEM_ID, 0, ACTION_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemChannel", Map.of(SYSTEM_ID, 0, CHANNEL_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemConfigChannel", Map.of(SYSTEM_ID, 0, CONFIG_CHANNEL_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemVirtualData", Map.of(INSTANCE_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetInterface", Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetAddressV4",
+            Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0, ADDRESS, "")),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetAddressV6",
+            Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0, ADDRESS, "")),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemOutdated", Map.of(SYSTEM_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemGroupMember", Map.of(SYSTEM_ID, 0, SYSTEM_GROUP_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemEntitlement", Map.of(SYSTEM_ID, 0, SYSTEM_GROUP_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemErrata", Map.of(SYSTEM_ID, 0, ERRATA_ID, 0)),
+        ReportTable.byId(SYSTEM_REPORT_QUERIES, "SystemPackageInstalled", Map.of(NAME, "")),
+        ReportTable.byId(SYSTEM_REPORT_QUERIES, "SystemPackageUpdate", Map.of(PACKAGE_ID, 0)),
+        new ReportTable(SYSTEM_REPORT_QUERIES, "SystemCustomInfo", Map.of(ORGANIZATION, "", SYSTEM_ID, 0, KEY, "")),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "Channel", Map.of(CHANNEL_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelErrata", Map.of(CHANNEL_ID, 0, ERRATA_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelPackage", Map.of(CHANNEL_ID, 0, PACKAGE_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelRepository", Map.of(CHANNEL_ID, 0, REPOSITORY_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "Errata", Map.of(ERRATA_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "Package", Map.of(PACKAGE_ID, 0)),
+        new ReportTable(CHANNEL_REPORT_QUERIES, "Repository", Map.of(REPOSITORY_ID, 0)),
+        new ReportTable(SCAP_REPORT_QUERIES, "XccdScan", Map.of(SCAN_ID, 0)),
+        new ReportTable(SCAP_REPORT_QUERIES, "XccdScanResult", Map.of(SCAN_ID, 0, RULE_ID, 0, IDENT_ID, 0)),
+        new ReportTable(COCO_ATTESTATION_REPORT_QUERIES, "CoCoAttestation", Map.of(REPORT_ID, 0)),
+        new ReportTable(COCO_ATTESTATION_REPORT_QUERIES, "CoCoAttestationResult", Map.of(REPORT_ID, 0, RESULT_TYPE, 0))
+    );
+
+    private static final String STAGING_SUFFIX = "_staging";
+
+    private static final Counter ROWS_LOADED = Counter.build()
+            .name("reportdb_loaded_rows_total")
+            .help("Rows loaded into the reporting database tables by full refreshes")
+            .labelNames("table")
+            .create();
+    private static final Gauge LOAD_RATE = Gauge.build()
+            .name("reportdb_load_rows_per_second")
+            .help("Rows loaded per second by the last full refresh of a reporting database table")
+            .labelNames("table")
+            .create();
+
+    static {
+        PrometheusExporter.INSTANCE.registerCollectors(ROWS_LOADED, LOAD_RATE);
+    }
+
+    /* Start time of the last successful full refresh, null until the first one */
+    private static volatile Instant lastFullSync;
+
     private final int batchSize;
 
+    private final Duration fullSyncInterval;
+
     private final ReportDBHelper dbHelper;
 
+    private final int loadWorkers;
+
     /**
      * Default constructor
      */
     public ReportDbUpdateTask() {
-        this(ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000));
+        this(ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000),
+                Duration.ofHours(Config.get().getInt(REPORT_DB_FULL_SYNC_INTERVAL, 24)),
+                Config.get().getInt(REPORT_DB_LOAD_WORKERS, 4));
     }
 
     /**
@@ -84,8 +177,40 @@ public class ReportDbUpdateTask extends RhnJavaJob {
      * @param batchSizeIn the batch size
      */
     public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn) {
+        this(dbHelperIn, batchSizeIn, Duration.ZERO);
+    }
+
+    /**
+     * Constructor used for unit test to specify the {@link ReportDBHelper} and the full sync interval
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param batchSizeIn the batch size
+     * @param fullSyncIntervalIn the time after which a run does a full refresh, zero to always do one
+     */
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn, Duration fullSyncIntervalIn) {
+        this(dbHelperIn, batchSizeIn, fullSyncIntervalIn, 1);
+    }
+
+    /**
+     * Constructor specifying all the settings
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param batchSizeIn the batch size
+     * @param fullSyncIntervalIn the time after which a run does a full refresh, zero to always do one
+     * @param loadWorkersIn the number of tables loaded concurrently by a full refresh. With a single worker the
+     * tables are loaded by the calling thread, in the same transaction as the rest of the refresh
+     */
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn, Duration fullSyncIntervalIn,
+                              int loadWorkersIn) {
         this.dbHelper = dbHelperIn;
         this.batchSize = batchSizeIn;
+        this.fullSyncInterval = fullSyncIntervalIn;
+        this.loadWorkers = loadWorkersIn;
+    }
+
+    /**
+     * Forgets the last full refresh, so that the next run does a full refresh.
+     */
+    public static void resetLastFullSync() {
+        lastFullSync = null;
     }
 
     @Override
@@ -93,77 +218,39 @@ public class ReportDbUpdateTask extends RhnJavaJob {
         ConnectionManager rcm = ConnectionManagerFactory.localReportingConnectionManager();
         ReportDbHibernateFactory rh = new ReportDbHibernateFactory(rcm);
 
+        Instant start = Instant.now();
+        Instant lastFull = lastFullSync;
+        boolean fullSync = fullSyncInterval.isZero() || lastFull == null ||
+                lastFull.plus(fullSyncInterval).isBefore(start);
+        log.info("Refreshing the reporting db {}", fullSync ? "fully" : "incrementally");
+
         try {
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroup",
-                Map.of(SYSTEM_GROUP_ID, 0));
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroupPermission",
-                Map.of(SYSTEM_GROUP_ID, 0, ACCOUNT_ID, 0));
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "Account",
-                Map.of(ACCOUNT_ID, 0));
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "AccountGroup",
-                Map.of(ACCOUNT_ID, 0, ACCOUNT_GROUP_ID, 0));
-
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "System",
-                Map.of(SYSTEM_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemHistory",
-                Map.of(SYSTEM_ID, 0, HISTORY_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemAction",
-                Map.of(SYSTEM_ID, 0, ACTION_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemChannel",
-                Map.of(SYSTEM_ID, 0, CHANNEL_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemConfigChannel",
-                Map.of(SYSTEM_ID, 0, CONFIG_CHANNEL_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemVirtualData",
-                Map.of(INSTANCE_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetInterface",
-                Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV4",
-                Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0, ADDRESS, ""));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV6",
-                Map.of(SYSTEM_ID, 0, INTERFACE_ID, 0, ADDRESS, ""));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemOutdated",
-                Map.of(SYSTEM_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemGroupMember",
-                Map.of(SYSTEM_ID, 0, SYSTEM_GROUP_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemEntitlement",
-                Map.of(SYSTEM_ID, 0, SYSTEM_GROUP_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemErrata",
-                Map.of(SYSTEM_ID, 0, ERRATA_ID, 0));
-            fillReportDbTableById(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageInstalled",
-                Map.of(NAME, ""));
-            fillReportDbTableById(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageUpdate",
-                Map.of(PACKAGE_ID, 0));
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemCustomInfo",
-                Map.of(ORGANIZATION, "", SYSTEM_ID, 0, KEY, ""));
-
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Channel",
-                Map.of(CHANNEL_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelErrata",
-                Map.of(CHANNEL_ID, 0, ERRATA_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelPackage",
-                Map.of(CHANNEL_ID, 0, PACKAGE_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelRepository",
-                Map.of(CHANNEL_ID, 0, REPOSITORY_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Errata",
-                Map.of(ERRATA_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Package",
-                Map.of(PACKAGE_ID, 0));
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Repository",
-                Map.of(REPOSITORY_ID, 0));
-
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScan",
-                Map.of(SCAN_ID, 0));
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScanResult",
-                Map.of(SCAN_ID, 0, RULE_ID, 0, IDENT_ID, 0));
-
-            fillReportDbTable(rh.getSession(), COCO_ATTESTATION_REPORT_QUERIES, "CoCoAttestation",
-                    Map.of(REPORT_ID, 0));
-            fillReportDbTable(rh.getSession(), COCO_ATTESTATION_REPORT_QUERIES, "CoCoAttestationResult",
-                    Map.of(REPORT_ID, 0, RESULT_TYPE, 0));
+            if (fullSync) {
+                // Load the new data of every table aside and swap it in with the final commit
+                loadStagingTables(rcm, rh.getSession());
+                for (ReportTable table : TABLES) {
+                    swapStagingTable(rh.getSession(), table.name);
+                }
+            }
+            else {
+                for (ReportTable table : TABLES) {
+                    if (table.byId) {
+                        syncReportDbTableById(rh.getSession(), table.xmlName, table.name, table.filterMap);
+                    }
+                    else {
+                        syncReportDbTable(rh.getSession(), table.xmlName, table.name, table.filterMap);
+                    }
+                }
+            }
 
+            // Unchanged rows keep the synced_date of their last change, readers get the run time from here
+            dbHelper.generateSyncStateUpdate(rh.getSession()).executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
             dbHelper.analyzeReportDb(rh.getSession());
 
             rh.commitTransaction();
+            if (fullSync) {
+                lastFullSync = start;
+            }
             log.info("Reporting db updated successfully.");
         }
         catch (RuntimeException ex) {
@@ -182,52 +269,220 @@ public class ReportDbUpdateTask extends RhnJavaJob {
         }
     }
 
-    private void fillReportDbTable(Session session, String xmlName, String tableName, Map<String, Object> filterMap) {
+    private void loadStagingTables(ConnectionManager rcm, Session session) {
+        if (loadWorkers <= 1) {
+            TABLES.forEach(table -> loadStagingTable(session, table));
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(loadWorkers);
+        try {
+            List<Future<?>> loads = TABLES.stream()
+                .map(table -> executor.submit(() -> loadStagingTableInWorker(rcm, table)))
+                .collect(Collectors.toList());
+            for (Future<?> load : loads) {
+                load.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RhnRuntimeException("Interrupted while loading the reporting db", e);
+        }
+        catch (ExecutionException e) {
+            throw new RhnRuntimeException("Unable to load the reporting db", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Runs on a worker thread: the staging table is loaded with the thread own sessions to the main and the
+     * reporting database, and committed so that the final swap transaction can read it.
+     */
+    private void loadStagingTableInWorker(ConnectionManager rcm, ReportTable table) {
+        try {
+            loadStagingTable(rcm.getSession(), table);
+            rcm.commitTransaction();
+        }
+        catch (RuntimeException e) {
+            rcm.rollbackTransaction();
+            throw e;
+        }
+        finally {
+            rcm.closeSession();
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private void loadStagingTable(Session session, ReportTable table) {
+        String stagingName = table.name + STAGING_SUFFIX;
+        dbHelper.generateDropTable(session, stagingName).executeUpdate(Map.of());
+        dbHelper.generateCreateStaging(session, table.name, stagingName).executeUpdate(Map.of());
+
+        boolean copy = dbHelper.supportsCopy(session);
+        AtomicLong rows = new AtomicLong();
+        Function<Set<String>, Consumer<DataResult<Map<String, Object>>>> writerFactory = columns -> {
+            WriteMode insert = copy ? null :
+                dbHelper.generateInsertWithDate(session, stagingName, LOCAL_MGM_ID, columns);
+            return dataBatch -> {
+                if (copy) {
+                    dbHelper.copyIn(session, stagingName, LOCAL_MGM_ID, columns, dataBatch);
+                }
+                else {
+                    insert.executeBatchUpdates(dataBatch);
+                }
+                rows.addAndGet(dataBatch.size());
+            };
+        };
+
+        long startNanos = System.nanoTime();
+        TimeUtils.logTime(log, "Loading table " + table.name, () -> {
+            if (table.byId) {
+                loadTableById(table, writerFactory);
+            }
+            else {
+                Map<String, Object> parametersMap = new HashMap<>(table.filterMap);
+                parametersMap.put("limit", batchSize);
+                fillTableInBatches(table.xmlName, table.name, table.name, parametersMap,
+                    table.filterMap.keySet(), writerFactory);
+            }
+        });
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        log.info("Loaded {} rows into table {} at {} rows/s", rows.get(), table.name,
+            Math.round(rows.get() / seconds));
+        ROWS_LOADED.labels(table.name).inc(rows.get());
+        LOAD_RATE.labels(table.name).set(rows.get() / seconds);
+    }
+
+    private void loadTableById(ReportTable table,
+                               Function<Set<String>, Consumer<DataResult<Map<String, Object>>>> writerFactory) {
+        SelectMode queryData = ModeFactory.getMode(table.xmlName, table.name + "_Ids", Map.class);
+
+        // Get the full data set first
+        DataResult<Map<String, Long>> dataSet = queryData.execute();
+        if (dataSet.isEmpty()) {
+            log.debug("No data extracted for table {}", table.name);
+            return;
+        }
+
+        for (Map<String, Long> data : dataSet) {
+            Long id = data.get("id");
+
+            Map<String, Object> parametersMap = new HashMap<>(table.filterMap);
+            parametersMap.put("id", id);
+            parametersMap.put("limit", batchSize);
+
+            fillTableInBatches(table.xmlName, table.name + "_byId", table.name, parametersMap,
+                table.filterMap.keySet(), writerFactory);
+        }
+    }
+
+    private void swapStagingTable(Session session, String tableName) {
         TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
+            String stagingName = tableName + STAGING_SUFFIX;
+
             // Remove all the existing data
             log.debug("Deleting existing data in table {}", tableName);
             WriteMode delete = dbHelper.generateDelete(session, tableName);
             delete.executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
 
-            // Extract the first batch using the given filters, only adding the batch size as number of rows limit
+            dbHelper.generateInsertFromStaging(session, tableName, stagingName).executeUpdate(Map.of());
+            dbHelper.generateDropTable(session, stagingName).executeUpdate(Map.of());
+        });
+    }
+
+    private void syncReportDbTable(Session session, String xmlName, String tableName, Map<String, Object> filterMap) {
+        TimeUtils.logTime(log, "Synchronizing table " + tableName, () -> {
+            // Keep track of the keys extracted, to delete the rows which no longer exist at the end
+            List<String> keyColumns = dbHelper.getPrimaryKeyColumns(session, tableName);
+            dbHelper.generateCreateSyncedKeys(session, tableName, keyColumns).executeUpdate(Map.of());
+            WriteMode insertKeys = dbHelper.generateInsertSyncedKeys(session, tableName, keyColumns);
+
             Map<String, Object> parametersMap = new HashMap<>(filterMap);
             parametersMap.put("limit", batchSize);
 
-            fillTableInBatches(session, xmlName, tableName, tableName, parametersMap, filterMap.keySet());
+            fillTableInBatches(xmlName, tableName, tableName, parametersMap, filterMap.keySet(), columns -> {
+                WriteMode upsert = dbHelper.generateUpsertWithDate(session, tableName, LOCAL_MGM_ID, columns,
+                    keyColumns);
+                return dataBatch -> {
+                    upsert.executeBatchUpdates(dataBatch);
+                    insertKeys.executeBatchUpdates(dataBatch);
+                };
+            });
+
+            int deleted = dbHelper.generateDeleteNotSynced(session, tableName, keyColumns)
+                .executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+            log.debug("Deleted {} rows no longer existing from table {}", deleted, tableName);
         });
     }
 
-    private void fillReportDbTableById(Session session, String xmlName, String tableName,
+    private void syncReportDbTableById(Session session, String xmlName, String tableName,
                                        Map<String, Object> filterMap) {
-        TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
+        TimeUtils.logTime(log, "Synchronizing table " + tableName, () -> {
             SelectMode queryData = ModeFactory.getMode(xmlName, tableName + "_Ids", Map.class);
-
-            // Remove all the existing data
-            log.debug("Deleting existing data in table {}", tableName);
-            WriteMode delete = dbHelper.generateDelete(session, tableName);
-            delete.executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
-
-            // Get the full data set first
             DataResult<Map<String, Long>> dataSet = queryData.execute();
-            if (dataSet.isEmpty()) {
-                log.debug("No data extracted for table {}", tableName);
-                return;
+            Set<Long> ids = dataSet.stream().map(data -> data.get("id")).collect(Collectors.toSet());
+
+            // Remove the data of the systems which no longer have any
+            WriteMode delete = dbHelper.generateDeleteBySystem(session, tableName);
+            DataResult<Map<String, Long>> syncedIds = dbHelper.generateSystemIdsQuery(session, tableName).execute();
+            for (Map<String, Long> data : syncedIds) {
+                Long id = data.get(SYSTEM_ID);
+                if (!ids.contains(id)) {
+                    delete.executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID, SYSTEM_ID, id));
+                }
             }
 
-            for (Map<String, Long> data : dataSet) {
-                Long id = data.get("id");
+            // Rewrite the data of a system only if it differs from what is already there
+            SelectMode syncedQuery = dbHelper.generateQueryBySystem(session, tableName);
+            int changed = 0;
+            for (Long id : ids) {
+                List<Map<String, Object>> rows = new ArrayList<>();
 
                 Map<String, Object> parametersMap = new HashMap<>(filterMap);
                 parametersMap.put("id", id);
                 parametersMap.put("limit", batchSize);
 
-                fillTableInBatches(session, xmlName, tableName + "_byId", tableName, parametersMap, filterMap.keySet());
+                fillTableInBatches(xmlName, tableName + "_byId", tableName, parametersMap, filterMap.keySet(),
+                    columns -> rows::addAll);
+
+                DataResult<Map<String, Object>> synced = syncedQuery.execute(Map.of(SYSTEM_ID, id));
+                if (!sameRows(rows, synced)) {
+                    delete.executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID, SYSTEM_ID, id));
+                    if (!rows.isEmpty()) {
+                        dbHelper.generateInsertWithDate(session, tableName, LOCAL_MGM_ID, rows.get(0).keySet())
+                            .executeUpdates(rows);
+                    }
+                    changed++;
+                }
             }
+            log.debug("Rewrote the data of {} out of {} systems in table {}", changed, ids.size(), tableName);
         });
     }
 
-    private void fillTableInBatches(Session session, String xmlName, String queryName, String tableName,
-                                    Map<String, Object> parametersMap, Set<String> mutableFieldsSet) {
+    private static boolean sameRows(List<Map<String, Object>> rows, List<Map<String, Object>> syncedRows) {
+        if (rows.size() != syncedRows.size()) {
+            return false;
+        }
+
+        // Compare the rows as multisets, ignoring the columns only existing in the reporting db
+        Map<Map<String, Object>, Long> expected = rows.stream()
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Map<Map<String, Object>, Long> actual = syncedRows.stream()
+            .map(row -> {
+                Map<String, Object> values = new HashMap<>(row);
+                values.remove("mgm_id");
+                values.remove("synced_date");
+                return values;
+            })
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        return expected.equals(actual);
+    }
+
+    private void fillTableInBatches(String xmlName, String queryName, String tableName,
+                                    Map<String, Object> parametersMap, Set<String> mutableFieldsSet,
+                                    Function<Set<String>, Consumer<DataResult<Map<String, Object>>>> writerFactory) {
         SelectMode query = ModeFactory.getMode(xmlName, queryName, Map.class);
         DataResult<Map<String, Object>> dataBatch = query.execute(parametersMap);
         if (dataBatch.isEmpty()) {
@@ -235,11 +490,11 @@ public class ReportDbUpdateTask extends RhnJavaJob {
             return;
         }
 
-        // Generate the insert using the column name retrieved from the select
+        // Generate the writer using the column name retrieved from the select
         Set<String> columnParameters = dataBatch.get(0).keySet();
-        WriteMode insert = dbHelper.generateInsertWithDate(session, tableName, LOCAL_MGM_ID, columnParameters);
+        Consumer<DataResult<Map<String, Object>>> writer = writerFactory.apply(columnParameters);
 
-        insert.executeUpdates(dataBatch);
+        writer.accept(dataBatch);
         log.debug("Extracted {} rows for table {}", dataBatch.size(), tableName);
 
         // Iterate further if we can have additional rows
@@ -249,7 +504,7 @@ public class ReportDbUpdateTask extends RhnJavaJob {
             dataBatch = query.execute(parametersMap);
             if (!dataBatch.isEmpty()) {
                 log.debug("Extracted {} rows more for table {}", dataBatch.size(), tableName);
-                insert.executeUpdates(dataBatch);
+                writer.accept(dataBatch);
             }
         }
     }
@@ -258,4 +513,32 @@ public class ReportDbUpdateTask extends RhnJavaJob {
     public String getConfigNamespace() {
         return "report_db_update";
     }
+
+    /**
+     * A reporting database table and the queries filling it.
+     */
+    private static final class ReportTable {
+
+        private final String xmlName;
+        private final String name;
+        private final Map<String, Object> filterMap;
+        private final boolean byId;
+
+        private ReportTable(String xmlNameIn, String nameIn, Map<String, Object> filterMapIn, boolean byIdIn) {
+            xmlName = xmlNameIn;
+            name = nameIn;
+            filterMap = filterMapIn;
+            byId = byIdIn;
+        }
+
+        /* A table filled with one batched query over all the rows */
+        private ReportTable(String xmlNameIn, String nameIn, Map<String, Object> filterMapIn) {
+            this(xmlNameIn, nameIn, filterMapIn, false);
+        }
+
+        /* A table filled system by system, with the _Ids and _byId queries */
+        private static ReportTable byId(String xmlNameIn, String nameIn, Map<String, Object> filterMapIn) {
+            return new ReportTable(xmlNameIn, nameIn, filterMapIn, true);
+        }
+    }
 }
@@ -35,6 +35,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -48,6 +50,8 @@ public class DebPackageWriter implements Closeable {
     private String filenamePackages = "";
     private String channelLabel = "";
     private BufferedWriter out;
+    /* Snippets generated since the last call to storeRenderedPackages(), by package id */
+    private final Map<Long, String> renderedSnippets = new HashMap<>();
 
     /**
      *
@@ -219,12 +223,20 @@ public class DebPackageWriter implements Closeable {
 
         buf.flush();
         String pkg = wrt.toString();
-        PackageManager.updateRepoPrimary(pkgDto.getId(), pkg);
+        renderedSnippets.put(pkgDto.getId(), pkg);
         out.write(pkg);
         // new line after package metadata
         out.newLine();
     }
 
+    /**
+     * Caches the package entries generated since the last call in the database, in one batch.
+     */
+    public void storeRenderedPackages() {
+        PackageManager.updateRepoPrimaries(renderedSnippets);
+        renderedSnippets.clear();
+    }
+
     /**
      * @param outIn
      *
@@ -98,6 +98,10 @@ public class DebRepositoryWriter extends RepositoryWriter {
     @Override
     public void writeRepomdFiles(Channel channel) {
         PackageManager.createRepoEntrys(channel.getId());
+        if (commitTransaction) {
+            // release the locks on the new entries, other channels may share packages
+            HibernateFactory.commitTransaction();
+        }
 
         String prefix = mountPoint + File.separator + pathPrefix +
         File.separator + channel.getLabel() + File.separator;
@@ -124,6 +128,7 @@ public class DebRepositoryWriter extends RepositoryWriter {
                 for (PackageDto pkgDto : packageBatch) {
                     writer.addPackage(pkgDto);
                 }
+                writer.storeRenderedPackages();
                 log.info("Processed {} packages", i + packageBatch.getEnd());
                 if (commitTransaction) {
                     // commit pre generated package snippets in the cache
@@ -32,12 +32,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
  *
  */
-public class OtherXmlWriter extends RepomdWriter {
+public class OtherXmlWriter extends RepomdWriter implements RepomdPackageWriter {
+
+    /* Snippets generated since the last call to storeRenderedPackages(), by package id */
+    private final Map<Long, String> renderedSnippets = new HashMap<>();
 
     /**
      *
@@ -80,17 +85,18 @@ public class OtherXmlWriter extends RepomdWriter {
     }
 
     /**
-     *
-     * @param pkgDto pkg info to add to xml
+     * Renders the snippet of a package, without adding it to the document.
+     * @param pkgDto pkg info to render
+     * @return the package xml snippet
      */
-    public void addPackage(PackageDto pkgDto) {
+    @Override
+    public String renderPackage(PackageDto pkgDto) {
 
         try {
             String xml = pkgDto.getOtherXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -104,8 +110,8 @@ public class OtherXmlWriter extends RepomdWriter {
             tmpHandler.endDocument();
 
             String pkg =  st.toString();
-            PackageManager.updateRepoOther(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            renderedSnippets.put(pkgDto.getId(), pkg);
+            return pkg;
 
         }
         catch (SAXException e) {
@@ -113,6 +119,24 @@ public class OtherXmlWriter extends RepomdWriter {
         }
     }
 
+    /**
+     *
+     * @param pkgDto pkg info to add to xml
+     */
+    public void addPackage(PackageDto pkgDto) {
+        addRenderedPackage(renderPackage(pkgDto));
+        storeRenderedPackages();
+    }
+
+    /**
+     * Caches the snippets generated since the last call in the database, in one batch.
+     */
+    @Override
+    public void storeRenderedPackages() {
+        PackageManager.updateRepoOthers(renderedSnippets);
+        renderedSnippets.clear();
+    }
+
     /**
      *
      * @param pkgDto pkg changelog info to add to xml
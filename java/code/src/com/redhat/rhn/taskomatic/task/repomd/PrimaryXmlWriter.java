@@ -40,7 +40,10 @@ import java.util.Map;
  * Primary.xml writer class
  *
  */
-public class PrimaryXmlWriter extends RepomdWriter {
+public class PrimaryXmlWriter extends RepomdWriter implements RepomdPackageWriter {
+
+    /* Snippets generated since the last call to storeRenderedPackages(), by package id */
+    private final Map<Long, String> renderedSnippets = new HashMap<>();
 
     /**
      *
@@ -84,17 +87,18 @@ public class PrimaryXmlWriter extends RepomdWriter {
     }
 
     /**
-     *
-     * @param pkgDto pkg info to add to xml
+     * Renders the snippet of a package, without adding it to the document.
+     * @param pkgDto pkg info to render
+     * @return the package xml snippet
      */
-    public void addPackage(PackageDto pkgDto) {
+    @Override
+    public String renderPackage(PackageDto pkgDto) {
         try {
             String xml = pkgDto.getPrimaryXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
 
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -114,8 +118,8 @@ public class PrimaryXmlWriter extends RepomdWriter {
             tmpHandler.endDocument();
 
             String pkg =  st.toString();
-            PackageManager.updateRepoPrimary(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            renderedSnippets.put(pkgDto.getId(), pkg);
+            return pkg;
 
         }
         catch (SAXException e) {
@@ -123,6 +127,24 @@ public class PrimaryXmlWriter extends RepomdWriter {
         }
     }
 
+    /**
+     *
+     * @param pkgDto pkg info to add to xml
+     */
+    public void addPackage(PackageDto pkgDto) {
+        addRenderedPackage(renderPackage(pkgDto));
+        storeRenderedPackages();
+    }
+
+    /**
+     * Caches the snippets generated since the last call in the database, in one batch.
+     */
+    @Override
+    public void storeRenderedPackages() {
+        PackageManager.updateRepoPrimaries(renderedSnippets);
+        renderedSnippets.clear();
+    }
+
     /**
      *
      * @param pkgDto pkg info to add to xml
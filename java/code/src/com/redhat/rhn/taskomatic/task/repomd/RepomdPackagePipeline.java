@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.frontend.dto.PackageDto;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the per-package metadata files of a repository in a pipeline.
+ *
+ * The calling thread renders each batch of packages, which may need the
+ * database, and caches the newly generated snippets in one JDBC batch per
+ * file, while the previous batch is being serialized and compressed by one
+ * thread per file. Each file receives the same snippets in the same order as
+ * when written sequentially, so the output does not change. Files are flushed
+ * once per batch.
+ */
+public class RepomdPackagePipeline implements AutoCloseable {
+
+    private final List<RepomdPackageWriter> writers = new ArrayList<>();
+    private final List<Flushable> outputs = new ArrayList<>();
+    private final boolean parallel;
+    private ExecutorService executorService;
+    private Executor executor;
+    private List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+    /**
+     * Standard constructor.
+     * @param parallelIn true to write the files on their own threads, false to write them on the calling thread
+     */
+    public RepomdPackagePipeline(boolean parallelIn) {
+        parallel = parallelIn;
+    }
+
+    /**
+     * Adds a file to write.
+     * @param writer the metadata writer
+     * @param output the stream underlying the writer, flushed after each batch
+     */
+    public void addOutput(RepomdPackageWriter writer, Flushable output) {
+        writers.add(writer);
+        outputs.add(output);
+    }
+
+    /**
+     * Starts the documents of all the files.
+     * @param channel the channel the metadata is generated for
+     */
+    public void begin(Channel channel) {
+        if (parallel) {
+            executorService = Executors.newFixedThreadPool(writers.size(), new BasicThreadFactory.Builder()
+                    .namingPattern("repomd-" + channel.getLabel() + "-%d")
+                    .build());
+            executor = executorService;
+        }
+        else {
+            executor = Runnable::run;
+        }
+        writers.forEach(w -> w.begin(channel));
+    }
+
+    /**
+     * Renders a batch of packages on the calling thread and hands it over to
+     * the file writers, once they are done with the previous batch.
+     * @param batch the elaborated packages
+     */
+    public void addBatch(List<PackageDto> batch) {
+        List<List<String>> rendered = writers.stream()
+                .map(w -> batch.stream().map(w::renderPackage).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        writers.forEach(RepomdPackageWriter::storeRenderedPackages);
+
+        awaitPending();
+
+        List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        for (int i = 0; i < writers.size(); i++) {
+            RepomdPackageWriter writer = writers.get(i);
+            Flushable output = outputs.get(i);
+            List<String> snippets = rendered.get(i);
+            submitted.add(CompletableFuture.runAsync(() -> {
+                snippets.forEach(writer::addRenderedPackage);
+                flush(output);
+            }, executor));
+        }
+        pending = submitted;
+    }
+
+    /**
+     * Waits for the last batch to be written and ends the documents of all the files.
+     */
+    public void end() {
+        awaitPending();
+        writers.forEach(RepomdPackageWriter::end);
+    }
+
+    /**
+     * Stops the file writer threads, if any.
+     */
+    @Override
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void awaitPending() {
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RepomdRuntimeException(e.getCause());
+        }
+        finally {
+            pending = new ArrayList<>();
+        }
+    }
+
+    private static void flush(Flushable output) {
+        try {
+            output.flush();
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+}
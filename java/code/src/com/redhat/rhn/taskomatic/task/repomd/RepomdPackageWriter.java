@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.frontend.dto.PackageDto;
+
+/**
+ * Writer of a per-package repository metadata file, like primary.xml.
+ *
+ * Rendering a package and adding it to the document are separate steps, so
+ * that snippets can be rendered on the thread owning the database session and
+ * serialized and compressed on another one.
+ */
+public interface RepomdPackageWriter {
+
+    /**
+     * Starts the document.
+     * @param channel the channel the metadata is generated for
+     */
+    void begin(Channel channel);
+
+    /**
+     * Renders the snippet of a package, generating it if it is not cached in
+     * the database yet.
+     * @param pkgDto the elaborated package
+     * @return the package xml snippet, or null if the package is left out of this file
+     */
+    String renderPackage(PackageDto pkgDto);
+
+    /**
+     * Stores the snippets rendered since the last call, if they are cached in
+     * the database.
+     */
+    default void storeRenderedPackages() {
+        // nothing to store by default
+    }
+
+    /**
+     * Appends a rendered package snippet to the document.
+     * @param xml the package xml snippet, nothing is added if null
+     */
+    void addRenderedPackage(String xml);
+
+    /**
+     * Ends the document.
+     */
+    void end();
+}
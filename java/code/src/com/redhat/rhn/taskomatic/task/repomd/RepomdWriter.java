@@ -157,6 +157,22 @@ public abstract class RepomdWriter {
     }
 
 
+    /**
+     * Appends an already rendered package snippet to the document.
+     * @param xml the package xml snippet, nothing is added if null
+     */
+    public void addRenderedPackage(String xml) {
+        if (xml == null) {
+            return;
+        }
+        try {
+            handler.addCharacters(xml);
+        }
+        catch (SAXException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
     /**
      *
      * @param channel channel info
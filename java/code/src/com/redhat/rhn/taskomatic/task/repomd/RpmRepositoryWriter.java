@@ -220,6 +220,10 @@ public class RpmRepositoryWriter extends RepositoryWriter {
     @Override
     public void writeRepomdFiles(Channel channel) {
         PackageManager.createRepoEntrys(channel.getId());
+        if (commitTransaction) {
+            // release the locks on the new entries, other channels may share packages
+            HibernateFactory.commitTransaction();
+        }
 
         // we closed the session, so we need to reload the object
         channel = HibernateFactory.getSession().get(channel.getClass(), channel.getId());
@@ -290,49 +294,39 @@ public class RpmRepositoryWriter extends RepositoryWriter {
                 susedataBufferedWriter);
         Date start = new Date();
 
-        primary.begin(channel);
-        filelists.begin(channel);
-        other.begin(channel);
-        susedata.begin(channel);
-
-        // batch the elaboration so we don't have to hold many thousands of packages in memory at once
-        final int batchSize = 1000;
-        for (long i = 0; i < channel.getPackageCount(); i += batchSize) {
-            DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, batchSize);
-            packageBatch.elaborate();
-            for (PackageDto pkgDto : packageBatch) {
-                // this is a sanity check
-                // package may have been deleted before packageBatch.elaborate()
-                if (pkgDto.getChecksum() == null) {
-                    // channel content changed, we cannot guarantee correct repodata
-                    throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
-                            " removed from server, interrupting repo generation for " +
-                            channel.getLabel());
-                }
-                primary.addPackage(pkgDto);
-                filelists.addPackage(pkgDto);
-                other.addPackage(pkgDto);
-                susedata.addPackage(pkgDto);
-                try {
-                    primaryFile.flush();
-                    filelistsFile.flush();
-                    otherFile.flush();
-                    susedataFile.flush();
+        try (RepomdPackagePipeline pipeline =
+                     new RepomdPackagePipeline(ConfigDefaults.get().isRepomdParallelWritersEnabled())) {
+            pipeline.addOutput(primary, primaryBufferedWriter);
+            pipeline.addOutput(filelists, filelistsBufferedWriter);
+            pipeline.addOutput(other, otherBufferedWriter);
+            pipeline.addOutput(susedata, susedataBufferedWriter);
+            pipeline.begin(channel);
+
+            // batch the elaboration so we don't have to hold many thousands of packages in memory at once
+            final int batchSize = 1000;
+            for (long i = 0; i < channel.getPackageCount(); i += batchSize) {
+                DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, batchSize);
+                packageBatch.elaborate();
+                for (PackageDto pkgDto : packageBatch) {
+                    // this is a sanity check
+                    // package may have been deleted before packageBatch.elaborate()
+                    if (pkgDto.getChecksum() == null) {
+                        // channel content changed, we cannot guarantee correct repodata
+                        throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
+                                " removed from server, interrupting repo generation for " +
+                                channel.getLabel());
+                    }
                 }
-                catch (IOException e) {
-                    throw new RepomdRuntimeException(e);
+                // the files are written while the next batch is elaborated
+                pipeline.addBatch(packageBatch);
+                log.info("Processed {} packages", i + packageBatch.getEnd());
+                if (commitTransaction) {
+                    // commit pre generated XML snippets in the cache
+                    HibernateFactory.commitTransaction();
                 }
             }
-            log.info("Processed {} packages", i + packageBatch.getEnd());
-            if (commitTransaction) {
-                // commit pre generated XML snippets in the cache
-                HibernateFactory.commitTransaction();
-            }
+            pipeline.end();
         }
-        primary.end();
-        filelists.end();
-        other.end();
-        susedata.end();
         try {
             primaryBufferedWriter.close();
             filelistsBufferedWriter.close();
@@ -30,7 +30,7 @@ import java.util.List;
  * susedata.xml writer class
  *
  */
-public class SuseDataXmlWriter extends RepomdWriter {
+public class SuseDataXmlWriter extends RepomdWriter implements RepomdPackageWriter {
 
     private Long channelId;
 
@@ -77,10 +77,12 @@ public class SuseDataXmlWriter extends RepomdWriter {
     }
 
     /**
-     *
-     * @param pkgDto pkg info to add to xml
+     * Renders the snippet of a package, without adding it to the document.
+     * @param pkgDto pkg info to render
+     * @return the package xml snippet, or null if the package has no SUSE data
      */
-    public void addPackage(PackageDto pkgDto) {
+    @Override
+    public String renderPackage(PackageDto pkgDto) {
         long pkgId = pkgDto.getId();
         List<String> eulas = new EulaManager().getEulasForPackage(pkgId);
 
@@ -89,7 +91,7 @@ public class SuseDataXmlWriter extends RepomdWriter {
 
         if (keywords.isEmpty() && eulas.isEmpty()) {
             // this package has no keywords and no EULA
-            return;
+            return null;
         }
         try {
             ByteArrayOutputStream st = new ByteArrayOutputStream();
@@ -103,13 +105,21 @@ public class SuseDataXmlWriter extends RepomdWriter {
             tmpHandler.endDocument();
 
             String pkg =  st.toString();
-            handler.addCharacters(pkg);
+            return pkg;
         }
         catch (SAXException e) {
             throw new RepomdRuntimeException(e);
         }
     }
 
+    /**
+     *
+     * @param pkgDto pkg info to add to xml
+     */
+    public void addPackage(PackageDto pkgDto) {
+        addRenderedPackage(renderPackage(pkgDto));
+    }
+
     /**
      *
      * @param pkgId pkg id
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdPackagePipeline;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdPackageWriter;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdRuntimeException;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class RepomdPackagePipelineTest {
+
+    /**
+     * Writer keeping the document in memory, rendering only the packages with an even id if requested.
+     */
+    private static class TestWriter implements RepomdPackageWriter {
+
+        private final String name;
+        private final boolean evenOnly;
+        private final StringBuilder document = new StringBuilder();
+        private final List<String> renderingThreads = new ArrayList<>();
+
+        TestWriter(String nameIn, boolean evenOnlyIn) {
+            name = nameIn;
+            evenOnly = evenOnlyIn;
+        }
+
+        @Override
+        public void begin(Channel channel) {
+            document.append("<").append(name).append(" channel=\"").append(channel.getLabel()).append("\">");
+        }
+
+        @Override
+        public String renderPackage(PackageDto pkgDto) {
+            renderingThreads.add(Thread.currentThread().getName());
+            if (evenOnly && pkgDto.getId() % 2 != 0) {
+                return null;
+            }
+            return "<package id=\"" + pkgDto.getId() + "\"/>";
+        }
+
+        @Override
+        public void addRenderedPackage(String xml) {
+            if (xml != null) {
+                document.append(xml);
+            }
+        }
+
+        @Override
+        public void end() {
+            document.append("</").append(name).append(">");
+        }
+    }
+
+    private static List<PackageDto> packages(long from, long to) {
+        return LongStream.range(from, to).mapToObj(id -> {
+            PackageDto pkg = new PackageDto();
+            pkg.setId(id);
+            return pkg;
+        }).collect(Collectors.toList());
+    }
+
+    private static List<String> write(boolean parallel, List<TestWriter> writers, AtomicInteger flushes) {
+        Channel channel = new Channel();
+        channel.setLabel("test-channel");
+        try (RepomdPackagePipeline pipeline = new RepomdPackagePipeline(parallel)) {
+            writers.forEach(w -> pipeline.addOutput(w, flushes::incrementAndGet));
+            pipeline.begin(channel);
+            for (long i = 0; i < 1000; i += 100) {
+                pipeline.addBatch(packages(i, i + 100));
+            }
+            pipeline.end();
+        }
+        return writers.stream().map(w -> w.document.toString()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential() {
+        AtomicInteger flushes = new AtomicInteger();
+        List<String> sequential = write(false, List.of(new TestWriter("primary", false),
+                new TestWriter("susedata", true)), flushes);
+        assertEquals(20, flushes.get());
+
+        List<TestWriter> writers = List.of(new TestWriter("primary", false), new TestWriter("susedata", true));
+        List<String> parallel = write(true, writers, new AtomicInteger());
+
+        assertEquals(sequential, parallel);
+        assertTrue(parallel.get(0).startsWith("<primary channel=\"test-channel\"><package id=\"0\"/>"));
+        assertTrue(parallel.get(1).endsWith("<package id=\"998\"/></susedata>"));
+        // packages are always rendered on the calling thread, which owns the database session
+        String caller = Thread.currentThread().getName();
+        writers.forEach(w -> assertTrue(w.renderingThreads.stream().allMatch(caller::equals)));
+    }
+
+    @Test
+    public void testWriterFailure() {
+        Channel channel = new Channel();
+        channel.setLabel("test-channel");
+        TestWriter failing = new TestWriter("failing", false) {
+            @Override
+            public void addRenderedPackage(String xml) {
+                throw new RepomdRuntimeException("disk full");
+            }
+        };
+        try (RepomdPackagePipeline pipeline = new RepomdPackagePipeline(true)) {
+            pipeline.addOutput(failing, () -> { });
+            pipeline.begin(channel);
+            pipeline.addBatch(packages(0, 10));
+            RepomdRuntimeException e = assertThrows(RepomdRuntimeException.class, pipeline::end);
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+}
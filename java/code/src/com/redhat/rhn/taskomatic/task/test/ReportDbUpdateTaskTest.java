@@ -18,9 +18,11 @@ import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.channel.ChannelFactory;
 import com.redhat.rhn.domain.rhnpackage.Package;
@@ -43,7 +45,9 @@ import org.junit.jupiter.api.Test;
 import org.quartz.JobExecutionContext;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,6 +83,13 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
         assertDoesNotThrow(() -> task.execute(contextMock));
     }
 
+    @Test
+    public void smokeTestWithConcurrentLoad() {
+        // Load the tables on separate connections and swap them in
+        ReportDbUpdateTask task = new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 100, Duration.ZERO, 4);
+        assertDoesNotThrow(() -> task.execute(contextMock));
+    }
+
     @Test
     public void canSyncTablesUsingAQueryById() throws Exception {
         // Set up the data for testing the query SystemPackageUpdate_byId
@@ -170,6 +181,74 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
         });
     }
 
+    @Test
+    public void canSyncTablesIncrementally() {
+        Server server = ServerFactoryTest.createTestServer(user);
+        List<Package> packages = IntStream.range(0, 3)
+            .mapToObj(index -> PackageTest.createTestPackage(user.getOrg()))
+            .collect(Collectors.toList());
+        PackageTestUtils.installPackagesOnServer(packages.subList(0, 2), server);
+        HibernateFactory.getSession().flush();
+
+        // The first run after a reset always refreshes everything
+        ReportDbUpdateTask.resetLastFullSync();
+        ReportDbUpdateTask task = new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 2, Duration.ofDays(1));
+        assertDoesNotThrow(() -> task.execute(contextMock));
+
+        // Change the data and let the next run pick up the changes incrementally
+        server.setName("renamed-" + server.getId());
+        PackageTestUtils.installPackagesOnServer(packages.subList(2, 3), server);
+        HibernateFactory.getSession().flush();
+        assertDoesNotThrow(() -> task.execute(contextMock));
+
+        String systemQuery = "SELECT profile_name FROM System WHERE mgm_id = 1 AND system_id = :id";
+        assertEquals("renamed-" + server.getId(), getSession()
+            .createNativeQuery(systemQuery)
+            .setParameter("id", server.getId())
+            .getSingleResult());
+
+        String packagesQuery = "SELECT name FROM SystemPackageInstalled WHERE mgm_id = 1 AND system_id = :id";
+        List<String> installed = getSession()
+            .createNativeQuery(packagesQuery)
+            .setParameter("id", server.getId())
+            .getResultList();
+        assertEquals(
+            packages.stream().map(pkg -> pkg.getPackageName().getName()).sorted().collect(Collectors.toList()),
+            installed.stream().sorted().collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void canRecordSyncTimeWithoutRewritingUnchangedRows() {
+        Server server = ServerFactoryTest.createTestServer(user);
+        HibernateFactory.getSession().flush();
+
+        ReportDbUpdateTask.resetLastFullSync();
+        ReportDbUpdateTask task = new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 2, Duration.ofDays(1));
+        assertDoesNotThrow(() -> task.execute(contextMock));
+        Date fullSyncDate = getLastSyncDate();
+        Date systemSyncedDate = getSyncedDate(server);
+
+        // Nothing changed: the incremental run records its time but leaves the system row alone
+        assertDoesNotThrow(() -> task.execute(contextMock));
+        assertTrue(getLastSyncDate().after(fullSyncDate));
+        assertEquals(systemSyncedDate, getSyncedDate(server));
+    }
+
+    private static Date getLastSyncDate() {
+        return (Date) getSession()
+            .createNativeQuery("SELECT last_sync_date FROM SyncState WHERE mgm_id = 1")
+            .getSingleResult();
+    }
+
+    private static Date getSyncedDate(Server server) {
+        String query = "SELECT synced_date FROM System WHERE mgm_id = 1 AND system_id = :id";
+        return (Date) getSession()
+            .createNativeQuery(query)
+            .setParameter("id", server.getId())
+            .getSingleResult();
+    }
+
     private static synchronized Session getSession() {
         if (reportDbConnectionManager == null) {
             reportDbConnectionManager = ConnectionManagerFactory.localReportingConnectionManager();
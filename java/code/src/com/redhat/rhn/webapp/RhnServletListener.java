@@ -19,6 +19,7 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.messaging.MessageQueue;
 import com.redhat.rhn.manager.satellite.StartupTasksCommand;
 import com.redhat.rhn.manager.satellite.UpgradeCommand;
+import com.redhat.rhn.manager.session.SessionManager;
 
 import com.suse.manager.metrics.PrometheusExporter;
 import com.suse.manager.metrics.SystemsCollector;
@@ -170,6 +171,9 @@ public class RhnServletListener implements ServletContextListener {
         stopMessaging();
         logStop("Messaging");
 
+        SessionManager.stopSessionExtensionWriter();
+        logStop("Session extension writer");
+
         stopHibernate();
         logStop("Hibernate");
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.api;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Serializes the lazily evaluated results an API handler method can return, {@link Stream}s, {@link Iterator}s and
+ * {@link Iterable}s other than collections, as JSON arrays.
+ *
+ * The items are serialized one by one while they are produced, so that the whole result never needs to be held in
+ * memory when it is written to a streaming {@link JsonWriter}. Streams are closed once written.
+ *
+ * No API handler returns lazy results yet, since the handlers are shared with the XML-RPC API, which only serializes
+ * collections: for now only the JSON text itself is streamed.
+ */
+public class LazyResultTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        boolean lazy = Stream.class.isAssignableFrom(rawType) || Iterator.class.isAssignableFrom(rawType) ||
+                (Iterable.class.isAssignableFrom(rawType) && !Collection.class.isAssignableFrom(rawType));
+        if (!lazy) {
+            return null;
+        }
+        return (TypeAdapter<T>) new LazyResultTypeAdapter(gson);
+    }
+
+    /**
+     * Writes the items of a lazy result as a JSON array.
+     */
+    private static class LazyResultTypeAdapter extends TypeAdapter<Object> {
+
+        private final Gson gson;
+
+        LazyResultTypeAdapter(Gson gsonIn) {
+            gson = gsonIn;
+        }
+
+        @Override
+        public void write(JsonWriter out, Object value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            if (value instanceof Stream) {
+                try (Stream<?> stream = (Stream<?>) value) {
+                    writeItems(out, stream.iterator());
+                }
+            }
+            else if (value instanceof Iterator) {
+                writeItems(out, (Iterator<?>) value);
+            }
+            else {
+                writeItems(out, ((Iterable<?>) value).iterator());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeItems(JsonWriter out, Iterator<?> items) throws IOException {
+            out.beginArray();
+            while (items.hasNext()) {
+                Object item = items.next();
+                if (item == null) {
+                    out.nullValue();
+                }
+                else {
+                    // like for collections, the runtime type of each item selects its serializer
+                    ((TypeAdapter<Object>) gson.getAdapter(item.getClass())).write(out, item);
+                }
+            }
+            out.endArray();
+        }
+
+        @Override
+        public Object read(JsonReader in) {
+            throw new UnsupportedOperationException("Lazy results can only be serialized");
+        }
+    }
+}
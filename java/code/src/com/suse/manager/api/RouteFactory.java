@@ -19,6 +19,7 @@ import static com.suse.manager.webui.utils.SparkApplicationHelper.asJson;
 import static com.suse.manager.webui.utils.SparkApplicationHelper.json;
 
 import com.redhat.rhn.FaultException;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.xmlrpc.BaseHandler;
@@ -32,16 +33,23 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
 import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -54,6 +62,7 @@ import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import spark.Request;
 import spark.Route;
@@ -122,8 +131,10 @@ public class RouteFactory {
      * The created {@link Route} will parse the request body as a JSON object and combine its properties together with
      * the query parameters and the authorized {@link User}, and match the list of parameters to the parameters of the
      * provided method. If there is a match, it invokes the method from the specified handler. The return value is
-     * wrapped into a {@link HttpApiResponse} object and serialized to JSON using a matching serializer. The resulting
-     * JSON string is returned as the {@link Route}'s return value.
+     * wrapped into a {@link HttpApiResponse} object and serialized to JSON using a matching serializer, straight to the
+     * response output stream, once the transaction of the request is committed. Methods can return a
+     * {@link java.util.stream.Stream}, an {@link java.util.Iterator} or an {@link Iterable}, whose items are then
+     * serialized one by one as they are produced.
      *
      * If the method does not match, or if a parameter can't be parsed, a 400 response is returned.
      *
@@ -155,8 +166,10 @@ public class RouteFactory {
      * The created {@link Route} will parse the request body as a JSON object and combine its properties together with
      * the query parameters and the authorized {@link User}, and match the list of parameters to the parameters of the
      * provided methods. If there is a match, it invokes the method from the specified handler. The return value is
-     * wrapped into a {@link HttpApiResponse} object and serialized to JSON using a matching serializer. The resulting
-     * JSON string is returned as the {@link Route}'s return value.
+     * wrapped into a {@link HttpApiResponse} object and serialized to JSON using a matching serializer, straight to the
+     * response output stream, once the transaction of the request is committed. Methods can return a
+     * {@link java.util.stream.Stream}, an {@link java.util.Iterator} or an {@link Iterable}, whose items are then
+     * serialized one by one as they are produced.
      *
      * If no matching method is found, or if a parameter can't be parsed, a 400 response is returned.
      *
@@ -190,8 +203,32 @@ public class RouteFactory {
                 ParameterizedType parameterizedType = new ParameterizedTypeImpl(null, HttpApiResponse.class,
                         primToBoxed.getOrDefault(genericReturnType, genericReturnType));
 
+                // Commit before the first byte is sent, so that a failed commit is not reported as a success
+                commitTransaction();
+
+                // Write the response straight to the client, one item at a time for lists and lazy results
                 res.type("application/json");
-                return gson.toJson(response, TypeToken.get(parameterizedType).getType());
+                HttpServletResponse raw = res.raw();
+                raw.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                JsonWriter writer = gson.newJsonWriter(new BufferedWriter(
+                        new OutputStreamWriter(new ContainerFlushedOutputStream(raw.getOutputStream()),
+                                StandardCharsets.UTF_8)));
+                try {
+                    gson.toJson(response, TypeToken.get(parameterizedType).getType(), writer);
+                    // Hand the rest over to the servlet container, which sends and closes the stream
+                    writer.flush();
+                }
+                catch (RuntimeException e) {
+                    if (raw.isCommitted()) {
+                        LOG.error("Failed to serialize the response, the client gets a truncated result", e);
+                    }
+                    else {
+                        // Nothing was sent yet, the error response replaces the partial result
+                        raw.resetBuffer();
+                    }
+                    throw e;
+                }
+                return "";
             }
             catch (NoSuchMethodException e) {
                 throw Spark.halt(HttpStatus.SC_BAD_REQUEST, e.getMessage());
@@ -215,6 +252,19 @@ public class RouteFactory {
         return asJson(route);
     }
 
+    /**
+     * Commits the transaction of the request, if any.
+     *
+     * Called once the API method returned and before the response is written: the response is streamed to the
+     * client, so the transaction must not be committed by the filters only after the status is sent. Lazy results
+     * are evaluated after this commit, in a new transaction, so they must only read data.
+     */
+    protected void commitTransaction() {
+        if (HibernateFactory.inTransaction()) {
+            HibernateFactory.commitTransaction();
+        }
+    }
+
     /**
      * Finds a single method matching the specified JSON argument names and types
      *
@@ -290,7 +340,8 @@ public class RouteFactory {
     private Gson initGsonWithSerializers() {
         GsonBuilder builder = new GsonBuilder()
                 .registerTypeAdapter(Map.class, new MapDeserializer())
-                .registerTypeAdapter(List.class, new ListDeserializer());
+                .registerTypeAdapter(List.class, new ListDeserializer())
+                .registerTypeAdapterFactory(new LazyResultTypeAdapterFactory());
 
         // Serializers that serialize classes in the same class hierarchy override each other in the order they are
         // added. To ensure subclass serializers take precedence, they must be added later than serializers of their
@@ -317,4 +368,27 @@ public class RouteFactory {
         Class<?> bClass = b.getSupportedClass();
         return aClass.isAssignableFrom(bClass) ? -1 : (bClass.isAssignableFrom(aClass) ? 1 : 0);
     }
+
+    /**
+     * Output stream that leaves flushing to the servlet container.
+     *
+     * The response is then only sent once the container buffer is full or the request is over, so that small responses
+     * can still be replaced by an error response if their serialization fails.
+     */
+    private static class ContainerFlushedOutputStream extends FilterOutputStream {
+
+        ContainerFlushedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // the container flushes when its buffer is full and when the request is over
+        }
+    }
 }
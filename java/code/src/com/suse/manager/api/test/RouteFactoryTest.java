@@ -43,6 +43,7 @@ import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
 import org.apache.http.HttpStatus;
+import org.hibernate.HibernateException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -68,7 +69,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
             .registerTypeAdapter(List.class, new ListDeserializer())
             .create();
     private final JsonParser parser = new JsonParser();
-    private RouteFactory routeFactory;
+    private TestRouteFactory routeFactory;
     private TestHandler handler;
 
     @Override
@@ -76,7 +77,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
     public void setUp() throws Exception {
         super.setUp();
         handler = new TestHandler();
-        routeFactory = new RouteFactory(createTestSerializerFactory());
+        routeFactory = new TestRouteFactory(createTestSerializerFactory());
     }
 
     static SerializerFactory createTestSerializerFactory() {
@@ -103,7 +104,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/withUser");
         Response res = createResponse();
         authorizeRequest(req, res, user);
-        assertEquals(user.getId(), getResult((String) route.handle(req, res), Long.class));
+        assertEquals(user.getId(), getResult(handle(route, req, res), Long.class));
     }
 
     /**
@@ -141,7 +142,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/numbers", queryParams);
         Response res = createResponse();
 
-        String result = (String) route.handle(req, res);
+        String result = handle(route, req, res);
         assertTrue(result.contains("\"myInteger\":1"));
         assertTrue(result.contains("\"myLong\":" + (Integer.MAX_VALUE + 1L)));
         assertTrue(result.contains("\"myDouble\":3.14"));
@@ -158,7 +159,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, String> queryParams = Map.of("myInteger", "1", "myString", "$tr:ng", "myBoolean", "true");
         Request req = createRequest("/manager/api/test/basicTypes", queryParams);
         Response res = createResponse();
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(1, result.get("myInteger"));
         assertEquals("$tr:ng", result.get("myString"));
@@ -176,7 +177,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, String> queryParams = Map.of("myInteger", "1", "myString", "", "myBoolean", "true");
         Request req = createRequest("/manager/api/test/basicTypes", queryParams);
         Response res = createResponse();
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(1, result.get("myInteger")); // gson prefers long when deserializing numbers
         assertEquals("-empty-", result.get("myString"));
@@ -195,7 +196,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, Object> bodyParams = Map.of("myString", "bar", "myBoolean", "true");
         Request req = createRequest("/manager/api/test/basicTypes", queryParams, GSON.toJson(bodyParams));
         Response res = createResponse();
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(1, result.get("myInteger")); // gson prefers long when deserializing numbers
         assertEquals("bar", result.get("myString")); // value in body should take precedence
@@ -229,7 +230,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, Object> bodyParams = Map.of("myInteger", 1, "myString", "$tr:ng", "myBoolean", true);
         Request req = createRequest("/manager/api/test/basicTypes", GSON.toJson(bodyParams));
         Response res = createResponse();
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(1, result.get("myInteger")); // gson prefers long when deserializing numbers
         assertEquals("$tr:ng", result.get("myString"));
@@ -246,7 +247,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
 
         Request req = createRequest("/manager/api/test/basicDate", Collections.singletonMap("myDate", "2022-04-01"));
         Response res = createResponse();
-        String result = getResult((String) route.handle(req, res), String.class);
+        String result = getResult(handle(route, req, res), String.class);
 
         assertEquals("Apr 1, 2022, 12:00:00 AM", result);
     }
@@ -262,7 +263,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/basicDate",
                 GSON.toJson(Collections.singletonMap("myDate", "2022-04-01")));
         Response res = createResponse();
-        String result = getResult((String) route.handle(req, res), String.class);
+        String result = getResult(handle(route, req, res), String.class);
 
         assertEquals("Apr 1, 2022, 12:00:00 AM", result);
     }
@@ -278,7 +279,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/basicDate",
                 Collections.singletonMap("myDate", "2022-04-01T12:00:05Z"));
         Response res = createResponse();
-        Date result = getResult((String) route.handle(req, res), Date.class);
+        Date result = getResult(handle(route, req, res), Date.class);
 
         assertEquals(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").parse("2022-04-01T12:00:05Z"), result);
     }
@@ -312,7 +313,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, Object> bodyParams = Collections.singletonMap("myList", List.of(3, 2, 5));
         Request req = createRequest("/manager/api/test/sortIntegerList", GSON.toJson(bodyParams));
         Response res = createResponse();
-        List<?> result = getResult((String) route.handle(req, res), List.class);
+        List<?> result = getResult(handle(route, req, res), List.class);
 
         assertEquals(List.of(2, 3, 5), result);
     }
@@ -328,7 +329,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, Object> bodyParams = Collections.singletonMap("myList", List.of(3L, 2L, 5L));
         Request req = createRequest("/manager/api/test/sortLongList", GSON.toJson(bodyParams));
         Response res = createResponse();
-        List<Long> result = getResult((String) route.handle(req, res),
+        List<Long> result = getResult(handle(route, req, res),
                 TypeToken.getParameterized(List.class, Long.class).getType());
 
         assertEquals(List.of(2, 3, 5), result);
@@ -346,7 +347,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Collections.singletonMap("myList", List.of("foo", "bar", "baz", "$tr:ng"));
         Request req = createMultiValueRequest("/manager/api/test/sortStringList", queryParams);
         Response res = createResponse();
-        List<String> result = getResult((String) route.handle(req, res),
+        List<String> result = getResult(handle(route, req, res),
                 TypeToken.getParameterized(List.class, String.class).getType());
 
         assertEquals(List.of("$tr:ng", "bar", "baz", "foo"), result);
@@ -367,7 +368,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, String> queryParams = Collections.singletonMap("myList", "42");
         Request req = createRequest("/manager/api/test/sortIntegerList", queryParams);
         Response res = createResponse();
-        List<Integer> result = getResult((String) route.handle(req, res), List.class);
+        List<Integer> result = getResult(handle(route, req, res), List.class);
 
         assertEquals(List.of(42), result);
     }
@@ -383,7 +384,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Map<String, Object> bodyParams = Collections.singletonMap("myList", List.of("foo", "bar", "baz", "$tr:ng"));
         Request req = createRequest("/manager/api/test/sortStringList", GSON.toJson(bodyParams));
         Response res = createResponse();
-        List<String> result = getResult((String) route.handle(req, res),
+        List<String> result = getResult(handle(route, req, res),
                 TypeToken.getParameterized(List.class, String.class).getType());
 
         assertEquals(List.of("$tr:ng", "bar", "baz", "foo"), result);
@@ -401,13 +402,13 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/overloadedEndpoint", Map.of("myInteger1", "1"));
         Response res = createResponse();
 
-        int result = getResult((String) route.handle(req, res), Integer.class);
+        int result = getResult(handle(route, req, res), Integer.class);
         assertEquals(1, result);
 
         req = createRequest("/manager/api/test/overloadedEndpoint", Map.of("myInteger1", "1", "myInteger2", "2"));
         res = createResponse();
 
-        result = getResult((String) route.handle(req, res), Integer.class);
+        result = getResult(handle(route, req, res), Integer.class);
         assertEquals(2, result);
     }
 
@@ -425,7 +426,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/mapKeysToSet", GSON.toJson(bodyArgs));
         Response res = createResponse();
 
-        Set<String> result = getResult((String) route.handle(req, res), Set.class);
+        Set<String> result = getResult(handle(route, req, res), Set.class);
         assertEquals(Set.of("foo", "bar", "baz"), result);
     }
 
@@ -444,7 +445,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 GSON.toJson(Collections.singletonMap("myList", list)));
         Response res = createResponse();
 
-        List<Object> result = getResult((String) route.handle(req, res), List.class);
+        List<Object> result = getResult(handle(route, req, res), List.class);
         assertTrue(result.containsAll(List.of(1, "two", "3")));
     }
 
@@ -509,7 +510,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
      */
     @Test
     public void testDefaultSerialization() throws Exception {
-        RouteFactory noSerializerFactory = new RouteFactory(new SerializerFactory() {
+        RouteFactory noSerializerFactory = new TestRouteFactory(new SerializerFactory() {
             @Override
             public List<ApiResponseSerializer<?>> getSerializers() {
                 return Collections.emptyList();
@@ -522,7 +523,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/customResponse", Map.of("myInteger", "1", "myString", "foo"));
         Response res = createResponse();
 
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertFalse(result.containsKey("isCustomSerialized"));
         assertEquals(1, result.get("myInteger"));
@@ -541,7 +542,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         Request req = createRequest("/manager/api/test/customResponse", Map.of("myInteger", "1", "myString", "foo"));
         Response res = createResponse();
 
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(true, result.get("isCustomSerialized"));
         assertEquals(1, result.get("myInteger"));
@@ -562,7 +563,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Map.of("myInteger", "1", "myString", "foo"));
         Response res = createResponse();
 
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(true, result.get("isCustomSerialized"));
         assertEquals(1, result.get("myInteger"));
@@ -581,7 +582,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
     @Test
     public void testCustomSerializerWithSerializedSubclass() throws Exception {
         // Create a factory with custom serializers for the case
-        RouteFactory customSerializedRouteFactory = new RouteFactory(new SerializerFactory() {
+        RouteFactory customSerializedRouteFactory = new TestRouteFactory(new SerializerFactory() {
             @Override
             public List<ApiResponseSerializer<?>> getSerializers() {
                 return List.of(
@@ -610,7 +611,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Map.of("myInteger", "1", "myString", "foo"));
         Response res = createResponse();
 
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         // Assert that the result is serialized properly by the serializer of the subclass
         assertEquals(true, result.get("serializedBySubclass"));
@@ -635,7 +636,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                         )));
         Response res = createResponse();
 
-        Map<String, Object> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Object> result = getResult(handle(route, req, res), Map.class);
 
         // Parent object
         assertEquals(true, result.get("isCustomSerialized"));
@@ -649,6 +650,23 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         assertEquals(3, nested.get("myInteger"));
     }
 
+    /**
+     * Tests that nothing is sent to the client if the transaction cannot be committed
+     */
+    @Test
+    public void testFailedCommit() throws Exception {
+        Method withUser = TestHandler.class.getMethod("withUser", User.class);
+        Route route = routeFactory.createRoute(withUser, handler);
+
+        Request req = createRequest("/manager/api/test/withUser");
+        Response res = createResponse();
+        authorizeRequest(req, res, user);
+        routeFactory.commitFails = true;
+
+        assertThrows(HibernateException.class, () -> route.handle(req, res));
+        assertEquals("", res.raw().getOutputStream().toString());
+    }
+
     /**
      * Tests lists of custom serialized objects
      */
@@ -661,8 +679,31 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Map.of("myString1", "foo", "myString2", "bar"));
         Response res = createResponse();
 
-        List<Map<String, Object>> result = getResult((String) route.handle(req, res), List.class);
+        List<Map<String, Object>> result = getResult(handle(route, req, res), List.class);
+
+        assertTrue(result.stream().allMatch(i -> (boolean) i.get("isCustomSerialized")));
+        assertEquals(1, result.get(0).get("myInteger"));
+        assertEquals("foo", result.get(0).get("myString"));
+        assertEquals(2, result.get(1).get("myInteger"));
+        assertEquals("bar", result.get(1).get("myString"));
+    }
+
+    /**
+     * Tests streams of custom serialized objects
+     */
+    @Test
+    public void testCustomSerializedStream() throws Exception {
+        Method customResponseStream = handler.getClass().getMethod("customResponseStream", String.class,
+                String.class);
+        Route route = routeFactory.createRoute(customResponseStream, handler);
+
+        Request req = createRequest("/manager/api/test/customResponseStream",
+                Map.of("myString1", "foo", "myString2", "bar"));
+        Response res = createResponse();
+
+        List<Map<String, Object>> result = getResult(handle(route, req, res), List.class);
 
+        assertEquals(2, result.size());
         assertTrue(result.stream().allMatch(i -> (boolean) i.get("isCustomSerialized")));
         assertEquals(1, result.get(0).get("myInteger"));
         assertEquals("foo", result.get(0).get("myString"));
@@ -682,7 +723,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Map.of("myString1", "foo", "myString2", "bar"));
         Response res = createResponse();
 
-        Map<String, Map<String, Object>> result = getResult((String) route.handle(req, res), Map.class);
+        Map<String, Map<String, Object>> result = getResult(handle(route, req, res), Map.class);
 
         assertEquals(2, result.size());
         assertTrue(result.values().stream().allMatch(i -> (boolean) i.get("isCustomSerialized")));
@@ -704,7 +745,7 @@ public class RouteFactoryTest extends BaseControllerTestCase {
                 Map.of("myList", List.of("3", "5", "2")));
         Response res = createResponse();
 
-        List<Long> result = getResult((String) route.handle(req, res), List.class);
+        List<Long> result = getResult(handle(route, req, res), List.class);
 
         assertEquals(List.of(2, 3, 5), result);
     }
@@ -725,6 +766,18 @@ public class RouteFactoryTest extends BaseControllerTestCase {
         return GSON.fromJson(obj.get("result"), resultType);
     }
 
+    /**
+     * Handles a request, returning the JSON response written to the output stream
+     * @param route the route
+     * @param req the request
+     * @param res the response
+     * @return the JSON response
+     */
+    private String handle(Route route, Request req, Response res) throws Exception {
+        assertEquals("", route.handle(req, res));
+        return res.raw().getOutputStream().toString();
+    }
+
     /**
      * Unwraps the error message from an unsuccessful JSON response
      * @param response the JSON response
@@ -810,4 +863,23 @@ public class RouteFactoryTest extends BaseControllerTestCase {
     private Response createResponse() {
         return RequestResponseFactory.create(new RhnMockHttpServletResponse());
     }
+
+    /**
+     * Route factory leaving the transaction to the test, which rolls it back
+     */
+    private static class TestRouteFactory extends RouteFactory {
+
+        private boolean commitFails;
+
+        TestRouteFactory(SerializerFactory serializerFactoryIn) {
+            super(serializerFactoryIn);
+        }
+
+        @Override
+        protected void commitTransaction() {
+            if (commitFails) {
+                throw new HibernateException("Commit failed");
+            }
+        }
+    }
 }
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * API handler with multiple methods for unit testing
@@ -201,6 +202,18 @@ public class TestHandler extends BaseHandler {
                 new TestResponse(2, myString2));
     }
 
+    /**
+     * Returns a lazily evaluated {@link Stream} of {@link TestResponse} objects initialized with the input parameters
+     * @param myString1 the input parameter to put in the first element
+     * @param myString2 the input parameter to put in the second element
+     * @return the stream of custom response objects
+     */
+    @ReadOnly
+    public Stream<TestResponse> customResponseStream(String myString1, String myString2) {
+        return Stream.of(myString1, myString2)
+                .map(s -> new TestResponse(s.equals(myString1) ? 1 : 2, s));
+    }
+
     /**
      * Returns a {@link Map} of {@link TestResponse} objects initialized with the input parameters
      * @param myString1 the input parameter to put in the first element
@@ -16,11 +16,9 @@ package com.suse.manager.maintenance;
 
 import static com.redhat.rhn.domain.role.RoleFactory.ORG_ADMIN;
 import static java.util.Optional.empty;
-import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
@@ -52,7 +50,6 @@ import com.suse.manager.model.maintenance.MaintenanceSchedule.ScheduleType;
 import com.suse.manager.model.maintenance.ScheduleFactory;
 import com.suse.manager.reactor.messaging.ApplyStatesEventMessage;
 import com.suse.manager.utils.HttpHelper;
-import com.suse.utils.Opt;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpResponse;
@@ -82,9 +79,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.component.CalendarComponent;
-
 /**
  * MaintenanceManager
  */
@@ -95,6 +89,7 @@ public class MaintenanceManager {
     private ScheduleFactory scheduleFactory;
     private CalendarFactory calendarFactory;
     private IcalUtils icalUtils;
+    private MaintenanceWindowIndex windowIndex;
 
     /**
      * Constructor.
@@ -103,6 +98,7 @@ public class MaintenanceManager {
         scheduleFactory = new ScheduleFactory();
         calendarFactory = new CalendarFactory();
         icalUtils = new IcalUtils();
+        windowIndex = MaintenanceWindowIndex.getInstance();
     }
 
     /**
@@ -351,6 +347,7 @@ public class MaintenanceManager {
             calendar.setUrl(details.get("url"));
         }
         calendarFactory.save(calendar);
+        windowIndex.invalidate(calendar);
         List<RescheduleResult> result = new LinkedList<>();
         for (MaintenanceSchedule schedule: scheduleFactory.listByUserAndCalendar(user, calendar)) {
             RescheduleResult r = manageAffectedScheduledActions(user, schedule, rescheduleStrategy);
@@ -380,6 +377,7 @@ public class MaintenanceManager {
         calendar.setIcal(fetchCalendarData(
                 calendar.getUrlOpt().orElseThrow(() -> new EntityNotExistsException("url"))));
         calendarFactory.save(calendar);
+        windowIndex.invalidate(calendar);
         List<RescheduleResult> result = new LinkedList<>();
         for (MaintenanceSchedule schedule: scheduleFactory.listByUserAndCalendar(user, calendar)) {
             RescheduleResult r = manageAffectedScheduledActions(user, schedule, rescheduleStrategy);
@@ -409,6 +407,7 @@ public class MaintenanceManager {
         List<RescheduleResult> result = new LinkedList<>();
         List<MaintenanceSchedule> schedules = scheduleFactory.listByUserAndCalendar(user, calendar);
         calendarFactory.remove(calendar);
+        windowIndex.invalidate(calendar);
         for (MaintenanceSchedule schedule: schedules) {
             schedule.setCalendar(null);
             List<RescheduleStrategy> strategy = new LinkedList<>();
@@ -677,16 +676,7 @@ public class MaintenanceManager {
      * @return set of {@link MaintenanceSchedule}s
      */
     private Set<MaintenanceSchedule> listSystemSchedulesNotMatchingDate(Set<Long> systemIds, Date date) {
-        return listSchedulesBySystems(systemIds).stream()
-                .filter(schedule -> {
-                    Collection<CalendarComponent> events = icalUtils.getCalendarEventsAtDate(
-                            date,
-                            schedule.getCalendarOpt().flatMap(c -> icalUtils.parseCalendar(c)),
-                            getScheduleNameForMulti(schedule)
-                    );
-                    return events.isEmpty();
-                })
-                .collect(toSet());
+        return windowIndex.listSchedulesNotInMaintenanceWindow(listSchedulesBySystems(systemIds), date);
     }
 
     protected String fetchCalendarData(String url) {
@@ -722,8 +712,6 @@ public class MaintenanceManager {
         }
         List<Server> servers = ServerFactory.lookupByIdsAndOrg(withMaintenanceActions, user.getOrg());
 
-        Optional<Calendar> calendarOpt = schedule.getCalendarOpt().flatMap(c -> icalUtils.parseCalendar(c));
-
         List<ActionStatus> pending = new LinkedList<>();
         pending.add(ActionFactory.STATUS_PICKED_UP);
         pending.add(ActionFactory.STATUS_QUEUED);
@@ -748,9 +736,7 @@ public class MaintenanceManager {
                 }
                 return false;
             })
-            .filter(Opt.fold(calendarOpt,
-                    () -> (sa -> true),
-                    c -> (sa -> !isActionInMaintenanceWindow(sa.getParentAction(), schedule, calendarOpt))))
+            .filter(sa -> !isActionInMaintenanceWindow(sa.getParentAction(), schedule))
             .collect(Collectors.groupingBy(ServerAction::getParentAction,
                     Collectors.mapping(ServerAction::getServer, toList())));
 
@@ -782,41 +768,21 @@ public class MaintenanceManager {
     }
 
     /**
-     * Check if provided action is inside of a maintenance window
+     * Check if provided action is inside of a maintenance window of its schedule
      *
      * @param action the action to check
      * @param schedule the schedule where the action belong to
-     * @param calendarOpt the parsed calendar (for performance reasons)
      * @return true when the action is inside of a maintenance window, otherwise false
      */
-    public boolean isActionInMaintenanceWindow(Action action, MaintenanceSchedule schedule,
-            Optional<Calendar> calendarOpt) {
-        Collection<CalendarComponent> events = icalUtils.getCalendarEventsAtDate(
-                action.getEarliestAction(),
-                calendarOpt,
-                getScheduleNameForMulti(schedule)
-        );
-
-        if (!events.isEmpty()) {
-            if (log.isDebugEnabled()) {
-                events.stream().forEach(cc -> log.debug(
-                        String.format("Action '%s' inside of maintenance window in '%s': '%s'",
-                                action, schedule.getName(), cc)));
-            }
+    public boolean isActionInMaintenanceWindow(Action action, MaintenanceSchedule schedule) {
+        if (windowIndex.isInMaintenanceWindow(schedule, action.getEarliestAction())) {
+            log.debug("Action '{}' inside of maintenance window '{}'", action, schedule.getName());
             return true;
         }
         log.debug("Action '{}' outside of maintenance window '{}'", action, schedule.getName());
         return false;
     }
 
-    private Collection<CalendarComponent> getCalendarForNow(MaintenanceSchedule ms) {
-        return ms.getCalendarOpt()
-                .map(cal -> icalUtils.getCalendarEventsAtDate(
-                        new Date(), icalUtils.parseCalendar(cal),
-                        getScheduleNameForMulti(ms)))
-                .orElse(Collections.emptyList());
-    }
-
     /**
      * Check if system is in maintenance mode
      *
@@ -825,7 +791,7 @@ public class MaintenanceManager {
      */
     public boolean isSystemInMaintenanceMode(Server server) {
         return server.getMaintenanceScheduleOpt()
-                .map(schedule -> !getCalendarForNow(schedule).isEmpty())
+                .map(schedule -> windowIndex.isInMaintenanceWindow(schedule, new Date()))
                 .orElse(true);
     }
 
@@ -836,10 +802,11 @@ public class MaintenanceManager {
      * @return List of minions in maintenance mode
      */
     public List<Long> systemIdsMaintenanceMode(List<MinionServer> minions) {
+        Date now = new Date();
         Set<MaintenanceSchedule> schedulesInMaintMode = minions.stream()
                 .flatMap(minion -> minion.getMaintenanceScheduleOpt().stream())
                 .distinct()
-                .filter(sched -> !getCalendarForNow(sched).isEmpty())
+                .filter(sched -> windowIndex.isInMaintenanceWindow(sched, now))
                 .collect(Collectors.toSet());
 
         List<Long> minionsInMaintMode = minions.stream()
@@ -948,16 +915,4 @@ public class MaintenanceManager {
             throw new EntityExistsException(String.format("Maintenance Calendar '%s' already exists", label));
         }
     }
-
-    /**
-     * Convenience method: return schedule name if the schedule type is MULTI, return empty otherwise
-     * @param schedule the schedule
-     * @return optional of schedule name
-     */
-    private static Optional<String> getScheduleNameForMulti(MaintenanceSchedule schedule) {
-        if (schedule.getScheduleType() == MaintenanceSchedule.ScheduleType.MULTI) {
-            return of(schedule.getName());
-        }
-        return empty();
-    }
 }
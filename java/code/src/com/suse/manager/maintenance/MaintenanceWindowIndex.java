@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.suse.manager.maintenance;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import com.suse.manager.model.maintenance.MaintenanceCalendar;
+import com.suse.manager.model.maintenance.MaintenanceSchedule;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * Index of the maintenance windows of the schedules, shared by all threads.
+ *
+ * Each {@link MaintenanceCalendar} is parsed once, and the windows each schedule selects from it are
+ * precomputed over roughly a year around the current date, as sorted and disjoint intervals. Checking a date
+ * then takes a binary search per schedule. Dates outside of the precomputed range are checked against the
+ * parsed calendar.
+ *
+ * Calendars are reparsed when their iCal data changes, whichever process changed it. The windows of a schedule
+ * are kept by the event name it selects, so changing the type, name or calendar of a schedule selects other
+ * windows.
+ */
+public class MaintenanceWindowIndex {
+
+    private static final Logger LOG = LogManager.getLogger(MaintenanceWindowIndex.class);
+
+    private static final MaintenanceWindowIndex INSTANCE = new MaintenanceWindowIndex(new IcalUtils());
+
+    /* Windows are precomputed starting this long before their computation */
+    private static final long LOOKBEHIND_DAYS = 31;
+
+    /* The range precomputed by IcalUtils.calculateUpcomingPeriods */
+    private static final long RANGE_DAYS = 365 + 31;
+
+    /* Precomputed windows are moved forward once this old */
+    private static final long REFRESH_MILLIS = ChronoUnit.DAYS.getDuration().toMillis();
+
+    /*
+     * As in IcalUtils.getCalendarEventsAtDate, a date is truncated to the second and matches the windows
+     * overlapping that second, bounds included
+     */
+    private static final long DATE_PRECISION_MILLIS = 1000;
+
+    private final IcalUtils icalUtils;
+    private final Map<Long, CalendarEntry> calendars = new ConcurrentHashMap<>();
+
+    /**
+     * Standard constructor.
+     * @param icalUtilsIn the iCal utilities
+     */
+    public MaintenanceWindowIndex(IcalUtils icalUtilsIn) {
+        icalUtils = icalUtilsIn;
+    }
+
+    /**
+     * @return the index shared by all threads
+     */
+    public static MaintenanceWindowIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks if a date is inside a maintenance window of a schedule. Schedules without a calendar, or with a
+     * calendar that cannot be parsed, have no maintenance window.
+     *
+     * @param schedule the schedule
+     * @param date the date
+     * @return true if the date is inside a maintenance window of the schedule
+     */
+    public boolean isInMaintenanceWindow(MaintenanceSchedule schedule, Date date) {
+        return schedule.getCalendarOpt()
+                .map(calendar -> isInMaintenanceWindow(calendar, getEventName(schedule), date.getTime()))
+                .orElse(false);
+    }
+
+    /**
+     * Returns the schedules without a maintenance window at a date.
+     *
+     * @param schedules the schedules
+     * @param date the date
+     * @return the schedules, among the given ones, with no maintenance window at the date
+     */
+    public Set<MaintenanceSchedule> listSchedulesNotInMaintenanceWindow(Collection<MaintenanceSchedule> schedules,
+            Date date) {
+        return schedules.stream()
+                .distinct()
+                .filter(schedule -> !isInMaintenanceWindow(schedule, date))
+                .collect(toSet());
+    }
+
+    /**
+     * Drops the windows computed from a calendar.
+     *
+     * @param calendar the calendar
+     */
+    public void invalidate(MaintenanceCalendar calendar) {
+        if (calendar.getId() != null) {
+            calendars.remove(calendar.getId());
+        }
+    }
+
+    /**
+     * Drops all the computed windows.
+     */
+    public void clear() {
+        calendars.clear();
+    }
+
+    private boolean isInMaintenanceWindow(MaintenanceCalendar calendar, Optional<String> eventName, long date) {
+        CalendarEntry entry = lookupEntry(calendar);
+        if (entry.calendar.isEmpty()) {
+            return false;
+        }
+
+        Windows windows = entry.getWindows(eventName, System.currentTimeMillis());
+        if (windows.covers(date)) {
+            return windows.contains(date);
+        }
+
+        synchronized (entry) {
+            return !icalUtils.getCalendarEventsAtDate(new Date(date), entry.calendar, eventName).isEmpty();
+        }
+    }
+
+    private CalendarEntry lookupEntry(MaintenanceCalendar calendar) {
+        String ical = calendar.getIcal();
+        if (calendar.getId() == null) {
+            return new CalendarEntry(ical, icalUtils.parseCalendar(calendar));
+        }
+        return calendars.compute(calendar.getId(), (id, entry) -> {
+            if (entry != null && entry.ical.equals(ical)) {
+                return entry;
+            }
+            LOG.debug("Parsing maintenance calendar {}", calendar.getLabel());
+            return new CalendarEntry(ical, icalUtils.parseCalendar(calendar));
+        });
+    }
+
+    private static Optional<String> getEventName(MaintenanceSchedule schedule) {
+        if (schedule.getScheduleType() == MaintenanceSchedule.ScheduleType.MULTI) {
+            return Optional.of(schedule.getName());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * A parsed calendar and the windows computed from it.
+     */
+    private class CalendarEntry {
+
+        private final String ical;
+        private final Optional<Calendar> calendar;
+        private final Map<Optional<String>, Windows> windowsByEventName = new ConcurrentHashMap<>();
+
+        CalendarEntry(String icalIn, Optional<Calendar> calendarIn) {
+            ical = icalIn;
+            calendar = calendarIn;
+        }
+
+        Windows getWindows(Optional<String> eventName, long now) {
+            Windows windows = windowsByEventName.get(eventName);
+            if (windows == null || now - windows.computed >= REFRESH_MILLIS) {
+                windows = computeWindows(eventName, now);
+                windowsByEventName.put(eventName, windows);
+            }
+            return windows;
+        }
+
+        private synchronized Windows computeWindows(Optional<String> eventName, long now) {
+            Instant from = Instant.ofEpochMilli(now).minus(LOOKBEHIND_DAYS, ChronoUnit.DAYS);
+            List<Pair<Instant, Instant>> periods = icalUtils
+                    .calculateUpcomingPeriods(calendar.get(), eventName, from, Integer.MAX_VALUE)
+                    .collect(toList());
+            return new Windows(now, from.toEpochMilli(), from.plus(RANGE_DAYS, ChronoUnit.DAYS).toEpochMilli(),
+                    periods);
+        }
+    }
+
+    /**
+     * Maintenance windows over a range of time, merged into sorted and disjoint intervals.
+     */
+    private static class Windows {
+
+        private final long computed;
+        private final long from;
+        private final long to;
+        private final long[] starts;
+        private final long[] ends;
+
+        /**
+         * @param computedIn when the windows were computed
+         * @param fromIn the start of the range
+         * @param toIn the end of the range
+         * @param periods all the windows overlapping the range, sorted by start
+         */
+        Windows(long computedIn, long fromIn, long toIn, List<Pair<Instant, Instant>> periods) {
+            computed = computedIn;
+            from = fromIn;
+            to = toIn;
+            long[] startsTmp = new long[periods.size()];
+            long[] endsTmp = new long[periods.size()];
+            int count = 0;
+            for (Pair<Instant, Instant> period : periods) {
+                long start = period.getLeft().toEpochMilli();
+                long end = period.getRight().toEpochMilli();
+                if (count > 0 && start <= endsTmp[count - 1]) {
+                    endsTmp[count - 1] = Math.max(endsTmp[count - 1], end);
+                }
+                else {
+                    startsTmp[count] = start;
+                    endsTmp[count] = end;
+                    count++;
+                }
+            }
+            starts = Arrays.copyOf(startsTmp, count);
+            ends = Arrays.copyOf(endsTmp, count);
+        }
+
+        /**
+         * @param date the date
+         * @return true if all the windows that could match the date are known
+         */
+        boolean covers(long date) {
+            long second = Math.floorDiv(date, DATE_PRECISION_MILLIS) * DATE_PRECISION_MILLIS;
+            return second > from && second + DATE_PRECISION_MILLIS < to;
+        }
+
+        /**
+         * @param date the date
+         * @return true if a window overlaps the second of the date
+         */
+        boolean contains(long date) {
+            long second = Math.floorDiv(date, DATE_PRECISION_MILLIS) * DATE_PRECISION_MILLIS;
+            // the last window starting by the end of the second, as the windows are disjoint it ends last
+            int i = Arrays.binarySearch(starts, second + DATE_PRECISION_MILLIS);
+            int last = i >= 0 ? i : -i - 2;
+            return last >= 0 && ends[last] >= second;
+        }
+    }
+}
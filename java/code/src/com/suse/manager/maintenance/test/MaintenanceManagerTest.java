@@ -48,6 +48,7 @@ import com.suse.manager.maintenance.MaintenanceWindowData;
 import com.suse.manager.maintenance.rescheduling.CancelRescheduleStrategy;
 import com.suse.manager.maintenance.rescheduling.RescheduleResult;
 import com.suse.manager.maintenance.rescheduling.RescheduleStrategy;
+import com.suse.manager.model.maintenance.CalendarFactory;
 import com.suse.manager.model.maintenance.MaintenanceCalendar;
 import com.suse.manager.model.maintenance.MaintenanceSchedule;
 import com.suse.manager.model.maintenance.MaintenanceSchedule.ScheduleType;
@@ -58,7 +59,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
-import java.io.StringReader;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -73,9 +73,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import net.fortuna.ical4j.data.CalendarBuilder;
-import net.fortuna.ical4j.model.Calendar;
-
 
 public class MaintenanceManagerTest extends BaseTestCaseWithUser {
 
@@ -383,24 +380,17 @@ public class MaintenanceManagerTest extends BaseTestCaseWithUser {
         action.addServerAction(serverAction);
         ActionManager.storeAction(action);
 
-        StringReader sin = new StringReader(FileUtils.readStringFromFile(icalKde.getAbsolutePath()));
-        CalendarBuilder builder = new CalendarBuilder();
-        Calendar calendar = null;
-        calendar = builder.build(sin);
-
-        assertFalse(mm.isActionInMaintenanceWindow(action, ms, Optional.ofNullable(calendar)));
+        assertFalse(mm.isActionInMaintenanceWindow(action, ms));
 
         start = ZonedDateTime.parse("2020-04-20T09:00:00+02:00", DateTimeFormatter.ISO_OFFSET_DATE_TIME);
         action.setEarliestAction(Date.from(start.toInstant()));
         ActionManager.storeAction(action);
-        assertTrue(mm.isActionInMaintenanceWindow(action, ms, Optional.ofNullable(calendar)));
+        assertTrue(mm.isActionInMaintenanceWindow(action, ms));
 
         // icalKde2 has an EXDATE 20200420 set
-        sin = new StringReader(FileUtils.readStringFromFile(icalKde2.getAbsolutePath()));
-        builder = new CalendarBuilder();
-        calendar = null;
-        calendar = builder.build(sin);
-        assertFalse(mm.isActionInMaintenanceWindow(action, ms, Optional.ofNullable(calendar)));
+        mc.setIcal(FileUtils.readStringFromFile(icalKde2.getAbsolutePath()));
+        new CalendarFactory().save(mc);
+        assertFalse(mm.isActionInMaintenanceWindow(action, ms));
     }
 
     @Test
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.suse.manager.maintenance.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.util.FileUtils;
+import com.redhat.rhn.testing.TestUtils;
+
+import com.suse.manager.maintenance.IcalUtils;
+import com.suse.manager.maintenance.MaintenanceWindowIndex;
+import com.suse.manager.model.maintenance.MaintenanceCalendar;
+import com.suse.manager.model.maintenance.MaintenanceSchedule;
+import com.suse.manager.model.maintenance.MaintenanceSchedule.ScheduleType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import net.fortuna.ical4j.model.Calendar;
+
+/**
+ * Tests for {@link MaintenanceWindowIndex}
+ */
+public class MaintenanceWindowIndexTest {
+
+    private static final String TESTDATAPATH = "/com/suse/manager/maintenance/test/testdata";
+    private static final String KDE_ICS = "maintenance-windows-kde.ics";
+    private static final String KDE2_ICS = "maintenance-windows-kde-2.ics";
+    private static final String EXCHANGE_MULTI1_ICS = "maintenance-windows-multi-exchange-1.ics";
+
+    private IcalUtils icalUtils = new IcalUtils();
+    private MaintenanceWindowIndex index;
+
+    /**
+     * {@inheritDoc}
+     */
+    @BeforeEach
+    public void setUp() {
+        index = new MaintenanceWindowIndex(icalUtils);
+    }
+
+    private static String readTestData(String name) throws Exception {
+        File ical = new File(TestUtils.findTestData(new File(TESTDATAPATH, name).getAbsolutePath()).getPath());
+        return FileUtils.readStringFromFile(ical.getAbsolutePath());
+    }
+
+    private static MaintenanceCalendar createCalendar(Long id, String ical) {
+        MaintenanceCalendar calendar = new MaintenanceCalendar();
+        calendar.setId(id);
+        calendar.setLabel("calendar-" + id);
+        calendar.setIcal(ical);
+        return calendar;
+    }
+
+    private static MaintenanceSchedule createSchedule(Long id, String name, ScheduleType type,
+            MaintenanceCalendar calendar) {
+        MaintenanceSchedule schedule = new MaintenanceSchedule();
+        schedule.setId(id);
+        schedule.setName(name);
+        schedule.setScheduleType(type);
+        schedule.setCalendar(calendar);
+        return schedule;
+    }
+
+    private static Optional<String> getEventName(MaintenanceSchedule schedule) {
+        return schedule.getScheduleType() == ScheduleType.MULTI ? Optional.of(schedule.getName()) : Optional.empty();
+    }
+
+    /**
+     * Every hour and around every window boundary, over the past and next 3 weeks, where the windows are
+     * precomputed, and over 6 weeks from April 2020, where the parsed calendar is used, the index answers as the
+     * calendar does.
+     */
+    @Test
+    public void testMatchesCalendar() throws Exception {
+        MaintenanceCalendar kde = createCalendar(1L, readTestData(KDE_ICS));
+        MaintenanceCalendar multi = createCalendar(2L, readTestData(EXCHANGE_MULTI1_ICS));
+        List<MaintenanceSchedule> schedules = List.of(
+                createSchedule(1L, "single", ScheduleType.SINGLE, kde),
+                createSchedule(2L, "SAP Maintenance Window", ScheduleType.MULTI, multi),
+                createSchedule(3L, "Core Server Window", ScheduleType.MULTI, multi));
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        Instant april2020 = ZonedDateTime.parse("2020-04-13T00:00:00+02:00").toInstant();
+        int inWindow = 0;
+        for (MaintenanceSchedule schedule : schedules) {
+            Optional<Calendar> calendar = icalUtils.parseCalendar(schedule.getCalendarOpt().get());
+            for (Instant start : List.of(now.minus(21, ChronoUnit.DAYS), april2020)) {
+                Instant end = start.plus(42, ChronoUnit.DAYS);
+                List<Instant> dates = new ArrayList<>();
+                for (Instant date = start; date.isBefore(end); date = date.plus(1, ChronoUnit.HOURS)) {
+                    dates.add(date);
+                }
+                icalUtils.calculateUpcomingPeriods(calendar.get(), getEventName(schedule), start, 100)
+                        .flatMap(p -> Stream.of(p.getLeft(), p.getRight()))
+                        .flatMap(b -> Stream.of(-1500L, -1000L, -1L, 0L, 999L, 1000L, 1001L).map(b::plusMillis))
+                        .forEach(dates::add);
+
+                for (Instant date : dates) {
+                    boolean expected = !icalUtils.getCalendarEventsAtDate(Date.from(date), calendar,
+                            getEventName(schedule)).isEmpty();
+                    assertEquals(expected, index.isInMaintenanceWindow(schedule, Date.from(date)),
+                            schedule.getName() + " at " + date);
+                    inWindow += expected ? 1 : 0;
+                }
+            }
+        }
+        assertTrue(inWindow > 0);
+    }
+
+    @Test
+    public void testListSchedulesNotInMaintenanceWindow() throws Exception {
+        MaintenanceCalendar multi = createCalendar(2L, readTestData(EXCHANGE_MULTI1_ICS));
+        MaintenanceSchedule sap = createSchedule(1L, "SAP Maintenance Window", ScheduleType.MULTI, multi);
+        MaintenanceSchedule core = createSchedule(2L, "Core Server Window", ScheduleType.MULTI, multi);
+        MaintenanceSchedule noCalendar = createSchedule(3L, "no calendar", ScheduleType.SINGLE, null);
+
+        // Monday, inside the SAP window only
+        Date date = Date.from(ZonedDateTime.parse("2020-04-20T09:00:00+02:00").toInstant());
+
+        assertEquals(Set.of(core, noCalendar),
+                index.listSchedulesNotInMaintenanceWindow(List.of(sap, core, noCalendar, core), date));
+    }
+
+    @Test
+    public void testCalendarChange() throws Exception {
+        MaintenanceCalendar calendar = createCalendar(1L, readTestData(KDE_ICS));
+        MaintenanceSchedule schedule = createSchedule(1L, "single", ScheduleType.SINGLE, calendar);
+        Date date = Date.from(ZonedDateTime.parse("2020-04-20T09:00:00+02:00").toInstant());
+
+        assertTrue(index.isInMaintenanceWindow(schedule, date));
+
+        // the second calendar has an EXDATE on 2020-04-20, it is picked up without invalidation
+        calendar.setIcal(readTestData(KDE2_ICS));
+        assertFalse(index.isInMaintenanceWindow(schedule, date));
+
+        calendar.setIcal(readTestData(KDE_ICS));
+        index.invalidate(calendar);
+        assertTrue(index.isInMaintenanceWindow(schedule, date));
+
+        calendar.setIcal("not a calendar");
+        assertFalse(index.isInMaintenanceWindow(schedule, date));
+    }
+}
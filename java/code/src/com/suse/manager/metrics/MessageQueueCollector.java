@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.common.messaging.MessagePartition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the partitions of the message queue.
+ */
+public class MessageQueueCollector extends Collector {
+
+    private final List<MessagePartition> partitions;
+    private final String queueId;
+
+    /**
+     * Standard constructor.
+     * @param partitionsIn the message queue partitions
+     * @param queueIdIn a unique ID for the queue
+     */
+    public MessageQueueCollector(List<MessagePartition> partitionsIn, String queueIdIn) {
+        this.partitions = partitionsIn;
+        this.queueId = queueIdIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> out = new ArrayList<>();
+
+        GaugeMetricFamily depth = new GaugeMetricFamily(queueId + "_" + "partition_depth",
+                "Number of messages waiting in the partition", List.of("partition"));
+        addAll(depth, p -> (double) p.getDepth());
+        out.add(depth);
+
+        GaugeMetricFamily capacity = new GaugeMetricFamily(queueId + "_" + "partition_capacity",
+                "Number of waiting messages above which publishers are throttled", List.of("partition"));
+        addAll(capacity, p -> (double) p.getCapacity());
+        out.add(capacity);
+
+        CounterMetricFamily published = new CounterMetricFamily(queueId + "_" + "partition_messages_total",
+                "Messages published to the partition", List.of("partition"));
+        addAll(published, p -> (double) p.getPublishedCount());
+        out.add(published);
+
+        CounterMetricFamily completed = new CounterMetricFamily(queueId + "_" + "partition_completed_total",
+                "Messages executed by the partition", List.of("partition"));
+        addAll(completed, p -> (double) p.getCompletedCount());
+        out.add(completed);
+
+        CounterMetricFamily overflowed = new CounterMetricFamily(queueId + "_" + "partition_overflow_total",
+                "Messages enqueued by queue handlers over the partition capacity", List.of("partition"));
+        addAll(overflowed, p -> (double) p.getOverflowCount());
+        out.add(overflowed);
+
+        CounterMetricFamily rejected = new CounterMetricFamily(queueId + "_" + "partition_rejected_total",
+                "Messages refused after waiting for a full partition", List.of("partition"));
+        addAll(rejected, p -> (double) p.getRejectedCount());
+        out.add(rejected);
+
+        CounterMetricFamily wait = new CounterMetricFamily(queueId + "_" + "partition_wait_seconds_total",
+                "Time messages spent waiting in the partition", List.of("partition"));
+        addAll(wait, MessagePartition::getWaitSeconds);
+        out.add(wait);
+
+        CounterMetricFamily processing = new CounterMetricFamily(queueId + "_" + "partition_processing_seconds_total",
+                "Time spent executing the messages of the partition", List.of("partition"));
+        addAll(processing, MessagePartition::getProcessingSeconds);
+        out.add(processing);
+
+        return out;
+    }
+
+    private void addAll(GaugeMetricFamily family, Function<MessagePartition, Double> value) {
+        partitions.forEach(p -> family.addMetric(List.of(p.getName()), value.apply(p)));
+    }
+
+    private void addAll(CounterMetricFamily family, Function<MessagePartition, Double> value) {
+        partitions.forEach(p -> family.addMetric(List.of(p.getName()), value.apply(p)));
+    }
+}
@@ -15,16 +15,20 @@
 package com.suse.manager.metrics;
 
 import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.messaging.MessagePartition;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.quartz.Scheduler;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import io.prometheus.client.Collector;
 import io.prometheus.client.exporter.HTTPServer;
+import net.sf.ehcache.CacheManager;
 
 /**
  * Exports Prometheus metrics.
@@ -76,6 +80,38 @@ public enum PrometheusExporter {
         }
     }
 
+    /**
+     * Registers the partitions of a message queue for monitoring.
+     * @param partitions the message queue partitions
+     * @param queueId a unique ID for the queue
+     */
+    public void registerMessageQueue(List<MessagePartition> partitions, String queueId) {
+        if (ENABLED) {
+            new MessageQueueCollector(partitions, queueId).register();
+        }
+    }
+
+    /**
+     * Registers collectors maintained by their owner, like histograms or counters.
+     * @param collectors the collectors
+     */
+    public void registerCollectors(Collector... collectors) {
+        if (ENABLED) {
+            Arrays.stream(collectors).forEach(Collector::register);
+        }
+    }
+
+    /**
+     * Registers the regions of a Hibernate second level cache for monitoring.
+     * @param cacheManager the cache manager holding the regions
+     * @param unit the application component, added to the metrics as the `unit` label
+     */
+    public void registerSecondLevelCache(CacheManager cacheManager, String unit) {
+        if (ENABLED) {
+            new SecondLevelCacheCollector(cacheManager, unit).register();
+        }
+    }
+
     /**
      * Registers a Scheduler for monitoring.
      * @param scheduler a scheduler
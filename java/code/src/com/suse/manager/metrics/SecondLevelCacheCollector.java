@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Status;
+import net.sf.ehcache.statistics.StatisticsGateway;
+
+/**
+ * Collector for the regions of the Hibernate second level cache.
+ */
+public class SecondLevelCacheCollector extends Collector {
+
+    private static final List<String> LABELS = List.of("unit", "region");
+
+    private final CacheManager cacheManager;
+    private final String unit;
+
+    /**
+     * Standard constructor.
+     * @param cacheManagerIn the cache manager holding the regions
+     * @param unitIn the application component, added to the metrics as the `unit` label
+     */
+    public SecondLevelCacheCollector(CacheManager cacheManagerIn, String unitIn) {
+        this.cacheManager = cacheManagerIn;
+        this.unit = unitIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<Ehcache> regions = new ArrayList<>();
+        if (cacheManager.getStatus() == Status.STATUS_ALIVE) {
+            for (String name : cacheManager.getCacheNames()) {
+                Ehcache cache = cacheManager.getEhcache(name);
+                if (cache != null) {
+                    regions.add(cache);
+                }
+            }
+        }
+
+        List<MetricFamilySamples> out = new ArrayList<>();
+
+        CounterMetricFamily hits = new CounterMetricFamily("hibernate_cache_region_hits_total",
+                "Second level cache lookups finding an entry", LABELS);
+        addAll(hits, regions, StatisticsGateway::cacheHitCount);
+        out.add(hits);
+
+        CounterMetricFamily misses = new CounterMetricFamily("hibernate_cache_region_misses_total",
+                "Second level cache lookups finding no entry", LABELS);
+        addAll(misses, regions, StatisticsGateway::cacheMissCount);
+        out.add(misses);
+
+        CounterMetricFamily evictions = new CounterMetricFamily("hibernate_cache_region_evictions_total",
+                "Entries evicted from a full second level cache region", LABELS);
+        addAll(evictions, regions, StatisticsGateway::cacheEvictedCount);
+        out.add(evictions);
+
+        CounterMetricFamily expirations = new CounterMetricFamily("hibernate_cache_region_expirations_total",
+                "Second level cache entries dropped at the end of their time to live", LABELS);
+        addAll(expirations, regions, StatisticsGateway::cacheExpiredCount);
+        out.add(expirations);
+
+        GaugeMetricFamily size = new GaugeMetricFamily("hibernate_cache_region_size",
+                "Number of entries in the second level cache region", LABELS);
+        regions.forEach(r -> size.addMetric(List.of(unit, r.getName()), r.getStatistics().getSize()));
+        out.add(size);
+
+        return out;
+    }
+
+    private void addAll(CounterMetricFamily family, List<Ehcache> regions,
+            ToDoubleFunction<StatisticsGateway> value) {
+        regions.forEach(r -> family.addMetric(List.of(unit, r.getName()), value.applyAsDouble(r.getStatistics())));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor;
+
+/**
+ * Batch size adapting to the observed duration of the batches: it doubles
+ * while full batches complete well within the target duration, and halves
+ * when a batch takes longer than the target, always staying between 1 and
+ * the configured maximum.
+ */
+public class AdaptiveBatchSize {
+
+    private final int max;
+    private final long targetNanos;
+    private int current;
+
+    /**
+     * Standard constructor.
+     * @param maxIn the maximum batch size
+     * @param targetNanosIn the target duration of a batch, in nanoseconds
+     */
+    public AdaptiveBatchSize(int maxIn, long targetNanosIn) {
+        max = Math.max(1, maxIn);
+        targetNanos = targetNanosIn;
+        current = 1;
+    }
+
+    /**
+     * @return the size of the next batch
+     */
+    public synchronized int get() {
+        return current;
+    }
+
+    /**
+     * Adapts the batch size to the duration of a completed batch.
+     * @param size the number of items in the batch
+     * @param durationNanos the time the batch took, in nanoseconds
+     */
+    public synchronized void record(int size, long durationNanos) {
+        if (durationNanos > targetNanos) {
+            current = Math.max(1, current / 2);
+        }
+        else if (size >= current && durationNanos < targetNanos / 2) {
+            // only grow on full batches, a partial one says nothing about a bigger size
+            current = (int) Math.min(max, current * 2L);
+        }
+    }
+}
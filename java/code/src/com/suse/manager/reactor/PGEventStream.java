@@ -43,9 +43,11 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -53,9 +55,11 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
 /**
  * Listen for notifications from the Postgres database (suseSaltEvent) and react on those.
  */
@@ -64,6 +68,30 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
     private static final Logger LOG = LogManager.getLogger(PGEventStream.class);
     private static final int MAX_EVENTS_PER_COMMIT = ConfigDefaults.get().getSaltEventsPerCommit();
     private static final int THREAD_POOL_SIZE = ConfigDefaults.get().getSaltEventThreadPoolSize();
+    private static final long COMMIT_TARGET_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(ConfigDefaults.get().getSaltEventCommitTarget());
+
+    private static final Histogram QUEUE_LAG = Histogram.build()
+            .name("salt_queue_lag_seconds")
+            .help("Time between the notification of a Salt event and its processing")
+            .labelNames("queue")
+            .buckets(0.1, 0.5, 1, 5, 10, 30, 60, 300, 900)
+            .create();
+    private static final Histogram BATCH_DURATION = Histogram.build()
+            .name("salt_queue_batch_duration_seconds")
+            .help("Duration of the transactions processing batches of Salt events")
+            .labelNames("queue")
+            .buckets(0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60)
+            .create();
+    private static final Counter STOLEN_BATCHES = Counter.build()
+            .name("salt_queue_stolen_batches_total")
+            .help("Batches of Salt events of a queue processed by the idle worker of another queue")
+            .labelNames("queue")
+            .create();
+
+    static {
+        PrometheusExporter.INSTANCE.registerCollectors(QUEUE_LAG, BATCH_DURATION, STOLEN_BATCHES);
+    }
 
     private final PGConnection connection;
     private final List<ThreadPoolExecutor> executorServices = IntStream.range(0, THREAD_POOL_SIZE + 1).mapToObj(i ->
@@ -78,6 +106,9 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
                     .build()
         )
     ).collect(Collectors.toList());
+    private final List<SaltEventQueue> queues = IntStream.range(0, THREAD_POOL_SIZE + 1)
+            .mapToObj(i -> new SaltEventQueue(i, new AdaptiveBatchSize(MAX_EVENTS_PER_COMMIT, COMMIT_TARGET_NANOS)))
+            .collect(Collectors.toList());
 
 
     /**
@@ -183,39 +214,110 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
      */
     public void notification(List<Long> counts) {
         LOG.trace("Got notification: {}", counts);
-        // compute the number of jobs we need to do - each job COMMITs individually
-        // jobs = events / MAX_EVENTS_PER_COMMIT (rounded up)
         IntStream.range(0, THREAD_POOL_SIZE + 1).forEach(queue -> {
-            long jobs = (counts.get(queue) + MAX_EVENTS_PER_COMMIT - 1) / MAX_EVENTS_PER_COMMIT;
-
-            // queue one handlingTransaction(processEvents) call per job
-            LongStream.range(0L, jobs).forEach(job -> {
+            long count = counts.get(queue);
+            // start draining the queue unless its worker is already at it
+            if (count > 0 && queues.get(queue).signal(count)) {
                 LOG.trace("Scheduling a job for queue {}", queue);
-                ThreadPoolExecutor executor = executorServices.get(queue);
-                executor.execute(() -> {
-                    List<SaltEvent> uncommittedEvents = new LinkedList<>();
-                    TransactionHelper.handlingTransaction(
-                            () -> processEvents(uncommittedEvents, queue),
-                            e -> handleExceptions(uncommittedEvents, e));
-                });
-            });
+                executorServices.get(queue).execute(() -> drain(queue));
+            }
         });
     }
 
+    /**
+     * Processes the events of a queue until it is empty, then helps the other queues.
+     * Each batch COMMITs individually.
+     *
+     * @param queue the index of the queue and of the thread processing it
+     */
+    private void drain(int queue) {
+        SaltEventQueue own = queues.get(queue);
+        int signals;
+        do {
+            signals = own.getSignals();
+            while (processBatch(own, queue)) {
+                LOG.trace("Processed a batch of queue {}", queue);
+            }
+        } while (!own.endDrain(signals));
+
+        // events without a minion are not bound to a queue, no need to steal them
+        if (queue != 0) {
+            steal(queue);
+        }
+    }
+
+    /**
+     * While the own queue of a worker is idle, processes batches of the most loaded other queue. Events
+     * of minions that are being processed are left to their current worker, so that events of a minion
+     * are still processed in order.
+     *
+     * @param worker the index of the idle worker
+     */
+    private void steal(int worker) {
+        SaltEventQueue own = queues.get(worker);
+        while (!own.hasSignals()) {
+            Optional<SaltEventQueue> victim = IntStream.range(1, THREAD_POOL_SIZE + 1)
+                    .filter(i -> i != worker && executorServices.get(i).getActiveCount() > 0)
+                    .mapToObj(queues::get)
+                    .filter(q -> q.getPending() > 0)
+                    .max(comparing(SaltEventQueue::getPending));
+            if (victim.isEmpty() || !processBatch(victim.get(), worker)) {
+                return;
+            }
+            STOLEN_BATCHES.labels(Integer.toString(victim.get().getQueue())).inc();
+        }
+    }
+
+    /**
+     * Pops a batch of events from a queue and processes it in one transaction.
+     *
+     * @param queue the queue to pop from
+     * @param worker the index of the thread processing the events
+     * @return true if a batch was processed, false if there was nothing to process
+     */
+    private boolean processBatch(SaltEventQueue queue, int worker) {
+        List<SaltEvent> popped = new ArrayList<>();
+        List<SaltEvent> uncommittedEvents = new LinkedList<>();
+        long start = System.nanoTime();
+        try {
+            TransactionHelper.handlingTransaction(
+                    () -> processEvents(queue, worker, popped, uncommittedEvents),
+                    e -> handleExceptions(uncommittedEvents, e));
+        }
+        finally {
+            if (queue.release(popped) && queue.resignal()) {
+                // events of the released minions were left behind, drain them now rather than at the next poll
+                int index = queue.getQueue();
+                executorServices.get(index).execute(() -> drain(index));
+            }
+        }
+        long duration = System.nanoTime() - start;
+        if (!popped.isEmpty()) {
+            queue.recordBatch(popped.size(), duration);
+            BATCH_DURATION.labels(Integer.toString(queue.getQueue())).observe(duration / 1e9);
+        }
+        return !popped.isEmpty();
+    }
+
     /**
      * Reads one or more events from suseSaltEvent and notifies listeners
      * (typically, {@link PGEventListener#notify(Event)}).
      *
+     * @param queue the queue to pop the events from
+     * @param worker the index of the thread processing the events
+     * @param popped filled with the events popped from the queue
      * @param uncommittedEvents used to keep track of events being processed
-     * @param queue the index of the thread processing the events
      */
-    private void processEvents(List<SaltEvent> uncommittedEvents, int queue) {
-        Stream<SaltEvent> events = SaltEventFactory.popSaltEvents(MAX_EVENTS_PER_COMMIT, queue)
+    private void processEvents(SaltEventQueue queue, int worker, List<SaltEvent> popped,
+            List<SaltEvent> uncommittedEvents) {
+        Histogram.Child lag = QUEUE_LAG.labels(Integer.toString(queue.getQueue()));
+        popped.addAll(queue.pop(lag::observe));
+        Stream<SaltEvent> events = popped.stream()
                 .sorted(comparing(SaltEvent::getMinionId, nullsLast(naturalOrder())).thenComparing(SaltEvent::getId));
 
         events.forEach(event -> {
             if (LOG.isTraceEnabled()) {
-                LOG.trace("Handling event {} in worker #{}", event.getId(), queue);
+                LOG.trace("Handling event {} in worker #{}", event.getId(), worker);
                 LOG.trace(event.getData());
             }
             uncommittedEvents.add(event);
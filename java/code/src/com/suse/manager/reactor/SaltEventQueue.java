@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor;
+
+import com.redhat.rhn.domain.reactor.SaltEvent;
+import com.redhat.rhn.domain.reactor.SaltEventFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Bookkeeping of one suseSaltEvent queue, shared by its own worker and the
+ * workers stealing from it.
+ *
+ * Events of a minion must be handled in order, one at a time. Any worker can
+ * pop events from the queue, but the minions of popped events are marked busy
+ * until their transaction ends, and the events of busy minions are left in the
+ * queue meanwhile. Releasing a minion whose events were left behind asks for
+ * the queue to be drained again, so that they do not wait for the next
+ * notification.
+ */
+class SaltEventQueue {
+
+    private final int queue;
+    private final AdaptiveBatchSize batchSize;
+    private final AtomicInteger signals = new AtomicInteger();
+    private final Set<String> busyMinions = ConcurrentHashMap.newKeySet();
+    /* Busy minions skipped by a pop, whose events may be waiting in the queue */
+    private final Set<String> skippedMinions = ConcurrentHashMap.newKeySet();
+    private final Object popLock = new Object();
+
+    /* Notification time and count of the events not popped yet, oldest first */
+    private final Deque<long[]> announced = new ArrayDeque<>();
+    private long pending;
+
+    /**
+     * Standard constructor.
+     * @param queueIn the queue number
+     * @param batchSizeIn the size of the batches popped from the queue
+     */
+    SaltEventQueue(int queueIn, AdaptiveBatchSize batchSizeIn) {
+        queue = queueIn;
+        batchSize = batchSizeIn;
+    }
+
+    /**
+     * @return the queue number
+     */
+    int getQueue() {
+        return queue;
+    }
+
+    /**
+     * Records a notification about new events in the queue.
+     * @param count the number of new events
+     * @return true if no worker is draining the queue, so a new one should be started
+     */
+    boolean signal(long count) {
+        synchronized (announced) {
+            announced.addLast(new long[] {System.nanoTime(), count});
+            pending += count;
+        }
+        return signals.getAndIncrement() == 0;
+    }
+
+    /**
+     * Records that events left in the queue can be popped now.
+     * @return true if no worker is draining the queue, so a new one should be started
+     */
+    boolean resignal() {
+        return signals.getAndIncrement() == 0;
+    }
+
+    /**
+     * @return the current signal count, to be passed to {@link #endDrain(int)}
+     */
+    int getSignals() {
+        return signals.get();
+    }
+
+    /**
+     * Ends a drain of the queue, unless new events were signalled in the meantime.
+     * @param seen the signal count read before the drain started
+     * @return true if the drain is over, false if the queue must be drained again
+     */
+    boolean endDrain(int seen) {
+        return signals.compareAndSet(seen, 0);
+    }
+
+    /**
+     * @return true if events were signalled and are waiting for a worker draining the queue
+     */
+    boolean hasSignals() {
+        return signals.get() > 0;
+    }
+
+    /**
+     * @return the approximate number of events waiting in the queue
+     */
+    long getPending() {
+        synchronized (announced) {
+            return pending;
+        }
+    }
+
+    /**
+     * Pops the next batch of events of minions that are not busy, and marks
+     * those minions busy. Must be called within the transaction processing
+     * the events, and followed by {@link #release(List)} once it is over.
+     * @param lagObserver receives the time, in seconds, each popped event waited since its notification
+     * @return the popped events
+     */
+    List<SaltEvent> pop(DoubleConsumer lagObserver) {
+        List<SaltEvent> events;
+        synchronized (popLock) {
+            Set<String> skipped = Set.copyOf(busyMinions);
+            skippedMinions.addAll(skipped);
+            events = SaltEventFactory.popSaltEvents(batchSize.get(), queue, skipped)
+                    .collect(Collectors.toList());
+            events.stream().map(SaltEvent::getMinionId).filter(Objects::nonNull).forEach(busyMinions::add);
+        }
+        consume(events.size(), lagObserver);
+        return events;
+    }
+
+    /**
+     * Marks the minions of the given events as no longer busy.
+     * @param events events returned by {@link #pop(DoubleConsumer)}, whose transaction is over
+     * @return true if events of those minions were left in the queue meanwhile, see {@link #resignal()}
+     */
+    boolean release(List<SaltEvent> events) {
+        Set<String> minionIds = events.stream().map(SaltEvent::getMinionId).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (minionIds.isEmpty()) {
+            return false;
+        }
+        boolean skipped = false;
+        // a pop must not skip a minion after it is released
+        synchronized (popLock) {
+            for (String minionId : minionIds) {
+                busyMinions.remove(minionId);
+                skipped |= skippedMinions.remove(minionId);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Adapts the batch size to the duration of a batch transaction.
+     * @param size the number of events of the batch
+     * @param durationNanos the duration of the transaction
+     */
+    void recordBatch(int size, long durationNanos) {
+        if (size > 0) {
+            batchSize.record(size, durationNanos);
+        }
+    }
+
+    private void consume(int count, DoubleConsumer lagObserver) {
+        long now = System.nanoTime();
+        synchronized (announced) {
+            if (count == 0 && busyMinions.isEmpty()) {
+                // the queue is empty: forget stale announcements, e.g. repeated by the watchdog
+                announced.clear();
+                pending = 0;
+                return;
+            }
+            long left = count;
+            while (left > 0 && !announced.isEmpty()) {
+                long[] head = announced.peekFirst();
+                long taken = Math.min(left, head[1]);
+                double lag = (now - head[0]) / 1e9;
+                for (long i = 0; i < taken; i++) {
+                    lagObserver.accept(lag);
+                }
+                head[1] -= taken;
+                left -= taken;
+                if (head[1] == 0) {
+                    announced.removeFirst();
+                }
+            }
+            pending = Math.max(0, pending - count);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.suse.manager.reactor.AdaptiveBatchSize;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveBatchSizeTest {
+
+    private static final long TARGET = 1_000_000_000L;
+
+    @Test
+    public void testGrowsOnFastFullBatches() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(10, TARGET);
+        assertEquals(1, batchSize.get());
+        batchSize.record(1, TARGET / 10);
+        assertEquals(2, batchSize.get());
+        batchSize.record(2, TARGET / 10);
+        batchSize.record(4, TARGET / 10);
+        assertEquals(8, batchSize.get());
+        batchSize.record(8, TARGET / 10);
+        assertEquals(10, batchSize.get());
+        batchSize.record(10, TARGET / 10);
+        assertEquals(10, batchSize.get());
+    }
+
+    @Test
+    public void testKeepsSizeOnPartialOrAverageBatches() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(10, TARGET);
+        batchSize.record(1, TARGET / 10);
+        batchSize.record(1, TARGET / 10);
+        assertEquals(2, batchSize.get());
+        batchSize.record(2, TARGET * 3 / 4);
+        assertEquals(2, batchSize.get());
+    }
+
+    @Test
+    public void testShrinksOnSlowBatches() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(16, TARGET);
+        for (int size = 1; size < 16; size *= 2) {
+            batchSize.record(size, 0);
+        }
+        assertEquals(16, batchSize.get());
+        batchSize.record(16, TARGET * 2);
+        assertEquals(8, batchSize.get());
+        batchSize.record(8, TARGET * 2);
+        batchSize.record(4, TARGET * 2);
+        batchSize.record(2, TARGET * 2);
+        batchSize.record(1, TARGET * 2);
+        assertEquals(1, batchSize.get());
+    }
+
+    @Test
+    public void testMaxOfOneNeverGrows() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize(1, TARGET);
+        batchSize.record(1, 0);
+        assertEquals(1, batchSize.get());
+    }
+}
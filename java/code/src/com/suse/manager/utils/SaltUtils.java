@@ -20,6 +20,7 @@ import static com.suse.manager.webui.services.SaltConstants.SALT_FILE_GENERATION
 import static com.suse.manager.webui.services.SaltConstants.SCRIPTS_DIR;
 import static com.suse.manager.webui.services.SaltConstants.SUMA_STATE_FILES_ROOT_PATH;
 
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.messaging.MessageQueue;
@@ -67,6 +68,7 @@ import com.redhat.rhn.domain.rhnpackage.PackageArch;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.rhnpackage.PackageEvrFactory;
 import com.redhat.rhn.domain.rhnpackage.PackageFactory;
+import com.redhat.rhn.domain.rhnpackage.PackageInterner;
 import com.redhat.rhn.domain.rhnpackage.PackageName;
 import com.redhat.rhn.domain.rhnpackage.PackageType;
 import com.redhat.rhn.domain.server.InstalledPackage;
@@ -80,6 +82,7 @@ import com.redhat.rhn.frontend.action.common.BadParameterException;
 import com.redhat.rhn.manager.action.ActionManager;
 import com.redhat.rhn.manager.audit.ScapManager;
 import com.redhat.rhn.manager.errata.ErrataManager;
+import com.redhat.rhn.manager.errata.cache.UpdateErrataCacheCommand;
 import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.taskomatic.TaskomaticApi;
@@ -1439,7 +1442,8 @@ public class SaltUtils {
             PkgProfileUpdateSlsResult result) {
         Instant start = Instant.now();
 
-        HibernateFactory.doWithoutAutoFlushing(() -> updatePackages(server, result));
+        boolean firstProfile = server.getPackages().isEmpty();
+        Set<Long> changedPackageNameIds = HibernateFactory.doWithoutAutoFlushing(() -> updatePackages(server, result));
 
         Optional.ofNullable(result.getListProducts())
                 .map(products -> products.getChanges().getRet())
@@ -1554,6 +1558,7 @@ public class SaltUtils {
                 .map(nsvca -> new ServerAppStream(server, nsvca))
                 .collect(Collectors.toSet());
 
+        boolean appStreamsChanged = !appStreamKeys(server.getAppStreams()).equals(appStreamKeys(enabledAppStreams));
         server.getAppStreams().clear();
         server.getAppStreams().addAll(enabledAppStreams);
 
@@ -1584,8 +1589,23 @@ public class SaltUtils {
             LOG.debug("Package profile updated for minion: {} ({} seconds)", server.getMinionId(), duration);
         }
 
-        // Trigger update of errata cache for this server
-        ErrataManager.insertErrataCacheTask(server);
+        // Update the errata cache for this server: only the changed packages if possible, or all of them later
+        int deltaMaxPackages = ConfigDefaults.get().getErrataCacheDeltaMaxPackages();
+        if (deltaMaxPackages == 0 || firstProfile || appStreamsChanged ||
+                changedPackageNameIds.size() > deltaMaxPackages) {
+            ErrataManager.insertErrataCacheTask(server);
+        }
+        else if (!changedPackageNameIds.isEmpty()) {
+            HibernateFactory.getSession().flush();
+            new UpdateErrataCacheCommand().updateErrataCacheForServerPackages(server.getId(), changedPackageNameIds);
+        }
+    }
+
+    private static Set<String> appStreamKeys(Set<ServerAppStream> appStreams) {
+        return appStreams.stream()
+                .map(a -> a.getName() + ":" + a.getStream() + ":" + a.getVersion() + ":" + a.getContext() + ":" +
+                        a.getArch())
+                .collect(Collectors.toSet());
     }
 
     /**
@@ -1593,8 +1613,9 @@ public class SaltUtils {
      *
      * @param server a Server object corresponding to a minion
      * @param result the result from the package profile update state
+     * @return the name ids of the packages that were installed, removed or changed
      */
-    private static void updatePackages(MinionServer server,
+    private static Set<Long> updatePackages(MinionServer server,
             PkgProfileUpdateSlsResult result) {
         Set<InstalledPackage> packages = server.getPackages();
 
@@ -1624,14 +1645,21 @@ public class SaltUtils {
         Collection<InstalledPackage> unchanged = oldPackageMap.entrySet().stream().filter(
             e -> newPackageMap.containsKey(e.getKey())
         ).map(Map.Entry::getValue).collect(Collectors.toList());
+        Set<Long> changedNameIds = oldPackageMap.entrySet().stream()
+                .filter(e -> !newPackageMap.containsKey(e.getKey()))
+                .map(e -> e.getValue().getName().getId())
+                .collect(Collectors.toSet());
         packages.retainAll(unchanged);
 
         Map<String, Tuple2<String, Pkg.Info>> packagesToAdd = newPackageMap.entrySet().stream().filter(
                 e -> !oldPackageMap.containsKey(e.getKey())
         ).collect(Collectors.toMap(Map.Entry::getKey, e -> new Tuple2(e.getValue().getKey(), e.getValue().getValue())));
 
-        packages.addAll(createPackagesFromSalt(packagesToAdd, server));
+        List<InstalledPackage> added = createPackagesFromSalt(packagesToAdd, server);
+        added.forEach(p -> changedNameIds.add(p.getName().getId()));
+        packages.addAll(added);
         SystemManager.updateSystemOverview(server.getId());
+        return changedNameIds;
     }
 
     private static Map.Entry<String, Info> resolveDuplicatePackage(Map.Entry<String, Info> firstEntry,
@@ -1664,39 +1692,45 @@ public class SaltUtils {
      */
     private static List<InstalledPackage> createPackagesFromSalt(
             Map<String, Tuple2<String, Pkg.Info>> packageInfoAndNameBySaltPackageKey, Server server) {
-        List<String> names = new ArrayList<>(packageInfoAndNameBySaltPackageKey.values().stream().map(Tuple2::getA)
-                .collect(Collectors.toSet()));
-        Collections.sort(names);
-
-        Map<String, PackageName> packageNames = names.stream().collect(Collectors.toMap(Function.identity(),
-                PackageFactory::lookupOrCreatePackageByName));
+        // resolve all names, EVRs and arches at once instead of once per package
+        Map<String, PackageName> packageNames = PackageInterner.lookupOrCreatePackageNames(
+                packageInfoAndNameBySaltPackageKey.values().stream().map(Tuple2::getA).collect(Collectors.toSet()));
 
-
-        Map<String, PackageEvr> packageEvrsBySaltPackageKey = packageInfoAndNameBySaltPackageKey.entrySet().stream()
+        Map<String, PackageEvr> packageEvrsBySaltPackageKey = PackageInterner.lookupOrCreatePackageEvrs(
+                packageInfoAndNameBySaltPackageKey.entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey,
                         e -> {
                             Pkg.Info pkgInfo = e.getValue().getB();
-                            return parsePackageEvr(pkgInfo.getEpoch(), pkgInfo.getVersion().get(),
+                            return toPackageEvr(pkgInfo.getEpoch(), pkgInfo.getVersion().get(),
                                     pkgInfo.getRelease(), server.getPackageType());
-                        }));
+                        })));
+
+        Map<String, PackageArch> packageArches = PackageInterner.lookupPackageArches(
+                packageInfoAndNameBySaltPackageKey.values().stream()
+                .map(t -> toPackageArchLabel(t.getB(), server))
+                .collect(Collectors.toSet()));
 
         return packageInfoAndNameBySaltPackageKey.entrySet().stream().map(e -> createInstalledPackage(
                 packageNames.get(e.getValue().getA()),
-                packageEvrsBySaltPackageKey.get(e.getKey()), e.getValue().getB(), server))
+                packageEvrsBySaltPackageKey.get(e.getKey()),
+                packageArches.get(toPackageArchLabel(e.getValue().getB(), server)),
+                e.getValue().getB(), server))
                 .collect(Collectors.toList());
     }
 
     /**
-     * Create a {@link InstalledPackage} object from package name, evr, package info and server and return it.
+     * Create a {@link InstalledPackage} object from package name, evr, arch, package info and server and return it.
      *
      * @param packageName the package name
      * @param packageEvr the package evr
+     * @param packageArch the package arch
      * @param pkgInfo the package info
      * @param server server this package will be added to
      * @return the InstalledPackage object
      */
     private static InstalledPackage createInstalledPackage(PackageName packageName,
                                                            PackageEvr packageEvr,
+                                                           PackageArch packageArch,
                                                            Pkg.Info pkgInfo, Server server) {
         InstalledPackage pkg = new InstalledPackage();
         pkg.setEvr(packageEvr);
@@ -1705,14 +1739,17 @@ public class SaltUtils {
                 .orElse(null));
         pkg.setName(packageName);
         pkg.setServer(server);
+        pkg.setArch(packageArch);
+        return pkg;
+    }
 
+    private static String toPackageArchLabel(Pkg.Info pkgInfo, Server server) {
         // Add -deb suffix to architectures for Debian systems
         String pkgArch = pkgInfo.getArchitecture().get();
         if (server.getPackageType() == PackageType.DEB) {
             pkgArch += "-deb";
         }
-        pkg.setArch(PackageFactory.lookupPackageArchByLabel(pkgArch));
-        return pkg;
+        return pkgArch;
     }
 
     /**
@@ -1880,19 +1917,24 @@ public class SaltUtils {
         }
     }
 
-    private static PackageEvr parsePackageEvr(Optional<String> epoch, String version, Optional<String> release,
-                                              PackageType type) {
+    private static PackageEvr toPackageEvr(Optional<String> epoch, String version, Optional<String> release,
+                                           PackageType type) {
         switch (type) {
             case DEB:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(PackageEvr.parseDebian(version));
+                return PackageEvr.parseDebian(version);
             case RPM:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(epoch.map(StringUtils::trimToNull).orElse(null),
+                return new PackageEvr(epoch.map(StringUtils::trimToNull).orElse(null),
                         version, release.orElse("0"), PackageType.RPM);
             default:
                 throw new RuntimeException("unreachable");
         }
     }
 
+    private static PackageEvr parsePackageEvr(Optional<String> epoch, String version, Optional<String> release,
+                                              PackageType type) {
+        return PackageEvrFactory.lookupOrCreatePackageEvr(toPackageEvr(epoch, version, release, type));
+    }
+
     private static ImagePackage createImagePackageFromSalt(String name, Pkg.Info info, ImageInfo imageInfo) {
         return createImagePackageFromSalt(name, info.getEpoch(), info.getRelease(), info.getVersion().get(),
                 info.getInstallDateUnixTime(), info.getArchitecture(), imageInfo);
@@ -36,6 +36,9 @@ import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 import com.redhat.rhn.domain.server.MinionServer;
 
 import com.suse.cloud.CloudPaygManager;
+import com.suse.manager.webui.utils.ChannelPackagePathCache;
+import com.suse.manager.webui.utils.DownloadTokenCache;
+import com.suse.manager.webui.utils.DownloadTokenCache.VerifiedToken;
 import com.suse.manager.webui.utils.TokenBuilder;
 import com.suse.utils.Opt;
 
@@ -60,9 +63,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import spark.Request;
 import spark.Response;
@@ -427,17 +432,22 @@ public class DownloadController {
 
         String mountPoint = Config.get().getString(ConfigDefaults.MOUNT_POINT);
         PkgInfo pkgInfo = parsePackageFileName(path);
-        Package pkg = PackageFactory.lookupByChannelLabelNevraCs(channel, pkgInfo.getName(),
-                pkgInfo.getVersion(), pkgInfo.getRelease(), pkgInfo.getEpoch(), pkgInfo.getArch(),
-                pkgInfo.getChecksum());
-        if (pkg == null) {
+        List<String> key = Arrays.asList(pkgInfo.getName(), pkgInfo.getVersion(), pkgInfo.getRelease(),
+                pkgInfo.getEpoch(), pkgInfo.getArch(), pkgInfo.getChecksum().orElse(null));
+        String pkgPath = ChannelPackagePathCache.getPath(channel, key, () -> {
+            Package pkg = PackageFactory.lookupByChannelLabelNevraCs(channel, pkgInfo.getName(),
+                    pkgInfo.getVersion(), pkgInfo.getRelease(), pkgInfo.getEpoch(), pkgInfo.getArch(),
+                    pkgInfo.getChecksum());
+            return pkg == null ? null : pkg.getPath();
+        });
+        if (pkgPath == null) {
             if (LOG.isDebugEnabled()) {
                 LOG.error("{}: Package not found in channel: {}", path, StringUtil.sanitizeLogInput(channel));
             }
             halt(HttpStatus.SC_NOT_FOUND, String.format("%s not found in %s", basename, channel));
         }
 
-        File file = new File(mountPoint, pkg.getPath()).getAbsoluteFile();
+        File file = new File(mountPoint, pkgPath).getAbsoluteFile();
 
         return downloadFile(request, response, file);
     }
@@ -556,58 +566,87 @@ public class DownloadController {
      * @param filename the filename
      */
     private void validateToken(String token, String channel, String filename) {
+        VerifiedToken verified = DownloadTokenCache.get(token)
+                .orElseGet(() -> verifyToken(token, channel, filename));
+
+        // enforce channel claim
+        Opt.consume(verified.getChannels(),
+                () -> LOG.info("Token ...{} does provide access to any channel",
+                        sanitizeToken(token)),
+                channels -> {
+            if (!channels.contains(channel)) {
+                LOG.info("Forbidden: Token ...{} does not provide access to channel {}",
+                        sanitizeToken(token), channel);
+                LOG.info("Token allow access only to the following channels: {}", String.join(",", channels));
+                halt(HttpStatus.SC_FORBIDDEN, "Token does not provide access to channel " + channel);
+            }
+        });
+
+        // enforce org claim
+        Opt.consume(verified.getOrgId(), () -> {
+            LOG.info("Forbidden: Token does not specify the organization");
+            halt(HttpStatus.SC_BAD_REQUEST, "Token does not specify the organization");
+        }, orgId -> {
+            if (!verified.isAccessible(channel)) {
+                if (!ChannelFactory.isAccessibleBy(channel, orgId)) {
+                    LOG.info("Forbidden: Token does not provide access to channel {}", channel);
+                    halt(HttpStatus.SC_FORBIDDEN, "Token does not provide access to channel " + channel);
+                }
+                verified.setAccessible(channel);
+            }
+        });
+    }
 
-        AccessTokenFactory.lookupByToken(token).ifPresentOrElse(obj -> {
+    /**
+     * Check the database state and the signature of a token, and cache its claims if it passes.
+     *
+     * @param token the token to verify
+     * @param channel the channel
+     * @param filename the filename
+     * @return the claims of the token
+     */
+    private VerifiedToken verifyToken(String token, String channel, String filename) {
+        Optional<Instant> dbExpiration = AccessTokenFactory.lookupByToken(token).map(obj -> {
             Instant now = Instant.now();
             if (!obj.getValid() || now.isAfter(obj.getExpiration().toInstant())) {
                 LOG.info("Forbidden: invalid token ...{} to access {}", sanitizeToken(token), filename);
                 halt(HttpStatus.SC_FORBIDDEN, "This token is not valid");
             }
-        }, () -> LOG.debug("Token ...{} to access {} doesn't exists in the database - could be an image build token",
-                sanitizeToken(token), filename)
-        );
+            return obj.getExpiration().toInstant();
+        });
+        if (dbExpiration.isEmpty()) {
+            LOG.debug("Token ...{} to access {} doesn't exists in the database - could be an image build token",
+                    sanitizeToken(token), filename);
+        }
         try {
             JwtClaims claims = JWT_CONSUMER.processToClaims(token);
-            if (Optional.ofNullable(claims.getExpirationTime())
-                .map(exp -> exp.isBefore(NumericDate.now()))
-                .orElse(false)) {
+            Optional<NumericDate> expiration = Optional.ofNullable(claims.getExpirationTime());
+            if (expiration.map(exp -> exp.isBefore(NumericDate.now())).orElse(false)) {
                 LOG.info("Forbidden: Token expired");
                 halt(HttpStatus.SC_FORBIDDEN, "Token expired");
             }
 
-            // enforce channel claim
             Optional<List<String>> channelClaim = Optional.ofNullable(claims.getStringListClaimValue("onlyChannels"))
                     // new versions of getStringListClaimValue() return an empty list instead of null
                     .filter(l -> !l.isEmpty());
-            Opt.consume(channelClaim,
-                    () -> LOG.info("Token ...{} does provide access to any channel",
-                            sanitizeToken(token)),
-                    channels -> {
-                if (!channels.contains(channel)) {
-                    LOG.info("Forbidden: Token ...{} does not provide access to channel {}",
-                            sanitizeToken(token), channel);
-                    LOG.info("Token allow access only to the following channels: {}", String.join(",", channels));
-                    halt(HttpStatus.SC_FORBIDDEN, "Token does not provide access to channel " + channel);
-                }
-            });
-
-            // enforce org claim
             Optional<Long> orgClaim = Optional.ofNullable(claims.getClaimValue("org", Long.class));
-            Opt.consume(orgClaim, () -> {
-                LOG.info("Forbidden: Token does not specify the organization");
-                halt(HttpStatus.SC_BAD_REQUEST, "Token does not specify the organization");
-            }, orgId -> {
-                if (!ChannelFactory.isAccessibleBy(channel, orgId)) {
-                    LOG.info("Forbidden: Token does not provide access to channel {}", channel);
-                    halt(HttpStatus.SC_FORBIDDEN, "Token does not provide access to channel " + channel);
-                }
-            });
+
+            // the token is valid until the earliest of the expirations
+            Optional<Instant> validUntil = Stream.concat(dbExpiration.stream(),
+                            expiration.map(exp -> Instant.ofEpochSecond(exp.getValue())).stream())
+                    .min(Comparator.naturalOrder());
+            VerifiedToken verified = new VerifiedToken(channelClaim, orgClaim, validUntil);
+            if (orgClaim.isPresent()) {
+                DownloadTokenCache.put(token, verified);
+            }
+            return verified;
         }
         catch (InvalidJwtException | MalformedClaimException e) {
             LOG.info("Forbidden: Token ...{} is not valid to access {} in {}: {}",
                     sanitizeToken(token), filename, channel, e.getMessage());
             halt(HttpStatus.SC_FORBIDDEN,
                  String.format("Token is not valid to access %s in %s: %s", filename, channel, e.getMessage()));
+            return null;
         }
     }
 
@@ -57,7 +57,9 @@ import com.redhat.rhn.testing.TestUtils;
 import com.suse.cloud.CloudPaygManager;
 import com.suse.cloud.test.TestCloudPaygManagerBuilder;
 import com.suse.manager.webui.controllers.DownloadController;
+import com.suse.manager.webui.utils.ChannelPackagePathCache;
 import com.suse.manager.webui.utils.DownloadTokenBuilder;
+import com.suse.manager.webui.utils.DownloadTokenCache;
 import com.suse.manager.webui.utils.TokenBuilder;
 
 import com.mockobjects.servlet.MockHttpServletResponse;
@@ -66,6 +68,8 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jose4j.lang.JoseException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -100,6 +104,8 @@ import spark.Response;
  */
 public class DownloadControllerTest extends BaseTestCaseWithUser {
 
+    private static final Logger LOG = LogManager.getLogger(DownloadControllerTest.class);
+
     private Channel channel;
     private String uriFile;
     private String uriFile2;
@@ -193,6 +199,8 @@ public class DownloadControllerTest extends BaseTestCaseWithUser {
         Files.deleteIfExists(packageFile.toPath());
         Files.deleteIfExists(debPackageFile.toPath());
         Files.deleteIfExists(debPackageFile2.toPath());
+        DownloadTokenCache.clear();
+        ChannelPackagePathCache.clear();
     }
 
     /**
@@ -664,6 +672,77 @@ public class DownloadControllerTest extends BaseTestCaseWithUser {
         }
     }
 
+    /**
+     * Tests that a token invalidated after a successful download no longer allows access.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testInvalidatedCachedToken() throws Exception {
+        DownloadTokenBuilder tokenBuilder = new DownloadTokenBuilder(user.getOrg().getId());
+        tokenBuilder.useServerSecret();
+        tokenBuilder.onlyChannels(new HashSet<>(Arrays.asList(channel.getLabel())));
+        AccessToken accessToken = saveTokenToDataBase(tokenBuilder);
+
+        Map<String, String> params = new HashMap<>();
+        params.put(accessToken.getToken(), "");
+        assertNotNull(downloadController.downloadPackage(getMockRequestWithParams(params), response));
+        assertTrue(DownloadTokenCache.get(accessToken.getToken()).isPresent());
+
+        accessToken.setValid(false);
+        AccessTokenFactory.save(accessToken);
+        // the invalidation can still be rolled back, so the token stays cached until the commit
+        assertTrue(DownloadTokenCache.get(accessToken.getToken()).isPresent());
+
+        // the test transaction is never committed, drop the token as the commit would
+        DownloadTokenCache.invalidate(accessToken.getToken());
+        assertTrue(DownloadTokenCache.get(accessToken.getToken()).isEmpty());
+
+        try {
+            downloadController.downloadPackage(getMockRequestWithParams(params), response);
+            fail(String.format("%s should halt 403 if an invalidated token is given",
+                    DownloadController.class.getSimpleName()));
+        }
+        catch (spark.HaltException e) {
+            assertEquals(403, e.getStatusCode());
+            assertTrue(e.getBody().contains("This token is not valid"));
+        }
+    }
+
+    /**
+     * Measures the package downloads served per second without and with the token and package path caches.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testCachedDownloadThroughput() throws Exception {
+        DownloadTokenBuilder tokenBuilder = new DownloadTokenBuilder(user.getOrg().getId());
+        tokenBuilder.useServerSecret();
+        tokenBuilder.onlyChannels(new HashSet<>(Arrays.asList(channel.getLabel())));
+        AccessToken accessToken = saveTokenToDataBase(tokenBuilder);
+        Map<String, String> params = new HashMap<>();
+        params.put(accessToken.getToken(), "");
+
+        int requests = 500;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            DownloadTokenCache.clear();
+            ChannelPackagePathCache.clear();
+            assertNotNull(downloadController.downloadPackage(getMockRequestWithParams(params), response));
+        }
+        double uncached = requests / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            assertNotNull(downloadController.downloadPackage(getMockRequestWithParams(params), response));
+        }
+        double cached = requests / ((System.nanoTime() - start) / 1e9);
+
+        LOG.info("Package downloads: {} requests/s without caches, {} requests/s with caches",
+                Math.round(uncached), Math.round(cached));
+        assertEquals(packageFile.getAbsolutePath(), response.raw().getHeader("X-Sendfile"));
+    }
+
     @Test
     public void testPaygNotCompliant() {
         CloudPaygManager pmgr = new TestCloudPaygManagerBuilder()
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.webui.utils;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.domain.channel.ChannelFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Paths of the packages served by the download endpoint, by channel, so that
+ * the requests for a package do not each look it up by NEVRA.
+ *
+ * The paths of a channel are dropped when its content changes, which is
+ * detected from its last modification time. That time is read from the
+ * database at most once per second and channel.
+ */
+public class ChannelPackagePathCache {
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+    private static final int MAX_CHANNELS = 1000;
+
+    private static final Map<String, ChannelPaths> CHANNELS = new ConcurrentHashMap<>();
+
+    private ChannelPackagePathCache() {
+    }
+
+    /**
+     * Returns the path of a package of a channel, loading and caching it if unknown.
+     * @param channelLabel the channel label
+     * @param key the values identifying the package in the channel
+     * @param loader returns the path of the package, or null if it is not in the channel
+     * @return the path, or null if the package is not in the channel
+     */
+    public static String getPath(String channelLabel, List<String> key, Supplier<String> loader) {
+        ChannelPaths paths = current(channelLabel);
+        String path = paths.paths.get(key);
+        if (path == null) {
+            path = loader.get();
+            if (path != null) {
+                if (paths.paths.size() >= ConfigDefaults.get().getDownloadPackageCacheSize()) {
+                    paths.paths.clear();
+                }
+                paths.paths.put(key, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Drops all the cached paths.
+     */
+    public static void clear() {
+        CHANNELS.clear();
+    }
+
+    private static ChannelPaths current(String channelLabel) {
+        long now = System.currentTimeMillis();
+        ChannelPaths paths = CHANNELS.get(channelLabel);
+        if (paths != null && now - paths.checkedAt < CHECK_INTERVAL_MILLIS) {
+            return paths;
+        }
+        Optional<Date> lastModified = ChannelFactory.lookupLastModified(channelLabel);
+        if (paths != null && paths.lastModified.equals(lastModified)) {
+            paths.checkedAt = now;
+            return paths;
+        }
+        if (CHANNELS.size() >= MAX_CHANNELS) {
+            CHANNELS.clear();
+        }
+        paths = new ChannelPaths(lastModified, now);
+        CHANNELS.put(channelLabel, paths);
+        return paths;
+    }
+
+    /**
+     * The paths of the packages of one channel, as of its last modification time.
+     */
+    private static class ChannelPaths {
+
+        private final Optional<Date> lastModified;
+        private final Map<List<String>, String> paths = new ConcurrentHashMap<>();
+        private volatile long checkedAt;
+
+        ChannelPaths(Optional<Date> lastModifiedIn, long checkedAtIn) {
+            lastModified = lastModifiedIn;
+            checkedAt = checkedAtIn;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.webui.utils;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Download tokens that passed the checks of the download endpoint, so that
+ * the requests of a client do not each look up its token in the database and
+ * verify its signature again.
+ *
+ * Tokens are kept for the configured time to live at most, and never beyond
+ * their own expiration. A token invalidated or deleted by this process is
+ * dropped once the transaction doing it commits. One invalidated or deleted
+ * by another process, like the token cleanup of Taskomatic, stays trusted
+ * until its entry expires, that is for java.download_token_cache_ttl seconds
+ * at most. Tokens are kept by their SHA-256 hash.
+ */
+public class DownloadTokenCache {
+
+    private static final Map<String, VerifiedToken> CACHE = new ConcurrentHashMap<>();
+
+    private DownloadTokenCache() {
+    }
+
+    /**
+     * Returns the verified token, if it is cached and has not expired.
+     * @param token the token
+     * @return the verified token
+     */
+    public static Optional<VerifiedToken> get(String token) {
+        String key = DigestUtils.sha256Hex(token);
+        VerifiedToken verified = CACHE.get(key);
+        if (verified != null && Instant.now().isAfter(verified.validUntil)) {
+            CACHE.remove(key, verified);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(verified);
+    }
+
+    /**
+     * Caches a token that passed the checks.
+     * @param token the token
+     * @param verified the result of the checks
+     */
+    public static void put(String token, VerifiedToken verified) {
+        if (ConfigDefaults.get().getDownloadTokenCacheTtl() <= 0) {
+            return;
+        }
+        if (CACHE.size() >= ConfigDefaults.get().getDownloadTokenCacheSize()) {
+            Instant now = Instant.now();
+            CACHE.values().removeIf(v -> now.isAfter(v.validUntil));
+            if (CACHE.size() >= ConfigDefaults.get().getDownloadTokenCacheSize()) {
+                // the clients verify their tokens again on their next request
+                CACHE.clear();
+            }
+        }
+        CACHE.put(DigestUtils.sha256Hex(token), verified);
+    }
+
+    /**
+     * Drops a token, to be called when it is invalidated.
+     * @param token the token
+     */
+    public static void invalidate(String token) {
+        if (token != null) {
+            CACHE.remove(DigestUtils.sha256Hex(token));
+        }
+    }
+
+    /**
+     * Drops a token once the current transaction commits, to be called when it is
+     * invalidated or deleted. Until then the change can still be rolled back, and
+     * other requests keep using the token as stored.
+     * @param token the token
+     */
+    public static void invalidateOnCommit(String token) {
+        if (token == null) {
+            return;
+        }
+        if (!HibernateFactory.inTransaction()) {
+            invalidate(token);
+            return;
+        }
+        HibernateFactory.getSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    invalidate(token);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops all the cached tokens.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * The claims of a token that passed the checks.
+     */
+    public static class VerifiedToken {
+
+        private final Optional<List<String>> channels;
+        private final Optional<Long> orgId;
+        private final Instant validUntil;
+        private final Set<String> accessibleChannels = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Standard constructor.
+         * @param channelsIn the channels the token gives access to, empty for any
+         * @param orgIdIn the organization of the token
+         * @param expirationIn when the token expires, if it does
+         */
+        public VerifiedToken(Optional<List<String>> channelsIn, Optional<Long> orgIdIn,
+                Optional<Instant> expirationIn) {
+            channels = channelsIn;
+            orgId = orgIdIn;
+            Instant maxValidity = Instant.now()
+                    .plus(Duration.ofSeconds(ConfigDefaults.get().getDownloadTokenCacheTtl()));
+            validUntil = expirationIn.filter(e -> e.isBefore(maxValidity)).orElse(maxValidity);
+        }
+
+        /**
+         * @return the channels the token gives access to, empty for any
+         */
+        public Optional<List<String>> getChannels() {
+            return channels;
+        }
+
+        /**
+         * @return the organization of the token
+         */
+        public Optional<Long> getOrgId() {
+            return orgId;
+        }
+
+        /**
+         * @param channel the channel label
+         * @return true if the channel was found accessible by the organization of the token
+         */
+        public boolean isAccessible(String channel) {
+            return accessibleChannels.contains(channel);
+        }
+
+        /**
+         * Records that the channel is accessible by the organization of the token.
+         * @param channel the channel label
+         */
+        public void setAccessible(String channel) {
+            accessibleChannels.add(channel);
+        }
+    }
+}
@@ -15,6 +15,7 @@
 package com.suse.manager.webui.websocket;
 
 import com.redhat.rhn.GlobalInstanceHolder;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.notification.UserNotificationFactory;
 import com.redhat.rhn.domain.rhnset.RhnSet;
@@ -32,7 +33,6 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -42,7 +42,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -71,7 +70,14 @@ public class Notification {
 
     private static final Object LOCK = new Object();
     private static final Gson GSON = new GsonBuilder().create();
-    private static Map<Session, Set<String>> wsSessions = new ConcurrentHashMap();
+    private static final Map<String, Function<User, Object>> PREPARERS = Map.of(
+            USER_NOTIFICATIONS, Notification::prepareUserNotifications,
+            SSM_COUNT, Notification::prepareSsmCount
+    );
+    private static final NotificationFanout FANOUT = new NotificationFanout(
+            ConfigDefaults.get().getNotificationsPushInterval(),
+            ConfigDefaults.get().getNotificationsSessionQueueSize(),
+            Notification::prepareData, Notification::handbreakSession);
     private static Set<Session> brokenSessions = ConcurrentHashMap.newKeySet();
     private static final WebsocketHeartbeatService HEARTBEAT_SERVICE = GlobalInstanceHolder.WEBSOCKET_SESSION_MANAGER;
 
@@ -87,7 +93,7 @@ public class Notification {
                     .map(webUserID -> (Long) webUserID)
                     .ifPresentOrElse(userId -> {
                         LOG.debug(String.format("Hooked a new websocket session [id:%s]", session.getId()));
-                        handshakeSession(session);
+                        handshakeSession(session, userId);
 
                     },
                     ()-> LOG.debug("no authenticated user."));
@@ -116,15 +122,14 @@ public class Notification {
     public void onMessage(Session session, String messageBody) {
         try {
             // Each session sends messages to tell us what action ID they need to monitor
-            Set<String> watched = wsSessions.get(session);
-            if (watched != null) {
+            if (FANOUT.isRegistered(session)) {
                 Optional<User> userOpt = Optional.ofNullable(session.getUserProperties().get(WEB_USER_ID))
                         .map(webUserID -> UserFactory.lookupById((Long) webUserID));
                 userOpt.ifPresentOrElse(user -> {
                             try {
                                 Set<String> request = GSON.fromJson(messageBody,
                                         new TypeToken<Set<String>>() { }.getType());
-                                watched.addAll(request);
+                                FANOUT.watch(session, request);
 
                                 // Send the data
                                 sendData(session, user, request);
@@ -166,69 +171,48 @@ public class Notification {
     }
 
     /**
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
+     * Enqueues a message for a session. Messages are sent asynchronously, one
+     * at a time per session, in the order they were enqueued.
      *
      * @param session the WebSocket session
      * @param message the message to be sent
      */
     public static void sendMessage(Session session, String message) {
-        synchronized (LOCK) {
-            try {
-                if (session.isOpen()) {
-                    session.getBasicRemote().sendText(message);
-                }
-                else {
-                    LOG.debug("Could not send websocket message. Session [id:{}] is already closed.", session.getId());
-                    handbreakSession(session);
-                }
-            }
-            catch (IOException | IllegalStateException e) {
-                LOG.debug(String.format("Could not send websocket message. Session [id:%s] is already closed.",
-                        session.getId()));
-                handbreakSession(session);
-            }
-        }
+        FANOUT.send(session, message);
     }
 
     /**
-     * A static method to notify all {@link Session}s attached to WebSocket from the outside
+     * A static method to notify all {@link Session}s attached to WebSocket from the outside.
+     * Returns right away: the updates of a push interval are pushed at once by a dedicated thread.
      *
      * @param property which property to spread to all sessions
      */
     public static void spreadUpdate(String property) {
-        // Check for closed sessions before notifying them
-        clearBrokenSessions();
-
-        // if there are unread messages, notify it to all attached WebSocket sessions
-        wsSessions.forEach((session, watched) -> {
-            if (watched.contains(property)) {
-                Optional.ofNullable(session.getUserProperties().get(WEB_USER_ID))
-                        .map(webUserID -> UserFactory.lookupById((Long) webUserID))
-                        .ifPresent(user -> sendData(session, user, Set.of(property)));
-            }
-        });
+        FANOUT.spreadUpdate(property);
     }
 
     private static void sendData(Session session, User user, Set<String> properties) {
-        Map<String, BiFunction<Session, User, Object>> preparers = Map.of(
-                USER_NOTIFICATIONS, Notification::prepareUserNotifications,
-                SSM_COUNT, Notification::prepareSsmCount
-        );
-        Map<String, Object> data = properties.stream()
-                .filter(preparers::containsKey)
-                .collect(Collectors.toMap(Function.identity(),
-                        property -> preparers.get(property).apply(session, user)));
+        Map<String, Object> data = prepareData(user, properties);
         if (!data.isEmpty()) {
             sendMessage(session, GSON.toJson(data));
         }
     }
 
-    private static Object prepareUserNotifications(Session session, User user) {
+    private static Map<String, Object> prepareData(Long userId, Set<String> properties) {
+        return prepareData(UserFactory.lookupById(userId), properties);
+    }
+
+    private static Map<String, Object> prepareData(User user, Set<String> properties) {
+        return properties.stream()
+                .filter(PREPARERS::containsKey)
+                .collect(Collectors.toMap(Function.identity(), property -> PREPARERS.get(property).apply(user)));
+    }
+
+    private static Object prepareUserNotifications(User user) {
         return UserNotificationFactory.unreadUserNotificationsSize(user);
     }
 
-    private static Object prepareSsmCount(Session session, User user) {
+    private static Object prepareSsmCount(User user) {
         RhnSet systemSet = RhnSetDecl.SYSTEMS.lookup(user);
         return systemSet != null ? systemSet.size() : 0;
     }
@@ -239,7 +223,7 @@ public class Notification {
     public static void clearBrokenSessions() {
         synchronized (LOCK) {
             // look for closed sessions in the valid set
-            wsSessions.forEach((s, u) -> {
+            FANOUT.getSessions().forEach(s -> {
                 if (!s.isOpen()) {
                     brokenSessions.add(s);
                 }
@@ -251,7 +235,7 @@ public class Notification {
             // remove any invalid/broken session from the valid set
             // try to close it if it is still open
             brokenSessions.forEach(session -> {
-                wsSessions.remove(session);
+                FANOUT.unregister(session);
                 brokenSessionRemove.add(session);
                 if (session.isOpen()) {
                     try {
@@ -269,10 +253,11 @@ public class Notification {
     /**
      * Add a new WebSocket Session to the collection
      * @param session the session to add
+     * @param userId the id of the user of the session
      */
-    private static void handshakeSession(Session session) {
+    private static void handshakeSession(Session session, Long userId) {
         HEARTBEAT_SERVICE.register(session);
-        wsSessions.put(session, new HashSet<>());
+        FANOUT.register(session, userId);
     }
 
     /**
@@ -289,15 +274,11 @@ public class Notification {
         scheduledExecutorService = Executors.newScheduledThreadPool(1);
         scheduledExecutorService.scheduleWithFixedDelay(() -> {
             try {
+                clearBrokenSessions();
                 spreadUpdate(USER_NOTIFICATIONS);
             }
             catch (Exception e) {
                 LOG.error("Notification scheduledExecutorService exception", e);
-                // clear WebSocket connections
-                clearBrokenSessions();
-            }
-            finally {
-                HibernateFactory.closeSession();
             }
         }, 30, 30, TimeUnit.SECONDS);
     }
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.webui.websocket;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import com.suse.manager.metrics.PrometheusExporter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * Pushes property updates to the websocket sessions of the web UI without
+ * blocking the code that triggers them.
+ *
+ * Updates of a property are collected for one push interval and then pushed
+ * at once from a dedicated thread: the values are computed once per user,
+ * whatever the number of sessions the user has open, and each session gets
+ * one message with the properties it watches. Messages are sent
+ * asynchronously through a bounded queue per session, so a slow browser only
+ * delays its own messages. When the queue of a session is full its oldest
+ * message is dropped, as a newer one carries fresher values.
+ */
+public class NotificationFanout {
+
+    private static final Logger LOG = LogManager.getLogger(NotificationFanout.class);
+
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private static final Gauge SESSIONS = Gauge.build()
+            .name("websocket_notification_sessions")
+            .help("Websocket sessions registered for notifications")
+            .create();
+    private static final Gauge QUEUED_MESSAGES = Gauge.build()
+            .name("websocket_notification_queued_messages")
+            .help("Messages waiting to be sent to the websocket notification sessions")
+            .create();
+    private static final Gauge MAX_QUEUE_DEPTH = Gauge.build()
+            .name("websocket_notification_max_queue_depth")
+            .help("Messages waiting to be sent to the most behind websocket notification session at the last push")
+            .create();
+    private static final Counter DROPPED_MESSAGES = Counter.build()
+            .name("websocket_notification_dropped_messages_total")
+            .help("Messages dropped because the queue of their websocket notification session was full")
+            .create();
+    private static final Counter PUSHES = Counter.build()
+            .name("websocket_notification_pushes_total")
+            .help("Pushes of collected property updates to the websocket notification sessions")
+            .create();
+
+    static {
+        PrometheusExporter.INSTANCE.registerCollectors(SESSIONS, QUEUED_MESSAGES, MAX_QUEUE_DEPTH,
+                DROPPED_MESSAGES, PUSHES);
+    }
+
+    private final Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("websocket-notifications-%d").daemon(true).build());
+
+    private final long pushIntervalMillis;
+    private final int queueSize;
+    private final BiFunction<Long, Set<String>, Map<String, Object>> valueProvider;
+    private final Consumer<Session> brokenSessionHandler;
+
+    /**
+     * Standard constructor.
+     * @param pushIntervalMillisIn how long updates are collected before being pushed
+     * @param queueSizeIn the number of messages a session can have pending
+     * @param valueProviderIn computes the values of the given properties for the user with the given id
+     * @param brokenSessionHandlerIn called with the sessions a message could not be sent to
+     */
+    public NotificationFanout(long pushIntervalMillisIn, int queueSizeIn,
+            BiFunction<Long, Set<String>, Map<String, Object>> valueProviderIn,
+            Consumer<Session> brokenSessionHandlerIn) {
+        pushIntervalMillis = pushIntervalMillisIn;
+        queueSize = queueSizeIn;
+        valueProvider = valueProviderIn;
+        brokenSessionHandler = brokenSessionHandlerIn;
+    }
+
+    /**
+     * Registers a session of the given user.
+     * @param session the websocket session
+     * @param userId the id of the user of the session
+     */
+    public void register(Session session, Long userId) {
+        if (subscribers.putIfAbsent(session, new Subscriber(session, userId)) == null) {
+            SESSIONS.inc();
+        }
+    }
+
+    /**
+     * Unregisters a session, dropping its pending messages.
+     * @param session the websocket session
+     */
+    public void unregister(Session session) {
+        Subscriber subscriber = subscribers.remove(session);
+        if (subscriber != null) {
+            SESSIONS.dec();
+            subscriber.clear();
+        }
+    }
+
+    /**
+     * @param session the websocket session
+     * @return true if the session is registered
+     */
+    public boolean isRegistered(Session session) {
+        return subscribers.containsKey(session);
+    }
+
+    /**
+     * @return the registered sessions
+     */
+    public Set<Session> getSessions() {
+        return subscribers.keySet();
+    }
+
+    /**
+     * Adds properties to the ones pushed to a session.
+     * @param session the websocket session
+     * @param properties the properties the session watches
+     */
+    public void watch(Session session, Collection<String> properties) {
+        Subscriber subscriber = subscribers.get(session);
+        if (subscriber != null) {
+            subscriber.watched.addAll(properties);
+        }
+    }
+
+    /**
+     * Enqueues a message for a session. Returns right away, the message is
+     * sent asynchronously after the ones already pending for the session.
+     * @param session the websocket session
+     * @param message the message
+     */
+    public void send(Session session, String message) {
+        Subscriber subscriber = subscribers.get(session);
+        if (subscriber != null) {
+            subscriber.offer(message);
+        }
+        else {
+            LOG.debug("Not sending websocket message to unregistered session [id:{}]", session.getId());
+        }
+    }
+
+    /**
+     * Marks a property as updated. Returns right away, the property is pushed
+     * to the sessions watching it at the end of the current push interval.
+     * @param property the updated property
+     */
+    public void spreadUpdate(String property) {
+        pending.add(property);
+        if (pushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::scheduledPush, pushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Pushes the pending updates right away, in the calling thread.
+     */
+    public void push() {
+        pushScheduled.set(false);
+        Set<String> properties = new HashSet<>();
+        for (String property : pending) {
+            if (pending.remove(property)) {
+                properties.add(property);
+            }
+        }
+        if (properties.isEmpty()) {
+            return;
+        }
+        PUSHES.inc();
+
+        Map<Long, List<Subscriber>> byUser = subscribers.values().stream()
+                .filter(s -> s.watches(properties))
+                .collect(Collectors.groupingBy(s -> s.userId));
+        byUser.forEach((userId, userSubscribers) -> {
+            Set<String> needed = userSubscribers.stream()
+                    .flatMap(s -> s.watched.stream())
+                    .filter(properties::contains)
+                    .collect(Collectors.toSet());
+            Map<String, Object> values;
+            try {
+                values = valueProvider.apply(userId, needed);
+            }
+            catch (RuntimeException e) {
+                LOG.error("Could not compute the notification properties of user {}", userId, e);
+                return;
+            }
+            for (Subscriber subscriber : userSubscribers) {
+                Map<String, Object> data = new HashMap<>();
+                values.forEach((property, value) -> {
+                    if (subscriber.watched.contains(property)) {
+                        data.put(property, value);
+                    }
+                });
+                if (!data.isEmpty()) {
+                    subscriber.offer(GSON.toJson(data));
+                }
+            }
+        });
+        MAX_QUEUE_DEPTH.set(subscribers.values().stream().mapToInt(Subscriber::depth).max().orElse(0));
+    }
+
+    private void scheduledPush() {
+        try {
+            push();
+        }
+        catch (RuntimeException e) {
+            LOG.error("Could not push the websocket notifications", e);
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    /**
+     * A registered session, with the properties it watches and its queue of
+     * messages. At most one asynchronous send is in progress for a session.
+     */
+    private final class Subscriber implements SendHandler {
+
+        private final Session session;
+        private final Long userId;
+        private final Set<String> watched = ConcurrentHashMap.newKeySet();
+        private final Deque<String> messages = new ArrayDeque<>();
+        private boolean sending;
+
+        Subscriber(Session sessionIn, Long userIdIn) {
+            session = sessionIn;
+            userId = userIdIn;
+        }
+
+        boolean watches(Set<String> properties) {
+            return properties.stream().anyMatch(watched::contains);
+        }
+
+        synchronized int depth() {
+            return messages.size();
+        }
+
+        synchronized void offer(String message) {
+            if (messages.size() >= queueSize) {
+                messages.pollFirst();
+                QUEUED_MESSAGES.dec();
+                DROPPED_MESSAGES.inc();
+            }
+            messages.addLast(message);
+            QUEUED_MESSAGES.inc();
+            if (!sending) {
+                sendNext();
+            }
+        }
+
+        synchronized void clear() {
+            QUEUED_MESSAGES.dec(messages.size());
+            messages.clear();
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                LOG.debug("Could not send websocket message. Session [id:{}] is broken.", session.getId(),
+                        result.getException());
+                broken();
+                return;
+            }
+            synchronized (this) {
+                sendNext();
+            }
+        }
+
+        private void sendNext() {
+            String message = messages.pollFirst();
+            if (message == null) {
+                sending = false;
+                return;
+            }
+            QUEUED_MESSAGES.dec();
+            sending = true;
+            if (!session.isOpen()) {
+                LOG.debug("Could not send websocket message. Session [id:{}] is already closed.", session.getId());
+                broken();
+                return;
+            }
+            try {
+                session.getAsyncRemote().sendText(message, this);
+            }
+            catch (IllegalStateException e) {
+                LOG.debug("Could not send websocket message. Session [id:{}] is already closed.", session.getId());
+                broken();
+            }
+        }
+
+        private void broken() {
+            synchronized (this) {
+                sending = false;
+            }
+            unregister(session);
+            brokenSessionHandler.accept(session);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.webui.websocket.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.manager.webui.websocket.NotificationFanout;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+public class NotificationFanoutTest {
+
+    /**
+     * Fake websocket session recording the messages sent to it.
+     */
+    private static class FakeSession {
+        private final List<String> sent = new ArrayList<>();
+        private final List<SendHandler> inFlight = new ArrayList<>();
+        private final boolean completeSends;
+        private final Session session;
+
+        FakeSession(String id, boolean completeSendsIn) {
+            completeSends = completeSendsIn;
+            RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[] {RemoteEndpoint.Async.class},
+                    (proxy, method, args) -> {
+                        if (!method.getName().equals("sendText")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        sent.add((String) args[0]);
+                        if (completeSends) {
+                            ((SendHandler) args[1]).onResult(new SendResult());
+                        }
+                        else {
+                            inFlight.add((SendHandler) args[1]);
+                        }
+                        return null;
+                    });
+            session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Session.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getAsyncRemote":
+                                return async;
+                            case "isOpen":
+                                return true;
+                            case "getId":
+                                return id;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void testPushOncePerUser() {
+        Map<Long, Integer> computed = new ConcurrentHashMap<>();
+        NotificationFanout fanout = new NotificationFanout(60_000, 4, (userId, properties) -> {
+            computed.merge(userId, 1, Integer::sum);
+            Map<String, Object> values = new HashMap<>();
+            properties.forEach(p -> values.put(p, userId));
+            return values;
+        }, s -> { });
+
+        FakeSession first = new FakeSession("1", true);
+        FakeSession second = new FakeSession("2", true);
+        FakeSession other = new FakeSession("3", true);
+        fanout.register(first.session, 1L);
+        fanout.register(second.session, 1L);
+        fanout.register(other.session, 2L);
+        fanout.watch(first.session, Set.of("counter"));
+        fanout.watch(second.session, Set.of("counter", "ssm"));
+        fanout.watch(other.session, Set.of("ssm"));
+
+        fanout.spreadUpdate("counter");
+        fanout.spreadUpdate("counter");
+        fanout.spreadUpdate("ssm");
+        fanout.push();
+
+        assertEquals(Map.of(1L, 1, 2L, 1), computed);
+        assertEquals(List.of("{\"counter\":1}"), first.sent);
+        assertEquals(1, second.sent.size());
+        assertTrue(second.sent.get(0).contains("\"ssm\":1"));
+        assertTrue(second.sent.get(0).contains("\"counter\":1"));
+        assertEquals(List.of("{\"ssm\":2}"), other.sent);
+
+        // nothing is pending anymore
+        fanout.push();
+        assertEquals(1, first.sent.size());
+    }
+
+    @Test
+    public void testSlowSessionDropsOldestMessages() {
+        NotificationFanout fanout = new NotificationFanout(60_000, 2, (userId, properties) -> Map.of(), s -> { });
+        FakeSession slow = new FakeSession("1", false);
+        fanout.register(slow.session, 1L);
+
+        for (int i = 0; i < 5; i++) {
+            fanout.send(slow.session, "message" + i);
+        }
+        // the first message is in flight, the queue keeps the two latest ones
+        assertEquals(List.of("message0"), slow.sent);
+
+        slow.inFlight.remove(0).onResult(new SendResult());
+        slow.inFlight.remove(0).onResult(new SendResult());
+        assertEquals(List.of("message0", "message3", "message4"), slow.sent);
+    }
+
+    @Test
+    public void testBrokenSessionIsUnregistered() {
+        List<Session> broken = new ArrayList<>();
+        NotificationFanout fanout = new NotificationFanout(60_000, 2, (userId, properties) -> Map.of(),
+                broken::add);
+        FakeSession session = new FakeSession("1", false);
+        fanout.register(session.session, 1L);
+
+        fanout.send(session.session, "message");
+        session.inFlight.remove(0).onResult(new SendResult(new IllegalStateException("closed")));
+
+        assertFalse(fanout.isRegistered(session.session));
+        assertEquals(List.of(session.session), broken);
+    }
+}
@@ -15,7 +15,7 @@
 
 package com.suse.oval;
 
-import com.redhat.rhn.common.db.datasource.CallableMode;
+import com.redhat.rhn.common.db.CopyBuffer;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.Row;
@@ -34,7 +34,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +43,12 @@ import java.util.stream.Collectors;
 public class OVALCachingFactory extends HibernateFactory {
     private static final Logger LOG = LogManager.getLogger(OVALCachingFactory.class);
 
+    /* Vulnerable package rows loaded at once, in a transaction of their own */
+    private static final int BATCH_SIZE = 10_000;
+    private static final String STAGING_TABLE = "oval_vulnerable_package_staging";
+    private static final List<String> STAGING_COLUMNS =
+            List.of("package_name", "fix_version", "product_cpe", "cve_name");
+
     private OVALCachingFactory() {
         // Left empty on purpose
     }
@@ -53,44 +59,51 @@ public class OVALCachingFactory extends HibernateFactory {
      * @param rootType the OVAL root to extract from
      * */
     public static void savePlatformsVulnerablePackages(OvalRootType rootType) {
-        CallableMode mode = ModeFactory.getCallableMode("oval_queries", "add_product_vulnerable_package");
-
         OVALLookupHelper ovalLookupHelper = new OVALLookupHelper(rootType);
 
-        DataResult<Map<String, Object>> batch = new DataResult<>(new ArrayList<>(1000));
-
+        VulnerablePackageLoader loader = new VulnerablePackageLoader();
         for (DefinitionType definition : rootType.getDefinitions()) {
-            VulnerablePackagesExtractor vulnerablePackagesExtractor =
-                    VulnerablePackagesExtractors.create(definition, rootType.getOsFamily(), ovalLookupHelper);
+            loader.add(definition, rootType.getOsFamily(), ovalLookupHelper);
+        }
+        loader.load();
+    }
 
-            List<ProductVulnerablePackages> extractionResult = vulnerablePackagesExtractor.extract();
-            for (ProductVulnerablePackages productVulnerablePackages : extractionResult) {
-                for (String cve : productVulnerablePackages.getCves()) {
-                    for (VulnerablePackage vulnerablePackage : productVulnerablePackages.getVulnerablePackages()) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put("product_name", productVulnerablePackages.getProductCpe());
-                        params.put("cve_name", cve);
-                        params.put("package_name", vulnerablePackage.getName());
-                        params.put("fix_version", vulnerablePackage.getFixVersion().orElse(null));
-
-                        batch.add(params);
-
-                        if (batch.size() % 1000 == 0) {
-                            mode.getQuery().executeBatchUpdates(batch);
-                            batch.clear();
-                            commitTransaction();
-
-                            Session session = getSession();
-                            if (!inTransaction()) {
-                                session.beginTransaction();
-                            }
-                        }
-                    }
-                }
-            }
+    /**
+     * Extracts and save the list of vulnerable packages from an OVAL file, streaming its definitions so that they
+     * are never all held in memory at once. Only the package names, package EVRs and test references of the file are
+     * kept, and only for the OVAL families whose extractors look them up.
+     *
+     * @param ovalFile the OVAL file to extract from
+     * @param osFamily the osFamily of the OVAL
+     * @param osVersion the osVersion of the OVAL
+     * */
+    public static void savePlatformsVulnerablePackages(File ovalFile, OsFamily osFamily, String osVersion) {
+        OvalParser parser = new OvalParser();
+
+        OVALLookupHelper ovalLookupHelper = new OVALLookupHelper();
+        if (VulnerablePackagesExtractors.usesResources(osFamily)) {
+            parser.parseResources(ovalFile,
+                    test -> {
+                        OVALCleaner.cleanupTest(test, osFamily, osVersion);
+                        ovalLookupHelper.addTest(test);
+                    },
+                    object -> {
+                        OVALCleaner.cleanupObject(object, osFamily, osVersion);
+                        ovalLookupHelper.addObject(object);
+                    },
+                    state -> {
+                        OVALCleaner.cleanupState(state, osFamily, osVersion);
+                        ovalLookupHelper.addState(state);
+                    });
         }
 
-        mode.getQuery().executeBatchUpdates(new DataResult<>(batch));
+        VulnerablePackageLoader loader = new VulnerablePackageLoader();
+        parser.parseDefinitions(ovalFile, definition -> {
+            if (OVALCleaner.cleanupDefinition(definition, osFamily, osVersion)) {
+                loader.add(definition, osFamily, ovalLookupHelper);
+            }
+        });
+        loader.load();
     }
 
     /**
@@ -138,4 +151,53 @@ public class OVALCachingFactory extends HibernateFactory {
     protected Logger getLogger() {
         return LOG;
     }
+
+    /**
+     * Loads vulnerable packages into the database in batches: each batch is
+     * copied into a temporary staging table and then merged into the OVAL
+     * tables with a few set based statements.
+     */
+    private static class VulnerablePackageLoader {
+
+        private final CopyBuffer buffer = new CopyBuffer(STAGING_TABLE, STAGING_COLUMNS);
+
+        void add(DefinitionType definition, OsFamily osFamily, OVALLookupHelper ovalLookupHelper) {
+            VulnerablePackagesExtractor vulnerablePackagesExtractor =
+                    VulnerablePackagesExtractors.create(definition, osFamily, ovalLookupHelper);
+
+            List<ProductVulnerablePackages> extractionResult = vulnerablePackagesExtractor.extract();
+            for (ProductVulnerablePackages productVulnerablePackages : extractionResult) {
+                for (String cve : productVulnerablePackages.getCves()) {
+                    for (VulnerablePackage vulnerablePackage : productVulnerablePackages.getVulnerablePackages()) {
+                        buffer.addRow(vulnerablePackage.getName(), vulnerablePackage.getFixVersion().orElse(null),
+                                productVulnerablePackages.getProductCpe(), cve);
+                    }
+                }
+            }
+
+            if (buffer.size() >= BATCH_SIZE) {
+                load();
+                commitTransaction();
+
+                Session session = getSession();
+                if (!inTransaction()) {
+                    session.beginTransaction();
+                }
+            }
+        }
+
+        void load() {
+            if (buffer.size() == 0) {
+                return;
+            }
+            Map<String, Object> noParams = Map.of();
+            ModeFactory.getWriteMode("oval_queries", "create_vulnerable_package_staging").executeUpdate(noParams);
+            long rows = buffer.copyIn(getSession());
+            ModeFactory.getWriteMode("oval_queries", "insert_staged_vulnerable_packages").executeUpdate(noParams);
+            ModeFactory.getWriteMode("oval_queries", "insert_staged_platform_vulnerable_packages")
+                    .executeUpdate(noParams);
+            ModeFactory.getWriteMode("oval_queries", "clear_vulnerable_package_staging").executeUpdate(noParams);
+            LOG.debug("Loaded {} vulnerable package rows", rows);
+        }
+    }
 }
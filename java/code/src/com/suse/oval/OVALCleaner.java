@@ -54,23 +54,41 @@ public class OVALCleaner {
         root.setOsFamily(osFamily);
         root.setOsVersion(osVersion);
 
-        if (osFamily == OsFamily.REDHAT_ENTERPRISE_LINUX) {
-            root.getDefinitions().removeIf(def -> def.getId().contains("unaffected"));
+        root.getDefinitions().removeIf(definition -> !cleanupDefinition(definition, osFamily, osVersion));
+
+        root.getTests().forEach(test -> cleanupTest(test, osFamily, osVersion));
+        root.getStates().forEach(state -> cleanupState(state, osFamily, osVersion));
+        root.getObjects().forEach(object -> cleanupObject(object, osFamily, osVersion));
+    }
+
+    /**
+     * Cleanup a single definition of an OVAL document of the given {@code osFamily} and {@code osVersion}, for
+     * documents whose definitions are streamed one at a time rather than all held by an {@link OvalRootType}
+     *
+     * @param definition the definition to clean up
+     * @param osFamily the osFamily of the OVAL
+     * @param osVersion the osVersion of the OVAL
+     * @return {@code false} if the definition is of no use and should be dropped
+     * */
+    public static boolean cleanupDefinition(DefinitionType definition, OsFamily osFamily, String osVersion) {
+        if (osFamily == OsFamily.REDHAT_ENTERPRISE_LINUX && definition.getId().contains("unaffected")) {
+            return false;
         }
 
-        if (osFamily == OsFamily.DEBIAN || osFamily == OsFamily.SUSE_LINUX_ENTERPRISE_SERVER ||
-                osFamily == OsFamily.SUSE_LINUX_ENTERPRISE_DESKTOP || osFamily == OsFamily.LEAP) {
+        if ((osFamily == OsFamily.DEBIAN || osFamily == OsFamily.SUSE_LINUX_ENTERPRISE_SERVER ||
+                osFamily == OsFamily.SUSE_LINUX_ENTERPRISE_DESKTOP || osFamily == OsFamily.LEAP) &&
+                definition.getDefinitionClass() != DefinitionClassEnum.VULNERABILITY) {
             // For the above OS families, we only need OVAL vulnerability definitions
-            root.getDefinitions().removeIf(def -> def.getDefinitionClass() != DefinitionClassEnum.VULNERABILITY);
+            return false;
         }
 
         // Although it's rare, but it's possible to get null criteria trees.
-        root.getDefinitions().removeIf(def -> def.getCriteria() == null);
+        if (definition.getCriteria() == null) {
+            return false;
+        }
 
-        root.getDefinitions().forEach(definition -> doCleanupDefinition(definition, osFamily, osVersion));
-        root.getTests().forEach(test -> doCleanupTest(test, osFamily, osVersion));
-        root.getStates().forEach(state -> doCleanupState(state, osFamily, osVersion));
-        root.getObjects().forEach(object -> doCleanupObject(object, osFamily, osVersion));
+        doCleanupDefinition(definition, osFamily, osVersion);
+        return true;
     }
 
     private static void doCleanupDefinition(DefinitionType definition, OsFamily osFamily, String osVersion) {
@@ -120,7 +138,14 @@ public class OVALCleaner {
         definition.setOsVersion(osVersion);
     }
 
-    private static void doCleanupTest(TestType test, OsFamily osFamily, String osVersion) {
+    /**
+     * Cleanup the given OVAL test based on {@code osFamily} and {@code osVersion}
+     *
+     * @param test the test to clean up
+     * @param osFamily the osFamily of the OVAL
+     * @param osVersion the osVersion of the OVAL
+     * */
+    public static void cleanupTest(TestType test, OsFamily osFamily, String osVersion) {
         if (osFamily == OsFamily.DEBIAN) {
             test.setId(convertDebianId(test.getId(), osVersion));
             test.setObjectRef(convertDebianId(test.getObjectRef(), osVersion));
@@ -128,13 +153,27 @@ public class OVALCleaner {
         }
     }
 
-    private static void doCleanupState(StateType state, OsFamily osFamily, String osVersion) {
+    /**
+     * Cleanup the given OVAL state based on {@code osFamily} and {@code osVersion}
+     *
+     * @param state the state to clean up
+     * @param osFamily the osFamily of the OVAL
+     * @param osVersion the osVersion of the OVAL
+     * */
+    public static void cleanupState(StateType state, OsFamily osFamily, String osVersion) {
         if (osFamily == OsFamily.DEBIAN) {
             state.setId(convertDebianId(state.getId(), osVersion));
         }
     }
 
-    private static void doCleanupObject(ObjectType object, OsFamily osFamily, String osVersion) {
+    /**
+     * Cleanup the given OVAL object based on {@code osFamily} and {@code osVersion}
+     *
+     * @param object the object to clean up
+     * @param osFamily the osFamily of the OVAL
+     * @param osVersion the osVersion of the OVAL
+     * */
+    public static void cleanupObject(ObjectType object, OsFamily osFamily, String osVersion) {
         if (osFamily == OsFamily.DEBIAN) {
             object.setId(convertDebianId(object.getId(), osVersion));
         }
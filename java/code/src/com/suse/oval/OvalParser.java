@@ -16,21 +16,68 @@
 package com.suse.oval;
 
 import com.suse.oval.exceptions.OvalParserException;
+import com.suse.oval.ovaltypes.DefinitionType;
+import com.suse.oval.ovaltypes.DefinitionsType;
+import com.suse.oval.ovaltypes.ObjectType;
+import com.suse.oval.ovaltypes.ObjectsType;
 import com.suse.oval.ovaltypes.OvalRootType;
+import com.suse.oval.ovaltypes.StateType;
+import com.suse.oval.ovaltypes.StatesType;
+import com.suse.oval.ovaltypes.TestType;
+import com.suse.oval.ovaltypes.TestsType;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * The Oval Parser is responsible for parsing OVAL(Open Vulnerability and Assessment Language) documents
+ *
+ * Besides unmarshalling a whole document, it can stream it with StAX: the
+ * definitions are then unmarshalled and handed over one at a time, so that
+ * the memory needed does not depend on the number of definitions.
  */
 public class OvalParser {
 
+    private static final String OVAL_NAMESPACE = "http://oval.mitre.org/XMLSchema/oval-definitions-5";
+
+    private static final String DEFINITIONS = "definitions";
+    private static final String TESTS = "tests";
+    private static final String OBJECTS = "objects";
+    private static final String STATES = "states";
+
+    /* The classes of the elements of each section, as mapped in the JAXB types */
+    private static final Map<String, Map<QName, Class<?>>> SECTION_TYPES = Map.of(
+            DEFINITIONS, elementTypes(DefinitionsType.class, "definitions"),
+            TESTS, elementTypes(TestsType.class, "tests"),
+            OBJECTS, elementTypes(ObjectsType.class, "objects"),
+            STATES, elementTypes(StatesType.class, "states"));
+
+    private static volatile JAXBContext jaxbContext;
+
     /**
      * Parse the given OVAL file
      *
@@ -39,8 +86,7 @@ public class OvalParser {
      * */
     public OvalRootType parse(File ovalFile) throws OvalParserException {
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(OvalRootType.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
             return (OvalRootType) unmarshaller.unmarshal(ovalFile);
         }
         catch (JAXBException e) {
@@ -63,4 +109,183 @@ public class OvalParser {
         }
     }
 
+    /**
+     * Parse the tests, objects and states of the given OVAL file, skipping its definitions
+     *
+     * @param ovalFile the OVAL file to parse
+     * @return an {@link OvalRootType} object with tests, objects and states but no definitions
+     * */
+    public OvalRootType parseResources(File ovalFile) throws OvalParserException {
+        List<TestType> tests = new ArrayList<>();
+        List<ObjectType> objects = new ArrayList<>();
+        List<StateType> states = new ArrayList<>();
+        parseResources(ovalFile, tests::add, objects::add, states::add);
+
+        OvalRootType root = new OvalRootType();
+        root.setTests(tests);
+        root.setObjects(objects);
+        root.setStates(states);
+        return root;
+    }
+
+    /**
+     * Parse the tests, objects and states of the given OVAL file one at a time, skipping its definitions
+     *
+     * @param ovalFile the OVAL file to parse
+     * @param testConsumer the consumer of the tests
+     * @param objectConsumer the consumer of the objects
+     * @param stateConsumer the consumer of the states
+     * */
+    public void parseResources(File ovalFile, Consumer<TestType> testConsumer, Consumer<ObjectType> objectConsumer,
+                               Consumer<StateType> stateConsumer) throws OvalParserException {
+        stream(ovalFile, (section, element) -> {
+            switch (section) {
+                case TESTS:
+                    testConsumer.accept((TestType) element);
+                    break;
+                case OBJECTS:
+                    objectConsumer.accept((ObjectType) element);
+                    break;
+                case STATES:
+                    stateConsumer.accept((StateType) element);
+                    break;
+                default:
+                    break;
+            }
+        }, TESTS, OBJECTS, STATES);
+    }
+
+    /**
+     * Parse the definitions of the given OVAL file one at a time
+     *
+     * @param ovalFile the OVAL file to parse
+     * @param consumer the consumer of the definitions, called in document order
+     * */
+    public void parseDefinitions(File ovalFile, Consumer<DefinitionType> consumer) throws OvalParserException {
+        stream(ovalFile, (section, element) -> consumer.accept((DefinitionType) element), DEFINITIONS);
+    }
+
+    /**
+     * Streams the elements of the given sections of an OVAL file, skipping
+     * everything else without building it.
+     */
+    private void stream(File ovalFile, ElementConsumer consumer, String... sections) {
+        List<String> wanted = List.of(sections);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(ovalFile))) {
+            XMLStreamReader reader = newInputFactory().createXMLStreamReader(in);
+            Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
+            String section = null;
+            boolean root = true;
+            int event = reader.next();
+            while (event != XMLStreamConstants.END_DOCUMENT) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (section != null) {
+                        Class<?> type = SECTION_TYPES.get(section).get(reader.getName());
+                        if (type != null) {
+                            // the unmarshaller leaves the reader right after the element
+                            consumer.accept(section, unmarshaller.unmarshal(reader, type).getValue());
+                            event = reader.getEventType();
+                            continue;
+                        }
+                        // kinds of tests, objects and states not mapped are ignored, as in full parsing
+                        skipElement(reader);
+                    }
+                    else if (root) {
+                        // oval_definitions, look into it
+                        root = false;
+                    }
+                    else if (OVAL_NAMESPACE.equals(reader.getNamespaceURI()) &&
+                            wanted.contains(reader.getLocalName())) {
+                        section = reader.getLocalName();
+                    }
+                    else {
+                        skipElement(reader);
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT && section != null) {
+                    // the elements of a section are always read whole, this is the end of the section
+                    section = null;
+                }
+                event = reader.next();
+            }
+            reader.close();
+        }
+        catch (IOException | XMLStreamException | JAXBException e) {
+            throw new OvalParserException("Failed to parse the given OVAL file at: " + ovalFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Moves the reader from the start of an element to its end.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /*
+     * Creating a JAXBContext means introspecting all the OVAL types, so it is
+     * done once. Contexts are thread safe, unlike unmarshallers.
+     */
+    private static JAXBContext getJaxbContext() throws JAXBException {
+        JAXBContext context = jaxbContext;
+        if (context == null) {
+            synchronized (OvalParser.class) {
+                context = jaxbContext;
+                if (context == null) {
+                    context = JAXBContext.newInstance(OvalRootType.class);
+                    jaxbContext = context;
+                }
+            }
+        }
+        return context;
+    }
+
+    private static Map<QName, Class<?>> elementTypes(Class<?> containerType, String fieldName) {
+        Field field;
+        try {
+            field = containerType.getDeclaredField(fieldName);
+        }
+        catch (NoSuchFieldException e) {
+            throw new IllegalStateException("No field " + fieldName + " in " + containerType.getName(), e);
+        }
+        Map<QName, Class<?>> types = new HashMap<>();
+        XmlElements elements = field.getAnnotation(XmlElements.class);
+        if (elements != null) {
+            for (XmlElement element : elements.value()) {
+                types.put(new QName(element.namespace(), element.name()), element.type());
+            }
+        }
+        else {
+            // a single element kind, of the list element type
+            XmlElement element = field.getAnnotation(XmlElement.class);
+            Type listType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            types.put(new QName(element.namespace(), element.name()), (Class<?>) listType);
+        }
+        return types;
+    }
+
+    /**
+     * Receives the elements of the OVAL sections being streamed.
+     */
+    @FunctionalInterface
+    private interface ElementConsumer {
+        void accept(String section, Object element);
+    }
 }
@@ -25,6 +25,9 @@ import java.util.Optional;
 /**
  * A cache for OVAL resources (objects, states and tests) to be able to efficiently look up OVAL resources
  * by their id.
+ *
+ * Only the data needed to extract vulnerable packages is kept: package names, package EVRs and the references and
+ * comments of the tests.
  * */
 public class OVALLookupHelper {
     private final OvalStateManager stateManager;
@@ -42,6 +45,42 @@ public class OVALLookupHelper {
         this.objectManager = new OvalObjectManager(rootType.getObjects());
     }
 
+    /**
+     * Creates an empty helper, to be filled with OVAL resources one at a time while they are parsed
+     */
+    public OVALLookupHelper() {
+        this.stateManager = new OvalStateManager();
+        this.testManager = new OvalTestManager();
+        this.objectManager = new OvalObjectManager();
+    }
+
+    /**
+     * Stores an OVAL test to look up later
+     *
+     * @param test the test to store
+     */
+    public void addTest(TestType test) {
+        testManager.add(test);
+    }
+
+    /**
+     * Stores an OVAL object to look up later
+     *
+     * @param object the object to store
+     */
+    public void addObject(ObjectType object) {
+        objectManager.add(object);
+    }
+
+    /**
+     * Stores an OVAL state to look up later
+     *
+     * @param state the state to store
+     */
+    public void addState(StateType state) {
+        stateManager.add(state);
+    }
+
     /**
      * Looks up an OVAL test with an id of {@code testId}
      *
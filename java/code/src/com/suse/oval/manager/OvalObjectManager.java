@@ -23,10 +23,18 @@ import java.util.Map;
 import java.util.Optional;
 
 /**
- * A cache for {@link ObjectType} to access OVAL objects quickly
+ * A cache for {@link ObjectType} to access OVAL objects quickly.
+ *
+ * Only the package name of each object is kept, the looked up objects are built from it.
  */
 public class OvalObjectManager {
-    private final Map<String, ObjectType> objectsMap = new HashMap<>();
+    private final Map<String, String> packageNames = new HashMap<>();
+
+    /**
+     * Creates an empty cache, to be filled with {@link #add(ObjectType)}
+     */
+    public OvalObjectManager() {
+    }
 
     /**
      * Standard constructor
@@ -34,18 +42,31 @@ public class OvalObjectManager {
      * @param objects the objects to store and lookup later
      * */
     public OvalObjectManager(List<ObjectType> objects) {
-        for (ObjectType objectType : objects) {
-            objectsMap.put(objectType.getId(), objectType);
-        }
+        objects.forEach(this::add);
+    }
+
+    /**
+     * Stores an OVAL object to look up later
+     *
+     * @param objectType the object to store
+     * */
+    public void add(ObjectType objectType) {
+        packageNames.put(objectType.getId(), objectType.getPackageName());
     }
 
     /**
      * Looks up an OVAL object with an id of {@code objectId}
      *
      * @param objectId the object id to look up
-     * @return the cached {@link ObjectType} object that correspond to the object id
+     * @return an {@link ObjectType} with the id and package name of the cached object
      * */
     public Optional<ObjectType> get(String objectId) {
-        return Optional.ofNullable(objectsMap.get(objectId));
+        if (!packageNames.containsKey(objectId)) {
+            return Optional.empty();
+        }
+        ObjectType objectType = new ObjectType();
+        objectType.setId(objectId);
+        objectType.setPackageName(packageNames.get(objectId));
+        return Optional.of(objectType);
     }
 }
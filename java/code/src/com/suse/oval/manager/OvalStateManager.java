@@ -15,6 +15,7 @@
 
 package com.suse.oval.manager;
 
+import com.suse.oval.ovaltypes.EVRType;
 import com.suse.oval.ovaltypes.StateType;
 
 import java.util.HashMap;
@@ -23,10 +24,18 @@ import java.util.Map;
 import java.util.Optional;
 
 /**
- * A cache for {@link StateType} to access OVAL states quickly
+ * A cache for {@link StateType} to access OVAL states quickly.
+ *
+ * Only the package EVR of each state, with its operation, is kept, the looked up states are built from it.
  */
 public class OvalStateManager {
-    private final Map<String, StateType> statesMap = new HashMap<>();
+    private final Map<String, EVRType> packageEvrs = new HashMap<>();
+
+    /**
+     * Creates an empty cache, to be filled with {@link #add(StateType)}
+     */
+    public OvalStateManager() {
+    }
 
     /**
      * Standard constructor
@@ -34,18 +43,31 @@ public class OvalStateManager {
      * @param states the states to store and lookup later
      * */
     public OvalStateManager(List<StateType> states) {
-        for (StateType state : states) {
-            statesMap.put(state.getId(), state);
-        }
+        states.forEach(this::add);
+    }
+
+    /**
+     * Stores an OVAL state to look up later
+     *
+     * @param state the state to store
+     * */
+    public void add(StateType state) {
+        packageEvrs.put(state.getId(), state.getPackageEVR().orElse(null));
     }
 
     /**
      * Looks up an OVAL state with an id of {@code stateId} or throws an exception if none is found.
      *
      * @param stateId the id of state to lookup
-     * @return the state
+     * @return a {@link StateType} with the id and package EVR of the cached state
      * */
     public Optional<StateType> get(String stateId) {
-        return Optional.ofNullable(statesMap.get(stateId));
+        if (!packageEvrs.containsKey(stateId)) {
+            return Optional.empty();
+        }
+        StateType state = new StateType();
+        state.setId(stateId);
+        state.setPackageEVR(packageEvrs.get(stateId));
+        return Optional.of(state);
     }
 }
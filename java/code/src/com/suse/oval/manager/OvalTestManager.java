@@ -16,18 +16,31 @@
 package com.suse.oval.manager;
 
 
+import com.suse.oval.ovaltypes.StateRefType;
 import com.suse.oval.ovaltypes.TestType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 /**
- * A cache for {@link TestType} to access OVAL tests quickly
+ * A cache for {@link TestType} to access OVAL tests quickly.
+ *
+ * Only the comment, the object reference and the state references of each test are kept, the looked up tests are
+ * built from them.
  */
 public class OvalTestManager {
-    private final Map<String, TestType> testsMap = new HashMap<>();
+    /* The comment, the object reference and then the state references of each test */
+    private final Map<String, String[]> testsMap = new HashMap<>();
+
+    /**
+     * Creates an empty cache, to be filled with {@link #add(TestType)}
+     */
+    public OvalTestManager() {
+    }
 
     /**
      * Standard constructor
@@ -35,18 +48,49 @@ public class OvalTestManager {
      * @param tests the tests to store and lookup later
      * */
     public OvalTestManager(List<TestType> tests) {
-        for (TestType test : tests) {
-            testsMap.put(test.getId(), test);
+        tests.forEach(this::add);
+    }
+
+    /**
+     * Stores an OVAL test to look up later
+     *
+     * @param test the test to store
+     * */
+    public void add(TestType test) {
+        List<String> stateRefs = test.getStateRefs();
+        String[] fields = new String[2 + stateRefs.size()];
+        fields[0] = test.getComment();
+        fields[1] = test.getObjectRef();
+        for (int i = 0; i < stateRefs.size(); i++) {
+            fields[2 + i] = stateRefs.get(i);
         }
+        testsMap.put(test.getId(), fields);
     }
 
     /**
      * Looks up an OVAL test with an id of {@code testId} or throws an exception if none is found.
      *
      * @param testId the id of test to lookup
-     * @return the test
+     * @return a {@link TestType} with the id, comment, object and states of the cached test
      * */
     public Optional<TestType> get(String testId) {
-        return Optional.ofNullable(testsMap.get(testId));
+        String[] fields = testsMap.get(testId);
+        if (fields == null) {
+            return Optional.empty();
+        }
+        TestType test = new TestType();
+        test.setId(testId);
+        test.setComment(fields[0]);
+        test.setObjectRef(fields[1]);
+        if (fields.length > 2) {
+            List<StateRefType> states = new ArrayList<>(fields.length - 2);
+            for (String ref : Arrays.asList(fields).subList(2, fields.length)) {
+                StateRefType stateRef = new StateRefType();
+                stateRef.setStateRef(ref);
+                states.add(stateRef);
+            }
+            test.setStates(states);
+        }
+        return Optional.of(test);
     }
 }
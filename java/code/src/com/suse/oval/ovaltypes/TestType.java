@@ -17,6 +17,7 @@ package com.suse.oval.ovaltypes;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -137,6 +138,18 @@ public class TestType {
         }
     }
 
+    /**
+     * Gets the ids of all the states associated with this test.
+     *
+     * @return the state ids, empty if the test has no state
+     */
+    public List<String> getStateRefs() {
+        if (this.states == null) {
+            return List.of();
+        }
+        return states.stream().map(StateRefType::getStateRef).collect(Collectors.toList());
+    }
+
     public void setStates(List<StateRefType> statesIn) {
         this.states = statesIn;
     }
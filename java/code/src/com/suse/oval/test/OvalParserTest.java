@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.oval.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.testing.TestUtils;
+
+import com.suse.oval.OvalParser;
+import com.suse.oval.manager.OVALLookupHelper;
+import com.suse.oval.ovaltypes.DefinitionType;
+import com.suse.oval.ovaltypes.EVRType;
+import com.suse.oval.ovaltypes.ObjectType;
+import com.suse.oval.ovaltypes.OvalRootType;
+import com.suse.oval.ovaltypes.StateType;
+import com.suse.oval.ovaltypes.TestType;
+import com.suse.oval.ovaltypes.VersionType;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class OvalParserTest {
+
+    private final OvalParser parser = new OvalParser();
+
+    private static <T> List<String> describe(List<T> items, Function<T, String> describer) {
+        return items.stream().map(describer).collect(Collectors.toList());
+    }
+
+    private static String describeDefinition(DefinitionType definition) {
+        return definition.getId() + " " + definition.getDefinitionClass() + " " +
+                definition.getMetadata().getTitle() + " " + definition.getCriteria().getChildren().size();
+    }
+
+    private static String describeTest(TestType test) {
+        return test.getId() + " " + test.getObjectRef() + " " + test.getStateRef().orElse(null);
+    }
+
+    private static String describeObject(ObjectType object) {
+        return object.getId() + " " + object.getPackageName();
+    }
+
+    private static String describeState(StateType state) {
+        return state.getId() + " " + state.getPackageEVR().map(EVRType::getValue).orElse(null) + " " +
+                state.getPackageVersion().map(VersionType::getValue).orElse(null);
+    }
+
+    @Test
+    public void testStreamingMatchesFullParsing() throws Exception {
+        for (String name : List.of("oval-def-1.xml", "oval-def-2.xml", "oval-def-3.xml")) {
+            File file = new File(TestUtils.findTestData("/com/redhat/rhn/manager/audit/test/oval/" + name).toURI());
+            OvalRootType full = parser.parse(file);
+
+            OvalRootType resources = parser.parseResources(file);
+            List<DefinitionType> definitions = new ArrayList<>();
+            parser.parseDefinitions(file, definitions::add);
+
+            assertTrue(resources.getDefinitions().isEmpty());
+            assertEquals(describe(full.getDefinitions(), OvalParserTest::describeDefinition),
+                    describe(definitions, OvalParserTest::describeDefinition));
+            assertEquals(describe(full.getTests(), OvalParserTest::describeTest),
+                    describe(resources.getTests(), OvalParserTest::describeTest));
+            assertEquals(describe(full.getObjects(), OvalParserTest::describeObject),
+                    describe(resources.getObjects(), OvalParserTest::describeObject));
+            assertEquals(describe(full.getStates(), OvalParserTest::describeState),
+                    describe(resources.getStates(), OvalParserTest::describeState));
+        }
+    }
+
+    @Test
+    public void testLookupHelperKeepsPackageData() throws Exception {
+        for (String name : List.of("oval-def-1.xml", "oval-def-2.xml", "oval-def-3.xml")) {
+            File file = new File(TestUtils.findTestData("/com/redhat/rhn/manager/audit/test/oval/" + name).toURI());
+            OvalRootType full = parser.parse(file);
+
+            OVALLookupHelper helper = new OVALLookupHelper();
+            parser.parseResources(file, helper::addTest, helper::addObject, helper::addState);
+
+            for (TestType test : full.getTests()) {
+                TestType cached = helper.lookupTestById(test.getId()).orElseThrow();
+                assertEquals(describeTest(test), describeTest(cached));
+                assertEquals(test.getComment(), cached.getComment());
+            }
+            for (ObjectType object : full.getObjects()) {
+                assertEquals(describeObject(object),
+                        describeObject(helper.lookupObjectById(object.getId()).orElseThrow()));
+            }
+            for (StateType state : full.getStates()) {
+                StateType cached = helper.lookupStateById(state.getId()).orElseThrow();
+                assertEquals(state.getPackageEVR().map(EVRType::getValue),
+                        cached.getPackageEVR().map(EVRType::getValue));
+                assertEquals(state.getPackageEVR().map(EVRType::getOperation),
+                        cached.getPackageEVR().map(EVRType::getOperation));
+            }
+            assertTrue(helper.lookupTestById("oval:unknown:tst:1").isEmpty());
+        }
+    }
+
+    @Test
+    public void testStreamingSkipsUnmappedElements() throws Exception {
+        String oval = "<oval_definitions xmlns=\"http://oval.mitre.org/XMLSchema/oval-definitions-5\"\n" +
+                "    xmlns:oval=\"http://oval.mitre.org/XMLSchema/oval-common-5\">\n" +
+                "  <generator><oval:product_name>test</oval:product_name></generator>\n" +
+                "  <definitions>\n" +
+                "    <definition id=\"def:1\" version=\"1\" class=\"patch\">\n" +
+                "      <metadata><title>first</title></metadata>\n" +
+                "      <criteria operator=\"OR\"><criterion test_ref=\"tst:1\"/></criteria>\n" +
+                "    </definition>\n" +
+                "    <definition id=\"def:2\" version=\"1\" class=\"vulnerability\">\n" +
+                "      <metadata><title>second</title></metadata>\n" +
+                "    </definition>\n" +
+                "  </definitions>\n" +
+                "  <tests>\n" +
+                "    <textfilecontent54_test id=\"tst:0\" version=\"1\" check=\"all\" comment=\"unmapped\"\n" +
+                "        xmlns=\"http://oval.mitre.org/XMLSchema/oval-definitions-5#independent\">\n" +
+                "      <object object_ref=\"obj:0\"/>\n" +
+                "    </textfilecontent54_test>\n" +
+                "    <rpminfo_test id=\"tst:1\" version=\"1\" check=\"all\" comment=\"mapped\"\n" +
+                "        xmlns=\"http://oval.mitre.org/XMLSchema/oval-definitions-5#linux\">\n" +
+                "      <object object_ref=\"obj:1\"/>\n" +
+                "    </rpminfo_test>\n" +
+                "  </tests>\n" +
+                "  <objects/>\n" +
+                "</oval_definitions>\n";
+        Path file = Files.createTempFile("oval", ".xml");
+        try {
+            Files.writeString(file, oval, StandardCharsets.UTF_8);
+
+            List<DefinitionType> definitions = new ArrayList<>();
+            parser.parseDefinitions(file.toFile(), definitions::add);
+            assertEquals(List.of("def:1", "def:2"), describe(definitions, DefinitionType::getId));
+
+            OvalRootType resources = parser.parseResources(file.toFile());
+            assertEquals(List.of("tst:1 obj:1 null"), describe(resources.getTests(), OvalParserTest::describeTest));
+            assertTrue(resources.getObjects().isEmpty());
+            assertTrue(resources.getStates().isEmpty());
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+}
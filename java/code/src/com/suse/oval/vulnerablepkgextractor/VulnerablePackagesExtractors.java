@@ -29,6 +29,23 @@ public class VulnerablePackagesExtractors {
 
     private VulnerablePackagesExtractors() {
     }
+    /**
+     * Tells whether the extractors of the given {@code osFamily} look up the tests, objects and states of the OVAL
+     *
+     * @param osFamily the os family
+     * @return true if the OVAL resources must be passed to the extractors in an {@link OVALLookupHelper}
+     * */
+    public static boolean usesResources(OsFamily osFamily) {
+        switch (osFamily) {
+            case LEAP:
+            case SUSE_LINUX_ENTERPRISE_SERVER:
+            case SUSE_LINUX_ENTERPRISE_DESKTOP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * Create and returns a {@link VulnerablePackagesExtractor} instance based on the given {@code osFamily} argument
      *
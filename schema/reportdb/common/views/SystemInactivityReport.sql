@@ -10,13 +10,14 @@
 --
 
 CREATE OR REPLACE VIEW SystemInactivityReport AS
-  SELECT mgm_id
-            , system_id
-            , profile_name AS system_name
-            , organization
-            , last_checkin_time
-            , (synced_date - last_checkin_time) AS inactivity
-            , synced_date
-    FROM system
-ORDER BY mgm_id, system_id, organization
+  SELECT System.mgm_id
+            , System.system_id
+            , System.profile_name AS system_name
+            , System.organization
+            , System.last_checkin_time
+            , (COALESCE(SyncState.last_sync_date, System.synced_date) - System.last_checkin_time) AS inactivity
+            , COALESCE(SyncState.last_sync_date, System.synced_date) AS synced_date
+    FROM System
+            LEFT JOIN SyncState ON ( System.mgm_id = SyncState.mgm_id )
+ORDER BY System.mgm_id, System.system_id, System.organization
 ;
@@ -0,0 +1,23 @@
+--
+-- Copyright (c) 2024 SUSE LLC
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+
+CREATE OR REPLACE VIEW SystemInactivityReport AS
+  SELECT System.mgm_id
+            , System.system_id
+            , System.profile_name AS system_name
+            , System.organization
+            , System.last_checkin_time
+            , (COALESCE(SyncState.last_sync_date, System.synced_date) - System.last_checkin_time) AS inactivity
+            , COALESCE(SyncState.last_sync_date, System.synced_date) AS synced_date
+    FROM System
+            LEFT JOIN SyncState ON ( System.mgm_id = SyncState.mgm_id )
+ORDER BY System.mgm_id, System.system_id, System.organization
+;
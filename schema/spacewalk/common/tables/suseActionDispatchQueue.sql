@@ -0,0 +1,25 @@
+--
+-- Copyright (c) 2024 SUSE LLC
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+
+CREATE TABLE suseActionDispatchQueue(
+    action_id              NUMERIC NOT NULL
+                               CONSTRAINT suse_act_disp_queue_aid_pk PRIMARY KEY
+                               CONSTRAINT suse_act_disp_queue_aid_fk
+                               REFERENCES rhnAction (id) ON DELETE CASCADE,
+    force_pkg_list_refresh BOOLEAN NOT NULL DEFAULT FALSE,
+    created                TIMESTAMPTZ
+                               DEFAULT (current_timestamp) NOT NULL
+);
+
+CREATE INDEX suse_act_disp_queue_created_idx ON suseActionDispatchQueue (created);
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS suseActionDispatchQueue(
+    action_id              NUMERIC NOT NULL
+                               CONSTRAINT suse_act_disp_queue_aid_pk PRIMARY KEY
+                               CONSTRAINT suse_act_disp_queue_aid_fk
+                               REFERENCES rhnAction (id) ON DELETE CASCADE,
+    force_pkg_list_refresh BOOLEAN NOT NULL DEFAULT FALSE,
+    created                TIMESTAMPTZ
+                               DEFAULT (current_timestamp) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS suse_act_disp_queue_created_idx ON suseActionDispatchQueue (created);
@@ -15,6 +15,7 @@
 
 package com.redhat.satellite.search.db;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.session.SqlSession;
 
 import java.sql.SQLException;
@@ -67,6 +68,17 @@ public class Query<T> {
         return retval;
     }
 
+    /**
+     * Load the objects from query one at a time, as they are iterated.
+     * The cursor is closed along with the query.
+     * @param param query param
+     * @return cursor over T
+     * @throws SQLException something bad happened
+     */
+    public Cursor<T> loadCursor(Object param) throws SQLException {
+        return session.selectCursor(queryName, param);
+    }
+
     /**
      * Load single object from query
      * @param param query apram
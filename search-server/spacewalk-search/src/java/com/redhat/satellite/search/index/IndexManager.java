@@ -28,7 +28,8 @@ import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
@@ -38,14 +39,12 @@ import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.Hits;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.LockObtainFailedException;
+import org.picocontainer.Startable;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +56,7 @@ import java.util.TreeMap;
  *
  * @version $Rev$
  */
-public class IndexManager {
+public class IndexManager implements Startable {
 
     private static Logger log = LogManager.getLogger(IndexManager.class);
     private String indexWorkDir;
@@ -71,6 +70,7 @@ public class IndexManager {
     private boolean filterDocResults = false;
     private boolean explainResults = false;
     // Name conflict with our Configuration class and Hadoop's
+    private final Map<String, SharedIndex> indexes = new HashMap<String, SharedIndex>();
     private Map<String, String> docLocaleLookUp = new TreeMap<String, String>
                                                                                                 (String.CASE_INSENSITIVE_ORDER);
     /**
@@ -142,12 +142,12 @@ public class IndexManager {
     public List<Result> search(String indexName, String query, String lang,
             boolean isFineGrained)
             throws IndexingException, QueryParseException {
-        IndexSearcher searcher = null;
-        IndexReader reader = null;
+        SharedIndex.Ref ref = null;
         List<Result> retval = null;
         try {
-            reader = getIndexReader(indexName, lang);
-            searcher = getIndexSearcher(indexName, lang);
+            ref = getIndex(indexName, lang).acquire();
+            IndexReader reader = ref.getReader();
+            IndexSearcher searcher = ref.getSearcher();
             QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
             Query q = qp.parse(query);
             if (log.isDebugEnabled()) {
@@ -187,16 +187,8 @@ public class IndexManager {
             throw new QueryParseException("Could not parse query: '" + query + "'");
         }
         finally {
-            try {
-                if (searcher != null) {
-                    searcher.close();
-                }
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-            catch (IOException ex) {
-                throw new IndexingException(ex);
+            if (ref != null) {
+                ref.release();
             }
         }
         return retval;
@@ -214,25 +206,11 @@ public class IndexManager {
         throws IndexingException {
 
         try {
-            IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
+            getIndex(indexName, lang).update(new SharedIndex.Update() {
+                public void apply(IndexWriter writer) {
+                    // opening the writer is enough to create the index
                 }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
-            }
-        }
-        catch (CorruptIndexException e) {
-            throw new IndexingException(e);
-        }
-        catch (LockObtainFailedException e) {
-            throw new IndexingException(e);
+            });
         }
         catch (IOException e) {
             throw new IndexingException(e);
@@ -248,30 +226,15 @@ public class IndexManager {
      * @param lang language.
      * @throws IndexingException something went wrong adding the document
      */
-    public void addToIndex(String indexName, Document doc, String lang)
+    public void addToIndex(String indexName, final Document doc, String lang)
         throws IndexingException {
 
         try {
-            IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.addDocument(doc);
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
+            getIndex(indexName, lang).update(new SharedIndex.Update() {
+                public void apply(IndexWriter writer) throws IOException {
+                    writer.addDocument(doc);
                 }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
-            }
-        }
-        catch (CorruptIndexException e) {
-            throw new IndexingException(e);
-        }
-        catch (LockObtainFailedException e) {
-            throw new IndexingException(e);
+            });
         }
         catch (IOException e) {
             throw new IndexingException(e);
@@ -284,40 +247,46 @@ public class IndexManager {
      * @param lang language
      * @throws IndexingException
      */
-    public void addUniqueToIndex(String indexName, Document doc,
+    public void addUniqueToIndex(String indexName, final Document doc,
             String uniqueField, String lang)
         throws IndexingException {
-        IndexReader reader = null;
-        int numFound = 0;
+        // replaces the documents with the same unique field, if any
+        final Term term = new Term(uniqueField, doc.get(uniqueField));
         try {
-            reader = getIndexReader(indexName, lang);
-            Term term = new Term(uniqueField, doc.get(uniqueField));
-            numFound = reader.docFreq(term);
-        }
-        catch (FileNotFoundException e) {
-            // Index doesn't exist, so this add will be unique
-            // we don't need to do anything/
+            getIndex(indexName, lang).update(new SharedIndex.Update() {
+                public void apply(IndexWriter writer) throws IOException {
+                    writer.updateDocument(term, doc);
+                }
+            });
         }
         catch (IOException e) {
             throw new IndexingException(e);
         }
-        finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    //
+    }
+
+    /**
+     * Adds or replaces documents in an index, committing them all at once
+     * @param indexName
+     * @param docs documents with data to index
+     * @param uniqueField field in the documents which identifies them uniquely
+     * @param lang language
+     * @throws IndexingException
+     */
+    public void addUniqueToIndex(String indexName, final List<Document> docs,
+            final String uniqueField, String lang)
+        throws IndexingException {
+        try {
+            getIndex(indexName, lang).update(new SharedIndex.Update() {
+                public void apply(IndexWriter writer) throws IOException {
+                    for (Document doc : docs) {
+                        writer.updateDocument(new Term(uniqueField, doc.get(uniqueField)), doc);
+                    }
                 }
-            }
+            });
         }
-        if (numFound > 0) {
-            log.info("Found " + numFound + " <" + indexName + " docs for " +
-                    uniqueField + ":" + doc.get(uniqueField) +
-                    " will remove them now.");
-            removeFromIndex(indexName, uniqueField, doc.get(uniqueField));
+        catch (IOException e) {
+            throw new IndexingException(e);
         }
-        addToIndex(indexName, doc, lang);
     }
 
     /**
@@ -332,22 +301,16 @@ public class IndexManager {
             throws IndexingException {
         log.info("Removing <" + indexName + "> " + uniqueField + ":" +
                 objectId);
-        Term t = new Term(uniqueField, objectId);
-        IndexReader reader;
+        removeFromIndex(indexName, new Term[] {new Term(uniqueField, objectId)});
+    }
+
+    private void removeFromIndex(String indexName, final Term[] terms) throws IndexingException {
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
-            try {
-                reader.deleteDocuments(t);
-                reader.flush();
-            }
-            finally {
-               if (reader != null) {
-                    reader.close();
-               }
-            }
-        }
-        catch (CorruptIndexException e) {
-            throw new IndexingException(e);
+            getIndex(indexName, IndexHandler.DEFAULT_LANG).update(new SharedIndex.Update() {
+                public void apply(IndexWriter writer) throws IOException {
+                    writer.deleteDocuments(terms);
+                }
+            });
         }
         catch (IOException e) {
             throw new IndexingException(e);
@@ -355,49 +318,48 @@ public class IndexManager {
     }
 
     /**
-     * Unlocks the index at the given directory if it is currently locked.
-     * Otherwise, does nothing.
-     * @param indexName index name
-     * @throws IOException thrown if there is a problem unlocking the index.
+     * Returns the shared index with the given name, opening it on first use.
+     * The index directory and its analyzer do not depend on the language, so
+     * all the languages share the same index.
      */
-    private void unlockIndex(String indexName) throws IOException {
-        String path = indexWorkDir + indexName;
-        File f = new File(path);
-        Directory dir = FSDirectory.getDirectory(f);
-        if (IndexReader.isLocked(dir)) {
-            IndexReader.unlock(dir);
+    private SharedIndex getIndex(String indexName, String lang) {
+        synchronized (indexes) {
+            SharedIndex index = indexes.get(indexName);
+            if (index == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Opening index <" + indexName + "> path = " +
+                            indexWorkDir + indexName);
+                }
+                index = new SharedIndex(indexName, new File(indexWorkDir + indexName),
+                        getAnalyzer(indexName, lang));
+                indexes.put(indexName, index);
+            }
+            return index;
         }
     }
 
-    private IndexWriter getIndexWriter(String name, String lang)
-            throws CorruptIndexException, LockObtainFailedException,
-            IOException {
-        String path = indexWorkDir + name;
-        File f = new File(path);
-        f.mkdirs();
-        Analyzer analyzer = getAnalyzer(name, lang);
-        IndexWriter writer = new IndexWriter(path, analyzer);
-        writer.setUseCompoundFile(true);
-        return writer;
-    }
-
-    private IndexReader getIndexReader(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexReader(" + indexName + ", " + locale +
-                ") path = " + path);
-        File f = new File(path);
-        IndexReader retval = IndexReader.open(FSDirectory.getDirectory(f));
-        return retval;
+    /**
+     * {@inheritDoc}
+     */
+    public void start() {
+        // indexes are opened on first use
     }
 
-    private IndexSearcher getIndexSearcher(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
-                ") path = " + path);
-        IndexSearcher retval = new IndexSearcher(path);
-        return retval;
+    /**
+     * Closes the index writers and readers.
+     */
+    public void stop() {
+        synchronized (indexes) {
+            for (SharedIndex index : indexes.values()) {
+                try {
+                    index.close();
+                }
+                catch (IOException e) {
+                    log.error("Could not close index", e);
+                }
+            }
+            indexes.clear();
+        }
     }
 
     private QueryParser getQueryParser(String indexName, String lang,
@@ -590,52 +552,57 @@ public class IndexManager {
      * @param indexName index name to operate on
      * @param uniqField the name of the field in the Document to uniquely identify
      * this record
-     * @return the number of documents deleted
+     * @return the number of records deleted
      */
     public int deleteRecordsNotInList(Set<String> ids, String indexName,
             String uniqField) {
-        int count = 0;
-        IndexReader reader = null;
+        List<Term> deleted = new ArrayList<Term>();
+        SharedIndex.Ref ref = null;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
+            ref = getIndex(indexName, IndexHandler.DEFAULT_LANG).acquire();
+            IndexReader reader = ref.getReader();
+
+            // Only load the unique field of the stored documents, and
+            // delete all the stale ones with a single commit
+            FieldSelector uniqFieldOnly = new MapFieldSelector(new String[] {uniqField});
+            Set<String> staleIds = new HashSet<String>();
 
             // Use maxDoc() to iterate over all docs, numDocs() returns the
             // number of currently alive docs leaving out the deleted ones.
             int maxDoc = reader.maxDoc();
             for (int i = 0; i < maxDoc; i++) {
                 if (!reader.isDeleted(i)) {
-                    Document doc = reader.document(i);
+                    Document doc = reader.document(i, uniqFieldOnly);
                     String uniqId = doc.getField(uniqField).stringValue();
-                    if (!ids.contains(uniqId)) {
+                    if (!ids.contains(uniqId) && staleIds.add(uniqId)) {
                         log.info(indexName + ":" + uniqField  + ":  <" + uniqId +
                                 "> not found in list of current/good values " +
                                 "assuming this has been deleted from Database and we " +
                                 "should remove it.");
-                        removeFromIndex(indexName, uniqField, uniqId);
-                        count++;
+                        deleted.add(new Term(uniqField, uniqId));
                     }
                 }
             }
+            if (!deleted.isEmpty()) {
+                removeFromIndex(indexName, deleted.toArray(new Term[deleted.size()]));
+            }
         }
         catch (IOException e) {
             e.printStackTrace();
             log.info("deleteRecordsNotInList() caught exception : " + e);
+            return 0;
         }
         catch (IndexingException e) {
             e.printStackTrace();
             log.info("deleteRecordsNotInList() caught exception : " + e);
+            return 0;
         }
         finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    //
-                }
+            if (ref != null) {
+                ref.release();
             }
         }
-        return count;
+        return deleted.size();
     }
 
     private void debugExplainResults(String indexName, Hits hits, IndexSearcher searcher,
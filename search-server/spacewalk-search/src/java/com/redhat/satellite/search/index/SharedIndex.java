@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2024 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * One Lucene index kept open for the whole life of the search server: a
+ * single writer shared by all the indexing threads, and a reader with its
+ * searcher shared by all the queries.
+ *
+ * Updates go through the writer one at a time, each committed or rolled back
+ * as a whole. Searchers are handed out as reference counted {@link Ref}s. The
+ * reader is only reopened after the writer committed, and a replaced reader
+ * is closed once the last query using it released it.
+ *
+ * @version $Rev$
+ */
+class SharedIndex {
+
+    private static Logger log = LogManager.getLogger(SharedIndex.class);
+
+    private final String name;
+    private final File path;
+    private final Analyzer analyzer;
+
+    // guards the writer and serializes the updates, taken before the index
+    // lock when both are needed
+    private final Object writerLock = new Object();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private Ref current;
+    private volatile boolean stale = true;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param nameIn index name
+     * @param pathIn index directory
+     * @param analyzerIn analyzer used to index documents
+     */
+    SharedIndex(String nameIn, File pathIn, Analyzer analyzerIn) {
+        name = nameIn;
+        path = pathIn;
+        analyzer = analyzerIn;
+    }
+
+    /**
+     * Applies an update through the shared writer, opening it on first use,
+     * and commits it. Updates of the index are applied one at a time, so that
+     * the changes committed or, after a failure, rolled back are always those
+     * of a single update.
+     *
+     * @param update the changes to make
+     * @throws IOException if the update or its commit failed, in which case
+     * none of its changes are kept
+     */
+    void update(Update update) throws IOException {
+        synchronized (writerLock) {
+            ensureOpen();
+            if (writer == null) {
+                writer = openWriter();
+            }
+            boolean committed = false;
+            try {
+                update.apply(writer);
+                writer.commit();
+                committed = true;
+            }
+            finally {
+                if (!committed) {
+                    discardWriter();
+                }
+            }
+        }
+        stale = true;
+    }
+
+    private IndexWriter openWriter() throws IOException {
+        path.mkdirs();
+        Directory dir = getDirectory();
+        // this is the only writer of the index in the search server, so
+        // any lock left over is from a previous run which did not stop
+        // cleanly
+        if (IndexReader.isLocked(dir)) {
+            log.warn("Removing stale lock of index <" + name + ">");
+            IndexReader.unlock(dir);
+        }
+        IndexWriter retval = new IndexWriter(dir, analyzer,
+                IndexWriter.MaxFieldLength.LIMITED);
+        retval.setUseCompoundFile(true);
+        return retval;
+    }
+
+    /*
+     * Rolls the writer back after a failed update, dropping its changes, and
+     * closes it. The next update opens a new one. Called with writerLock held.
+     */
+    private void discardWriter() {
+        try {
+            writer.rollback();
+        }
+        catch (IOException e) {
+            log.error("Could not roll back writer of index <" + name + ">", e);
+        }
+        writer = null;
+        stale = true;
+    }
+
+    /**
+     * Returns the current searcher, reopening the reader if the index was
+     * committed to since. The caller must release it when done.
+     *
+     * @return the searcher reference
+     * @throws IOException if the index could not be read, notably
+     * FileNotFoundException if it was never created
+     */
+    synchronized Ref acquire() throws IOException {
+        ensureOpen();
+        // cleared before reopening, so that a commit happening meanwhile
+        // triggers another reopen
+        boolean reopen = stale;
+        stale = false;
+        if (current == null) {
+            current = new Ref(IndexReader.open(getDirectory(), true));
+        }
+        else if (reopen) {
+            IndexReader reopened;
+            try {
+                reopened = current.reader.reopen();
+            }
+            catch (IOException e) {
+                stale = true;
+                throw e;
+            }
+            if (reopened != current.reader) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Reopened reader of index <" + name + ">");
+                }
+                Ref old = current;
+                current = new Ref(reopened);
+                old.release();
+            }
+        }
+        current.refs++;
+        return current;
+    }
+
+    /**
+     * Closes the writer and, once they are released, the readers.
+     *
+     * @throws IOException if closing the writer failed
+     */
+    void close() throws IOException {
+        synchronized (writerLock) {
+            closed = true;
+            try {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+            }
+            finally {
+                synchronized (this) {
+                    if (current != null) {
+                        current.release();
+                        current = null;
+                    }
+                    if (directory != null) {
+                        directory.close();
+                        directory = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized Directory getDirectory() throws IOException {
+        if (directory == null) {
+            directory = FSDirectory.getDirectory(path);
+        }
+        return directory;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Index <" + name + "> is closed");
+        }
+    }
+
+    /**
+     * Changes made to the index through its writer.
+     */
+    interface Update {
+
+        /**
+         * Makes the changes, which are committed afterwards.
+         *
+         * @param writer the index writer
+         * @throws IOException if the changes could not be made
+         */
+        void apply(IndexWriter writer) throws IOException;
+    }
+
+    /**
+     * A reader and its searcher, closed when the last user released it. The
+     * index holds one reference while the reader is the current one.
+     */
+    class Ref {
+
+        private final IndexReader reader;
+        private final IndexSearcher searcher;
+        private int refs = 1;
+
+        Ref(IndexReader readerIn) {
+            reader = readerIn;
+            searcher = new IndexSearcher(readerIn);
+        }
+
+        /**
+         * @return the reader
+         */
+        IndexReader getReader() {
+            return reader;
+        }
+
+        /**
+         * @return the searcher
+         */
+        IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        /**
+         * Releases this reference, closing the reader if it was the last one.
+         */
+        void release() {
+            synchronized (SharedIndex.this) {
+                refs--;
+                if (refs > 0) {
+                    return;
+                }
+            }
+            try {
+                searcher.close();
+                reader.close();
+            }
+            catch (IOException e) {
+                log.error("Could not close reader of index <" + name + ">", e);
+            }
+        }
+    }
+}
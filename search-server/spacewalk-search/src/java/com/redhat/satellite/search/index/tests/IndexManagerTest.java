@@ -11,9 +11,14 @@ import com.redhat.satellite.search.tests.TestUtil;
 
 import org.apache.lucene.document.Document;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class IndexManagerTest extends BaseTestCase {
 
@@ -57,6 +62,75 @@ public class IndexManagerTest extends BaseTestCase {
         assertTrue(results.size() >= 1);
     }
 
+    public void testAddUniqueAndRemove()
+        throws IndexingException, QueryParseException {
+
+        String index = "foo";
+        indexManager.addUniqueToIndex(index, buildDocument(456L, "bar"), "id", "en");
+        indexManager.addUniqueToIndex(index, buildDocument(456L, "bar"), "id", "en");
+        assertEquals(1, indexManager.search(index, "name:bar", "en").size());
+
+        indexManager.removeFromIndex(index, "id", "456");
+        assertTrue(indexManager.search(index, "name:bar", "en").isEmpty());
+    }
+
+    public void testBatchAndDeleteRecordsNotInList()
+        throws IndexingException, QueryParseException {
+
+        String index = "foo";
+        indexManager.addUniqueToIndex(index, Arrays.asList(buildDocument(1L, "abc"),
+                buildDocument(2L, "def"), buildDocument(3L, "ghi")), "id", "en");
+        indexManager.addUniqueToIndex(index, Arrays.asList(buildDocument(3L, "ghi")),
+                "id", "en");
+        assertEquals(1, indexManager.search(index, "name:ghi", "en").size());
+
+        Set<String> ids = new HashSet<String>(Arrays.asList("1", "3"));
+        assertEquals(1, indexManager.deleteRecordsNotInList(ids, index, "id"));
+        assertTrue(indexManager.search(index, "name:def", "en").isEmpty());
+        assertEquals(1, indexManager.search(index, "name:abc", "en").size());
+    }
+
+    public void testConcurrentQuerying() throws Exception {
+        final String index = "foo";
+        indexManager.addToIndex(index, buildDocument(789L, "baz"), "en");
+
+        final List<Throwable> errors =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            assertEquals(1,
+                                indexManager.search(index, "name:baz", "en").size());
+                        }
+                    }
+                    catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        // commits while searching make the next searches reopen the reader
+        for (long id = 1000; id < 1010; id++) {
+            indexManager.addToIndex(index, buildDocument(id, "qux"), "en");
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(10, indexManager.search(index, "name:qux", "en").size());
+    }
+
+    private Document buildDocument(Long objectId, String name) {
+        Map<String, String> meta = new HashMap<String, String>();
+        meta.put("name", name);
+        meta.put("desc", "A really nice " + name);
+        DocumentBuilder pdb = new PackageDocumentBuilder();
+        return pdb.buildDocument(objectId, meta);
+    }
 
     @SuppressWarnings("unchecked")
     @Override
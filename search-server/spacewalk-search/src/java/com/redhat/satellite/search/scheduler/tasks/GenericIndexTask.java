@@ -23,6 +23,7 @@ import com.redhat.satellite.search.index.IndexingException;
 import com.redhat.satellite.search.index.builder.BuilderFactory;
 import com.redhat.satellite.search.index.builder.DocumentBuilder;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
@@ -32,14 +33,15 @@ import org.quartz.JobExecutionException;
 import org.quartz.StatefulJob;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * GenericIndexTask
@@ -47,6 +49,8 @@ import java.util.Map;
  */
 public abstract class GenericIndexTask implements StatefulJob {
 
+    // number of records committed to the index at once
+    private static final int BATCH_SIZE = 1000;
     private static Logger log = LogManager.getLogger(GenericIndexTask.class);
     private String lang = "en";
     /**
@@ -64,21 +68,9 @@ public abstract class GenericIndexTask implements StatefulJob {
             //try to create the index first incase we never actually
             //   have any records (BZ 537502)
             indexManager.createIndex(getIndexName(), lang);
-            List<GenericRecord> data = getRecords(databaseManager);
-            int count = 0;
-            log.info(super.getClass().toString() + "found [" +
-                    data.size() + "] items to index");
-            for (Iterator<GenericRecord> iter = data.iterator(); iter.hasNext();) {
-                GenericRecord current = iter.next();
-                indexRecord(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastRecord(databaseManager, current.getId());
-                    }
-                    count = 0;
-                }
-            }
+            int count = indexRecords(databaseManager, indexManager);
+            log.info(super.getClass().toString() + " indexed [" +
+                    count + "] items");
             //
             // Check to see if any records have been deleted from database, so
             // we should delete from our indexes.
@@ -135,31 +127,78 @@ public abstract class GenericIndexTask implements StatefulJob {
     }
 
     /**
+     * Streams the records to index from the database and indexes them in
+     * batches: the documents of a batch are built in parallel, committed
+     * together and the last record marker is then moved past them.
+     * @param databaseManager
      * @param indexManager
-     * @param current
+     * @return the number of records indexed
      */
-    private void indexRecord(IndexManager indexManager,
-            GenericRecord data)
-        throws IndexingException {
+    private int indexRecords(DatabaseManager databaseManager,
+            IndexManager indexManager)
+        throws SQLException, IndexingException {
+        int count = 0;
+        // Lookup what objects have not been indexed, or need to be reindexed.
+        Query<GenericRecord> srvrQuery = databaseManager.getQuery(
+                getQueryRecordsToIndex());
+        try {
+            Cursor<GenericRecord> records = srvrQuery.loadCursor(
+                    getRecordsParams(databaseManager));
+            List<GenericRecord> batch = new ArrayList<GenericRecord>(BATCH_SIZE);
+            for (GenericRecord current : records) {
+                batch.add(current);
+                if (batch.size() == BATCH_SIZE) {
+                    indexBatch(databaseManager, indexManager, batch);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                indexBatch(databaseManager, indexManager, batch);
+                count += batch.size();
+            }
+        }
+        finally {
+            srvrQuery.close();
+        }
+        return count;
+    }
+
+    private void indexBatch(DatabaseManager databaseManager,
+            IndexManager indexManager, List<GenericRecord> batch)
+        throws SQLException, IndexingException {
+        List<Document> docs = batch.parallelStream()
+                .map(this::buildDocument)
+                .collect(Collectors.toList());
+        indexManager.addUniqueToIndex(getIndexName(), docs, getUniqueFieldId(),
+                lang);
+        if (System.getProperties().get("isTesting") == null) {
+            updateLastRecord(databaseManager, batch.get(batch.size() - 1).getId());
+        }
+    }
 
+    /**
+     * @param data the record to index
+     * @return the document for the record
+     */
+    private Document buildDocument(GenericRecord data) {
         Map<String, String> attrs = getFieldMap(data);
-        log.info(super.getClass().toString() + " Indexing object: " +
-                data.getId() + ": " + attrs.toString());
+        if (log.isDebugEnabled()) {
+            log.debug(super.getClass().toString() + " Indexing object: " +
+                    data.getId() + ": " + attrs.toString());
+        }
         DocumentBuilder pdb = BuilderFactory.getBuilder(getIndexName());
-        Document doc = pdb.buildDocument(new Long(data.getId()), attrs);
-        indexManager.addUniqueToIndex(getIndexName(), doc, getUniqueFieldId(),
-                lang);
+        return pdb.buildDocument(new Long(data.getId()), attrs);
     }
 
 
     /**
      * @param databaseManager
-     * @return
+     * @return the parameters of the query returning the records to index
      */
-    private List<GenericRecord> getRecords(DatabaseManager databaseManager)
+    private Map<String, Object> getRecordsParams(DatabaseManager databaseManager)
         throws SQLException {
         // What was the last object id we indexed?
-        List<GenericRecord> retval = null;
         Query<Long> query = databaseManager.getQuery(getQueryLastRecord());
         Long sid = null;
         try {
@@ -183,23 +222,12 @@ public abstract class GenericIndexTask implements StatefulJob {
         if (lastRun == null) {
             lastRun = new Date(0);
         }
-        // Lookup what objects have not been indexed, or need to be reindexed.
-        Query<GenericRecord> srvrQuery = databaseManager.getQuery(
-                getQueryRecordsToIndex());
-        try {
-            Map<String, Object> params = new HashMap<String, Object>();
-            params.put("id", sid);
-            params.put("last_modified", lastRun);
-            log.info("GenericIndexTask<" + super.getClass().toString() +
-                    " last processed id = " + sid + ", lastRun was " + lastRun);
-            retval = srvrQuery.loadList(params);
-            log.info("GenericIndexTask<" + super.getClass().toString() +
-                    " number of results returned = " + retval.size());
-        }
-        finally {
-            srvrQuery.close();
-        }
-        return retval;
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("id", sid);
+        params.put("last_modified", lastRun);
+        log.info("GenericIndexTask<" + super.getClass().toString() +
+                " last processed id = " + sid + ", lastRun was " + lastRun);
+        return params;
     }
 
     /**
@@ -45,6 +45,7 @@ import org.quartz.spi.MutableTrigger;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -161,6 +162,15 @@ public class IndexSystemsTaskTest extends BaseTestCase {
             log.info("idx[" + indexName + "] doc [" + doc + "]");
         }
 
+        @Override
+        public void addUniqueToIndex(String indexName, List<Document> docs,
+                String uniqueField, String lang) throws IndexingException {
+            for (Document doc : docs) {
+                assertNotNull(doc.getField(uniqueField));
+                addToIndex(indexName, doc, lang);
+            }
+        }
+
         /**
          * @param config
          */